@@ -0,0 +1,57 @@
+package accepted.music.lyrics;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Parses a large lrc file with {@link LrcParser}, the parse time is logged with the tag
+ * "LrcParserBenchmarkTest".
+ */
+@RunWith(AndroidJUnit4.class)
+public class LrcParserBenchmarkTest {
+    private static final String TAG = "LrcParserBenchmarkTest";
+    private static final int LINE_COUNT = 100_000;
+
+    @Test
+    public void benchmarkParse() {
+        String text = createLrc();
+
+        // warms up the JIT
+        for (int i = 0; i < 3; i++) {
+            LrcParser.parse(text);
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        Lyrics lyrics = LrcParser.parse(text);
+        long time = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.i(TAG, LINE_COUNT + " lines: " + time + " ms, " + (LINE_COUNT * 1000L / time) + " lines/s");
+
+        assertEquals(LINE_COUNT, lyrics.size());
+    }
+
+    private static String createLrc() {
+        StringBuilder builder = new StringBuilder(LINE_COUNT * 40);
+        builder.append("[ti:Title]\n[ar:Artist]\n[offset:100]\n");
+        for (int i = 0; i < LINE_COUNT; i++) {
+            int time = i * 1000 + i % 100;
+            builder.append('[')
+                    .append(pad(time / 60_000)).append(':')
+                    .append(pad(time / 1000 % 60)).append('.')
+                    .append(pad(time % 1000 / 10)).append(']')
+                    .append("Line number ").append(i).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+}
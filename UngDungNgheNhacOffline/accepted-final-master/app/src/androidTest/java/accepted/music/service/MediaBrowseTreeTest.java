@@ -0,0 +1,260 @@
+package accepted.music.service;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+import accepted.music.store.MyObjectBox;
+import accepted.player.playlist.Playlist;
+import io.objectbox.BoxStore;
+
+import static org.junit.Assert.*;
+
+/**
+ * Browses a library of 50k music, the load times are logged with the tag "MediaBrowseTreeTest".
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaBrowseTreeTest {
+    private static final String TAG = "MediaBrowseTreeTest";
+    private static final int MUSIC_COUNT = 50_000;
+    private static final long MAX_LOAD_TIME = 1000;     // ms
+    // far below the 1 MB Binder transaction buffer
+    private static final int MAX_PAGE_BYTES = 256 * 1024;
+
+    private File test_directory;
+    private BoxStore store;
+    private MusicStore mMusicStore;
+    private MediaBrowseTree mMediaBrowseTree;
+    private List<String> mChangedParents;
+
+    private Context getContext() {
+        return InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @Before
+    public void setUp() {
+        test_directory = new File(getContext().getCacheDir(), "objectbox-test");
+
+        BoxStore.deleteAllFiles(test_directory);
+        store = MyObjectBox.builder()
+                .directory(test_directory)
+                .build();
+        MusicStore.init(store);
+        mMusicStore = MusicStore.getInstance();
+
+        List<Music> allMusic = new ArrayList<>(MUSIC_COUNT);
+        for (int i = 0; i < MUSIC_COUNT; i++) {
+            allMusic.add(new Music(
+                    0,
+                    "title" + i,
+                    "artist" + (i % 500),
+                    "album" + (i % 2000),
+                    "https://www.test.com/test" + i + ".mp3",
+                    "https://www.test.com/test" + i + ".png",
+                    60_000,
+                    System.currentTimeMillis()));
+        }
+        mMusicStore.putAllMusic(allMusic);
+        mMusicStore.addAllMusic(MusicStore.MUSIC_LIST_LOCAL_MUSIC, allMusic);
+
+        mChangedParents = Collections.synchronizedList(new ArrayList<>());
+        mMediaBrowseTree = new MediaBrowseTree(getContext(), mMusicStore, mChangedParents::add);
+    }
+
+    @After
+    public void tearDown() {
+        mMediaBrowseTree.release();
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+        BoxStore.deleteAllFiles(test_directory);
+    }
+
+    @Test
+    public void pagesAreContiguous() {
+        String localMusic = "list/" + MusicStore.MUSIC_LIST_LOCAL_MUSIC;
+
+        List<MediaItem> page0 = mMediaBrowseTree.loadChildren(localMusic, 0, 100);
+        List<MediaItem> page1 = mMediaBrowseTree.loadChildren(localMusic, 1, 100);
+        List<MediaItem> last = mMediaBrowseTree.loadChildren(localMusic, MUSIC_COUNT / 100 - 1, 100);
+        List<MediaItem> end = mMediaBrowseTree.loadChildren(localMusic, MUSIC_COUNT / 100, 100);
+
+        assertNotNull(page0);
+        assertNotNull(page1);
+        assertNotNull(last);
+        assertNotNull(end);
+
+        assertEquals(100, page0.size());
+        assertEquals(100, page1.size());
+        assertEquals(100, last.size());
+        assertTrue(end.isEmpty());
+
+        Set<String> allMediaId = new HashSet<>();
+        for (MediaItem item : page0) {
+            allMediaId.add(item.getMediaId());
+        }
+        for (MediaItem item : page1) {
+            allMediaId.add(item.getMediaId());
+        }
+        assertEquals(200, allMediaId.size());
+
+        assertEquals("title0", String.valueOf(page0.get(0).getDescription().getTitle()));
+        assertEquals("title100", String.valueOf(page1.get(0).getDescription().getTitle()));
+    }
+
+    @Test
+    public void pageIsFarBelowBinderLimit() {
+        List<MediaItem> page = mMediaBrowseTree.loadChildren("list/" + MusicStore.MUSIC_LIST_LOCAL_MUSIC, 0, 10_000);
+        assertNotNull(page);
+        assertEquals(MediaBrowseTree.MAX_PAGE_SIZE, page.size());
+
+        Parcel parcel = Parcel.obtain();
+        parcel.writeTypedList(page);
+        int size = parcel.dataSize();
+        parcel.recycle();
+
+        Log.i(TAG, "page of " + page.size() + " items: " + size + " bytes");
+        assertTrue(size < MAX_PAGE_BYTES);
+    }
+
+    @Test
+    public void oversizedPagesAreContiguous() {
+        String localMusic = "list/" + MusicStore.MUSIC_LIST_LOCAL_MUSIC;
+
+        List<MediaItem> page1 = mMediaBrowseTree.loadChildren(localMusic, 1, 10_000);
+        assertNotNull(page1);
+        assertEquals(MediaBrowseTree.MAX_PAGE_SIZE, page1.size());
+        assertEquals("title" + MediaBrowseTree.MAX_PAGE_SIZE,
+                String.valueOf(page1.get(0).getDescription().getTitle()));
+    }
+
+    @Test
+    public void unknownNodeIsNull() {
+        assertNull(mMediaBrowseTree.loadChildren("unknown", 0, 100));
+        assertNull(mMediaBrowseTree.loadPlaylist("unknown"));
+    }
+
+    @Test
+    public void playPlayableItem() {
+        List<MediaItem> page = mMediaBrowseTree.loadChildren("artist/artist7", 1, 20);
+        assertNotNull(page);
+        assertEquals(20, page.size());
+
+        MediaBrowseTree.PlaylistRequest request = mMediaBrowseTree.loadPlaylist(page.get(5).getMediaId());
+        assertNotNull(request);
+        assertEquals(MUSIC_COUNT / 500, request.playlist.size());
+        assertEquals(String.valueOf(page.get(5).getDescription().getTitle()),
+                request.playlist.get(request.position).getTitle());
+    }
+
+    @Test
+    public void playPlayableItemOfLargeList() {
+        List<MediaItem> page = mMediaBrowseTree.loadChildren("list/" + MusicStore.MUSIC_LIST_LOCAL_MUSIC, 100, 100);
+        assertNotNull(page);
+
+        MediaBrowseTree.PlaylistRequest request = mMediaBrowseTree.loadPlaylist(page.get(0).getMediaId());
+        assertNotNull(request);
+        assertEquals(Playlist.MAX_SIZE, request.playlist.size());
+        assertEquals(String.valueOf(page.get(0).getDescription().getTitle()),
+                request.playlist.get(request.position).getTitle());
+    }
+
+    @Test
+    public void search() {
+        List<MediaItem> result = mMediaBrowseTree.search("title4999", 0, 100);
+
+        // title4999 and title49990 - title49999
+        assertEquals(11, result.size());
+    }
+
+    @Test
+    public void cacheIsInvalidatedOnLibraryChange() throws InterruptedException {
+        String favorite = "list/" + MusicStore.MUSIC_LIST_FAVORITE;
+
+        List<MediaItem> page = mMediaBrowseTree.loadChildren(favorite, 0, 100);
+        assertNotNull(page);
+        assertTrue(page.isEmpty());
+
+        Music music = mMusicStore.getAllMusic(0, 1).get(0);
+        mMusicStore.addToFavorite(music);
+
+        // the tree is invalidated on the main thread after a delay
+        long deadline = SystemClock.elapsedRealtime() + 5_000;
+        while (!mChangedParents.contains(favorite) && SystemClock.elapsedRealtime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(mChangedParents.contains(favorite));
+
+        page = mMediaBrowseTree.loadChildren(favorite, 0, 100);
+        assertNotNull(page);
+        assertEquals(1, page.size());
+    }
+
+    @Test
+    public void cacheIsKeptOnAnalysisUpdate() throws InterruptedException {
+        assertNotNull(mMediaBrowseTree.loadChildren(MediaBrowseTree.ARTISTS, 0, 100));
+
+        Music music = mMusicStore.getAllMusic(0, 1).get(0);
+        mMusicStore.updateLoudness(music.getId(), -14F, 0.9F);
+        mMusicStore.updateFingerprint(music.getId(), 42);
+
+        // longer than the invalidate delay
+        Thread.sleep(2_000);
+        assertFalse(mChangedParents.contains(MediaBrowseTree.ARTISTS));
+    }
+
+    @Test
+    public void benchmarkLoadChildren() {
+        String[] allParentId = {
+                MediaBrowseTree.ROOT,
+                "list/" + MusicStore.MUSIC_LIST_LOCAL_MUSIC,
+                MediaBrowseTree.ARTISTS,
+                MediaBrowseTree.ALBUMS,
+                "artist/artist42",
+                "album/album42",
+                MediaBrowseTree.HISTORY
+        };
+
+        for (String parentId : allParentId) {
+            int lastPage = parentId.startsWith("list/") ? MUSIC_COUNT / MediaBrowseTree.DEFAULT_PAGE_SIZE - 1 : 0;
+
+            long start = SystemClock.elapsedRealtime();
+            assertNotNull(mMediaBrowseTree.loadChildren(parentId, lastPage, MediaBrowseTree.DEFAULT_PAGE_SIZE));
+            long cold = SystemClock.elapsedRealtime() - start;
+
+            start = SystemClock.elapsedRealtime();
+            assertNotNull(mMediaBrowseTree.loadChildren(parentId, lastPage, MediaBrowseTree.DEFAULT_PAGE_SIZE));
+            long cached = SystemClock.elapsedRealtime() - start;
+
+            Log.i(TAG, parentId + " page " + lastPage + ": cold " + cold + " ms, cached " + cached + " ms");
+            assertTrue(parentId + " took " + cold + " ms", cold < MAX_LOAD_TIME);
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        mMediaBrowseTree.search("title123", 0, MediaBrowseTree.DEFAULT_PAGE_SIZE);
+        long search = SystemClock.elapsedRealtime() - start;
+
+        Log.i(TAG, "search: " + search + " ms");
+        assertTrue("search took " + search + " ms", search < MAX_LOAD_TIME);
+    }
+}
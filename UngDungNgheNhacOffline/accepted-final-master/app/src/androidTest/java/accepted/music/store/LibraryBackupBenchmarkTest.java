@@ -0,0 +1,104 @@
+package accepted.music.store;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.objectbox.BoxStore;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exports and restores a large library with {@link LibraryBackup}, the times are logged with
+ * the tag "LibraryBackupBenchmarkTest".
+ */
+@RunWith(AndroidJUnit4.class)
+public class LibraryBackupBenchmarkTest {
+    private static final String TAG = "LibraryBackupBenchmarkTest";
+    private static final int MUSIC_COUNT = 50_000;
+
+    private File mSourceDir;
+    private File mTargetDir;
+    private BoxStore mSource;
+    private BoxStore mTarget;
+
+    private Context getContext() {
+        return InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @Before
+    public void setUp() {
+        mSourceDir = new File(getContext().getCacheDir(), "objectbox-backup-source");
+        mTargetDir = new File(getContext().getCacheDir(), "objectbox-backup-target");
+
+        BoxStore.deleteAllFiles(mSourceDir);
+        BoxStore.deleteAllFiles(mTargetDir);
+        mSource = MyObjectBox.builder().directory(mSourceDir).build();
+        mTarget = MyObjectBox.builder().directory(mTargetDir).build();
+    }
+
+    @After
+    public void tearDown() {
+        mSource.close();
+        mTarget.close();
+        BoxStore.deleteAllFiles(mSourceDir);
+        BoxStore.deleteAllFiles(mTargetDir);
+    }
+
+    @Test
+    public void benchmarkExportAndRestore() throws IOException {
+        putMusic(mSource);
+
+        long start = SystemClock.elapsedRealtime();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new LibraryBackup(mSource, new SmartMusicListStore(mSource)).export(output, null);
+        long exportTime = SystemClock.elapsedRealtime() - start;
+
+        byte[] backup = output.toByteArray();
+
+        start = SystemClock.elapsedRealtime();
+        new LibraryBackup(mTarget, new SmartMusicListStore(mTarget))
+                .restore(new ByteArrayInputStream(backup), null);
+        long restoreTime = SystemClock.elapsedRealtime() - start;
+
+        Log.i(TAG, MUSIC_COUNT + " music, " + backup.length + " bytes");
+        Log.i(TAG, "export: " + exportTime + " ms, restore: " + restoreTime + " ms");
+
+        assertEquals(MUSIC_COUNT, mTarget.boxFor(Music.class).count());
+    }
+
+    private static void putMusic(BoxStore boxStore) {
+        List<Music> allMusic = new ArrayList<>(MUSIC_COUNT);
+        for (int i = 0; i < MUSIC_COUNT; i++) {
+            allMusic.add(new Music(0,
+                    "Title " + i,
+                    "Artist " + (i % 50),
+                    "Album " + (i % 200),
+                    "content://media/external/audio/media/" + i,
+                    null,
+                    180_000 + i,
+                    1_600_000_000_000L + i,
+                    i % 2 == 0, -14F, 0.9F,
+                    "Album Artist", "Rock", 2000 + i % 20, i % 12 + 1, 1,
+                    -1, 0,
+                    String.format("%040x", i), 0, false));
+        }
+
+        boxStore.boxFor(Music.class).put(allMusic);
+    }
+}
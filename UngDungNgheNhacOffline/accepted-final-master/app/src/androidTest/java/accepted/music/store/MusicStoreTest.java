@@ -12,7 +12,11 @@ import org.junit.runner.RunWith;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 import io.objectbox.BoxStore;
@@ -798,4 +802,364 @@ public class MusicStoreTest {
         assert musicList != null;
         assertEquals(1, musicList.getSize());
     }
+
+    @Test
+    public void addAllMusicById() {
+        final Music musicA = new Music(
+                0,
+                "title1",
+                "artist1",
+                "album1",
+                "https://www.test.com/test1.mp3",
+                "https://www.test.com/test1.png",
+                60_000,
+                System.currentTimeMillis());
+
+        final Music musicB = new Music(
+                0,
+                "title2",
+                "artist2",
+                "album2",
+                "https://www.test.com/test2.mp3",
+                "https://www.test.com/test2.png",
+                60_000,
+                System.currentTimeMillis());
+
+        mMusicStore.putMusic(musicA);
+        mMusicStore.putMusic(musicB);
+
+        MusicList musicListA = mMusicStore.createCustomMusicList("Test music list A");
+        musicListA.getMusicElements().add(musicA);
+        mMusicStore.updateMusicList(musicListA);
+
+        MusicList musicListB = mMusicStore.createCustomMusicList("Test music list B");
+
+        Set<Long> allMusicId = new LinkedHashSet<>();
+        allMusicId.add(musicA.getId());
+        allMusicId.add(musicB.getId());
+
+        Set<Long> allMusicListId = new LinkedHashSet<>();
+        allMusicListId.add(musicListA.getId());
+        allMusicListId.add(musicListB.getId());
+
+        Map<Long, Integer> result = mMusicStore.addAllMusicById(allMusicId, allMusicListId);
+
+        assertEquals(1, (int) result.get(musicListA.getId()));
+        assertEquals(2, (int) result.get(musicListB.getId()));
+
+        musicListA = mMusicStore.getCustomMusicList("Test music list A");
+        assert musicListA != null;
+        assertEquals(2, musicListA.getSize());
+        assertEquals(musicA, musicListA.getMusicElements().get(0));
+        assertEquals(musicB, musicListA.getMusicElements().get(1));
+
+        musicListB = mMusicStore.getCustomMusicList("Test music list B");
+        assert musicListB != null;
+        assertEquals(2, musicListB.getSize());
+        assertEquals(musicA, musicListB.getMusicElements().get(0));
+        assertEquals(musicB, musicListB.getMusicElements().get(1));
+    }
+
+    @Test
+    public void historyEviction() {
+        final int maxSize = 10;
+        final int musicCount = maxSize + HistoryStore.EVICT_BATCH_SIZE;
+
+        List<Music> allMusic = new ArrayList<>();
+        for (int i = 0; i < musicCount; i++) {
+            allMusic.add(new Music(
+                    0,
+                    "title" + i,
+                    "artist" + i,
+                    "album" + i,
+                    "https://www.test.com/test" + i + ".mp3",
+                    "https://www.test.com/test" + i + ".png",
+                    60_000,
+                    System.currentTimeMillis()));
+        }
+        mMusicStore.putAllMusic(allMusic);
+
+        HistoryStore historyStore = mMusicStore.getHistoryStore();
+        historyStore.setMaxSize(maxSize);
+
+        final long timestamp = System.currentTimeMillis();
+        List<HistoryStore.PlayEvent> allPlayEvent = new ArrayList<>();
+        for (int i = 0; i < musicCount - 1; i++) {
+            allPlayEvent.add(new HistoryStore.PlayEvent(allMusic.get(i).getId(), timestamp + i));
+        }
+        historyStore.putAll(allPlayEvent);
+
+        // not overflow a whole batch yet
+        assertEquals(musicCount - 1, historyStore.getCount());
+
+        Music last = allMusic.get(musicCount - 1);
+        historyStore.putAll(Collections.singletonList(new HistoryStore.PlayEvent(last.getId(), timestamp + musicCount)));
+
+        assertEquals(maxSize, historyStore.getCount());
+        assertEquals(last, historyStore.getHistory(0, 1).get(0).getMusic());
+
+        long today = HistoryStore.toDay(timestamp);
+        int playCount = 0;
+        for (HistoryDailyEntity entity : historyStore.getDailyPlayCount(today, today + 1)) {
+            playCount += entity.getPlayCount();
+        }
+        assertEquals(musicCount, playCount);
+    }
+
+    @Test
+    public void historyPagesDoNotShift() {
+        List<Music> allMusic = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            allMusic.add(new Music(
+                    0,
+                    "title" + i,
+                    "artist" + i,
+                    "album" + i,
+                    "https://www.test.com/test" + i + ".mp3",
+                    "https://www.test.com/test" + i + ".png",
+                    60_000,
+                    System.currentTimeMillis()));
+        }
+        mMusicStore.putAllMusic(allMusic);
+
+        HistoryStore historyStore = mMusicStore.getHistoryStore();
+        final long timestamp = System.currentTimeMillis();
+        List<HistoryStore.PlayEvent> allPlayEvent = new ArrayList<>();
+        for (int i = 0; i < allMusic.size(); i++) {
+            allPlayEvent.add(new HistoryStore.PlayEvent(allMusic.get(i).getId(), timestamp + i));
+        }
+        historyStore.putAll(allPlayEvent);
+
+        List<HistoryEntity> page = historyStore.getHistory(0, 2);
+        assertEquals(allMusic.get(4), page.get(0).getMusic());
+        assertEquals(allMusic.get(3), page.get(1).getMusic());
+
+        // the oldest music is played again and moves to the top
+        historyStore.putAll(Collections.singletonList(
+                new HistoryStore.PlayEvent(allMusic.get(0).getId(), timestamp + 10)));
+
+        List<HistoryEntity> next = historyStore.getHistoryAfter(page.get(1), 2);
+        assertEquals(2, next.size());
+        assertEquals(allMusic.get(2), next.get(0).getMusic());
+        assertEquals(allMusic.get(1), next.get(1).getMusic());
+    }
+
+    @Test
+    public void playStatistics() {
+        final Music musicA = new Music(
+                0,
+                "title1",
+                "artist1",
+                "album1",
+                "https://www.test.com/test1.mp3",
+                "https://www.test.com/test1.png",
+                60_000,
+                System.currentTimeMillis());
+
+        final Music musicB = new Music(
+                0,
+                "title2",
+                "artist2",
+                "album2",
+                "https://www.test.com/test2.mp3",
+                "https://www.test.com/test2.png",
+                60_000,
+                System.currentTimeMillis());
+
+        final Music musicC = new Music(
+                0,
+                "title3",
+                "artist3",
+                "album3",
+                "https://www.test.com/test3.mp3",
+                "https://www.test.com/test3.png",
+                60_000,
+                System.currentTimeMillis());
+
+        mMusicStore.putMusic(musicA);
+        mMusicStore.putMusic(musicB);
+        mMusicStore.putMusic(musicC);
+
+        PlayStatisticsStore statisticsStore = mMusicStore.getPlayStatisticsStore();
+        statisticsStore.recordStarted(musicA.getId());
+        statisticsStore.recordCompleted(musicA.getId());
+        statisticsStore.recordStarted(musicA.getId());
+        statisticsStore.recordSkipped(musicA.getId());
+        statisticsStore.recordStarted(musicB.getId());
+        statisticsStore.flush();
+
+        PlayStatisticsEntity statistics = statisticsStore.getPlayStatistics(musicA.getId());
+        assertNotNull(statistics);
+        assertEquals(2, statistics.getPlayCount());
+        assertEquals(1, statistics.getCompleteCount());
+        assertEquals(1, statistics.getSkipCount());
+        assertEquals(0.5F, statistics.getCompletionRatio(), 0.001F);
+
+        List<Music> mostPlayed = statisticsStore.getMostPlayed(10);
+        assertEquals(2, mostPlayed.size());
+        assertEquals(musicA, mostPlayed.get(0));
+        assertEquals(musicB, mostPlayed.get(1));
+
+        List<Music> neverPlayed = statisticsStore.getNeverPlayed(0, 10);
+        assertEquals(1, neverPlayed.size());
+        assertEquals(musicC, neverPlayed.get(0));
+    }
+
+    @Test
+    public void smartMusicList() {
+        final Music musicA = new Music(
+                0,
+                "title1",
+                "artist1",
+                "album1",
+                "https://www.test.com/test1.mp3",
+                "https://www.test.com/test1.png",
+                60_000,
+                System.currentTimeMillis());
+
+        final Music musicB = new Music(
+                0,
+                "title2",
+                "artist2",
+                "album2",
+                "https://www.test.com/test2.mp3",
+                "https://www.test.com/test2.png",
+                60_000,
+                System.currentTimeMillis());
+
+        mMusicStore.putMusic(musicA);
+        mMusicStore.putMusic(musicB);
+
+        final String name = "smart";
+        SmartMusicListStore smartMusicListStore = mMusicStore.getSmartMusicListStore();
+        smartMusicListStore.create(name, new SmartMusicListRule.Builder()
+                .setArtist("artist1")
+                .build());
+
+        List<Music> result = smartMusicListStore.getMusic(name);
+        assertEquals(1, result.size());
+        assertEquals(musicA, result.get(0));
+
+        final Music musicC = new Music(
+                0,
+                "title3",
+                "artist1",
+                "album3",
+                "https://www.test.com/test3.mp3",
+                "https://www.test.com/test3.png",
+                60_000,
+                System.currentTimeMillis());
+
+        mMusicStore.putMusic(musicC);
+        assertEquals(2, smartMusicListStore.getMusic(name).size());
+
+        musicA.setArtist("artist2");
+        mMusicStore.putMusic(musicA);
+        result = smartMusicListStore.getMusic(name);
+        assertEquals(1, result.size());
+        assertEquals(musicC, result.get(0));
+
+        mMusicStore.removeMusic(musicC);
+        assertTrue(smartMusicListStore.getMusic(name).isEmpty());
+    }
+
+    @Test
+    public void mergeDuplicates() {
+        final Music music = new Music(
+                0,
+                "title",
+                "artist",
+                "album",
+                "https://www.test.com/test.mp3",
+                "",
+                60_000,
+                System.currentTimeMillis());
+        final Music copy = new Music(
+                0,
+                "title",
+                "artist",
+                "album",
+                "https://www.test.com/copy/test.mp3",
+                "",
+                60_000,
+                System.currentTimeMillis());
+        final Music other = new Music(
+                0,
+                "other",
+                "artist",
+                "album",
+                "https://www.test.com/other.mp3",
+                "",
+                60_000,
+                System.currentTimeMillis());
+        music.setContentHash("hash");
+        copy.setContentHash("hash");
+
+        List<Music> allMusic = new ArrayList<>();
+        allMusic.add(music);
+        allMusic.add(copy);
+        allMusic.add(other);
+        mMusicStore.putAllMusic(allMusic);
+
+        mMusicStore.addAllMusic(MusicStore.MUSIC_LIST_LOCAL_MUSIC, allMusic);
+        mMusicStore.createCustomMusicList("onlyCopy");
+        List<Music> copyAndOther = new ArrayList<>();
+        copyAndOther.add(other);
+        copyAndOther.add(copy);
+        mMusicStore.addAllMusic("onlyCopy", copyAndOther);
+
+        assertTrue(mMusicStore.isLocalMusicContent("hash"));
+        assertFalse(mMusicStore.isLocalMusicContent("unknown"));
+
+        mMusicStore.mergeDuplicates(music, Collections.singletonList(copy));
+
+        List<Music> localMusic = mMusicStore.getMusicListMusic(MusicStore.MUSIC_LIST_LOCAL_MUSIC, 0, 10);
+        assertEquals(2, localMusic.size());
+        assertEquals(music, localMusic.get(0));
+        assertEquals(other, localMusic.get(1));
+
+        // the music takes the place of the copy
+        List<Music> onlyCopy = mMusicStore.getMusicListMusic("onlyCopy", 0, 10);
+        assertEquals(2, onlyCopy.size());
+        assertEquals(other, onlyCopy.get(0));
+        assertEquals(music, onlyCopy.get(1));
+
+        // the copy stays in the store
+        assertNotNull(mMusicStore.getMusic(copy.getId()));
+    }
+
+    @Test
+    public void fingerprintPendingMusicIsLocalMusic() {
+        final Music local = new Music(
+                0,
+                "local",
+                "artist",
+                "album",
+                "https://www.test.com/local.mp3",
+                "",
+                60_000,
+                System.currentTimeMillis());
+        final Music other = new Music(
+                0,
+                "other",
+                "artist",
+                "album",
+                "https://www.test.com/other.mp3",
+                "",
+                60_000,
+                System.currentTimeMillis());
+
+        List<Music> allMusic = new ArrayList<>();
+        allMusic.add(local);
+        allMusic.add(other);
+        mMusicStore.putAllMusic(allMusic);
+        mMusicStore.addAllMusic(MusicStore.MUSIC_LIST_LOCAL_MUSIC, Collections.singletonList(local));
+
+        List<Music> pending = mMusicStore.getFingerprintPendingMusic(10);
+        assertEquals(1, pending.size());
+        assertEquals(local, pending.get(0));
+
+        mMusicStore.updateFingerprint(local.getId(), 42);
+        assertTrue(mMusicStore.getFingerprintPendingMusic(10).isEmpty());
+    }
 }
@@ -0,0 +1,144 @@
+package accepted.music.tag;
+
+import android.Manifest;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Reads the tags of the local music on the device with {@link TagReader} and with
+ * {@link MediaMetadataRetriever}, the files per second are logged with the tag
+ * "TagReaderBenchmarkTest".
+ * <p>
+ * Skipped if there is no local music or the storage permission is not granted, e.g. grant it
+ * with "adb shell pm grant accepted.music android.permission.READ_EXTERNAL_STORAGE".
+ */
+@RunWith(AndroidJUnit4.class)
+public class TagReaderBenchmarkTest {
+    private static final String TAG = "TagReaderBenchmarkTest";
+    private static final int MAX_FILE_COUNT = 500;
+
+    private List<Uri> mCorpus;
+
+    private Context getContext() {
+        return InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @Before
+    public void setUp() {
+        assumeTrue(ContextCompat.checkSelfPermission(getContext(), Manifest.permission.READ_EXTERNAL_STORAGE)
+                == PackageManager.PERMISSION_GRANTED);
+
+        mCorpus = new ArrayList<>();
+        Cursor cursor = getContext().getContentResolver().query(
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Audio.Media._ID},
+                null,
+                null,
+                null);
+
+        if (cursor != null) {
+            while (cursor.moveToNext() && mCorpus.size() < MAX_FILE_COUNT) {
+                mCorpus.add(ContentUris.withAppendedId(MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, cursor.getLong(0)));
+            }
+            cursor.close();
+        }
+
+        assumeTrue(!mCorpus.isEmpty());
+    }
+
+    @Test
+    public void benchmarkAgainstMediaMetadataRetriever() {
+        // warms up the page cache, so that both read from memory
+        readAllWithRetriever();
+
+        long start = SystemClock.elapsedRealtime();
+        int tagCount = 0;
+        int pictureCount = 0;
+        for (Uri uri : mCorpus) {
+            AudioTag tag = TagReader.read(getContext(), uri);
+            if (tag != null) {
+                tagCount += 1;
+                pictureCount += tag.hasPicture() ? 1 : 0;
+            }
+        }
+        long tagReaderTime = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        start = SystemClock.elapsedRealtime();
+        int retrieverPictureCount = readAllWithRetriever();
+        long retrieverTime = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.i(TAG, mCorpus.size() + " files, " + tagCount + " tagged, " + pictureCount + " with picture");
+        Log.i(TAG, "TagReader: " + tagReaderTime + " ms, " + filesPerSecond(tagReaderTime) + " files/s");
+        Log.i(TAG, "MediaMetadataRetriever: " + retrieverTime + " ms, " + filesPerSecond(retrieverTime) + " files/s"
+                + ", " + retrieverPictureCount + " with picture");
+
+        assertTrue(tagCount > 0);
+    }
+
+    @Test
+    public void pictureIsReadWithSinglePositionedRead() {
+        for (Uri uri : mCorpus) {
+            AudioTag tag = TagReader.read(getContext(), uri);
+            if (tag == null || tag.getPictureOffset() < 0) {
+                continue;
+            }
+
+            byte[] picture = TagReader.readPicture(getContext(), uri, tag.getPictureOffset(), tag.getPictureLength());
+            assertNotNull(picture);
+            assertEquals(tag.getPictureLength(), picture.length);
+        }
+    }
+
+    private int readAllWithRetriever() {
+        int pictureCount = 0;
+
+        for (Uri uri : mCorpus) {
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            try {
+                retriever.setDataSource(getContext(), uri);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_TITLE);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_YEAR);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_GENRE);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_CD_TRACK_NUMBER);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DISC_NUMBER);
+                if (retriever.getEmbeddedPicture() != null) {
+                    pictureCount += 1;
+                }
+            } catch (RuntimeException e) {
+                // not a valid audio file
+            } finally {
+                retriever.release();
+            }
+        }
+
+        return pictureCount;
+    }
+
+    private long filesPerSecond(long millis) {
+        return mCorpus.size() * 1000L / millis;
+    }
+}
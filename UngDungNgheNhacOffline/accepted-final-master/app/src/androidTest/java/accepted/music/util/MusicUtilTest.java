@@ -7,8 +7,12 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import accepted.music.store.Music;
 import accepted.player.audio.MusicItem;
+import accepted.player.playlist.Playlist;
 
 @RunWith(AndroidJUnit4.class)
 public class MusicUtilTest {
@@ -33,4 +37,33 @@ public class MusicUtilTest {
         assertEquals(music1, music2);
         assertEquals(musicItem1, musicItem2);
     }
+
+    @Test
+    public void asPlaylist_largeList() {
+        List<Music> musicList = new ArrayList<>();
+        for (int i = 1; i <= Playlist.MAX_SIZE * 3; i++) {
+            musicList.add(new Music(i,
+                    "TestTitle" + i,
+                    "TestArtist",
+                    "TestAlbum",
+                    "https://www.test.com/test" + i + ".mp3",
+                    "",
+                    60_000,
+                    i));
+        }
+
+        int position = Playlist.MAX_SIZE * 3 - 10;
+        Playlist playlist = MusicListUtil.asPlaylist("test", musicList, position);
+
+        // assert
+        assertEquals(Playlist.MAX_SIZE, playlist.size());
+        assertEquals(MusicUtil.asMusicItem(musicList.get(position)),
+                playlist.get(playlist.size() - 10));
+
+        playlist = MusicUtil.asPlaylist(position, musicList, "test");
+
+        // assert
+        assertEquals(MusicUtil.asMusicItem(musicList.get(musicList.size() - Playlist.MAX_SIZE)),
+                playlist.get(0));
+    }
 }
@@ -4,16 +4,25 @@ import androidx.multidex.MultiDexApplication;
 
 import com.tencent.mmkv.MMKV;
 
+import accepted.music.backup.PlayerStateRestore;
+import accepted.music.loudness.LoudnessAnalysisJob;
 import accepted.music.store.MusicStore;
+import accepted.music.tag.StoredPictureLoader;
 import accepted.music.util.NightModeUtil;
+import accepted.player.artwork.ArtworkService;
 
 public class Application extends MultiDexApplication {
     @Override
     public void onCreate() {
         super.onCreate();
 
+        // the player state of a restored backup, before the MMKV files are opened
+        PlayerStateRestore.applyPending(this);
         MMKV.initialize(this);
         NightModeUtil.applyNightMode(this);
         MusicStore.init(this);
+        ArtworkService.getInstance(this).setEmbeddedPictureLoader(new StoredPictureLoader(this));
+        // resumes the analysis of the music added before the last exit
+        LoudnessAnalysisJob.start(this);
     }
 }
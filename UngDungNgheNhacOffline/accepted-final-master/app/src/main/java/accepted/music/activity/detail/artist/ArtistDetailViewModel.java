@@ -1,6 +1,7 @@
 package accepted.music.activity.detail.artist;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Collections;
 import java.util.List;
@@ -10,6 +11,7 @@ import accepted.music.fragment.musiclist.BaseMusicListViewModel;
 import accepted.music.store.Music;
 import accepted.music.store.MusicList;
 import accepted.music.store.MusicStore;
+import accepted.music.store.SortJob;
 
 public class ArtistDetailViewModel extends BaseMusicListViewModel {
     @NonNull
@@ -28,9 +30,11 @@ public class ArtistDetailViewModel extends BaseMusicListViewModel {
         // ignore
     }
 
+    @Nullable
     @Override
-    protected void onSortMusicList(@NonNull MusicList.SortOrder sortOrder) {
+    protected SortJob onSortMusicList(@NonNull MusicList.SortOrder sortOrder) {
         // ignore
+        return null;
     }
 
     @NonNull
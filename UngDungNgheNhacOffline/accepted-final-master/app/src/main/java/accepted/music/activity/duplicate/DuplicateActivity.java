@@ -0,0 +1,99 @@
+package accepted.music.activity.duplicate;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import android.os.Bundle;
+import android.view.View;
+
+import java.util.List;
+import java.util.Objects;
+
+import accepted.music.R;
+import accepted.music.activity.ListActivity;
+import accepted.music.dialog.MessageDialog;
+import accepted.music.service.AppPlayerService;
+import accepted.music.store.Music;
+import accepted.music.util.MusicListUtil;
+import accepted.music.util.PlayerUtil;
+import accepted.player.lifecycle.PlayerViewModel;
+import accepted.player.playlist.Playlist;
+
+/**
+ * The groups of the local music that are the same song, each of them can be merged into its
+ * first music.
+ */
+public class DuplicateActivity extends ListActivity {
+    private PlayerViewModel mPlayerViewModel;
+    private DuplicateViewModel mDuplicateViewModel;
+    private DuplicateAdapter mDuplicateAdapter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_duplicate);
+
+        initViewModel();
+        initRecyclerView();
+        initProgressBar();
+    }
+
+    public void finishSelf(View view) {
+        finish();
+    }
+
+    private void initViewModel() {
+        ViewModelProvider viewModelProvider = new ViewModelProvider(this);
+
+        mPlayerViewModel = viewModelProvider.get(PlayerViewModel.class);
+        mDuplicateViewModel = viewModelProvider.get(DuplicateViewModel.class);
+
+        PlayerUtil.initPlayerViewModel(this, mPlayerViewModel, AppPlayerService.class);
+        setPlayerClient(mPlayerViewModel.getPlayerClient());
+    }
+
+    private void initRecyclerView() {
+        RecyclerView rvDuplicate = findViewById(R.id.rvDuplicate);
+        rvDuplicate.setLayoutManager(new LinearLayoutManager(this));
+        mDuplicateAdapter = new DuplicateAdapter(Objects.requireNonNull(mDuplicateViewModel.getDuplicates().getValue()));
+        rvDuplicate.setAdapter(mDuplicateAdapter);
+
+        mDuplicateAdapter.setOnItemClickListener(new DuplicateAdapter.OnItemClickListener() {
+            @Override
+            public void onItemClicked(int position, @NonNull List<Music> group) {
+                playGroup(group);
+            }
+
+            @Override
+            public void onMergeClicked(int position, @NonNull List<Music> group) {
+                mergeGroup(group);
+            }
+        });
+
+        mDuplicateViewModel.getDuplicates()
+                .observe(this, duplicates -> mDuplicateAdapter.setDuplicates(duplicates));
+    }
+
+    private void initProgressBar() {
+        View pbFingerprint = findViewById(R.id.pbFingerprint);
+        mDuplicateViewModel.getFingerprinting()
+                .observe(this, fingerprinting -> pbFingerprint.setVisibility(fingerprinting ? View.VISIBLE : View.GONE));
+    }
+
+    // plays the copies one after another, so that they can be compared
+    private void playGroup(List<Music> group) {
+        Playlist playlist = MusicListUtil.asPlaylist("", group, 0);
+        mPlayerViewModel.setPlaylist(playlist, 0, true);
+    }
+
+    private void mergeGroup(List<Music> group) {
+        MessageDialog messageDialog = new MessageDialog.Builder(getApplicationContext())
+                .setMessage(R.string.message_merge_duplicates)
+                .setPositiveButtonClickListener((dialog, which) -> mDuplicateViewModel.merge(group))
+                .build();
+
+        messageDialog.show(getSupportFragmentManager(), "mergeDuplicates");
+    }
+}
@@ -0,0 +1,144 @@
+package accepted.music.activity.duplicate;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import recyclerview.helper.ItemClickHelper;
+import accepted.music.R;
+import accepted.music.store.Music;
+
+public class DuplicateAdapter extends RecyclerView.Adapter<DuplicateAdapter.ViewHolder> {
+    private static final int TYPE_EMPTY_VIEW = 1;
+    private static final int TYPE_ITEM_VIEW = 2;
+
+    private List<List<Music>> mDuplicates;
+    private final ItemClickHelper mItemClickHelper;
+    private OnItemClickListener mOnItemClickListener;
+
+    public DuplicateAdapter(@NonNull List<List<Music>> duplicates) {
+        mDuplicates = new ArrayList<>(duplicates);
+        mItemClickHelper = new ItemClickHelper();
+        mItemClickHelper.setOnItemClickListener((position, viewId, view, holder) -> {
+            if (mOnItemClickListener == null) {
+                return;
+            }
+
+            if (viewId == R.id.duplicateItem) {
+                mOnItemClickListener.onItemClicked(position, mDuplicates.get(position));
+            } else if (viewId == R.id.btnMerge) {
+                mOnItemClickListener.onMergeClicked(position, mDuplicates.get(position));
+            }
+        });
+    }
+
+    @SuppressLint("NotifyDataSetChanged")
+    public void setDuplicates(@NonNull List<List<Music>> duplicates) {
+        Preconditions.checkNotNull(duplicates);
+
+        mDuplicates = new ArrayList<>(duplicates);
+        notifyDataSetChanged();
+    }
+
+    public void setOnItemClickListener(OnItemClickListener itemClickListener) {
+        mOnItemClickListener = itemClickListener;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        mItemClickHelper.attachToRecyclerView(recyclerView);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        mItemClickHelper.detach();
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        int layoutId = R.layout.item_duplicate;
+        boolean emptyView = (viewType == TYPE_EMPTY_VIEW);
+        if (emptyView) {
+            layoutId = R.layout.empty_duplicate;
+        }
+
+        return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(layoutId, parent, false), emptyView);
+    }
+
+    @SuppressLint("SetTextI18n")
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        if (holder.emptyView) {
+            return;
+        }
+
+        List<Music> group = mDuplicates.get(position);
+        Music music = group.get(0);
+        Context context = holder.itemView.getContext();
+
+        holder.tvTitle.setText(music.getTitle());
+        holder.tvCopiesAndArtist.setText(context.getString(R.string.duplicate_copies)
+                .replaceFirst("n", String.valueOf(group.size())) + " - " + music.getArtist());
+
+        mItemClickHelper.bindClickListener(holder.itemView, holder.btnMerge);
+    }
+
+    @Override
+    public int getItemCount() {
+        if (mDuplicates.isEmpty()) {
+            return 1;
+        }
+
+        return mDuplicates.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        if (mDuplicates.isEmpty()) {
+            return TYPE_EMPTY_VIEW;
+        }
+
+        return TYPE_ITEM_VIEW;
+    }
+
+    public static class ViewHolder extends RecyclerView.ViewHolder {
+        final boolean emptyView;
+
+        TextView tvTitle;
+        TextView tvCopiesAndArtist;
+        TextView btnMerge;
+
+        public ViewHolder(@NonNull View itemView, boolean emptyView) {
+            super(itemView);
+
+            this.emptyView = emptyView;
+            if (emptyView) {
+                return;
+            }
+
+            tvTitle = itemView.findViewById(R.id.tvTitle);
+            tvCopiesAndArtist = itemView.findViewById(R.id.tvCopiesAndArtist);
+            btnMerge = itemView.findViewById(R.id.btnMerge);
+        }
+    }
+
+    public interface OnItemClickListener {
+        void onItemClicked(int position, @NonNull List<Music> group);
+
+        void onMergeClicked(int position, @NonNull List<Music> group);
+    }
+}
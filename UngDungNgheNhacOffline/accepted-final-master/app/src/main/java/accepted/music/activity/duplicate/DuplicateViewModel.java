@@ -0,0 +1,115 @@
+package accepted.music.activity.duplicate;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import io.reactivex.Single;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import accepted.music.duplicate.DuplicateFinder;
+import accepted.music.duplicate.FingerprintJob;
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+
+public class DuplicateViewModel extends AndroidViewModel {
+    private final MutableLiveData<List<List<Music>>> mDuplicates;
+    private final MutableLiveData<Boolean> mFingerprinting;
+    private Disposable mLoadDisposable;
+    private boolean mCleared;
+
+    public DuplicateViewModel(@NonNull Application application) {
+        super(application);
+
+        mDuplicates = new MutableLiveData<>(Collections.emptyList());
+        mFingerprinting = new MutableLiveData<>(true);
+
+        loadDuplicates();
+        // the copies are found by the content hash at once, the other encodings after this job
+        FingerprintJob.start(application, () -> {
+            if (mCleared) {
+                return;
+            }
+            mFingerprinting.postValue(false);
+            AndroidSchedulers.mainThread().scheduleDirect(this::loadDuplicates);
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+
+        mCleared = true;
+        FingerprintJob.cancel();
+        if (mLoadDisposable != null && !mLoadDisposable.isDisposed()) {
+            mLoadDisposable.dispose();
+        }
+    }
+
+    /**
+     * Returns the groups of the local music that are the same song, see {@link DuplicateFinder}.
+     */
+    public LiveData<List<List<Music>>> getDuplicates() {
+        return mDuplicates;
+    }
+
+    /**
+     * Returns whether the local music is still being fingerprinted, i.e. whether more
+     * duplicates may be found.
+     */
+    public LiveData<Boolean> getFingerprinting() {
+        return mFingerprinting;
+    }
+
+    /**
+     * Keeps the first music of the group and replaces the others with it in every music list.
+     */
+    public void merge(@NonNull List<Music> group) {
+        Preconditions.checkNotNull(group);
+        Preconditions.checkArgument(group.size() > 1);
+
+        List<List<Music>> duplicates = new ArrayList<>(Objects.requireNonNull(mDuplicates.getValue()));
+        duplicates.remove(group);
+        mDuplicates.setValue(duplicates);
+
+        Music music = group.get(0);
+        List<Music> others = new ArrayList<>(group.subList(1, group.size()));
+
+        Single.create((SingleOnSubscribe<Boolean>) emitter -> {
+            MusicStore.getInstance().mergeDuplicates(music, others);
+            emitter.onSuccess(true);
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                // reloads the local music list
+                .subscribe(result -> MusicStore.getInstance().notifyScanComplete());
+    }
+
+    private void loadDuplicates() {
+        if (mLoadDisposable != null && !mLoadDisposable.isDisposed()) {
+            mLoadDisposable.dispose();
+        }
+
+        mLoadDisposable = Single.create((SingleOnSubscribe<List<List<Music>>>) emitter -> {
+            List<Music> localMusic = MusicStore.getInstance().getLocalMusicList().getMusicElements();
+            List<List<Music>> duplicates = DuplicateFinder.find(new ArrayList<>(localMusic));
+            if (emitter.isDisposed()) {
+                return;
+            }
+            emitter.onSuccess(duplicates);
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(mDuplicates::setValue);
+    }
+}
@@ -1,6 +1,7 @@
 package accepted.music.activity.favorite;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.common.base.Preconditions;
 
@@ -15,6 +16,7 @@ import accepted.music.fragment.musiclist.BaseMusicListViewModel;
 import accepted.music.store.Music;
 import accepted.music.store.MusicList;
 import accepted.music.store.MusicStore;
+import accepted.music.store.SortJob;
 
 public class FavoriteMusicListViewModel extends BaseMusicListViewModel {
     private MusicList mFavoriteMusicList;
@@ -55,11 +57,18 @@ public class FavoriteMusicListViewModel extends BaseMusicListViewModel {
         MusicStore.getInstance().removeFromFavorite(music);
     }
 
+    @Nullable
     @Override
-    protected void onSortMusicList(@NonNull MusicList.SortOrder sortOrder) {
+    protected SortJob onSortMusicList(@NonNull MusicList.SortOrder sortOrder) {
         Preconditions.checkNotNull(sortOrder);
 
-        MusicStore.getInstance().sort(mFavoriteMusicList, sortOrder, () -> notifyMusicItemsChanged(mFavoriteMusicList.getMusicElements()));
+        return MusicStore.getInstance().sort(mFavoriteMusicList, sortOrder, new SortProgressCallback() {
+            @Override
+            public void onSortFinished() {
+                super.onSortFinished();
+                notifyMusicItemsChanged(mFavoriteMusicList.getMusicElements());
+            }
+        });
     }
 
     @NonNull
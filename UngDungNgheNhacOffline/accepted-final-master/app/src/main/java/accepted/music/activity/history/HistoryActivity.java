@@ -21,6 +21,8 @@ import accepted.player.lifecycle.PlayerViewModel;
 import accepted.player.playlist.Playlist;
 
 public class HistoryActivity extends ListActivity {
+    private static final int PRELOAD_COUNT = 20;
+
     private PlayerViewModel mPlayerViewModel;
     private HistoryViewModel mHistoryViewModel;
     private HistoryAdapter mHistoryAdapter;
@@ -80,6 +82,17 @@ public class HistoryActivity extends ListActivity {
             }
         });
 
+        rvHistory.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && layoutManager != null &&
+                        layoutManager.findLastVisibleItemPosition() >= mHistoryAdapter.getItemCount() - PRELOAD_COUNT) {
+                    mHistoryViewModel.loadMoreHistory();
+                }
+            }
+        });
+
         mHistoryViewModel.getHistory()
                 .observe(this, history -> mHistoryAdapter.setHistory(history));
     }
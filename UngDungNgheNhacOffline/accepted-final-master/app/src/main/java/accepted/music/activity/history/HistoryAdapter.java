@@ -11,6 +11,7 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
@@ -74,7 +75,13 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
 
             @Override
             public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-                return areItemsTheSame(oldItemPosition, newItemPosition);
+                Music oldMusic = mHistory.get(oldItemPosition).getMusic();
+                Music newMusic = history.get(newItemPosition).getMusic();
+
+                // Music.equals() only compares the id
+                return Objects.equal(oldMusic.getTitle(), newMusic.getTitle())
+                        && Objects.equal(oldMusic.getArtist(), newMusic.getArtist())
+                        && Objects.equal(oldMusic.getAlbum(), newMusic.getAlbum());
             }
         });
 
@@ -22,8 +22,11 @@ import accepted.music.store.Music;
 import accepted.music.store.MusicStore;
 
 public class HistoryViewModel extends ViewModel {
+    private static final int PAGE_SIZE = 100;
+
     private final MutableLiveData<List<HistoryEntity>> mHistory;
     private Disposable mLoadHistoryDisposable;
+    private boolean mHasMore;
 
     public HistoryViewModel() {
         mHistory = new MutableLiveData<>(Collections.emptyList());
@@ -70,6 +73,11 @@ public class HistoryViewModel extends ViewModel {
     }
 
     public void clearHistory() {
+        if (isLoading()) {
+            mLoadHistoryDisposable.dispose();
+        }
+
+        mHasMore = false;
         mHistory.setValue(Collections.emptyList());
 
         Single.create((SingleOnSubscribe<Boolean>) emitter -> MusicStore.getInstance().clearHistory())
@@ -78,14 +86,40 @@ public class HistoryViewModel extends ViewModel {
     }
 
     private void loadHistory() {
+        mHasMore = true;
+        loadMoreHistory();
+    }
+
+    public void loadMoreHistory() {
+        if (!mHasMore || isLoading()) {
+            return;
+        }
+
+        List<HistoryEntity> loaded = Objects.requireNonNull(mHistory.getValue());
+        // the next page starts after the last loaded entity, an offset shifts when the history changes
+        HistoryEntity last = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+
         mLoadHistoryDisposable = Single.create((SingleOnSubscribe<List<HistoryEntity>>) emitter -> {
-            List<HistoryEntity> history = MusicStore.getInstance().getAllHistory();
+            MusicStore musicStore = MusicStore.getInstance();
+            List<HistoryEntity> history = last == null
+                    ? musicStore.getHistory(0, PAGE_SIZE)
+                    : musicStore.getHistoryAfter(last, PAGE_SIZE);
             if (emitter.isDisposed()) {
                 return;
             }
             emitter.onSuccess(history);
         }).subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(mHistory::setValue);
+                .subscribe(page -> {
+                    mHasMore = page.size() >= PAGE_SIZE;
+
+                    List<HistoryEntity> history = new ArrayList<>(Objects.requireNonNull(mHistory.getValue()));
+                    history.addAll(page);
+                    mHistory.setValue(history);
+                });
+    }
+
+    private boolean isLoading() {
+        return mLoadHistoryDisposable != null && !mLoadHistoryDisposable.isDisposed();
     }
 }
@@ -6,12 +6,14 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
 import android.Manifest;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.view.View;
 
 import accepted.music.R;
 import accepted.music.activity.ListActivity;
+import accepted.music.activity.duplicate.DuplicateActivity;
 import accepted.music.activity.search.SearchActivity;
 import accepted.music.dialog.MessageDialog;
 import accepted.music.dialog.ScannerDialog;
@@ -65,6 +67,8 @@ public class LocalMusicActivity extends ListActivity {
             SearchActivity.start(this, SearchActivity.Type.MUSIC_LIST, MusicStore.MUSIC_LIST_LOCAL_MUSIC);
         } else if (id == R.id.btnSort) {
             mMusicListFragment.showSortDialog();
+        } else if (id == R.id.btnDuplicate) {
+            startActivity(new Intent(this, DuplicateActivity.class));
         } else if (id == R.id.btnScan) {
             scanMusic();
         }
@@ -52,7 +52,7 @@ public class PlayerActivity extends BaseActivity {
         setPlayerClient(mPlayerViewModel.getPlayerClient());
 
         mPlayerStateViewModel = provider.get(PlayerStateViewModel.class);
-        mPlayerStateViewModel.init(mPlayerViewModel, isStartByPendingIntent());
+        mPlayerStateViewModel.init(this, mPlayerViewModel, isStartByPendingIntent());
 
         mBinding.setPlayerViewModel(mPlayerViewModel);
         mBinding.setPlayerStateViewModel(mPlayerStateViewModel);
@@ -6,6 +6,7 @@ import android.view.View;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Observer;
@@ -15,16 +16,23 @@ import androidx.lifecycle.ViewModel;
 import com.google.common.base.Preconditions;
 
 import accepted.music.R;
+import accepted.music.lyrics.Lyrics;
+import accepted.music.lyrics.LyricsLoader;
+import accepted.music.lyrics.LyricsSync;
 import accepted.music.service.AppPlayerService;
 import accepted.music.store.MusicStore;
 import accepted.music.util.FavoriteObserver;
 import accepted.music.util.MusicUtil;
+import accepted.music.waveform.Waveform;
+import accepted.music.waveform.WaveformLoader;
 import accepted.player.PlayMode;
 import accepted.player.PlaybackState;
 import accepted.player.PlayerClient;
 import accepted.player.audio.MusicItem;
 import accepted.player.lifecycle.PlayerViewModel;
 import accepted.player.ui.equalizer.EqualizerActivity;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 
 public class PlayerStateViewModel extends ViewModel {
     private final MutableLiveData<Integer> mFavoriteDrawable;
@@ -32,6 +40,10 @@ public class PlayerStateViewModel extends ViewModel {
     private final MutableLiveData<String> mErrorMessage;
     private final MutableLiveData<Boolean> mKeepScreenOn;
     private final MutableLiveData<Integer> mKeepScreenOnDrawable;
+    private final MutableLiveData<String> mLyricsLine;
+    private final MutableLiveData<String> mNextLyricsLine;
+    private final MutableLiveData<Integer> mLyricsVisibility;
+    private final MutableLiveData<Waveform> mWaveform;
 
     private final FavoriteObserver mFavoriteObserver;
     private final Observer<MusicItem> mPlayingMusicItemObserver;
@@ -40,6 +52,13 @@ public class PlayerStateViewModel extends ViewModel {
     private PlayerViewModel mPlayerViewModel;
     private boolean mInitialized;
 
+    private LyricsLoader mLyricsLoader;
+    private LyricsSync mLyricsSync;
+    private Disposable mLoadLyricsDisposable;
+
+    private WaveformLoader mWaveformLoader;
+    private Disposable mLoadWaveformDisposable;
+
     private boolean mStartByPendingIntent;
 
     private boolean mIgnoreKeepScreenOnToast;
@@ -50,15 +69,24 @@ public class PlayerStateViewModel extends ViewModel {
         mErrorMessage = new MutableLiveData<>("");
         mKeepScreenOn = new MutableLiveData<>(false);
         mKeepScreenOnDrawable = new MutableLiveData<>(R.drawable.ic_keep_screen_on_false);
+        mLyricsLine = new MutableLiveData<>("");
+        mNextLyricsLine = new MutableLiveData<>("");
+        mLyricsVisibility = new MutableLiveData<>(View.GONE);
+        mWaveform = new MutableLiveData<>(Waveform.EMPTY);
 
         mFavoriteObserver = new FavoriteObserver(favorite ->
                 mFavoriteDrawable.setValue(favorite ? R.drawable.ic_favorite_true : R.drawable.ic_favorite_false));
         mErrorObserver = this::updateErrorState;
 
-        mPlayingMusicItemObserver = mFavoriteObserver::setMusicItem;
+        mPlayingMusicItemObserver = musicItem -> {
+            mFavoriteObserver.setMusicItem(musicItem);
+            loadLyrics(musicItem);
+            loadWaveform(musicItem);
+        };
     }
 
-    public void init(@NonNull PlayerViewModel playerViewModel, boolean startByPendingIntent) {
+    public void init(@NonNull Context context, @NonNull PlayerViewModel playerViewModel, boolean startByPendingIntent) {
+        Preconditions.checkNotNull(context);
         Preconditions.checkNotNull(playerViewModel);
 
         if (mInitialized) {
@@ -68,6 +96,9 @@ public class PlayerStateViewModel extends ViewModel {
         mInitialized = true;
         mStartByPendingIntent = startByPendingIntent;
         mPlayerViewModel = playerViewModel;
+        mLyricsLoader = new LyricsLoader(context);
+        mLyricsSync = new LyricsSync(playerViewModel, this::updateLyricsLine);
+        mWaveformLoader = new WaveformLoader(context);
 
         mFavoriteObserver.subscribe();
         mPlayerViewModel.getPlayingMusicItem().observeForever(mPlayingMusicItemObserver);
@@ -85,6 +116,15 @@ public class PlayerStateViewModel extends ViewModel {
         if (isInitialized()) {
             mPlayerViewModel.getPlayingMusicItem().removeObserver(mPlayingMusicItemObserver);
             mPlayerViewModel.isError().removeObserver(mErrorObserver);
+            mLyricsSync.release();
+        }
+
+        if (mLoadLyricsDisposable != null) {
+            mLoadLyricsDisposable.dispose();
+        }
+
+        if (mLoadWaveformDisposable != null) {
+            mLoadWaveformDisposable.dispose();
         }
     }
 
@@ -135,6 +175,22 @@ public class PlayerStateViewModel extends ViewModel {
         return mKeepScreenOnDrawable;
     }
 
+    public LiveData<String> getLyricsLine() {
+        return mLyricsLine;
+    }
+
+    public LiveData<String> getNextLyricsLine() {
+        return mNextLyricsLine;
+    }
+
+    public LiveData<Integer> getLyricsVisibility() {
+        return mLyricsVisibility;
+    }
+
+    public LiveData<Waveform> getWaveform() {
+        return mWaveform;
+    }
+
     public LiveData<String> getErrorMessage() {
         return mErrorMessage;
     }
@@ -179,6 +235,51 @@ public class PlayerStateViewModel extends ViewModel {
         return mStartByPendingIntent;
     }
 
+    private void loadLyrics(@Nullable MusicItem musicItem) {
+        if (mLoadLyricsDisposable != null) {
+            mLoadLyricsDisposable.dispose();
+        }
+
+        mLyricsSync.setLyrics(Lyrics.EMPTY);
+        if (musicItem == null) {
+            return;
+        }
+
+        mLoadLyricsDisposable = mLyricsLoader.load(musicItem)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(mLyricsSync::setLyrics, Throwable::printStackTrace);
+    }
+
+    private void loadWaveform(@Nullable MusicItem musicItem) {
+        if (mLoadWaveformDisposable != null) {
+            mLoadWaveformDisposable.dispose();
+        }
+
+        mWaveform.setValue(Waveform.EMPTY);
+        if (musicItem == null) {
+            return;
+        }
+
+        // the waveform of a music played before the job reached it is computed now
+        mLoadWaveformDisposable = mWaveformLoader.load(musicItem)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(mWaveform::setValue, Throwable::printStackTrace);
+    }
+
+    // only synced lyrics are shown, a line under the album icon and the next one
+    private void updateLyricsLine(@NonNull Lyrics lyrics, int index) {
+        if (!lyrics.isSynced()) {
+            mLyricsVisibility.setValue(View.GONE);
+            mLyricsLine.setValue("");
+            mNextLyricsLine.setValue("");
+            return;
+        }
+
+        mLyricsVisibility.setValue(View.VISIBLE);
+        mLyricsLine.setValue(index < 0 ? "" : lyrics.getLine(index));
+        mNextLyricsLine.setValue(index + 1 < lyrics.size() ? lyrics.getLine(index + 1) : "");
+    }
+
     private void updateErrorState(boolean error) {
         if (error) {
             mErrorMessage.setValue(mPlayerViewModel.getPlayerClient().getErrorMessage());
@@ -1,13 +1,18 @@
 package accepted.music.activity.setting;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SwitchCompat;
 import androidx.lifecycle.ViewModelProvider;
 
 import android.content.DialogInterface;
+import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.ImageView;
+import android.widget.Toast;
 
 import java.util.Objects;
 
@@ -23,6 +28,10 @@ public class SettingActivity extends AppCompatActivity {
     private static final int DARK_MODE_ID_FOLLOW_SYSTEM = 1;
     private static final int DARK_MODE_ID_ON = 2;
 
+    private static final int REQUEST_CODE_EXPORT_BACKUP = 1;
+    private static final int REQUEST_CODE_RESTORE_BACKUP = 2;
+    private static final String BACKUP_MIME_TYPE = "application/octet-stream";
+
     private SettingViewModel mSettingViewModel;
 
     private View itemFollowSystem;
@@ -32,6 +41,10 @@ public class SettingActivity extends AppCompatActivity {
     private View itemPlayWithOtherApp;
     private SwitchCompat swPlayWithOtherApp;
 
+    private View groupBackup;
+    private View itemExportBackup;
+    private View itemRestoreBackup;
+
     private CheckGroup mCheckGroup;
 
     @Override
@@ -61,6 +74,10 @@ public class SettingActivity extends AppCompatActivity {
 
         itemPlayWithOtherApp = findViewById(R.id.itemPlayWithOtherApp);
         swPlayWithOtherApp = findViewById(R.id.swPlayWithOtherApp);
+
+        groupBackup = findViewById(R.id.groupBackup);
+        itemExportBackup = findViewById(R.id.itemExportBackup);
+        itemRestoreBackup = findViewById(R.id.itemRestoreBackup);
     }
 
     private void initViews() {
@@ -86,6 +103,27 @@ public class SettingActivity extends AppCompatActivity {
 
         Boolean value = mSettingViewModel.getPlayWithOtherApp().getValue();
         swPlayWithOtherApp.setChecked(Objects.requireNonNull(value));
+
+        // the backup is a document picked with the storage access framework
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            groupBackup.setVisibility(View.GONE);
+        }
+
+        mSettingViewModel.getBackupRunning()
+                .observe(this, running -> {
+                    itemExportBackup.setEnabled(!running);
+                    itemRestoreBackup.setEnabled(!running);
+                });
+
+        mSettingViewModel.getBackupMessage()
+                .observe(this, message -> {
+                    if (message == null) {
+                        return;
+                    }
+
+                    Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+                    mSettingViewModel.onBackupMessageShown();
+                });
     }
 
     private void addClickListener() {
@@ -114,6 +152,48 @@ public class SettingActivity extends AppCompatActivity {
 
             mSettingViewModel.setPlayWithOtherApp(false);
         });
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            itemExportBackup.setOnClickListener(v -> pickExportDocument());
+            itemRestoreBackup.setOnClickListener(v -> pickRestoreDocument());
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.KITKAT)
+    private void pickExportDocument() {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(BACKUP_MIME_TYPE);
+        intent.putExtra(Intent.EXTRA_TITLE, getString(R.string.backup_file_name));
+        startActivityForResult(intent, REQUEST_CODE_EXPORT_BACKUP);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.KITKAT)
+    private void pickRestoreDocument() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("*/*");
+        startActivityForResult(intent, REQUEST_CODE_RESTORE_BACKUP);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) {
+            return;
+        }
+
+        switch (requestCode) {
+            case REQUEST_CODE_EXPORT_BACKUP:
+                mSettingViewModel.exportBackup(data.getData());
+                break;
+            case REQUEST_CODE_RESTORE_BACKUP:
+                mSettingViewModel.restoreBackup(data.getData());
+                break;
+            default:
+                break;
+        }
     }
 
     private void showPlayWithOtherAppTipsDialog() {
@@ -1,19 +1,37 @@
 package accepted.music.activity.setting;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import com.google.common.base.Preconditions;
+import com.tencent.mmkv.MMKV;
 
 import android.app.Application;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import accepted.music.R;
+import accepted.music.backup.BackupFormatException;
+import accepted.music.backup.PlayerStateRestore;
+import accepted.music.store.MusicStore;
 import accepted.music.util.NightModeUtil;
 import accepted.player.lifecycle.PlayerViewModel;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
 
 public class SettingViewModel extends AndroidViewModel {
     private MutableLiveData<NightModeUtil.Mode> mNightMode;
     private MutableLiveData<Boolean> mPlayWithOtherApp;
+    private MutableLiveData<Boolean> mBackupRunning;
+    private MutableLiveData<Integer> mBackupMessage;
 
     private PlayerViewModel mPlayerViewModel;
     private boolean mInitialized;
@@ -23,6 +41,8 @@ public class SettingViewModel extends AndroidViewModel {
 
         mNightMode = new MutableLiveData<>(NightModeUtil.getNightMode(application));
         mPlayWithOtherApp = new MutableLiveData<>(false);
+        mBackupRunning = new MutableLiveData<>(false);
+        mBackupMessage = new MutableLiveData<>(null);
     }
 
     public void init(@NonNull PlayerViewModel playerViewModel) {
@@ -69,4 +89,92 @@ public class SettingViewModel extends AndroidViewModel {
         mPlayWithOtherApp.setValue(playWithOtherApp);
         mPlayerViewModel.getPlayerClient().setIgnoreAudioFocus(playWithOtherApp);
     }
+
+    @NonNull
+    public LiveData<Boolean> getBackupRunning() {
+        return mBackupRunning;
+    }
+
+    /**
+     * The string resource of the result of the last backup or restore, null once it is shown.
+     */
+    @NonNull
+    public LiveData<Integer> getBackupMessage() {
+        return mBackupMessage;
+    }
+
+    public void onBackupMessageShown() {
+        mBackupMessage.setValue(null);
+    }
+
+    /**
+     * Writes a backup of the music store and of the player state to the document.
+     */
+    public void exportBackup(@NonNull Uri uri) {
+        Preconditions.checkNotNull(uri);
+
+        runBackup(Single.fromCallable(() -> {
+            OutputStream output = getApplication().getContentResolver().openOutputStream(uri);
+            if (output == null) {
+                throw new FileNotFoundException(uri.toString());
+            }
+
+            try {
+                MusicStore.getInstance().exportBackup(output, getPlayerStateDir());
+            } finally {
+                output.close();
+            }
+            return R.string.toast_backup_exported;
+        }));
+    }
+
+    /**
+     * Merges the backup of the document into the music store. The player state is restored too,
+     * but only takes effect after the app is restarted, see {@link PlayerStateRestore}.
+     */
+    public void restoreBackup(@NonNull Uri uri) {
+        Preconditions.checkNotNull(uri);
+
+        runBackup(Single.fromCallable(() -> {
+            InputStream input = getApplication().getContentResolver().openInputStream(uri);
+            if (input == null) {
+                throw new FileNotFoundException(uri.toString());
+            }
+
+            try {
+                MusicStore.getInstance().restoreBackup(input, PlayerStateRestore.getStagingDir(getApplication()));
+            } finally {
+                input.close();
+            }
+            PlayerStateRestore.commit(getApplication());
+            return R.string.toast_backup_restored;
+        }));
+    }
+
+    private void runBackup(Single<Integer> backup) {
+        Boolean running = mBackupRunning.getValue();
+        if (running != null && running) {
+            return;
+        }
+
+        mBackupRunning.setValue(true);
+        backup.subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onBackupFinished, throwable -> {
+                    throwable.printStackTrace();
+                    onBackupFinished(throwable instanceof BackupFormatException
+                            ? R.string.toast_not_a_valid_backup
+                            : R.string.toast_backup_failed);
+                });
+    }
+
+    private void onBackupFinished(@Nullable Integer message) {
+        mBackupRunning.setValue(false);
+        mBackupMessage.setValue(message);
+    }
+
+    // the MMKV files of the player state, the player config and the playlist
+    private File getPlayerStateDir() {
+        return new File(MMKV.getRootDir());
+    }
 }
@@ -0,0 +1,16 @@
+package accepted.music.backup;
+
+import java.io.IOException;
+
+/**
+ * The stream is not a backup, is of an unsupported version, or is truncated or corrupted.
+ */
+public class BackupFormatException extends IOException {
+    public BackupFormatException(String message) {
+        super(message);
+    }
+
+    public BackupFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
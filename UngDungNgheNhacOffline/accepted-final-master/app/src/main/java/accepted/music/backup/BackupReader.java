@@ -0,0 +1,157 @@
+package accepted.music.backup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a backup stream written by {@link BackupWriter} one chunk at a time. The checksum of a
+ * chunk is verified before any of its records is returned, and only one chunk is held in memory.
+ * <pre>
+ * while (reader.nextChunk()) {
+ *     DataInput input = reader.getChunkInput();
+ *     for (int i = 0; i &lt; reader.getRecordCount(); i++) {
+ *         // read a record of reader.getChunkType()
+ *     }
+ * }
+ * </pre>
+ */
+public final class BackupReader implements Closeable {
+    // a record is at most a few strings of 64 KB, so a longer chunk is corrupted
+    static final int MAX_CHUNK_LENGTH = 8 * 1024 * 1024;
+
+    private final DataInputStream mInput;
+    private final int mVersion;
+    private final CRC32 mCrc;
+    private final byte[] mHeader;
+
+    private byte[] mPayload;
+    private int mChunkType;
+    private int mRecordCount;
+    private DataInputStream mChunkInput;
+    private long mTotalRecordCount;
+    private boolean mEnd;
+
+    public BackupReader(@NonNull InputStream input) throws IOException {
+        Preconditions.checkNotNull(input);
+
+        mInput = new DataInputStream(new BufferedInputStream(input, BackupWriter.MAX_CHUNK_SIZE));
+        mCrc = new CRC32();
+        mHeader = new byte[BackupWriter.HEADER_SIZE];
+        mPayload = new byte[0];
+
+        try {
+            if (mInput.readInt() != BackupWriter.MAGIC) {
+                throw new BackupFormatException("not a backup");
+            }
+            mVersion = mInput.readInt();
+        } catch (EOFException e) {
+            throw new BackupFormatException("not a backup", e);
+        }
+
+        if (mVersion <= 0 || mVersion > BackupWriter.VERSION) {
+            throw new BackupFormatException("unsupported version: " + mVersion);
+        }
+    }
+
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Reads and verifies the next chunk.
+     *
+     * @return false if the end of the backup is reached.
+     * @throws BackupFormatException if the chunk is truncated or corrupted.
+     */
+    public boolean nextChunk() throws IOException {
+        if (mEnd) {
+            return false;
+        }
+
+        int length;
+        try {
+            mInput.readFully(mHeader);
+            ByteBuffer header = ByteBuffer.wrap(mHeader);
+            mChunkType = header.get() & 0xFF;
+            mRecordCount = header.getInt();
+            length = header.getInt();
+
+            if (mRecordCount < 0 || length < 0 || length > MAX_CHUNK_LENGTH) {
+                throw new BackupFormatException("corrupted chunk header");
+            }
+
+            if (mPayload.length < length) {
+                mPayload = new byte[length];
+            }
+            mInput.readFully(mPayload, 0, length);
+
+            mCrc.reset();
+            mCrc.update(mHeader);
+            mCrc.update(mPayload, 0, length);
+            if (mInput.readInt() != (int) mCrc.getValue()) {
+                throw new BackupFormatException("checksum mismatch");
+            }
+        } catch (EOFException e) {
+            throw new BackupFormatException("truncated backup", e);
+        }
+
+        mChunkInput = new DataInputStream(new ByteArrayInputStream(mPayload, 0, length));
+
+        if (mChunkType == BackupWriter.TYPE_END) {
+            mEnd = true;
+            if (mChunkInput.readLong() != mTotalRecordCount) {
+                throw new BackupFormatException("record count mismatch");
+            }
+            return false;
+        }
+
+        mTotalRecordCount += mRecordCount;
+        return true;
+    }
+
+    public int getChunkType() {
+        return mChunkType;
+    }
+
+    public int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * The records of the current chunk.
+     */
+    @NonNull
+    public DataInput getChunkInput() {
+        Preconditions.checkState(mChunkInput != null, "nextChunk() not called yet");
+        return mChunkInput;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInput.close();
+    }
+
+    /**
+     * Reads a string written by {@link BackupWriter#writeString(java.io.DataOutput, String)}.
+     */
+    @Nullable
+    public static String readString(@NonNull DataInput input) throws IOException {
+        if (input.readBoolean()) {
+            return input.readUTF();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,143 @@
+package accepted.music.backup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a backup stream: a header with the magic number and the format version, then the
+ * records in chunks, then an end chunk.
+ * <p>
+ * The records of a chunk have the same type and are buffered until the chunk is about
+ * {@link #MAX_CHUNK_SIZE} bytes, so the memory used does not depend on the size of the backup.
+ * Every chunk is written as its type (1 byte), its record count (4 bytes), its length (4 bytes),
+ * its payload and the CRC32 of all of them (4 bytes). The end chunk holds the total record count,
+ * so a truncated stream is never read as a complete backup.
+ *
+ * @see BackupReader
+ */
+public final class BackupWriter implements Closeable {
+    static final int MAGIC = 0x414D424B;    // "AMBK"
+    public static final int VERSION = 1;
+
+    static final int TYPE_END = 0;
+    static final int MAX_TYPE = 255;
+    static final int HEADER_SIZE = 9;
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private final DataOutputStream mOutput;
+    private final ByteArrayOutputStream mChunkBuffer;
+    private final DataOutputStream mChunk;
+    private final CRC32 mCrc;
+
+    private int mChunkType;
+    private int mRecordCount;
+    private long mTotalRecordCount;
+    private boolean mFinished;
+
+    public BackupWriter(@NonNull OutputStream output) throws IOException {
+        Preconditions.checkNotNull(output);
+
+        mOutput = new DataOutputStream(new BufferedOutputStream(output, MAX_CHUNK_SIZE));
+        mChunkBuffer = new ByteArrayOutputStream(MAX_CHUNK_SIZE + 1024);
+        mChunk = new DataOutputStream(mChunkBuffer);
+        mCrc = new CRC32();
+
+        mOutput.writeInt(MAGIC);
+        mOutput.writeInt(VERSION);
+    }
+
+    /**
+     * Starts a record of the type, the fields of the record are written to the returned output
+     * before the next record is started.
+     *
+     * @param type the type of the record, between 1 and 255.
+     */
+    @NonNull
+    public DataOutput beginRecord(int type) throws IOException {
+        Preconditions.checkArgument(type > TYPE_END && type <= MAX_TYPE, "illegal type: " + type);
+        Preconditions.checkState(!mFinished, "already finished");
+
+        if (type != mChunkType || mChunkBuffer.size() >= MAX_CHUNK_SIZE) {
+            flushChunk();
+            mChunkType = type;
+        }
+
+        mRecordCount += 1;
+        mTotalRecordCount += 1;
+        return mChunk;
+    }
+
+    public long getTotalRecordCount() {
+        return mTotalRecordCount;
+    }
+
+    /**
+     * Writes the last chunk and the end chunk. A stream that is closed without being finished is
+     * rejected by {@link BackupReader}.
+     */
+    public void finish() throws IOException {
+        Preconditions.checkState(!mFinished, "already finished");
+
+        flushChunk();
+        mChunk.writeLong(mTotalRecordCount);
+        writeChunk(TYPE_END, 0);
+        mOutput.flush();
+        mFinished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOutput.close();
+    }
+
+    private void flushChunk() throws IOException {
+        if (mRecordCount <= 0) {
+            return;
+        }
+
+        writeChunk(mChunkType, mRecordCount);
+        mRecordCount = 0;
+    }
+
+    private void writeChunk(int type, int recordCount) throws IOException {
+        mChunk.flush();
+        byte[] payload = mChunkBuffer.toByteArray();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put((byte) type)
+                .putInt(recordCount)
+                .putInt(payload.length);
+
+        mCrc.reset();
+        mCrc.update(header.array());
+        mCrc.update(payload);
+
+        mOutput.write(header.array());
+        mOutput.write(payload);
+        mOutput.writeInt((int) mCrc.getValue());
+
+        mChunkBuffer.reset();
+    }
+
+    /**
+     * Writes a string that may be null, read it with {@link BackupReader#readString(java.io.DataInput)}.
+     */
+    public static void writeString(@NonNull DataOutput output, @Nullable String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package accepted.music.backup;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Restores the MMKV files of the player state, the player config and the playlist.
+ * <p>
+ * The files are open while the app runs, so they are not replaced at once: the backup restores
+ * them into a staging directory, and they replace the MMKV files the next time the app starts,
+ * before {@code MMKV.initialize()} is called.
+ */
+public final class PlayerStateRestore {
+    private static final String TAG = "PlayerStateRestore";
+    // the default root directory of MMKV, in the files directory
+    private static final String MMKV_DIR = "mmkv";
+    private static final String STAGING_DIR = "mmkv.staging";
+    private static final String PENDING_DIR = "mmkv.pending";
+
+    private PlayerStateRestore() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns an empty directory to restore the files into, see {@link #commit(Context)}.
+     */
+    @NonNull
+    public static File getStagingDir(@NonNull Context context) throws IOException {
+        Preconditions.checkNotNull(context);
+
+        File stagingDir = new File(context.getFilesDir(), STAGING_DIR);
+        deleteAll(stagingDir);
+        if (!stagingDir.mkdirs()) {
+            throw new IOException("can't create directory: " + stagingDir);
+        }
+        return stagingDir;
+    }
+
+    /**
+     * Keeps the restored files of the staging directory until the app restarts.
+     */
+    public static void commit(@NonNull Context context) throws IOException {
+        Preconditions.checkNotNull(context);
+
+        File stagingDir = new File(context.getFilesDir(), STAGING_DIR);
+        File pendingDir = new File(context.getFilesDir(), PENDING_DIR);
+
+        // the files of an older restore that is not applied yet are replaced
+        deleteAll(pendingDir);
+        if (!stagingDir.renameTo(pendingDir)) {
+            throw new IOException("can't rename: " + stagingDir);
+        }
+    }
+
+    /**
+     * Moves the restored files over the MMKV files, call it before {@code MMKV.initialize()}.
+     * The files that are not in the backup are kept.
+     */
+    public static void applyPending(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        File pendingDir = new File(context.getFilesDir(), PENDING_DIR);
+        if (!pendingDir.isDirectory()) {
+            return;
+        }
+
+        File mmkvDir = new File(context.getFilesDir(), MMKV_DIR);
+        if (moveAll(pendingDir, mmkvDir)) {
+            deleteAll(pendingDir);
+        }
+    }
+
+    // the files that are moved are gone from the source, so an interrupted move resumes
+    private static boolean moveAll(File sourceDir, File targetDir) {
+        File[] allFile = sourceDir.listFiles();
+        if (allFile == null) {
+            return true;
+        }
+
+        if (!targetDir.isDirectory() && !targetDir.mkdirs()) {
+            Log.e(TAG, "can't create directory: " + targetDir);
+            return false;
+        }
+
+        boolean moved = true;
+        for (File file : allFile) {
+            File target = new File(targetDir, file.getName());
+            if (file.isDirectory()) {
+                moved &= moveAll(file, target);
+            } else if (!file.renameTo(target)) {
+                Log.e(TAG, "can't move: " + file);
+                moved = false;
+            }
+        }
+        return moved;
+    }
+
+    private static void deleteAll(File file) {
+        File[] allFile = file.listFiles();
+        if (allFile != null) {
+            for (File child : allFile) {
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -3,12 +3,10 @@ package accepted.music.dialog;
 import android.Manifest;
 import android.annotation.SuppressLint;
 import android.app.Application;
-import android.content.Context;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.SystemClock;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -24,25 +22,26 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModelProvider;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
-import io.reactivex.Single;
-import io.reactivex.SingleOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
-import io.reactivex.schedulers.Schedulers;
-import media.helper.MediaStoreHelper;
 import accepted.music.R;
+import accepted.music.loudness.LoudnessAnalysisJob;
+import accepted.music.scanner.MediaStoreMusicSource;
+import accepted.music.scanner.MusicTagDecoder;
+import accepted.music.scanner.ScanPipeline;
 import accepted.music.service.AppPlayerService;
 import accepted.music.store.Music;
-import accepted.music.store.MusicList;
 import accepted.music.store.MusicStore;
 import accepted.music.util.MusicListUtil;
 import accepted.music.util.PlayerUtil;
+import accepted.music.waveform.WaveformJob;
 import accepted.player.PlayerClient;
 import accepted.player.lifecycle.PlayerViewModel;
 
@@ -128,54 +127,44 @@ public class ScannerDialog extends BottomDialog {
         updateProgress();
     }
 
-    private void showScanResultDialog(FragmentActivity activity, List<Music> musicList) {
+    private void showScanResultDialog(FragmentActivity activity, List<Music> musicList, int duplicateCount) {
         MessageDialog.Builder builder = new MessageDialog.Builder(activity);
 
+        String message;
         switch (musicList.size()) {
             case 0:
-                builder.setMessage(R.string.message_no_new_songs_found)
-                        .setHideNegativeButton(true);
+                message = activity.getString(R.string.message_no_new_songs_found);
                 break;
             case 1:
-                builder.setMessage(R.string.message_one_song_found);
+                message = activity.getString(R.string.message_one_song_found);
                 break;
             default:
-                String message = activity.getString(R.string.message_many_songs_found);
-                builder.setMessage(message.replaceFirst("n", String.valueOf(musicList.size())));
+                message = activity.getString(R.string.message_many_songs_found)
+                        .replaceFirst("n", String.valueOf(musicList.size()));
                 break;
         }
 
-        MessageDialog messageDialog = builder.setPositiveButtonClickListener(
-                (dialog, which) -> addToLocalMusicList(activity, musicList, updatePlaylist()))
+        if (duplicateCount > 0) {
+            message += "\n" + activity.getString(R.string.message_duplicates_not_added)
+                    .replaceFirst("n", String.valueOf(duplicateCount));
+        }
+        builder.setMessage(message);
+
+        MessageDialog messageDialog = builder.setHideNegativeButton(true)
+                .setPositiveButtonClickListener((dialog, which) -> playScannedMusic(activity, musicList, updatePlaylist()))
                 .build();
 
         messageDialog.show(getParentFragmentManager(), "scanComplete");
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    @SuppressLint("CheckResult")
-    private void addToLocalMusicList(FragmentActivity activity, List<Music> musicList, boolean updatePlaylist) {
-        if (musicList.size() < 1) {
+    // the scanned music is already added to the local music list while scanning
+    private void playScannedMusic(FragmentActivity activity, List<Music> musicList, boolean updatePlaylist) {
+        if (musicList.isEmpty() || !updatePlaylist) {
             return;
         }
 
-        Single.create((SingleOnSubscribe<Boolean>) emitter -> {
-            MusicStore musicStore = MusicStore.getInstance();
-            MusicList localMusic = musicStore.getLocalMusicList();
-
-            localMusic.getMusicElements().addAll(musicList);
-            musicStore.updateMusicList(localMusic);
-
-            emitter.onSuccess(true);
-        }).subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(aBoolean -> {
-                    MusicStore.getInstance().notifyScanComplete();
-                    if (updatePlaylist) {
-                        getPlayerClient(activity).setPlaylist(
-                                MusicListUtil.asPlaylist(MusicStore.MUSIC_LIST_LOCAL_MUSIC, musicList, 0));
-                    }
-                });
+        getPlayerClient(activity).setPlaylist(
+                MusicListUtil.asPlaylist(MusicStore.MUSIC_LIST_LOCAL_MUSIC, musicList, 0));
     }
 
     @Override
@@ -205,6 +194,13 @@ public class ScannerDialog extends BottomDialog {
     private void observerProgress() {
         mScannerViewModel.getScanPercent()
                 .observe(this, percent -> updateProgress());
+
+        // the read items that are not yet committed, i.e. the depth of the decode and commit queues
+        mScannerViewModel.getScanProgress()
+                .observe(this, progress -> {
+                    int total = progress.getTotalCount();
+                    mProgressBar.setSecondaryProgress(total <= 0 ? 0 : progress.getReadCount() * 100 / total);
+                });
     }
 
     private void observeFinished() {
@@ -224,7 +220,8 @@ public class ScannerDialog extends BottomDialog {
                     FragmentActivity activity = Objects.requireNonNull(getActivity());
                     dismiss();
                     if (mScannerViewModel.isStarted()) {
-                        showScanResultDialog(activity, mScannerViewModel.getScannedMusic());
+                        showScanResultDialog(activity, mScannerViewModel.getScannedMusic(),
+                                mScannerViewModel.getDuplicateCount());
                     }
                 });
     }
@@ -272,15 +269,25 @@ public class ScannerDialog extends BottomDialog {
     }
 
     public static class ScannerViewModel extends AndroidViewModel {
+        private static final int BATCH_SIZE = 50;
+        private static final int MAX_IN_FLIGHT = BATCH_SIZE * 4;
+        // the listener of the scan reloads the local music list
+        private static final long NOTIFY_INTERVAL = 1000;   // ms
+
         private boolean mStarted;
         private boolean mCancelled;
         private int mProgress;
-        private MediaStoreHelper.Scanner<Music> mMusicScanner;
+        private ScanPipeline<Music, Music> mScanPipeline;
 
         public final MutableLiveData<Boolean> mFinished;
         public final MutableLiveData<Integer> mScanPercent;
+        public final MutableLiveData<ScanPipeline.Progress> mScanProgress;
 
-        private List<Music> mScannedMusic;
+        // only accessed on the committer thread until the scan is finished
+        private final List<Music> mScannedMusic;
+        private int mDuplicateCount;
+        private long mLastNotifyTime;
+        private boolean mNotifyPending;
 
         public ScannerViewModel(@NonNull Application application) {
             super(application);
@@ -289,7 +296,8 @@ public class ScannerDialog extends BottomDialog {
             mCancelled = false;
             mFinished = new MutableLiveData<>(false);
             mScanPercent = new MutableLiveData<>(0);
-            mScannedMusic = Collections.emptyList();
+            mScanProgress = new MutableLiveData<>();
+            mScannedMusic = new ArrayList<>();
         }
 
         @Override
@@ -298,42 +306,42 @@ public class ScannerDialog extends BottomDialog {
             cancel();
         }
 
-        @SuppressLint("InlinedApi")
         public void start(int minDuration) {
             if (mStarted || mCancelled) {
                 return;
             }
 
             mStarted = true;
+            // the waveforms are computed again after the scan, which needs the disk
+            WaveformJob.cancel();
 
-            mMusicScanner = MediaStoreHelper.scanAudio(getApplication().getContentResolver(), new MusicDecoder(getApplication()))
-                    .updateThreshold(1000)
-                    .selection(MediaStore.Audio.Media.DURATION + ">=?")
-                    .selectionArgs(new String[]{String.valueOf(minDuration)});
+            mScanPipeline = new ScanPipeline<>(new MediaStoreMusicSource(getApplication(), minDuration),
+                    new MusicTagDecoder(getApplication()),
+                    this::commit,
+                    Runtime.getRuntime().availableProcessors(),
+                    BATCH_SIZE,
+                    MAX_IN_FLIGHT);
 
-            mMusicScanner.scan(new MediaStoreHelper.OnScanCallback<Music>() {
+            mScanPipeline.start(new ScanPipeline.Listener() {
                 @Override
-                public void onStartScan() {
-                    mScanPercent.setValue(0);
+                public void onProgress(@NonNull ScanPipeline.Progress progress) {
+                    mProgress = progress.getPercent();
+                    mScanProgress.postValue(progress);
+                    mScanPercent.postValue(mProgress);
                 }
 
                 @Override
-                public void onUpdateProgress(int progress, int max, Music item) {
-                    mProgress = progress;
-                    mScanPercent.setValue(progress);
-                }
-
-                @Override
-                public void onFinished(List<Music> items) {
-                    if (mCancelled) {
-                        return;
+                public void onFinished(@NonNull ScanPipeline.Progress progress) {
+                    if (mNotifyPending) {
+                        notifyScanComplete();
                     }
+                    LoudnessAnalysisJob.start(getApplication());
+                    WaveformJob.start(getApplication());
 
                     mProgress = 100;
-                    mScanPercent.setValue(100);
-                    mFinished.setValue(true);
-
-                    updateLocalMusicList(items);
+                    mScanProgress.postValue(progress);
+                    mScanPercent.postValue(100);
+                    mFinished.postValue(true);
                 }
             });
         }
@@ -341,8 +349,8 @@ public class ScannerDialog extends BottomDialog {
         public void cancel() {
             mCancelled = true;
             mFinished.setValue(true);
-            if (mMusicScanner != null) {
-                mMusicScanner.cancel();
+            if (mScanPipeline != null) {
+                mScanPipeline.cancel();
             }
         }
 
@@ -350,6 +358,13 @@ public class ScannerDialog extends BottomDialog {
             return mScanPercent;
         }
 
+        /**
+         * Returns the throughput and the queue depths of the stages of the scan.
+         */
+        public LiveData<ScanPipeline.Progress> getScanProgress() {
+            return mScanProgress;
+        }
+
         public LiveData<Boolean> getFinished() {
             return mFinished;
         }
@@ -362,19 +377,48 @@ public class ScannerDialog extends BottomDialog {
             return mProgress;
         }
 
+        /**
+         * Returns the music that is added to the local music list by the scan, only valid after
+         * the scan is finished.
+         */
         public List<Music> getScannedMusic() {
             return mScannedMusic;
         }
 
-        @SuppressWarnings("ResultOfMethodCallIgnored")
-        @SuppressLint("CheckResult")
-        private void updateLocalMusicList(List<Music> items) {
-            Single.create((SingleOnSubscribe<List<Music>>) emitter -> {
-                MusicStore.getInstance().putAllMusic(getAllNewMusic(items));
-                emitter.onSuccess(getAllNoLocalMusic(items));
-            }).subscribeOn(Schedulers.io())
-                    .observeOn(AndroidSchedulers.mainThread())
-                    .subscribe(musicList -> mScannedMusic = musicList);
+        /**
+         * Returns the number of the scanned files that are not added because they are copies of
+         * the local music, only valid after the scan is finished.
+         */
+        public int getDuplicateCount() {
+            return mDuplicateCount;
+        }
+
+        // called on the committer thread of the pipeline
+        private void commit(List<Music> batch) {
+            MusicStore musicStore = MusicStore.getInstance();
+            musicStore.putAllMusic(getAllNewMusic(batch));
+            musicStore.updateAllContentHash(batch);
+
+            List<Music> allNoLocalMusic = getAllNoLocalMusic(batch);
+            if (allNoLocalMusic.isEmpty()) {
+                return;
+            }
+
+            // appended without loading the local music list, so that it shows them while the scan goes on
+            musicStore.addAllMusic(MusicStore.MUSIC_LIST_LOCAL_MUSIC, allNoLocalMusic);
+            mScannedMusic.addAll(allNoLocalMusic);
+
+            mNotifyPending = true;
+            if (SystemClock.elapsedRealtime() - mLastNotifyTime >= NOTIFY_INTERVAL) {
+                notifyScanComplete();
+            }
+        }
+
+        private void notifyScanComplete() {
+            mNotifyPending = false;
+            mLastNotifyTime = SystemClock.elapsedRealtime();
+            AndroidSchedulers.mainThread()
+                    .scheduleDirect(MusicStore.getInstance()::notifyScanComplete);
         }
 
         private List<Music> getAllNewMusic(List<Music> items) {
@@ -390,45 +434,27 @@ public class ScannerDialog extends BottomDialog {
             return allNewMusic;
         }
 
+        // the copies of the local music are not added, they are found by the indexed content hash
         private List<Music> getAllNoLocalMusic(List<Music> items) {
             MusicStore musicStore = MusicStore.getInstance();
             List<Music> allNoLocalMusic = new ArrayList<>();
+            Set<String> allAddedHash = new HashSet<>();
 
             for (Music music : items) {
-                if (!musicStore.isLocalMusic(music.getUri())) {
-                    allNoLocalMusic.add(music);
+                if (musicStore.isLocalMusic(music.getUri())) {
+                    continue;
                 }
-            }
-
-            return allNoLocalMusic;
-        }
-    }
-
-    private static class MusicDecoder extends MediaStoreHelper.Decoder<Music> {
-        private final Context mContext;
-
-        MusicDecoder(Context context) {
-            mContext = context;
-        }
 
-        @Override
-        public Music decode(Cursor cursor) {
-            return new Music(0,
-                    getTitle(cursor),
-                    optimizeText(getAudioArtist(cursor), accepted.player.R.string.accepted_music_item_unknown_artist),
-                    optimizeText(getAudioAlbum(cursor), accepted.player.R.string.accepted_music_item_unknown_album),
-                    getAudioUri(cursor).toString(),
-                    "",
-                    getDuration(cursor),
-                    getDateModified(cursor));
-        }
+                String hash = music.getContentHash();
+                if (hash != null && (!allAddedHash.add(hash) || musicStore.isLocalMusicContent(hash))) {
+                    mDuplicateCount += 1;
+                    continue;
+                }
 
-        public String optimizeText(String text, int stringId) {
-            if ("<unknown>".equals(text)) {
-                return mContext.getString(stringId);
+                allNoLocalMusic.add(music);
             }
 
-            return text;
+            return allNoLocalMusic;
         }
     }
 }
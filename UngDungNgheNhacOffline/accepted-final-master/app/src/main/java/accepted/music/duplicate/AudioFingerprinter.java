@@ -0,0 +1,118 @@
+package accepted.music.duplicate;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A 64 bits fingerprint of the first seconds of interleaved 16 bit PCM audio, after the leading
+ * silence.
+ * <p>
+ * The audio is cut into frames of 250 ms, and each bit tells whether the energy of a frame is
+ * greater than the one of the frame before it. The fingerprint does not depend on the sample
+ * rate, the channels, the volume or the encoding of the audio, so the same recording encoded
+ * differently has the same or a very close fingerprint, see {@link #isSimilar(long, long)}.
+ * <p>
+ * Feed it with {@link #process(short[], int, int)} as the audio is decoded until it returns
+ * false, then read {@link #getFingerprint()}.
+ */
+public final class AudioFingerprinter {
+    static final int FRAME_MILLIS = 250;
+    static final int BIT_COUNT = 64;
+    // the frames quieter than about -60 dBFS before the audio starts are skipped
+    static final double SILENCE_ENERGY = 1.0E-6;
+
+    /**
+     * The maximum number of different bits of two similar fingerprints.
+     */
+    public static final int MAX_DISTANCE = 8;
+
+    private final int mChannelCount;
+    private final int mFrameLength;
+
+    private double mFrameEnergy;
+    private int mFrameSampleCount;
+    private boolean mStarted;
+
+    private double mLastEnergy;
+    private int mEnergyCount;
+    private long mFingerprint;
+
+    public AudioFingerprinter(int sampleRate, int channelCount) {
+        Preconditions.checkArgument(sampleRate > 0, "sampleRate must > 0");
+        Preconditions.checkArgument(channelCount > 0, "channelCount must > 0");
+
+        mChannelCount = channelCount;
+        mFrameLength = Math.max(1, sampleRate * FRAME_MILLIS / 1000);
+    }
+
+    /**
+     * @param offset     the index of the first sample in the array.
+     * @param frameCount the number of the audio frames, i.e. the samples of every channel.
+     * @return false if the fingerprint is complete and the rest of the audio is not needed.
+     */
+    public boolean process(short[] pcm, int offset, int frameCount) {
+        for (int frame = 0; frame < frameCount && !isComplete(); frame++) {
+            int index = offset + frame * mChannelCount;
+
+            double sample = 0;
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                sample += pcm[index + channel];
+            }
+            sample = sample / mChannelCount / 32768.0;
+
+            mFrameEnergy += sample * sample;
+            mFrameSampleCount += 1;
+            if (mFrameSampleCount >= mFrameLength) {
+                onFrame(mFrameEnergy / mFrameSampleCount);
+                mFrameEnergy = 0;
+                mFrameSampleCount = 0;
+            }
+        }
+
+        return !isComplete();
+    }
+
+    private void onFrame(double energy) {
+        if (!mStarted) {
+            if (energy < SILENCE_ENERGY) {
+                return;
+            }
+            mStarted = true;
+        }
+
+        if (mEnergyCount > 0) {
+            mFingerprint <<= 1;
+            if (energy > mLastEnergy) {
+                mFingerprint |= 1;
+            }
+        }
+
+        mLastEnergy = energy;
+        mEnergyCount += 1;
+    }
+
+    public boolean isComplete() {
+        return mEnergyCount > BIT_COUNT;
+    }
+
+    /**
+     * Returns the fingerprint, or 0 if the audio is too short to be fingerprinted.
+     */
+    public long getFingerprint() {
+        return isComplete() ? mFingerprint : 0;
+    }
+
+    /**
+     * Returns the number of the different bits of the two fingerprints.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Returns whether the two fingerprints are of the same recording, 0 is not similar to any
+     * fingerprint.
+     */
+    public static boolean isSimilar(long a, long b) {
+        return a != 0 && b != 0 && distance(a, b) <= MAX_DISTANCE;
+    }
+}
@@ -0,0 +1,132 @@
+package accepted.music.duplicate;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import accepted.music.store.Music;
+
+/**
+ * Groups the music that is the same song: the copies of a file have the same
+ * {@link Music#getContentHash() content hash}, and the same recording encoded differently has a
+ * similar {@link Music#getFingerprint() fingerprint} and about the same duration.
+ */
+public final class DuplicateFinder {
+    // the durations of the encodings of a recording differ by the encoder delay and padding
+    static final int MAX_DURATION_DIFFERENCE = 2_000;
+
+    private DuplicateFinder() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the groups of at least two music that are the same song. The music in a group is
+     * ordered by the add time, so the first one is the one that was added first.
+     */
+    @NonNull
+    public static List<List<Music>> find(@NonNull List<Music> allMusic) {
+        Preconditions.checkNotNull(allMusic);
+
+        int[] parent = new int[allMusic.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+
+        Map<String, Integer> firstWithHash = new HashMap<>();
+        for (int i = 0; i < allMusic.size(); i++) {
+            String hash = allMusic.get(i).getContentHash();
+            if (hash == null || hash.isEmpty()) {
+                continue;
+            }
+
+            Integer first = firstWithHash.get(hash);
+            if (first == null) {
+                firstWithHash.put(hash, i);
+            } else {
+                union(parent, first, i);
+            }
+        }
+
+        unionSimilarFingerprints(allMusic, parent);
+        return groups(allMusic, parent);
+    }
+
+    private static void unionSimilarFingerprints(List<Music> allMusic, int[] parent) {
+        List<Integer> fingerprinted = new ArrayList<>();
+        for (int i = 0; i < allMusic.size(); i++) {
+            Music music = allMusic.get(i);
+            if (music.isFingerprinted() && music.getFingerprint() != 0) {
+                fingerprinted.add(i);
+            }
+        }
+
+        // only the music within the duration difference is compared
+        Collections.sort(fingerprinted, (a, b) ->
+                Integer.compare(allMusic.get(a).getDuration(), allMusic.get(b).getDuration()));
+
+        for (int i = 0; i < fingerprinted.size(); i++) {
+            Music music = allMusic.get(fingerprinted.get(i));
+
+            for (int j = i + 1; j < fingerprinted.size(); j++) {
+                Music other = allMusic.get(fingerprinted.get(j));
+                if (other.getDuration() - music.getDuration() > MAX_DURATION_DIFFERENCE) {
+                    break;
+                }
+
+                if (AudioFingerprinter.isSimilar(music.getFingerprint(), other.getFingerprint())) {
+                    union(parent, fingerprinted.get(i), fingerprinted.get(j));
+                }
+            }
+        }
+    }
+
+    private static List<List<Music>> groups(List<Music> allMusic, int[] parent) {
+        Map<Integer, List<Music>> allGroup = new LinkedHashMap<>();
+        for (int i = 0; i < allMusic.size(); i++) {
+            int root = find(parent, i);
+
+            List<Music> group = allGroup.get(root);
+            if (group == null) {
+                group = new ArrayList<>();
+                allGroup.put(root, group);
+            }
+            group.add(allMusic.get(i));
+        }
+
+        Comparator<Music> byAddTime = (a, b) -> Long.compare(a.getAddTime(), b.getAddTime());
+
+        List<List<Music>> result = new ArrayList<>();
+        for (List<Music> group : allGroup.values()) {
+            if (group.size() > 1) {
+                Collections.sort(group, byAddTime);
+                result.add(group);
+            }
+        }
+
+        return result;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
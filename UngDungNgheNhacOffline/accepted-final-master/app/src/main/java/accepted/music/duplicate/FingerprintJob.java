@@ -0,0 +1,121 @@
+package accepted.music.duplicate;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+import accepted.music.util.PcmDecoder;
+
+/**
+ * Fingerprints the decoded audio of every music that has not been fingerprinted yet, one at a
+ * time on a lowest-priority thread. Only the first seconds of each music are decoded, see
+ * {@link AudioFingerprinter}.
+ * <p>
+ * Each result is stored as soon as it is known, so the job resumes where it stopped the next time
+ * it is started. It is cancelled when the duplicates are not shown any more.
+ */
+public final class FingerprintJob {
+    private static final String TAG = "FingerprintJob";
+    private static final int BATCH_SIZE = 20;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                runnable.run();
+            }, TAG));
+    private static final AtomicBoolean PENDING = new AtomicBoolean(false);
+    private static final AtomicBoolean CANCELLED = new AtomicBoolean(false);
+
+    private FingerprintJob() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Starts the job unless one is already waiting to run.
+     *
+     * @param onFinished called on the job thread after the job finishes, may be null.
+     */
+    public static void start(@NonNull Context context, @Nullable Runnable onFinished) {
+        Preconditions.checkNotNull(context);
+
+        Context applicationContext = context.getApplicationContext();
+        // reset here rather than when the job runs, so that a later cancel() is not undone
+        CANCELLED.set(false);
+        if (PENDING.compareAndSet(false, true)) {
+            EXECUTOR.execute(() -> {
+                PENDING.set(false);
+                run(applicationContext);
+            });
+        }
+
+        if (onFinished != null) {
+            // after the job that is running or has just been queued
+            EXECUTOR.execute(onFinished);
+        }
+    }
+
+    /**
+     * Stops the job that is running or waiting to run, the music that is being fingerprinted is
+     * fingerprinted again the next time.
+     */
+    public static void cancel() {
+        CANCELLED.set(true);
+    }
+
+    private static void run(Context context) {
+        MusicStore musicStore = MusicStore.getInstance();
+
+        List<Music> batch = musicStore.getFingerprintPendingMusic(BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            for (Music music : batch) {
+                if (CANCELLED.get()) {
+                    return;
+                }
+
+                long fingerprint = fingerprint(context, music);
+                // the fingerprint of a part of the audio is not stored
+                if (CANCELLED.get()) {
+                    return;
+                }
+                musicStore.updateFingerprint(music.getId(), fingerprint);
+            }
+            batch = musicStore.getFingerprintPendingMusic(BATCH_SIZE);
+        }
+    }
+
+    private static long fingerprint(Context context, Music music) {
+        final AudioFingerprinter[] fingerprinter = new AudioFingerprinter[1];
+        try {
+            PcmDecoder.decode(context, Uri.parse(music.getUri()), new PcmDecoder.Callback() {
+                @Override
+                public void onFormatChanged(int sampleRate, int channelCount) {
+                    fingerprinter[0] = new AudioFingerprinter(sampleRate, channelCount);
+                }
+
+                @Override
+                public boolean onPcm(@NonNull short[] pcm, int frameCount) {
+                    return fingerprinter[0].process(pcm, 0, frameCount) && !CANCELLED.get();
+                }
+            });
+            return fingerprinter[0].getFingerprint();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "fingerprint failed: " + music.getUri(), e);
+            // not retried, the music is only found by its content hash
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package accepted.music.duplicate;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A cheap content hash of a file: the SHA-1 of its size and of three blocks at its head, middle
+ * and tail, so that only 192 KB are read whatever the size of the file.
+ * <p>
+ * Copies of a file have the same hash. Files that differ only outside the sampled blocks do too,
+ * which is unlikely for two audio files of the same size.
+ */
+public final class SampledHash {
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private SampledHash() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Computes the hash of the file, the position of the channel is not changed.
+     *
+     * @return the hash as 40 lowercase hex digits.
+     */
+    @WorkerThread
+    @NonNull
+    public static String compute(@NonNull FileChannel channel) throws IOException {
+        Preconditions.checkNotNull(channel);
+
+        long size = channel.size();
+        MessageDigest digest = newDigest();
+        digest.update(ByteBuffer.allocate(8).putLong(0, size));
+
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        if (size <= 3L * BLOCK_SIZE) {
+            for (long offset = 0; offset < size; offset += BLOCK_SIZE) {
+                update(digest, channel, block, offset);
+            }
+        } else {
+            update(digest, channel, block, 0);
+            update(digest, channel, block, (size - BLOCK_SIZE) / 2);
+            update(digest, channel, block, size - BLOCK_SIZE);
+        }
+
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, FileChannel channel, ByteBuffer block, long offset)
+            throws IOException {
+        block.clear();
+        while (block.hasRemaining()) {
+            if (channel.read(block, offset + block.position()) < 0) {
+                break;
+            }
+        }
+
+        block.flip();
+        digest.update(block);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-1
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -6,6 +6,7 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -46,6 +47,7 @@ public abstract class BaseMusicListFragment extends Fragment {
 
     private MusicListAdapter mMusicListAdapter;
     private LinearLayoutManager mLinearLayoutManager;
+    private ProgressBar mSortProgressBar;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -66,6 +68,7 @@ public abstract class BaseMusicListFragment extends Fragment {
         View contentView = inflater.inflate(R.layout.fragment_music_list, container, false);
         initMusicListAdapter();
         initRecyclerView(contentView);
+        mSortProgressBar = contentView.findViewById(R.id.pbSortProgress);
         return contentView;
     }
 
@@ -75,6 +78,7 @@ public abstract class BaseMusicListFragment extends Fragment {
 
         observeMusicListItems();
         observePlayPosition();
+        observeSortProgress();
     }
 
     @Override
@@ -151,6 +155,20 @@ public abstract class BaseMusicListFragment extends Fragment {
                 });
     }
 
+    private void observeSortProgress() {
+        mMusicListViewModel.getSortProgress()
+                .observe(getViewLifecycleOwner(), progress -> {
+                    // -1 if no sort is running
+                    if (progress < 0) {
+                        mSortProgressBar.setVisibility(View.GONE);
+                        return;
+                    }
+
+                    mSortProgressBar.setVisibility(View.VISIBLE);
+                    mSortProgressBar.setProgress(progress);
+                });
+    }
+
     private void initRecyclerView(View contentView) {
         RecyclerView rvMusicList = contentView.findViewById(R.id.rvMusicList);
         mLinearLayoutManager = new LinearLayoutManager(mContext);
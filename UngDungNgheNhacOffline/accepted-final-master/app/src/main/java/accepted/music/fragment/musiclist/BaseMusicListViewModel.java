@@ -1,6 +1,7 @@
 package accepted.music.fragment.musiclist;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
@@ -20,22 +21,28 @@ import io.reactivex.schedulers.Schedulers;
 import accepted.music.activity.multichoice.MultiChoiceStateHolder;
 import accepted.music.store.Music;
 import accepted.music.store.MusicList;
+import accepted.music.store.MusicStore;
+import accepted.music.store.SortJob;
 import accepted.player.util.MusicItemUtil;
 
 public abstract class BaseMusicListViewModel extends ViewModel {
     private final MutableLiveData<List<Music>> mMusicListItems;
     private final MutableLiveData<Boolean> mLoadingMusicList;
+    private final MutableLiveData<Integer> mSortProgress;
     private String mMusicListName = "";
     private String mMusicListToken = "";
 
     private boolean mInitialized;
     private Disposable mLoadMusicListDisposable;
+    @Nullable
+    private SortJob mSortJob;
 
     private boolean mIgnoreDiffUtil;
 
     public BaseMusicListViewModel() {
         mMusicListItems = new MutableLiveData<>(Collections.emptyList());
         mLoadingMusicList = new MutableLiveData<>(false);
+        mSortProgress = new MutableLiveData<>(-1);
     }
 
     public void init(@NonNull String musicListName) {
@@ -58,6 +65,7 @@ public abstract class BaseMusicListViewModel extends ViewModel {
         }
 
         cancelLastLoading();
+        cancelSorting();
 
         MultiChoiceStateHolder.getInstance()
                 .release();
@@ -76,6 +84,13 @@ public abstract class BaseMusicListViewModel extends ViewModel {
         return mLoadingMusicList;
     }
 
+    /**
+     * Progress of the running sort in [0, 100], or -1 if no sort is running.
+     */
+    public LiveData<Integer> getSortProgress() {
+        return mSortProgress;
+    }
+
     public void setMusicListItems(@NonNull List<Music> musicListItems) {
         Preconditions.checkNotNull(musicListItems);
         mMusicListItems.setValue(new ArrayList<>(musicListItems));
@@ -151,8 +166,18 @@ public abstract class BaseMusicListViewModel extends ViewModel {
 
     public void sortMusicList(@NonNull MusicList.SortOrder sortOrder) {
         Preconditions.checkNotNull(sortOrder);
-        mIgnoreDiffUtil = true;
-        onSortMusicList(sortOrder);
+
+        // the previous job is superseded by the music store, the adapter applies
+        // the result as moves so DiffUtil is not ignored here.
+        mSortJob = onSortMusicList(sortOrder);
+        mSortProgress.setValue(mSortJob == null ? -1 : 0);
+    }
+
+    private void cancelSorting() {
+        if (mSortJob != null) {
+            mSortJob.cancel();
+            mSortJob = null;
+        }
     }
 
     @NonNull
@@ -160,8 +185,22 @@ public abstract class BaseMusicListViewModel extends ViewModel {
 
     protected abstract void removeMusic(@NonNull Music music);
 
-    protected abstract void onSortMusicList(@NonNull MusicList.SortOrder sortOrder);
+    @Nullable
+    protected abstract SortJob onSortMusicList(@NonNull MusicList.SortOrder sortOrder);
 
     @NonNull
     protected abstract MusicList.SortOrder getSortOrder();
+
+    protected class SortProgressCallback implements MusicStore.SortCallback {
+        @Override
+        public void onSortProgress(int progress) {
+            mSortProgress.setValue(progress);
+        }
+
+        @Override
+        public void onSortFinished() {
+            mSortJob = null;
+            mSortProgress.setValue(-1);
+        }
+    }
 }
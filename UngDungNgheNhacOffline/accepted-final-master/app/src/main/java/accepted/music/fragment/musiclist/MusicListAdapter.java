@@ -11,10 +11,13 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import recyclerview.helper.ItemClickHelper;
 import recyclerview.helper.PositionHelper;
@@ -27,6 +30,9 @@ public class MusicListAdapter extends RecyclerView.Adapter<MusicListAdapter.View
     private static final int TYPE_ITEM_VIEW = 2;
     private static final int TYPE_EMPTY_LOADING = 3;
 
+    // above this many moves a full rebind is cheaper than animating each move
+    private static final int MAX_MOVE_COUNT = 64;
+
     private List<Music> mMusicList;
 
     private final ItemClickHelper mItemClickHelper;
@@ -51,6 +57,8 @@ public class MusicListAdapter extends RecyclerView.Adapter<MusicListAdapter.View
         if (ignoreDiffUtil || mMusicList.isEmpty() || musicList.isEmpty()) {
             mMusicList = new ArrayList<>(musicList);
             notifyDataSetChanged();
+        } else if (dispatchMoves(musicList)) {
+            mMusicList = new ArrayList<>(musicList);
         } else {
             List<Music> newMusicList = new ArrayList<>(musicList);
             DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new OrderMusicDiffCallback(mMusicList, newMusicList));
@@ -59,6 +67,118 @@ public class MusicListAdapter extends RecyclerView.Adapter<MusicListAdapter.View
         }
     }
 
+    /**
+     * If the new music list is a reordering of the current one (e.g. after a sort), dispatch the
+     * minimal set of moves: every item outside the longest run that keeps its relative order moves
+     * once. Falls back to a full rebind when that set is too large. The items whose contents
+     * changed are rebound.
+     *
+     * @return false if the new music list is not a permutation of the current one.
+     */
+    private boolean dispatchMoves(List<Music> musicList) {
+        int size = mMusicList.size();
+        if (size != musicList.size()) {
+            return false;
+        }
+
+        Map<Music, Integer> allOldPosition = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            allOldPosition.put(mMusicList.get(i), i);
+        }
+
+        if (allOldPosition.size() != size) {
+            return false;
+        }
+
+        int[] oldPositions = new int[size];
+        for (int i = 0; i < size; i++) {
+            Integer oldPosition = allOldPosition.get(musicList.get(i));
+            if (oldPosition == null) {
+                return false;
+            }
+            oldPositions[i] = oldPosition;
+        }
+
+        boolean[] stable = longestIncreasingSubsequence(oldPositions);
+        int moveCount = 0;
+        for (boolean keep : stable) {
+            if (!keep) {
+                moveCount++;
+            }
+        }
+
+        if (moveCount > MAX_MOVE_COUNT) {
+            notifyDataSetChanged();
+            return true;
+        }
+
+        // Place each moved item right after its predecessor in the new order. Stable items keep
+        // their relative order, so the working list ends up equal to the new music list.
+        List<Music> working = new ArrayList<>(mMusicList);
+        for (int i = 0; i < size; i++) {
+            if (stable[i]) {
+                continue;
+            }
+
+            Music music = musicList.get(i);
+            int from = working.indexOf(music);
+            working.remove(from);
+
+            int to = i == 0 ? 0 : working.indexOf(musicList.get(i - 1)) + 1;
+            working.add(to, music);
+            if (from != to) {
+                notifyItemMoved(from, to);
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (!areContentsTheSame(mMusicList.get(oldPositions[i]), musicList.get(i))) {
+                notifyItemChanged(i);
+            }
+        }
+
+        return true;
+    }
+
+    // Music.equals() only compares the id
+    private static boolean areContentsTheSame(Music oldMusic, Music newMusic) {
+        return Objects.equal(oldMusic.getTitle(), newMusic.getTitle())
+                && Objects.equal(oldMusic.getArtist(), newMusic.getArtist())
+                && Objects.equal(oldMusic.getAlbum(), newMusic.getAlbum());
+    }
+
+    private static boolean[] longestIncreasingSubsequence(int[] values) {
+        int length = 0;
+        int[] tailIndex = new int[values.length];
+        int[] previous = new int[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tailIndex[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            previous[i] = low > 0 ? tailIndex[low - 1] : -1;
+            tailIndex[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] result = new boolean[values.length];
+        for (int i = length > 0 ? tailIndex[length - 1] : -1; i >= 0; i = previous[i]) {
+            result[i] = true;
+        }
+
+        return result;
+    }
+
     public void setOnItemClickListener(ItemClickHelper.OnItemClickListener listener) {
         mItemClickHelper.setOnItemClickListener(listener);
     }
@@ -271,7 +391,8 @@ public class MusicListAdapter extends RecyclerView.Adapter<MusicListAdapter.View
 
         @Override
         public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
-            return areItemsTheSame(oldItemPosition, newItemPosition);
+            return MusicListAdapter.areContentsTheSame(mOldMusicList.get(oldItemPosition),
+                    mNewMusicList.get(newItemPosition));
         }
     }
 }
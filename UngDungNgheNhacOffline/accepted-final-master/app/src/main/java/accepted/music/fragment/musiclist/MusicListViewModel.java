@@ -14,6 +14,7 @@ import io.reactivex.schedulers.Schedulers;
 import accepted.music.store.Music;
 import accepted.music.store.MusicList;
 import accepted.music.store.MusicStore;
+import accepted.music.store.SortJob;
 
 public class MusicListViewModel extends BaseMusicListViewModel {
     @Nullable
@@ -75,15 +76,22 @@ public class MusicListViewModel extends BaseMusicListViewModel {
 
     }
 
+    @Nullable
     @Override
-    protected void onSortMusicList(@NonNull MusicList.SortOrder sortOrder) {
+    protected SortJob onSortMusicList(@NonNull MusicList.SortOrder sortOrder) {
         Preconditions.checkNotNull(sortOrder);
 
         if (mMusicList == null) {
-            return;
+            return null;
         }
 
-        MusicStore.getInstance().sort(mMusicList, sortOrder, () -> notifyMusicItemsChanged(mMusicList.getMusicElements()));
+        return MusicStore.getInstance().sort(mMusicList, sortOrder, new SortProgressCallback() {
+            @Override
+            public void onSortFinished() {
+                super.onSortFinished();
+                notifyMusicItemsChanged(mMusicList.getMusicElements());
+            }
+        });
     }
 
     @NonNull
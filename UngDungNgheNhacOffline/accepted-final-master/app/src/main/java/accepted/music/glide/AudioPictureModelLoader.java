@@ -1,7 +1,6 @@
 package accepted.music.glide;
 
 import android.content.Context;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
@@ -15,11 +14,18 @@ import com.bumptech.glide.load.model.ModelLoader;
 import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
 import com.bumptech.glide.signature.ObjectKey;
+import com.bumptech.glide.util.ByteBufferUtil;
 import com.google.common.base.Preconditions;
 
 import java.io.File;
 import java.nio.ByteBuffer;
 
+import accepted.player.artwork.ArtworkService;
+
+/**
+ * Loads the artwork of local music through the {@link ArtworkService}, which decodes the embedded
+ * picture once and shares it with the notification of the player.
+ */
 public class AudioPictureModelLoader implements ModelLoader<String, ByteBuffer> {
     private final Context mContext;
 
@@ -31,8 +37,9 @@ public class AudioPictureModelLoader implements ModelLoader<String, ByteBuffer>
     @Nullable
     @Override
     public LoadData<ByteBuffer> buildLoadData(@NonNull String model, int width, int height, @NonNull Options options) {
-        ObjectKey key = new ObjectKey(model);
-        DataFetcher<ByteBuffer> fetcher = new AudioPictureDataFeather(mContext, model);
+        ArtworkService.Size size = ArtworkService.Size.of(width, height);
+        ObjectKey key = new ObjectKey(model + "@" + size.name());
+        DataFetcher<ByteBuffer> fetcher = new AudioPictureDataFeather(mContext, model, size);
 
         return new ModelLoader.LoadData<>(key, fetcher);
     }
@@ -51,27 +58,27 @@ public class AudioPictureModelLoader implements ModelLoader<String, ByteBuffer>
     public static class AudioPictureDataFeather implements DataFetcher<ByteBuffer> {
         private final Context mContext;
         private final String mPath;
-        private final MediaMetadataRetriever mMediaMetadataRetriever;
+        private final ArtworkService.Size mSize;
 
-        public AudioPictureDataFeather(@NonNull Context context, @NonNull String path) {
+        public AudioPictureDataFeather(@NonNull Context context, @NonNull String path, @NonNull ArtworkService.Size size) {
             Preconditions.checkNotNull(context);
             Preconditions.checkNotNull(path);
+            Preconditions.checkNotNull(size);
 
             mContext = context.getApplicationContext();
             mPath = path;
-            mMediaMetadataRetriever = new MediaMetadataRetriever();
+            mSize = size;
         }
 
         @Override
         public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super ByteBuffer> callback) {
             try {
-                mMediaMetadataRetriever.setDataSource(mContext, Uri.parse(mPath));
-                byte[] data = mMediaMetadataRetriever.getEmbeddedPicture();
-                if (data == null) {
+                File file = ArtworkService.getInstance(mContext).loadFile(mPath, null, mSize);
+                if (file == null) {
                     callback.onLoadFailed(new Exception("not find embedded picture."));
                     return;
                 }
-                callback.onDataReady(ByteBuffer.wrap(data));
+                callback.onDataReady(ByteBufferUtil.fromFile(file));
             } catch (Exception e) {
                 callback.onLoadFailed(e);
             }
@@ -80,7 +87,7 @@ public class AudioPictureModelLoader implements ModelLoader<String, ByteBuffer>
 
         @Override
         public void cleanup() {
-            mMediaMetadataRetriever.release();
+            // ignore
         }
 
         @Override
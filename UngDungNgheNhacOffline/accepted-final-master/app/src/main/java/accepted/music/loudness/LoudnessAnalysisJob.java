@@ -0,0 +1,81 @@
+package accepted.music.loudness;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+
+/**
+ * Analyzes the loudness of every music that has not been analyzed yet, one at a time on a
+ * lowest-priority thread.
+ * <p>
+ * Each result is stored as soon as it is known, so the job resumes where it stopped the next time
+ * it is started, e.g. after the process was killed.
+ */
+public final class LoudnessAnalysisJob {
+    private static final String TAG = "LoudnessAnalysisJob";
+    private static final int BATCH_SIZE = 20;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                runnable.run();
+            }, TAG));
+    private static final AtomicBoolean PENDING = new AtomicBoolean(false);
+
+    private LoudnessAnalysisJob() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Starts the job unless one is already waiting to run. Music added while the job runs is
+     * picked up by the running job.
+     */
+    public static void start(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        Context applicationContext = context.getApplicationContext();
+        if (PENDING.compareAndSet(false, true)) {
+            EXECUTOR.execute(() -> {
+                PENDING.set(false);
+                run(applicationContext);
+            });
+        }
+    }
+
+    private static void run(Context context) {
+        MusicStore musicStore = MusicStore.getInstance();
+
+        List<Music> batch = musicStore.getLoudnessPendingMusic(BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            for (Music music : batch) {
+                analyze(context, musicStore, music);
+            }
+            batch = musicStore.getLoudnessPendingMusic(BATCH_SIZE);
+        }
+    }
+
+    private static void analyze(Context context, MusicStore musicStore, Music music) {
+        try {
+            LoudnessAnalyzer.Result result = LoudnessAnalyzer.analyze(context, Uri.parse(music.getUri()));
+            musicStore.updateLoudness(music.getId(), result.getLoudness(), result.getPeak());
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "analyze failed: " + music.getUri(), e);
+            // not retried, playback just goes without normalization
+            musicStore.updateLoudness(music.getId(), Float.NaN, 0);
+        }
+    }
+}
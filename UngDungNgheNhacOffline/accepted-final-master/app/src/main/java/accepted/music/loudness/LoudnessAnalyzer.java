@@ -0,0 +1,64 @@
+package accepted.music.loudness;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+
+import accepted.music.util.PcmDecoder;
+
+/**
+ * Decodes an audio file with {@link PcmDecoder} and feeds it to a {@link LoudnessMeter}.
+ */
+public final class LoudnessAnalyzer {
+    private LoudnessAnalyzer() {
+        throw new AssertionError();
+    }
+
+    @NonNull
+    public static Result analyze(@NonNull Context context, @NonNull Uri uri) throws IOException {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(uri);
+
+        final LoudnessMeter[] meter = new LoudnessMeter[1];
+        PcmDecoder.decode(context, uri, new PcmDecoder.Callback() {
+            @Override
+            public void onFormatChanged(int sampleRate, int channelCount) {
+                meter[0] = new LoudnessMeter(sampleRate, channelCount);
+            }
+
+            @Override
+            public boolean onPcm(@NonNull short[] pcm, int frameCount) {
+                meter[0].process(pcm, 0, frameCount);
+                return true;
+            }
+        });
+
+        return new Result((float) meter[0].getIntegratedLoudness(), meter[0].getPeak());
+    }
+
+    public static final class Result {
+        private final float mLoudness;
+        private final float mPeak;
+
+        Result(float loudness, float peak) {
+            mLoudness = loudness;
+            mPeak = peak;
+        }
+
+        /**
+         * The integrated loudness in LUFS, negative infinity for silence.
+         */
+        public float getLoudness() {
+            return mLoudness;
+        }
+
+        public float getPeak() {
+            return mPeak;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package accepted.music.loudness;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Integrated loudness (ITU-R BS.1770-4, in LUFS) and sample peak of interleaved PCM audio.
+ * <p>
+ * Pure Java and allocation free per buffer, feed it with {@link #process(short[], int, int)} or
+ * {@link #process(float[], int, int)} as the audio is decoded, then read the result.
+ */
+public final class LoudnessMeter {
+    private static final double ABSOLUTE_GATE = -70.0;
+    private static final double RELATIVE_GATE = -10.0;
+    private static final double LOUDNESS_OFFSET = -0.691;
+    private static final int SUB_BLOCKS_PER_BLOCK = 4;      // 400ms gating blocks, 75% overlap
+
+    private final int mChannelCount;
+    private final int mSubBlockFrames;
+    private final double[] mChannelWeight;
+
+    // K-weighting: a high shelf followed by a high pass, both as transposed direct form II biquads
+    private final double mShelfB0, mShelfB1, mShelfB2, mShelfA1, mShelfA2;
+    private final double mPassB0, mPassB1, mPassB2, mPassA1, mPassA2;
+    private final double[] mShelfZ1, mShelfZ2, mPassZ1, mPassZ2;
+
+    private final double[] mChannelSum;
+    private int mSubBlockFrameCount;
+
+    private final double[] mRecentSubBlocks = new double[SUB_BLOCKS_PER_BLOCK];
+    private int mSubBlockCount;
+
+    private double[] mBlockPower = new double[256];
+    private int mBlockCount;
+
+    private float mPeak;
+
+    public LoudnessMeter(int sampleRate, int channelCount) {
+        Preconditions.checkArgument(sampleRate > 0, "sampleRate must > 0");
+        Preconditions.checkArgument(channelCount > 0, "channelCount must > 0");
+
+        mChannelCount = channelCount;
+        mSubBlockFrames = Math.max(1, sampleRate / 10);
+        mChannelWeight = channelWeight(channelCount);
+
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10.0, 3.999843853973347 / 20.0);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1.0 + k / q + k * k;
+        mShelfB0 = (vh + vb * k / q + k * k) / a0;
+        mShelfB1 = 2.0 * (k * k - vh) / a0;
+        mShelfB2 = (vh - vb * k / q + k * k) / a0;
+        mShelfA1 = 2.0 * (k * k - 1.0) / a0;
+        mShelfA2 = (1.0 - k / q + k * k) / a0;
+
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1.0 + k / q + k * k;
+        mPassB0 = 1.0;
+        mPassB1 = -2.0;
+        mPassB2 = 1.0;
+        mPassA1 = 2.0 * (k * k - 1.0) / a0;
+        mPassA2 = (1.0 - k / q + k * k) / a0;
+
+        mShelfZ1 = new double[channelCount];
+        mShelfZ2 = new double[channelCount];
+        mPassZ1 = new double[channelCount];
+        mPassZ2 = new double[channelCount];
+        mChannelSum = new double[channelCount];
+    }
+
+    private static double[] channelWeight(int channelCount) {
+        double[] weight = new double[channelCount];
+        Arrays.fill(weight, 1.0);
+
+        // 5.1: L, R, C, LFE, Ls, Rs
+        if (channelCount == 6) {
+            weight[3] = 0.0;
+            weight[4] = 1.41;
+            weight[5] = 1.41;
+        }
+
+        return weight;
+    }
+
+    /**
+     * @param pcm        interleaved 16 bit samples.
+     * @param offset     the offset of the first sample.
+     * @param frameCount the number of frames, a frame has one sample per channel.
+     */
+    public void process(short[] pcm, int offset, int frameCount) {
+        Preconditions.checkPositionIndexes(offset, offset + frameCount * mChannelCount, pcm.length);
+
+        int index = offset;
+        for (int frame = 0; frame < frameCount; frame++) {
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                filter(channel, pcm[index++] / 32768.0F);
+            }
+            onFrameFiltered();
+        }
+    }
+
+    /**
+     * @param pcm        interleaved samples in [-1, 1].
+     * @param offset     the offset of the first sample.
+     * @param frameCount the number of frames, a frame has one sample per channel.
+     */
+    public void process(float[] pcm, int offset, int frameCount) {
+        Preconditions.checkPositionIndexes(offset, offset + frameCount * mChannelCount, pcm.length);
+
+        int index = offset;
+        for (int frame = 0; frame < frameCount; frame++) {
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                filter(channel, pcm[index++]);
+            }
+            onFrameFiltered();
+        }
+    }
+
+    private void filter(int channel, float sample) {
+        float abs = Math.abs(sample);
+        if (abs > mPeak) {
+            mPeak = abs;
+        }
+
+        double y = mShelfB0 * sample + mShelfZ1[channel];
+        mShelfZ1[channel] = mShelfB1 * sample - mShelfA1 * y + mShelfZ2[channel];
+        mShelfZ2[channel] = mShelfB2 * sample - mShelfA2 * y;
+
+        double z = mPassB0 * y + mPassZ1[channel];
+        mPassZ1[channel] = mPassB1 * y - mPassA1 * z + mPassZ2[channel];
+        mPassZ2[channel] = mPassB2 * y - mPassA2 * z;
+
+        mChannelSum[channel] += z * z;
+    }
+
+    private void onFrameFiltered() {
+        mSubBlockFrameCount++;
+        if (mSubBlockFrameCount < mSubBlockFrames) {
+            return;
+        }
+
+        double power = 0;
+        for (int channel = 0; channel < mChannelCount; channel++) {
+            power += mChannelWeight[channel] * mChannelSum[channel] / mSubBlockFrames;
+            mChannelSum[channel] = 0;
+        }
+        mSubBlockFrameCount = 0;
+
+        mRecentSubBlocks[mSubBlockCount % SUB_BLOCKS_PER_BLOCK] = power;
+        mSubBlockCount++;
+
+        if (mSubBlockCount >= SUB_BLOCKS_PER_BLOCK) {
+            double blockPower = 0;
+            for (double subBlock : mRecentSubBlocks) {
+                blockPower += subBlock;
+            }
+            appendBlock(blockPower / SUB_BLOCKS_PER_BLOCK);
+        }
+    }
+
+    private void appendBlock(double power) {
+        if (mBlockCount == mBlockPower.length) {
+            mBlockPower = Arrays.copyOf(mBlockPower, mBlockCount * 2);
+        }
+        mBlockPower[mBlockCount++] = power;
+    }
+
+    /**
+     * @return the integrated loudness in LUFS, {@link Double#NEGATIVE_INFINITY} if the audio is
+     * silent or shorter than one gating block.
+     */
+    public double getIntegratedLoudness() {
+        double absoluteThreshold = toPower(ABSOLUTE_GATE);
+
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < mBlockCount; i++) {
+            if (mBlockPower[i] > absoluteThreshold) {
+                sum += mBlockPower[i];
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        double relativeThreshold = toPower(toLoudness(sum / count) + RELATIVE_GATE);
+        double gateThreshold = Math.max(absoluteThreshold, relativeThreshold);
+
+        sum = 0;
+        count = 0;
+        for (int i = 0; i < mBlockCount; i++) {
+            if (mBlockPower[i] > gateThreshold) {
+                sum += mBlockPower[i];
+                count++;
+            }
+        }
+
+        return count == 0 ? Double.NEGATIVE_INFINITY : toLoudness(sum / count);
+    }
+
+    /**
+     * @return the sample peak, 1.0 is full scale.
+     */
+    public float getPeak() {
+        return mPeak;
+    }
+
+    private static double toLoudness(double power) {
+        return LOUDNESS_OFFSET + 10.0 * Math.log10(power);
+    }
+
+    private static double toPower(double loudness) {
+        return Math.pow(10.0, (loudness - LOUDNESS_OFFSET) / 10.0);
+    }
+}
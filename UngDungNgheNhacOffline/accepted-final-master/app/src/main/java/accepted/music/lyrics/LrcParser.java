@@ -0,0 +1,243 @@
+package accepted.music.lyrics;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses lyrics in the LRC format, or plain text lyrics that have no time tags.
+ * <ul>
+ *     <li>A line may have several time tags, e.g. {@code [00:12.00][01:30.50]Chorus}, the text
+ *     is shared by the lines of every tag.</li>
+ *     <li>{@code [offset:+/-ms]} shifts every line, a positive offset shows the lines sooner.</li>
+ *     <li>Metadata tags such as {@code [ar:Artist]} are ignored, and so are the word times of the
+ *     enhanced format, e.g. {@code <00:12.50>}.</li>
+ * </ul>
+ * The text is scanned once without regular expressions; the lines are sorted as packed longs
+ * so that a file of many thousand lines is parsed with a handful of allocations per line.
+ */
+public final class LrcParser {
+    private static final int MAX_MINUTES = Integer.MAX_VALUE / 60_000;
+
+    private LrcParser() {
+        throw new AssertionError();
+    }
+
+    @NonNull
+    public static Lyrics parse(@NonNull String text) {
+        Preconditions.checkNotNull(text);
+
+        List<String> syncedLines = new ArrayList<>();
+        List<String> plainLines = new ArrayList<>();
+        // the time in the high 32 bits and the index of the text in the low 32 bits
+        long[] entries = new long[64];
+        int entryCount = 0;
+        long offset = 0;
+
+        int length = text.length();
+        int start = length > 0 && text.charAt(0) == '\uFEFF' ? 1 : 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end += 1;
+            }
+
+            int position = skipWhitespace(text, start, end);
+            int timeCount = 0;
+            boolean metadata = false;
+            while (position < end && text.charAt(position) == '[') {
+                int close = indexOf(text, ']', position, end);
+                if (close < 0) {
+                    break;
+                }
+
+                int time = parseTime(text, position + 1, close);
+                if (time >= 0) {
+                    if (entryCount == entries.length) {
+                        entries = Arrays.copyOf(entries, entryCount * 2);
+                    }
+                    entries[entryCount++] = ((long) time << 32) | syncedLines.size();
+                    timeCount += 1;
+                } else if (isMetadata(text, position + 1, close)) {
+                    if (text.regionMatches(true, position + 1, "offset:", 0, 7)) {
+                        offset = parseOffset(text, position + 8, close, offset);
+                    }
+                    metadata = true;
+                } else {
+                    // e.g. "[Chorus]" in plain text lyrics
+                    break;
+                }
+                position = skipWhitespace(text, close + 1, end);
+            }
+
+            if (timeCount > 0) {
+                syncedLines.add(stripWordTimes(text, position, end));
+            } else if (!metadata) {
+                String line = stripWordTimes(text, position, end);
+                if (!line.isEmpty()) {
+                    plainLines.add(line);
+                }
+            }
+
+            start = end + 1;
+            if (end + 1 < length && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') {
+                start += 1;
+            }
+        }
+
+        if (entryCount == 0) {
+            if (plainLines.isEmpty()) {
+                return Lyrics.EMPTY;
+            }
+            return new Lyrics(new int[plainLines.size()], plainLines.toArray(new String[0]), false);
+        }
+
+        // sorted by time, then by the order in the file
+        Arrays.sort(entries, 0, entryCount);
+
+        int[] times = new int[entryCount];
+        String[] lines = new String[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            long time = (entries[i] >>> 32) - offset;
+            times[i] = (int) Math.max(0, Math.min(Integer.MAX_VALUE, time));
+            lines[i] = syncedLines.get((int) entries[i]);
+        }
+
+        return new Lyrics(times, lines, true);
+    }
+
+    /**
+     * Parses a time of the form mm:ss, mm:ss.x, mm:ss.xx or mm:ss.xxx, the separator of the
+     * fraction may also be a colon.
+     *
+     * @return the time in milliseconds, or -1 if it is not a time.
+     */
+    static int parseTime(CharSequence text, int start, int end) {
+        int position = start;
+
+        int minutes = 0;
+        while (position < end && isDigit(text.charAt(position))) {
+            minutes = minutes * 10 + (text.charAt(position) - '0');
+            if (minutes > MAX_MINUTES) {
+                return -1;
+            }
+            position += 1;
+        }
+        if (position == start || position >= end || text.charAt(position) != ':') {
+            return -1;
+        }
+        position += 1;
+
+        int secondsStart = position;
+        int seconds = 0;
+        while (position < end && position - secondsStart < 2 && isDigit(text.charAt(position))) {
+            seconds = seconds * 10 + (text.charAt(position) - '0');
+            position += 1;
+        }
+        if (position == secondsStart || seconds >= 60) {
+            return -1;
+        }
+
+        int millis = 0;
+        if (position < end) {
+            char separator = text.charAt(position);
+            if (separator != '.' && separator != ':') {
+                return -1;
+            }
+            position += 1;
+
+            int fractionStart = position;
+            int scale = 100;
+            while (position < end && isDigit(text.charAt(position))) {
+                // digits after the milliseconds are ignored
+                millis += (text.charAt(position) - '0') * scale;
+                scale /= 10;
+                position += 1;
+            }
+            if (position == fractionStart || position != end) {
+                return -1;
+            }
+        }
+
+        long time = minutes * 60_000L + seconds * 1000L + millis;
+        return time > Integer.MAX_VALUE ? -1 : (int) time;
+    }
+
+    // a "key:value" tag, the key is made of letters
+    private static boolean isMetadata(String text, int start, int end) {
+        int position = start;
+        while (position < end && Character.isLetter(text.charAt(position))) {
+            position += 1;
+        }
+        return position > start && position < end && text.charAt(position) == ':';
+    }
+
+    private static long parseOffset(String text, int start, int end, long defaultOffset) {
+        int position = skipWhitespace(text, start, end);
+        boolean negative = false;
+        if (position < end && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+            negative = text.charAt(position) == '-';
+            position += 1;
+        }
+
+        int digitsStart = position;
+        long offset = 0;
+        while (position < end && isDigit(text.charAt(position)) && position - digitsStart < 9) {
+            offset = offset * 10 + (text.charAt(position) - '0');
+            position += 1;
+        }
+        if (position == digitsStart || skipWhitespace(text, position, end) != end) {
+            return defaultOffset;
+        }
+
+        return negative ? -offset : offset;
+    }
+
+    private static String stripWordTimes(String text, int start, int end) {
+        if (indexOf(text, '<', start, end) < 0) {
+            return text.substring(start, end).trim();
+        }
+
+        StringBuilder builder = new StringBuilder(end - start);
+        int position = start;
+        while (position < end) {
+            char c = text.charAt(position);
+            if (c == '<') {
+                int close = indexOf(text, '>', position, end);
+                if (close > 0 && parseTime(text, position + 1, close) >= 0) {
+                    position = close + 1;
+                    continue;
+                }
+            }
+            builder.append(c);
+            position += 1;
+        }
+        return builder.toString().trim();
+    }
+
+    // unlike String.indexOf() the search stops at the end of the line
+    private static int indexOf(String text, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String text, int start, int end) {
+        int position = start;
+        while (position < end && Character.isWhitespace(text.charAt(position))) {
+            position += 1;
+        }
+        return position;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,96 @@
+package accepted.music.lyrics;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The lines of the lyrics of a song, sorted by their start time in milliseconds.
+ * <p>
+ * The times are kept in a primitive array so that the line at a progress is found by a binary
+ * search without allocating. Lyrics that have no time are not synced, and no line is current.
+ */
+public final class Lyrics {
+    public static final Lyrics EMPTY = new Lyrics(new int[0], new String[0], false);
+
+    private final int[] mTimes;
+    private final String[] mLines;
+    private final boolean mSynced;
+
+    Lyrics(@NonNull int[] times, @NonNull String[] lines, boolean synced) {
+        Preconditions.checkNotNull(times);
+        Preconditions.checkNotNull(lines);
+        Preconditions.checkArgument(times.length == lines.length);
+
+        mTimes = times;
+        mLines = lines;
+        mSynced = synced;
+    }
+
+    public boolean isSynced() {
+        return mSynced;
+    }
+
+    public boolean isEmpty() {
+        return mLines.length == 0;
+    }
+
+    public int size() {
+        return mLines.length;
+    }
+
+    /**
+     * The start time of the line in milliseconds, 0 if the lyrics are not synced.
+     */
+    public int getTime(int index) {
+        return mTimes[index];
+    }
+
+    @NonNull
+    public String getLine(int index) {
+        return mLines[index];
+    }
+
+    /**
+     * Finds the current line at the progress.
+     *
+     * @param progress the play progress in milliseconds.
+     * @return the index of the last line that starts at or before the progress, or -1 if there is
+     * none, or if the lyrics are not synced.
+     */
+    public int indexAt(long progress) {
+        if (!mSynced) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = mTimes.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (mTimes[middle] <= progress) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Whether the line at the index is still the current line at the progress, a check that is
+     * cheaper than {@link #indexAt(long)}.
+     */
+    boolean isCurrent(int index, long progress) {
+        if (!mSynced) {
+            return index == -1;
+        }
+
+        if (index < -1 || index >= mTimes.length) {
+            return false;
+        }
+
+        boolean started = index == -1 || mTimes[index] <= progress;
+        boolean ended = index + 1 < mTimes.length && mTimes[index + 1] <= progress;
+        return started && !ended;
+    }
+}
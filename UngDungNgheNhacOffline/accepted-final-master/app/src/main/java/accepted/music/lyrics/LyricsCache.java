@@ -0,0 +1,163 @@
+package accepted.music.lyrics;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Keeps parsed {@link Lyrics} on disk, one small binary file per song, so that the lyrics are
+ * parsed only the first time the song is played. Songs without lyrics are cached too, as
+ * {@link Lyrics#EMPTY}, so that their tags are not read again.
+ * <p>
+ * The key is the {@link accepted.music.duplicate.SampledHash content hash} of the file: a file
+ * whose tags are edited gets a new hash, and the stale entry is never read again. The loader adds
+ * the state of the ".lrc" file beside a local song to the key.
+ */
+public final class LyricsCache {
+    private static final int MAGIC = 0x4C525943;    // "LRYC"
+    private static final int VERSION = 1;
+    // the lines are written with writeUTF(), longer lines are cut
+    private static final int MAX_LINE_LENGTH = 16 * 1024;
+
+    private final File mDir;
+
+    public LyricsCache(@NonNull File dir) {
+        Preconditions.checkNotNull(dir);
+        mDir = dir;
+    }
+
+    /**
+     * @return null if the lyrics of the key are not cached, or the entry cannot be read.
+     */
+    @WorkerThread
+    @Nullable
+    public Lyrics get(@NonNull String key) {
+        Preconditions.checkNotNull(key);
+
+        File file = getFile(key);
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return read(input);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            // a corrupted entry is parsed again
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    @WorkerThread
+    public void put(@NonNull String key, @NonNull Lyrics lyrics) throws IOException {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(lyrics);
+
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("can not create the directory: " + mDir);
+        }
+
+        File file = getFile(key);
+        File temp = new File(mDir, file.getName() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            write(output, lyrics);
+        } finally {
+            output.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("can not rename: " + temp);
+        }
+    }
+
+    static void write(DataOutputStream output, Lyrics lyrics) throws IOException {
+        int size = lyrics.size();
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeBoolean(lyrics.isSynced());
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            output.writeInt(lyrics.getTime(i));
+        }
+        for (int i = 0; i < size; i++) {
+            String line = lyrics.getLine(i);
+            output.writeUTF(line.length() > MAX_LINE_LENGTH ? line.substring(0, MAX_LINE_LENGTH) : line);
+        }
+    }
+
+    static Lyrics read(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("not a lyrics cache entry");
+        }
+
+        boolean synced = input.readBoolean();
+        int size = input.readInt();
+        if (size < 0) {
+            throw new IOException("corrupted lyrics cache entry");
+        }
+        if (size == 0) {
+            return Lyrics.EMPTY;
+        }
+
+        int[] times = new int[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = input.readInt();
+            if (i > 0 && times[i] < times[i - 1]) {
+                throw new IOException("corrupted lyrics cache entry");
+            }
+        }
+
+        String[] lines = new String[size];
+        for (int i = 0; i < size; i++) {
+            lines[i] = input.readUTF();
+        }
+
+        if (input.read() != -1) {
+            throw new IOException("corrupted lyrics cache entry");
+        }
+
+        return new Lyrics(times, lines, synced);
+    }
+
+    private File getFile(String key) {
+        // the content hash is hex, anything else is escaped to a safe file name
+        StringBuilder name = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                name.append(c);
+            } else {
+                name.append('_').append(Integer.toHexString(c | 0x10000).substring(1));
+            }
+        }
+        return new File(mDir, name.toString());
+    }
+
+    private static void closeQuietly(DataInputStream input) {
+        if (input == null) {
+            return;
+        }
+
+        try {
+            input.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package accepted.music.lyrics;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Follows the current line of the {@link Lyrics} on a play progress that is extrapolated from
+ * the last known progress, the time it was updated and the speed, like
+ * {@link accepted.player.util.ProgressClock} does.
+ * <p>
+ * {@link #update(long)} does not allocate: the current line is checked first, and only a seek or
+ * a skipped line costs a binary search. The times are the ones of
+ * {@link android.os.SystemClock#elapsedRealtime()}, passed in so that the cursor can be tested.
+ */
+public final class LyricsCursor {
+    public static final long NO_CHANGE = -1;
+
+    private Lyrics mLyrics = Lyrics.EMPTY;
+    private long mProgress;
+    private long mUpdateTime;
+    private float mSpeed = 1.0F;
+    private boolean mRunning;
+    private int mIndex = -1;
+
+    public void setLyrics(@NonNull Lyrics lyrics) {
+        Preconditions.checkNotNull(lyrics);
+        mLyrics = lyrics;
+        mIndex = -1;
+    }
+
+    @NonNull
+    public Lyrics getLyrics() {
+        return mLyrics;
+    }
+
+    /**
+     * Re-anchors the progress, e.g. when the playback starts, pauses or completes a seek.
+     *
+     * @param progress   the play progress in milliseconds at the update time.
+     * @param updateTime the time the progress was updated.
+     * @param running    whether the progress advances, false if paused or stalled.
+     */
+    public void sync(long progress, long updateTime, float speed, boolean running) {
+        mProgress = progress;
+        mUpdateTime = updateTime;
+        mSpeed = speed;
+        mRunning = running && speed > 0;
+    }
+
+    /**
+     * Changes the speed from now on, the progress reached so far is kept.
+     */
+    public void setSpeed(float speed, long now) {
+        mProgress = getProgress(now);
+        mUpdateTime = now;
+        mSpeed = speed;
+        mRunning = mRunning && speed > 0;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    public long getProgress(long now) {
+        if (!mRunning) {
+            return mProgress;
+        }
+        return mProgress + (long) ((now - mUpdateTime) * mSpeed);
+    }
+
+    /**
+     * Moves to the current line at the time.
+     *
+     * @return the index of the current line, -1 if there is none.
+     */
+    public int update(long now) {
+        long progress = getProgress(now);
+        if (!mLyrics.isCurrent(mIndex, progress)) {
+            int next = mIndex + 1;
+            mIndex = mLyrics.isCurrent(next, progress) ? next : mLyrics.indexAt(progress);
+        }
+        return mIndex;
+    }
+
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * The time the line after the current one starts, at which {@link #update(long)} should be
+     * called again.
+     *
+     * @return {@link #NO_CHANGE} if the progress does not advance or there is no next line.
+     */
+    public long getNextChangeTime(long now) {
+        int next = mIndex + 1;
+        if (!mRunning || !mLyrics.isSynced() || next >= mLyrics.size()) {
+            return NO_CHANGE;
+        }
+
+        long remaining = Math.max(0, mLyrics.getTime(next) - getProgress(now));
+        return now + (long) Math.ceil(remaining / mSpeed);
+    }
+}
@@ -0,0 +1,176 @@
+package accepted.music.lyrics;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import accepted.music.duplicate.SampledHash;
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+import accepted.music.tag.AudioTag;
+import accepted.music.tag.TagReader;
+import accepted.music.util.MusicUtil;
+import accepted.player.audio.MusicItem;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Loads the lyrics of a song from the {@link LyricsCache}, or else from the lyrics embedded in
+ * its tags, or else from a ".lrc" file next to it when the song is a local file.
+ */
+public final class LyricsLoader {
+    private static final String TAG = "LyricsLoader";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // a larger file is not lyrics
+    private static final long MAX_LRC_FILE_SIZE = 1024 * 1024;
+
+    private final Context mContext;
+    private final LyricsCache mCache;
+
+    public LyricsLoader(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        mContext = context.getApplicationContext();
+        mCache = new LyricsCache(new File(mContext.getCacheDir(), "lyrics"));
+    }
+
+    /**
+     * Loads the lyrics on the io scheduler, emits {@link Lyrics#EMPTY} if the song has none.
+     */
+    @NonNull
+    public Single<Lyrics> load(@NonNull MusicItem musicItem) {
+        Preconditions.checkNotNull(musicItem);
+
+        return Single.fromCallable(() -> loadSync(musicItem))
+                .subscribeOn(Schedulers.io());
+    }
+
+    @WorkerThread
+    @NonNull
+    Lyrics loadSync(@NonNull MusicItem musicItem) {
+        Uri uri = Uri.parse(musicItem.getUri());
+        File lrcFile = getLrcFile(uri);
+
+        // the hash recorded by the scan saves opening the file when the lyrics are cached
+        Music music = MusicStore.getInstance().getMusic(MusicUtil.getId(musicItem));
+        String contentHash = music == null ? null : music.getContentHash();
+        if (contentHash != null) {
+            Lyrics lyrics = mCache.get(getCacheKey(contentHash, lrcFile));
+            if (lyrics != null) {
+                return lyrics;
+            }
+        }
+
+        ParcelFileDescriptor descriptor = null;
+        FileInputStream inputStream = null;
+        try {
+            descriptor = mContext.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return Lyrics.EMPTY;
+            }
+
+            inputStream = new FileInputStream(descriptor.getFileDescriptor());
+            FileChannel channel = inputStream.getChannel();
+
+            if (contentHash == null) {
+                contentHash = SampledHash.compute(channel);
+                Lyrics lyrics = mCache.get(getCacheKey(contentHash, lrcFile));
+                if (lyrics != null) {
+                    return lyrics;
+                }
+            }
+
+            AudioTag tag = TagReader.read(channel);
+            String text = tag == null ? null : tag.getLyrics();
+            if (text == null && lrcFile != null) {
+                text = readLrcFile(lrcFile);
+            }
+
+            Lyrics lyrics = text == null ? Lyrics.EMPTY : LrcParser.parse(text);
+            putQuietly(getCacheKey(contentHash, lrcFile), lyrics);
+            return lyrics;
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            return Lyrics.EMPTY;
+        } finally {
+            closeQuietly(inputStream, descriptor);
+        }
+    }
+
+    /**
+     * Returns the ".lrc" file beside the song, whether it exists or not, or null if the song is
+     * not a local file: only a "file" uri has a path to look beside, a content uri does not grant
+     * access to it.
+     */
+    @Nullable
+    private static File getLrcFile(Uri uri) {
+        if (!ContentResolver.SCHEME_FILE.equals(uri.getScheme()) || uri.getPath() == null) {
+            return null;
+        }
+
+        File file = new File(uri.getPath());
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(file.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".lrc");
+    }
+
+    /**
+     * The lyrics of a song that may have a ".lrc" file beside it also depend on that file, so an
+     * added or edited ".lrc" file, e.g. beside a song cached without lyrics, gets a new entry.
+     */
+    private static String getCacheKey(String contentHash, @Nullable File lrcFile) {
+        if (lrcFile == null) {
+            return contentHash;
+        }
+        // both are 0 if the file does not exist
+        return contentHash + "-" + lrcFile.length() + "-" + lrcFile.lastModified();
+    }
+
+    @Nullable
+    private static String readLrcFile(File lrcFile) {
+        if (!lrcFile.isFile() || lrcFile.length() > MAX_LRC_FILE_SIZE) {
+            return null;
+        }
+
+        try {
+            return Files.asCharSource(lrcFile, UTF_8).read();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void putQuietly(String contentHash, Lyrics lyrics) {
+        try {
+            mCache.put(contentHash, lyrics);
+        } catch (IOException e) {
+            Log.w(TAG, "can not cache the lyrics", e);
+        }
+    }
+
+    private static void closeQuietly(FileInputStream inputStream, ParcelFileDescriptor descriptor) {
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (descriptor != null) {
+                descriptor.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
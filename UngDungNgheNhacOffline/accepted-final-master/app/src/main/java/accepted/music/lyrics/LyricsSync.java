@@ -0,0 +1,162 @@
+package accepted.music.lyrics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Observer;
+
+import com.google.common.base.Preconditions;
+
+import accepted.player.Player;
+import accepted.player.PlayerClient;
+import accepted.player.lifecycle.PlayerViewModel;
+
+/**
+ * Keeps the current line of the lyrics in sync with the playback on the main thread.
+ * <p>
+ * A single task is posted for the time the next line starts, so a line changes on time and not
+ * on the next second of the {@link accepted.player.util.ProgressClock}. The ticks of the progress
+ * clock only check that the line is still current, which costs nothing; a seek, a stall or a
+ * change of the speed re-anchors the {@link LyricsCursor} at once.
+ */
+public final class LyricsSync {
+    private final PlayerViewModel mPlayerViewModel;
+    private final PlayerClient mPlayerClient;
+    private final OnLineChangeListener mOnLineChangeListener;
+
+    private final LyricsCursor mCursor;
+    private final Handler mHandler;
+    private final Runnable mUpdateTask;
+
+    private final Observer<Integer> mPlayProgressObserver;
+    private final PlayerClient.OnPlaybackStateChangeListener mPlaybackStateChangeListener;
+    private final Player.OnSeekCompleteListener mSeekCompleteListener;
+    private final Player.OnStalledChangeListener mStalledChangeListener;
+    private final Player.OnSpeedChangeListener mSpeedChangeListener;
+    private final Player.OnRepeatListener mRepeatListener;
+
+    private int mLineIndex = -1;
+    private boolean mReleased;
+
+    /**
+     * Starts to follow the playback of the player view model, which must be initialized.
+     */
+    public LyricsSync(@NonNull PlayerViewModel playerViewModel, @NonNull OnLineChangeListener listener) {
+        Preconditions.checkNotNull(playerViewModel);
+        Preconditions.checkNotNull(listener);
+
+        mPlayerViewModel = playerViewModel;
+        mPlayerClient = playerViewModel.getPlayerClient();
+        mOnLineChangeListener = listener;
+
+        mCursor = new LyricsCursor();
+        mHandler = new Handler(Looper.getMainLooper());
+        mUpdateTask = this::update;
+
+        mPlayProgressObserver = progressSec -> {
+            if (!mCursor.isRunning() && progressSec != null) {
+                // the progress of a paused player only changes when the seek bar is dragged
+                mCursor.sync(progressSec * 1000L, SystemClock.elapsedRealtime(), mPlayerClient.getSpeed(), false);
+            }
+            update();
+        };
+        mPlaybackStateChangeListener = (playbackState, stalled) -> resync();
+        mSeekCompleteListener = (progress, updateTime, stalled) -> {
+            mCursor.sync(progress, updateTime, mPlayerClient.getSpeed(), mPlayerClient.isPlaying() && !stalled);
+            update();
+        };
+        mStalledChangeListener = (stalled, playProgress, updateTime) -> {
+            mCursor.sync(playProgress, updateTime, mPlayerClient.getSpeed(), mPlayerClient.isPlaying() && !stalled);
+            update();
+        };
+        mSpeedChangeListener = speed -> {
+            mCursor.setSpeed(speed, SystemClock.elapsedRealtime());
+            update();
+        };
+        mRepeatListener = (musicItem, repeatTime) -> {
+            mCursor.sync(0, repeatTime, mPlayerClient.getSpeed(), true);
+            update();
+        };
+
+        mPlayerViewModel.getPlayProgress().observeForever(mPlayProgressObserver);
+        mPlayerClient.addOnPlaybackStateChangeListener(mPlaybackStateChangeListener);
+        mPlayerClient.addOnSeekCompleteListener(mSeekCompleteListener);
+        mPlayerClient.addOnStalledChangeListener(mStalledChangeListener);
+        mPlayerClient.addOnSpeedChangeListener(mSpeedChangeListener);
+        mPlayerClient.addOnRepeatListener(mRepeatListener);
+    }
+
+    /**
+     * Follows other lyrics, e.g. the ones of the next song.
+     */
+    public void setLyrics(@NonNull Lyrics lyrics) {
+        Preconditions.checkNotNull(lyrics);
+        if (mReleased) {
+            return;
+        }
+
+        mCursor.setLyrics(lyrics);
+        // notifies the listener of the new lyrics even if no line is current
+        mLineIndex = -2;
+        resync();
+    }
+
+    @NonNull
+    public Lyrics getLyrics() {
+        return mCursor.getLyrics();
+    }
+
+    public void release() {
+        if (mReleased) {
+            return;
+        }
+
+        mReleased = true;
+        mHandler.removeCallbacks(mUpdateTask);
+        mPlayerViewModel.getPlayProgress().removeObserver(mPlayProgressObserver);
+        mPlayerClient.removeOnPlaybackStateChangeListener(mPlaybackStateChangeListener);
+        mPlayerClient.removeOnSeekCompleteListener(mSeekCompleteListener);
+        mPlayerClient.removeOnStalledChangeListener(mStalledChangeListener);
+        mPlayerClient.removeOnSpeedChangeListener(mSpeedChangeListener);
+        mPlayerClient.removeOnRepeatListener(mRepeatListener);
+    }
+
+    private void resync() {
+        mCursor.sync(mPlayerClient.getPlayProgress(),
+                mPlayerClient.getPlayProgressUpdateTime(),
+                mPlayerClient.getSpeed(),
+                mPlayerClient.isPlaying() && !mPlayerClient.isStalled());
+        update();
+    }
+
+    private void update() {
+        if (mReleased) {
+            return;
+        }
+
+        mHandler.removeCallbacks(mUpdateTask);
+
+        long now = SystemClock.elapsedRealtime();
+        int index = mCursor.update(now);
+        if (index != mLineIndex) {
+            mLineIndex = index;
+            mOnLineChangeListener.onLineChanged(mCursor.getLyrics(), index);
+        }
+
+        long nextChangeTime = mCursor.getNextChangeTime(now);
+        if (nextChangeTime != LyricsCursor.NO_CHANGE) {
+            mHandler.postDelayed(mUpdateTask, nextChangeTime - now);
+        }
+    }
+
+    public interface OnLineChangeListener {
+        /**
+         * Called on the main thread when the current line changes.
+         *
+         * @param index the index of the current line, -1 if there is none.
+         */
+        void onLineChanged(@NonNull Lyrics lyrics, int index);
+    }
+}
@@ -0,0 +1,86 @@
+package accepted.music.scanner;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.MediaStore;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import media.helper.MediaStoreHelper;
+import accepted.music.store.Music;
+
+/**
+ * Reads the local audio of the MediaStore with a cursor, the tags are not read here, see
+ * {@link MusicTagDecoder}.
+ * <p>
+ * The artist and album are kept as they are in the MediaStore, e.g. "&lt;unknown&gt;", so that
+ * the decoder can still tell them apart from the ones in the tags.
+ */
+public final class MediaStoreMusicSource extends MediaStoreHelper.Decoder<Music>
+        implements ScanPipeline.Source<Music> {
+    private final Context mContext;
+    private final int mMinDuration;
+
+    @Nullable
+    private Cursor mCursor;
+
+    /**
+     * @param minDuration the music shorter than this is not read, in milliseconds.
+     */
+    public MediaStoreMusicSource(@NonNull Context context, int minDuration) {
+        Preconditions.checkNotNull(context);
+
+        mContext = context.getApplicationContext();
+        mMinDuration = minDuration;
+    }
+
+    @SuppressLint("InlinedApi")
+    @Override
+    public void open() {
+        mCursor = mContext.getContentResolver().query(
+                MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
+                null,
+                MediaStore.Audio.Media.DURATION + ">=?",
+                new String[]{String.valueOf(mMinDuration)},
+                null);
+    }
+
+    @Override
+    public int getCount() {
+        return mCursor == null ? 0 : mCursor.getCount();
+    }
+
+    @Nullable
+    @Override
+    public Music next() {
+        if (mCursor == null || !mCursor.moveToNext()) {
+            return null;
+        }
+
+        return decode(mCursor);
+    }
+
+    @Override
+    public void close() {
+        if (mCursor != null) {
+            mCursor.close();
+            mCursor = null;
+        }
+    }
+
+    @Override
+    public Music decode(Cursor cursor) {
+        return new Music(0,
+                getTitle(cursor),
+                getAudioArtist(cursor),
+                getAudioAlbum(cursor),
+                getAudioUri(cursor).toString(),
+                "",
+                getDuration(cursor),
+                getDateModified(cursor));
+    }
+}
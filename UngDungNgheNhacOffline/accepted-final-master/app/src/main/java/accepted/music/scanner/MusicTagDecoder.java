@@ -0,0 +1,108 @@
+package accepted.music.scanner;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import accepted.music.duplicate.SampledHash;
+import accepted.music.store.Music;
+import accepted.music.tag.AudioTag;
+import accepted.music.tag.TagReader;
+
+/**
+ * Reads the tags and the {@link SampledHash content hash} of the music that
+ * {@link MediaStoreMusicSource} read, the file is opened once for both. It is safe to call on
+ * several threads at the same time.
+ */
+public final class MusicTagDecoder implements ScanPipeline.Decoder<Music, Music> {
+    private static final String UNKNOWN = "<unknown>";
+
+    private final Context mContext;
+
+    public MusicTagDecoder(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+        mContext = context.getApplicationContext();
+    }
+
+    @NonNull
+    @Override
+    public Music decode(@NonNull Music music) {
+        String artist = music.getArtist();
+        String album = music.getAlbum();
+
+        AudioTag tag = null;
+        ParcelFileDescriptor descriptor = null;
+        FileInputStream inputStream = null;
+        try {
+            descriptor = mContext.getContentResolver().openFileDescriptor(Uri.parse(music.getUri()), "r");
+            if (descriptor != null) {
+                inputStream = new FileInputStream(descriptor.getFileDescriptor());
+                FileChannel channel = inputStream.getChannel();
+
+                // MediaStore has no track number, album artist and so on, they are read from the tags
+                tag = TagReader.read(channel);
+                music.setContentHash(SampledHash.compute(channel));
+            }
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            // keeps what the MediaStore knows
+        } finally {
+            closeQuietly(inputStream, descriptor);
+        }
+
+        if (tag != null) {
+            artist = isUnknown(artist) && tag.getArtist() != null ? tag.getArtist() : artist;
+            album = isUnknown(album) && tag.getAlbum() != null ? tag.getAlbum() : album;
+            applyTag(music, tag);
+        }
+
+        music.setArtist(optimizeText(artist, accepted.player.R.string.accepted_music_item_unknown_artist));
+        music.setAlbum(optimizeText(album, accepted.player.R.string.accepted_music_item_unknown_album));
+        return music;
+    }
+
+    private void applyTag(Music music, AudioTag tag) {
+        music.setAlbumArtist(tag.getAlbumArtist());
+        music.setGenre(tag.getGenre());
+        music.setYear(tag.getYear());
+        music.setTrackNumber(tag.getTrackNumber());
+        music.setDiscNumber(tag.getDiscNumber());
+
+        if (tag.getPictureOffset() >= 0) {
+            music.setPictureOffset(tag.getPictureOffset());
+            music.setPictureLength(tag.getPictureLength());
+        }
+    }
+
+    private void closeQuietly(FileInputStream inputStream, ParcelFileDescriptor descriptor) {
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (descriptor != null) {
+                descriptor.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private boolean isUnknown(String text) {
+        return text == null || text.isEmpty() || UNKNOWN.equals(text);
+    }
+
+    private String optimizeText(String text, int stringId) {
+        if (text == null || UNKNOWN.equals(text)) {
+            return mContext.getString(stringId);
+        }
+
+        return text;
+    }
+}
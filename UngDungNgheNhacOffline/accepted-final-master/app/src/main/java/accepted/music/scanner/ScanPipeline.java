@@ -0,0 +1,399 @@
+package accepted.music.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A scan in three stages: the items are read one by one on a reader thread, decoded in parallel
+ * on a fixed pool of workers, and committed in batches on a committer thread.
+ * <p>
+ * At most {@code maxInFlight} items are between the reader and a finished commit, the reader
+ * waits when the decoders or the commits fall behind. A partial batch is committed as soon as no
+ * decoded item arrives for a while, so that slow scans still show their results early.
+ *
+ * @param <I> the type of the items that are read.
+ * @param <O> the type of the decoded items.
+ */
+public final class ScanPipeline<I, O> {
+    private static final String TAG = "ScanPipeline";
+    private static final long IDLE_MILLIS = 100;
+    // the decoder skipped the item
+    private static final Object SKIPPED = new Object();
+
+    private final Source<I> mSource;
+    private final Decoder<I, O> mDecoder;
+    private final Sink<O> mSink;
+    private final int mWorkerCount;
+    private final int mBatchSize;
+
+    private final Semaphore mInFlight;
+    private final BlockingQueue<Object> mDecoded;
+
+    private final AtomicInteger mReadCount;
+    private final AtomicInteger mDecodedCount;
+    private volatile int mTotalCount;
+    private volatile int mProcessedCount;
+    private volatile int mCommittedCount;
+    private volatile long mStartTime;
+    private volatile long mFinishTime;
+
+    private volatile boolean mReadFinished;
+    private volatile boolean mCancelled;
+    private boolean mStarted;
+
+    @Nullable
+    private Thread mReader;
+    @Nullable
+    private Thread mCommitter;
+    @Nullable
+    private ExecutorService mWorkers;
+
+    /**
+     * @param workerCount the number of the threads that decode the items.
+     * @param batchSize   the number of the decoded items that are committed together.
+     * @param maxInFlight the maximum number of the items that are read but not yet committed,
+     *                    must not be less than the batch size.
+     */
+    public ScanPipeline(@NonNull Source<I> source,
+                        @NonNull Decoder<I, O> decoder,
+                        @NonNull Sink<O> sink,
+                        int workerCount,
+                        int batchSize,
+                        int maxInFlight) {
+        Preconditions.checkNotNull(source);
+        Preconditions.checkNotNull(decoder);
+        Preconditions.checkNotNull(sink);
+        Preconditions.checkArgument(workerCount > 0);
+        Preconditions.checkArgument(batchSize > 0);
+        Preconditions.checkArgument(maxInFlight >= batchSize);
+
+        mSource = source;
+        mDecoder = decoder;
+        mSink = sink;
+        mWorkerCount = workerCount;
+        mBatchSize = batchSize;
+
+        mInFlight = new Semaphore(maxInFlight);
+        mDecoded = new LinkedBlockingQueue<>();
+        mReadCount = new AtomicInteger();
+        mDecodedCount = new AtomicInteger();
+    }
+
+    /**
+     * Starts the scan, the listener is called on the committer thread.
+     */
+    public synchronized void start(@NonNull final Listener listener) {
+        Preconditions.checkNotNull(listener);
+        Preconditions.checkState(!mStarted, "already started");
+
+        mStarted = true;
+        mStartTime = System.nanoTime();
+
+        final AtomicInteger workerNumber = new AtomicInteger();
+        mWorkers = Executors.newFixedThreadPool(mWorkerCount, runnable ->
+                new Thread(runnable, TAG + "-decoder-" + workerNumber.incrementAndGet()));
+
+        mReader = new Thread(this::read, TAG + "-reader");
+        mCommitter = new Thread(() -> commitAll(listener), TAG + "-committer");
+
+        mCommitter.start();
+        mReader.start();
+    }
+
+    /**
+     * Cancels the scan, the items that are already committed stay committed and the listener
+     * is not called any more.
+     */
+    public synchronized void cancel() {
+        mCancelled = true;
+
+        if (mReader != null) {
+            mReader.interrupt();
+        }
+        if (mWorkers != null) {
+            mWorkers.shutdownNow();
+        }
+        if (mCommitter != null) {
+            mCommitter.interrupt();
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @NonNull
+    public Progress getProgress() {
+        long end = mFinishTime > 0 ? mFinishTime : System.nanoTime();
+        long elapsedNanos = mStartTime > 0 ? end - mStartTime : 0;
+
+        return new Progress(mTotalCount,
+                mReadCount.get(),
+                mDecodedCount.get(),
+                mProcessedCount,
+                mCommittedCount,
+                elapsedNanos);
+    }
+
+    private void read() {
+        try {
+            mSource.open();
+            mTotalCount = mSource.getCount();
+
+            I item;
+            while (!mCancelled && (item = mSource.next()) != null) {
+                // backpressure: waits until enough of the items in flight are committed
+                mInFlight.acquire();
+                if (mCancelled) {
+                    return;
+                }
+
+                mReadCount.incrementAndGet();
+                final I input = item;
+                mWorkers.execute(() -> decode(input));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // cancelled
+        } catch (RuntimeException e) {
+            // stops reading, the items read so far are still committed
+            e.printStackTrace();
+        } finally {
+            mSource.close();
+            mReadFinished = true;
+        }
+    }
+
+    private void decode(I input) {
+        O output = null;
+        if (!mCancelled) {
+            try {
+                output = mDecoder.decode(input);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        mDecodedCount.incrementAndGet();
+        mDecoded.add(output == null ? SKIPPED : output);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void commitAll(Listener listener) {
+        List<O> batch = new ArrayList<>(mBatchSize);
+        int received = 0;
+        int pending = 0;
+
+        try {
+            while (!mCancelled) {
+                Object result = mDecoded.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (result == null) {
+                    if (mReadFinished && received == mReadCount.get()) {
+                        break;
+                    }
+                    // idle, so the partial batch does not wait for the rest
+                    if (pending > 0) {
+                        commit(batch, pending, received, listener);
+                        pending = 0;
+                    }
+                    continue;
+                }
+
+                received += 1;
+                pending += 1;
+                if (result != SKIPPED) {
+                    batch.add((O) result);
+                }
+
+                if (batch.size() >= mBatchSize) {
+                    commit(batch, pending, received, listener);
+                    pending = 0;
+                }
+            }
+
+            if (mCancelled) {
+                return;
+            }
+
+            commit(batch, pending, received, listener);
+            mFinishTime = System.nanoTime();
+            listener.onFinished(getProgress());
+        } catch (InterruptedException e) {
+            // cancelled
+        } finally {
+            if (mWorkers != null) {
+                mWorkers.shutdown();
+            }
+        }
+    }
+
+    private void commit(List<O> batch, int pending, int received, Listener listener) {
+        if (!batch.isEmpty() && !mCancelled) {
+            try {
+                mSink.commit(new ArrayList<>(batch));
+                mCommittedCount += batch.size();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        batch.clear();
+        mProcessedCount = received;
+        mInFlight.release(pending);
+
+        if (!mCancelled) {
+            listener.onProgress(getProgress());
+        }
+    }
+
+    /**
+     * The first stage, it is opened, read and closed on the reader thread.
+     */
+    public interface Source<I> {
+        void open();
+
+        /**
+         * Returns the number of the items, only valid after {@link #open()}.
+         */
+        int getCount();
+
+        /**
+         * Returns the next item, or null if there are no more items.
+         */
+        @Nullable
+        I next();
+
+        void close();
+    }
+
+    /**
+     * The second stage, it is called on several threads at the same time.
+     */
+    public interface Decoder<I, O> {
+        /**
+         * Returns the decoded item, or null to skip the item.
+         */
+        @Nullable
+        O decode(@NonNull I item);
+    }
+
+    /**
+     * The last stage, it is called on the committer thread.
+     */
+    public interface Sink<O> {
+        void commit(@NonNull List<O> batch);
+    }
+
+    public interface Listener {
+        /**
+         * Called after each batch is committed.
+         */
+        void onProgress(@NonNull Progress progress);
+
+        /**
+         * Called after the last batch is committed, unless the scan is cancelled.
+         */
+        void onFinished(@NonNull Progress progress);
+    }
+
+    /**
+     * A snapshot of the counters of every stage.
+     */
+    public static final class Progress {
+        private final int mTotalCount;
+        private final int mReadCount;
+        private final int mDecodedCount;
+        private final int mProcessedCount;
+        private final int mCommittedCount;
+        private final long mElapsedNanos;
+
+        Progress(int totalCount, int readCount, int decodedCount, int processedCount, int committedCount, long elapsedNanos) {
+            mTotalCount = totalCount;
+            mReadCount = readCount;
+            mDecodedCount = decodedCount;
+            mProcessedCount = processedCount;
+            mCommittedCount = committedCount;
+            mElapsedNanos = elapsedNanos;
+        }
+
+        public int getTotalCount() {
+            return mTotalCount;
+        }
+
+        public int getReadCount() {
+            return mReadCount;
+        }
+
+        public int getDecodedCount() {
+            return mDecodedCount;
+        }
+
+        /**
+         * Returns the number of the items that are committed or skipped.
+         */
+        public int getProcessedCount() {
+            return mProcessedCount;
+        }
+
+        public int getCommittedCount() {
+            return mCommittedCount;
+        }
+
+        /**
+         * Returns the number of the items that are read but not yet decoded.
+         */
+        public int getDecodeQueueDepth() {
+            return mReadCount - mDecodedCount;
+        }
+
+        /**
+         * Returns the number of the items that are decoded but not yet committed.
+         */
+        public int getCommitQueueDepth() {
+            return mDecodedCount - mProcessedCount;
+        }
+
+        public float getFilesPerSecond() {
+            if (mElapsedNanos <= 0) {
+                return 0;
+            }
+            return mProcessedCount * 1_000_000_000F / mElapsedNanos;
+        }
+
+        /**
+         * Returns the percent of the processed items, between 0 and 100.
+         */
+        public int getPercent() {
+            if (mTotalCount <= 0) {
+                return 0;
+            }
+            return Math.min(100, mProcessedCount * 100 / mTotalCount);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Progress{" +
+                    "total=" + mTotalCount +
+                    ", read=" + mReadCount +
+                    ", decoded=" + mDecodedCount +
+                    ", processed=" + mProcessedCount +
+                    ", committed=" + mCommittedCount +
+                    ", filesPerSecond=" + getFilesPerSecond() +
+                    '}';
+        }
+    }
+}
@@ -6,14 +6,17 @@ import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.media.MediaBrowserCompat;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.res.ResourcesCompat;
 
-import io.reactivex.Single;
-import io.reactivex.schedulers.Schedulers;
+import java.io.File;
+import java.util.List;
+
 import accepted.music.R;
 import accepted.music.activity.player.PlayerActivity;
 import accepted.music.store.MusicStore;
@@ -22,13 +25,28 @@ import accepted.music.util.MusicUtil;
 import accepted.player.HistoryRecorder;
 import accepted.player.PlayMode;
 import accepted.player.PlayerService;
+import accepted.player.StatisticsRecorder;
 import accepted.player.annotation.PersistenceId;
+import accepted.player.cache.CacheProxyServer;
+import accepted.player.cache.MusicCache;
 import accepted.player.effect.AudioEffectManager;
 import accepted.player.ui.equalizer.AndroidAudioEffectManager;
+import io.reactivex.Maybe;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.schedulers.Schedulers;
 
 @PersistenceId("AppPlayerService")
 public class AppPlayerService extends PlayerService {
+    private static final long MAX_MUSIC_CACHE_SIZE = 256 * 1024 * 1024;
+    private static final String EXTRA_SEARCH_SUPPORTED = "android.media.browse.SEARCH_SUPPORTED";
+
     private MusicStore mMusicStore;
+    private BufferedHistoryRecorder mHistoryRecorder;
+    private AppStatisticsRecorder mStatisticsRecorder;
+
+    private MediaBrowseTree mMediaBrowseTree;
+    private CompositeDisposable mBrowseDisposable;
 
     @Override
     public void onCreate() {
@@ -36,6 +54,83 @@ public class AppPlayerService extends PlayerService {
 
         setMaxIDLETime(5);
         mMusicStore = MusicStore.getInstance();
+        mMediaBrowseTree = new MediaBrowseTree(this, mMusicStore, this::notifyChildrenChanged);
+        mBrowseDisposable = new CompositeDisposable();
+    }
+
+    @Nullable
+    @Override
+    public BrowserRoot onGetRoot(@NonNull String clientPackageName, int clientUid, @Nullable Bundle rootHints) {
+        Bundle extras = new Bundle();
+        extras.putBoolean(EXTRA_SEARCH_SUPPORTED, true);
+        return new BrowserRoot(MediaBrowseTree.ROOT, extras);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaBrowserCompat.MediaItem>> result) {
+        // the clients that do not page get the first page
+        onLoadChildren(parentId, result, 0, MediaBrowseTree.MAX_PAGE_SIZE);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId,
+                               @NonNull Result<List<MediaBrowserCompat.MediaItem>> result,
+                               @NonNull Bundle options) {
+        int page = options.getInt(MediaBrowserCompat.EXTRA_PAGE, -1);
+        int pageSize = options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, -1);
+        if (page < 0 || pageSize < 1) {
+            onLoadChildren(parentId, result);
+            return;
+        }
+
+        onLoadChildren(parentId, result, page, pageSize);
+    }
+
+    private void onLoadChildren(String parentId, Result<List<MediaBrowserCompat.MediaItem>> result, int page, int pageSize) {
+        result.detach();
+        mBrowseDisposable.add(Maybe.fromCallable(() -> mMediaBrowseTree.loadChildren(parentId, page, pageSize))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(result::sendResult,
+                        throwable -> result.sendResult(null),
+                        () -> result.sendResult(null)));
+    }
+
+    @Override
+    public void onSearch(@NonNull String query, @Nullable Bundle extras, @NonNull Result<List<MediaBrowserCompat.MediaItem>> result) {
+        int page = 0;
+        int pageSize = MediaBrowseTree.DEFAULT_PAGE_SIZE;
+        if (extras != null && extras.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, -1) > 0) {
+            page = Math.max(0, extras.getInt(MediaBrowserCompat.EXTRA_PAGE, 0));
+            pageSize = extras.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE);
+        }
+
+        int searchPage = page;
+        int searchPageSize = pageSize;
+        result.detach();
+        mBrowseDisposable.add(Maybe.fromCallable(() -> mMediaBrowseTree.search(query, searchPage, searchPageSize))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(result::sendResult, throwable -> result.sendResult(null)));
+    }
+
+    @NonNull
+    @Override
+    protected MediaSessionCallback onCreateMediaSessionCallback() {
+        return new MediaSessionCallback(this) {
+            @Override
+            public void onPlayFromMediaId(String mediaId, Bundle extras) {
+                playFromMediaId(mediaId);
+            }
+        };
+    }
+
+    private void playFromMediaId(String mediaId) {
+        mBrowseDisposable.add(Maybe.fromCallable(() -> mMediaBrowseTree.loadPlaylist(mediaId))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(request -> setPlaylist(request.playlist, request.position, true),
+                        Throwable::printStackTrace));
     }
 
     @Nullable
@@ -47,9 +142,34 @@ public class AppPlayerService extends PlayerService {
     @Nullable
     @Override
     protected HistoryRecorder onCreateHistoryRecorder() {
-        return musicItem -> Single.create(emitter -> mMusicStore.addHistory(MusicUtil.asMusic(musicItem)))
-                .subscribeOn(Schedulers.io())
-                .subscribe();
+        mHistoryRecorder = new BufferedHistoryRecorder(MusicStore.getInstance().getHistoryStore());
+        return mHistoryRecorder;
+    }
+
+    @Nullable
+    @Override
+    protected StatisticsRecorder onCreateStatisticsRecorder() {
+        mStatisticsRecorder = new AppStatisticsRecorder(MusicStore.getInstance().getPlayStatisticsStore());
+        return mStatisticsRecorder;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mHistoryRecorder != null) {
+            mHistoryRecorder.flush();
+        }
+        if (mStatisticsRecorder != null) {
+            mStatisticsRecorder.flush();
+        }
+        mBrowseDisposable.dispose();
+        mMediaBrowseTree.release();
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    protected CacheProxyServer onCreateCacheProxyServer() {
+        return new CacheProxyServer(new MusicCache(new File(getCacheDir(), "music"), MAX_MUSIC_CACHE_SIZE));
     }
 
     @Nullable
@@ -0,0 +1,68 @@
+package accepted.music.service;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import accepted.music.store.PlayStatisticsStore;
+import accepted.music.util.MusicUtil;
+import accepted.player.StatisticsRecorder;
+import accepted.player.audio.MusicItem;
+
+public class AppStatisticsRecorder implements StatisticsRecorder {
+    private static final long FLUSH_DELAY = 30_000;     // ms
+
+    private final PlayStatisticsStore mPlayStatisticsStore;
+    private final Handler mMainHandler;
+    private final Runnable mFlushTask;
+    private boolean mFlushScheduled;
+
+    public AppStatisticsRecorder(@NonNull PlayStatisticsStore playStatisticsStore) {
+        Preconditions.checkNotNull(playStatisticsStore);
+
+        mPlayStatisticsStore = playStatisticsStore;
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mFlushTask = this::flush;
+    }
+
+    @Override
+    public void onStarted(@NonNull MusicItem musicItem) {
+        mPlayStatisticsStore.recordStarted(MusicUtil.getId(musicItem));
+        scheduleFlush();
+    }
+
+    @Override
+    public void onCompleted(@NonNull MusicItem musicItem) {
+        mPlayStatisticsStore.recordCompleted(MusicUtil.getId(musicItem));
+        scheduleFlush();
+    }
+
+    @Override
+    public void onSkipped(@NonNull MusicItem musicItem) {
+        mPlayStatisticsStore.recordSkipped(MusicUtil.getId(musicItem));
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (mFlushScheduled) {
+            return;
+        }
+
+        mFlushScheduled = true;
+        mMainHandler.postDelayed(mFlushTask, FLUSH_DELAY);
+    }
+
+    public void flush() {
+        mMainHandler.removeCallbacks(mFlushTask);
+        mFlushScheduled = false;
+
+        Single.create(emitter -> mPlayStatisticsStore.flush())
+                .subscribeOn(Schedulers.io())
+                .subscribe();
+    }
+}
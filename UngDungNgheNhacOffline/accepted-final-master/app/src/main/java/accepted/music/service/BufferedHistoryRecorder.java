@@ -0,0 +1,72 @@
+package accepted.music.service;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import accepted.music.store.HistoryStore;
+import accepted.music.util.MusicUtil;
+import accepted.player.HistoryRecorder;
+import accepted.player.audio.MusicItem;
+
+/**
+ * Buffers play events on the main thread and writes them to the {@link HistoryStore}
+ * in one transaction, either periodically or when the buffer is full.
+ */
+public class BufferedHistoryRecorder implements HistoryRecorder {
+    private static final long FLUSH_DELAY = 10_000;     // ms
+    private static final int MAX_BUFFER_SIZE = 20;
+
+    private final HistoryStore mHistoryStore;
+    private final Handler mMainHandler;
+    private final Runnable mFlushTask;
+    private List<HistoryStore.PlayEvent> mBuffer;
+
+    public BufferedHistoryRecorder(@NonNull HistoryStore historyStore) {
+        Preconditions.checkNotNull(historyStore);
+
+        mHistoryStore = historyStore;
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mFlushTask = this::flush;
+        mBuffer = new ArrayList<>();
+    }
+
+    @Override
+    public void recordHistory(@NonNull MusicItem musicItem) {
+        Preconditions.checkNotNull(musicItem);
+
+        mBuffer.add(new HistoryStore.PlayEvent(MusicUtil.getId(musicItem), System.currentTimeMillis()));
+
+        if (mBuffer.size() >= MAX_BUFFER_SIZE) {
+            flush();
+            return;
+        }
+
+        if (mBuffer.size() == 1) {
+            mMainHandler.postDelayed(mFlushTask, FLUSH_DELAY);
+        }
+    }
+
+    public void flush() {
+        mMainHandler.removeCallbacks(mFlushTask);
+
+        if (mBuffer.isEmpty()) {
+            return;
+        }
+
+        List<HistoryStore.PlayEvent> allPlayEvent = mBuffer;
+        mBuffer = new ArrayList<>();
+
+        Single.create(emitter -> mHistoryStore.putAll(allPlayEvent))
+                .subscribeOn(Schedulers.io())
+                .subscribe();
+    }
+}
@@ -0,0 +1,517 @@
+package accepted.music.service;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.media.MediaBrowserCompat.MediaItem;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import accepted.music.R;
+import accepted.music.store.HistoryEntity;
+import accepted.music.store.HistoryStore;
+import accepted.music.store.Music;
+import accepted.music.store.MusicListEntity;
+import accepted.music.store.MusicStore;
+import accepted.music.util.MusicListUtil;
+import accepted.player.playlist.Playlist;
+import io.objectbox.reactive.DataSubscription;
+
+/**
+ * The browse tree of the library served by {@link AppPlayerService} to media browser clients, e.g.
+ * car, watch and assistant clients.
+ * <pre>
+ * root
+ * ├── list/__local_music   music
+ * ├── list/__favorite      music
+ * ├── lists                list/&lt;name&gt; → music
+ * ├── artists              artist/&lt;name&gt; → music
+ * ├── albums               album/&lt;name&gt; → music
+ * └── history              music
+ * </pre>
+ * The children are loaded one page at a time with offset queries, the loaded pages are cached
+ * until the library changes. The loudness and fingerprint updates of the music do not change the
+ * library, see {@link MusicStore#getMusicModCount()}. A page holds at most {@link #MAX_PAGE_SIZE}
+ * items, i.e. a few hundred KB, far below the 1 MB Binder transaction limit.
+ * <p>
+ * The load methods query the {@link MusicStore}, call them on a worker thread.
+ */
+public class MediaBrowseTree {
+    public static final String ROOT = "root";
+    static final String LISTS = "lists";
+    static final String ARTISTS = "artists";
+    static final String ALBUMS = "albums";
+    static final String HISTORY = "history";
+
+    private static final String PREFIX_LIST = "list/";
+    private static final String PREFIX_ARTIST = "artist/";
+    private static final String PREFIX_ALBUM = "album/";
+    private static final String PREFIX_SEARCH = "search/";
+    // music/<music id>/<parent id>
+    private static final String PREFIX_MUSIC = "music/";
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    private static final int MAX_CACHED_PAGES = 64;
+    // coalesces the changes of a transaction burst, e.g. a scan
+    private static final long INVALIDATE_DELAY = 500;   // ms
+
+    private final Context mContext;
+    private final MusicStore mMusicStore;
+    private final OnChildrenChangedListener mListener;
+
+    private final LruCache<String, List<MediaItem>> mPageCache;
+    // the names of the artists and the albums, guarded by mPageCache
+    private final Map<String, List<String>> mNameCache;
+    private final Handler mMainHandler;
+    private final Runnable mInvalidateTask;
+    private final Set<Class<?>> mChangedClasses;
+    private final List<DataSubscription> mAllSubscription;
+    // incremented when the cache is evicted, a page loaded before is not cached
+    private int mCacheVersion;
+    private int mMusicModCount;
+
+    public MediaBrowseTree(@NonNull Context context,
+                           @NonNull MusicStore musicStore,
+                           @NonNull OnChildrenChangedListener listener) {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(musicStore);
+        Preconditions.checkNotNull(listener);
+
+        mContext = context.getApplicationContext();
+        mMusicStore = musicStore;
+        mListener = listener;
+
+        mPageCache = new LruCache<>(MAX_CACHED_PAGES);
+        mNameCache = new HashMap<>();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mInvalidateTask = this::invalidate;
+        mChangedClasses = new HashSet<>();
+        mAllSubscription = new ArrayList<>();
+        mMusicModCount = musicStore.getMusicModCount();
+
+        subscribe(Music.class);
+        subscribe(MusicListEntity.class);
+        subscribe(HistoryEntity.class);
+    }
+
+    private void subscribe(Class<?> entityClass) {
+        mAllSubscription.add(mMusicStore.getBoxStore()
+                .subscribe(entityClass)
+                .onlyChanges()
+                .observer(changedClass -> {
+                    synchronized (mChangedClasses) {
+                        mChangedClasses.add(changedClass);
+                    }
+                    mMainHandler.removeCallbacks(mInvalidateTask);
+                    mMainHandler.postDelayed(mInvalidateTask, INVALIDATE_DELAY);
+                }));
+    }
+
+    public void release() {
+        for (DataSubscription subscription : mAllSubscription) {
+            subscription.cancel();
+        }
+        mAllSubscription.clear();
+        mMainHandler.removeCallbacks(mInvalidateTask);
+        synchronized (mPageCache) {
+            mCacheVersion += 1;
+            mPageCache.evictAll();
+            mNameCache.clear();
+        }
+    }
+
+    /**
+     * Evicts the cached pages of the changed entities and notifies their parents.
+     */
+    private void invalidate() {
+        Set<Class<?>> changedClasses;
+        synchronized (mChangedClasses) {
+            changedClasses = new HashSet<>(mChangedClasses);
+            mChangedClasses.clear();
+        }
+
+        if (changedClasses.contains(Music.class)) {
+            int musicModCount = mMusicStore.getMusicModCount();
+            if (musicModCount == mMusicModCount) {
+                // only the analysis results changed, they are not shown
+                changedClasses.remove(Music.class);
+            }
+            mMusicModCount = musicModCount;
+        }
+
+        if (changedClasses.isEmpty()) {
+            return;
+        }
+
+        Set<String> changedParents = new HashSet<>();
+        if (changedClasses.contains(Music.class)) {
+            changedParents.add(ARTISTS);
+            changedParents.add(ALBUMS);
+        }
+        if (changedClasses.contains(MusicListEntity.class)) {
+            changedParents.add(LISTS);
+        }
+        if (changedClasses.contains(HistoryEntity.class)) {
+            changedParents.add(HISTORY);
+        }
+
+        synchronized (mPageCache) {
+            mCacheVersion += 1;
+            if (changedClasses.contains(Music.class)) {
+                mNameCache.clear();
+            }
+            for (String key : mPageCache.snapshot().keySet()) {
+                String parentId = getParentId(key);
+                if (isAffected(parentId, changedClasses)) {
+                    mPageCache.remove(key);
+                    changedParents.add(parentId);
+                }
+            }
+        }
+
+        for (String parentId : changedParents) {
+            mListener.onChildrenChanged(parentId);
+        }
+    }
+
+    private static boolean isAffected(String parentId, Set<Class<?>> changedClasses) {
+        // the music are the leaves of every node
+        if (changedClasses.contains(Music.class)) {
+            return true;
+        }
+
+        if (changedClasses.contains(MusicListEntity.class)
+                && (parentId.equals(LISTS) || parentId.startsWith(PREFIX_LIST))) {
+            return true;
+        }
+
+        return changedClasses.contains(HistoryEntity.class) && parentId.equals(HISTORY);
+    }
+
+    /**
+     * Loads a page of the children of the node.
+     *
+     * @param page     the index of the page, starts from 0.
+     * @param pageSize the size of the page, a page holds at most {@link #MAX_PAGE_SIZE} items.
+     * @return null if the node does not exist.
+     */
+    @Nullable
+    public List<MediaItem> loadChildren(@NonNull String parentId, int page, int pageSize) {
+        Preconditions.checkNotNull(parentId);
+        Preconditions.checkArgument(page >= 0, "page must >= 0");
+        Preconditions.checkArgument(pageSize > 0, "pageSize must > 0");
+
+        // the pages are laid out on the clamped size, so that they do not overlap
+        pageSize = Math.min(pageSize, MAX_PAGE_SIZE);
+        String key = getPageKey(parentId, page, pageSize);
+
+        int cacheVersion;
+        synchronized (mPageCache) {
+            List<MediaItem> children = mPageCache.get(key);
+            if (children != null) {
+                return children;
+            }
+            cacheVersion = mCacheVersion;
+        }
+
+        List<MediaItem> children = queryChildren(parentId, (long) page * pageSize, pageSize);
+        if (children != null) {
+            children = Collections.unmodifiableList(children);
+            synchronized (mPageCache) {
+                // the library changed during the query, the page may be stale
+                if (cacheVersion == mCacheVersion) {
+                    mPageCache.put(key, children);
+                }
+            }
+        }
+
+        return children;
+    }
+
+    /**
+     * Loads a page of the music whose title, artist or album contains the query.
+     */
+    @NonNull
+    public List<MediaItem> search(@NonNull String query, int page, int pageSize) {
+        Preconditions.checkNotNull(query);
+
+        List<MediaItem> result = loadChildren(PREFIX_SEARCH + query.trim(), page, pageSize);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    private static String getPageKey(String parentId, int page, int pageSize) {
+        return page + "/" + pageSize + "/" + parentId;
+    }
+
+    private static String getParentId(String pageKey) {
+        return pageKey.substring(pageKey.indexOf('/', pageKey.indexOf('/') + 1) + 1);
+    }
+
+    @Nullable
+    private List<MediaItem> queryChildren(String parentId, long offset, int limit) {
+        switch (parentId) {
+            case ROOT:
+                return offset > 0 ? Collections.emptyList() : getRootChildren();
+            case LISTS:
+                return getListNodes(offset, limit);
+            case ARTISTS:
+                return getNodes(PREFIX_ARTIST, loadNames(ARTISTS), offset, limit);
+            case ALBUMS:
+                return getNodes(PREFIX_ALBUM, loadNames(ALBUMS), offset, limit);
+        }
+
+        List<Music> allMusic = queryMusic(parentId, offset, limit);
+        if (allMusic == null) {
+            return null;
+        }
+
+        List<MediaItem> children = new ArrayList<>(allMusic.size());
+        for (Music music : allMusic) {
+            children.add(createPlayableItem(music, parentId));
+        }
+        return children;
+    }
+
+    /**
+     * Queries the music of a node whose children are music.
+     *
+     * @return null if the node does not exist or its children are not music.
+     */
+    @Nullable
+    private List<Music> queryMusic(String parentId, long offset, long limit) {
+        if (parentId.equals(HISTORY)) {
+            List<Music> allMusic = new ArrayList<>();
+            for (HistoryEntity entity : mMusicStore.getHistoryStore().getHistory(offset, limit)) {
+                Music music = entity.getMusic();
+                if (music != null) {
+                    allMusic.add(music);
+                }
+            }
+            return allMusic;
+        }
+
+        if (parentId.startsWith(PREFIX_LIST)) {
+            return mMusicStore.getMusicListMusic(parentId.substring(PREFIX_LIST.length()), offset, limit);
+        }
+
+        if (parentId.startsWith(PREFIX_ARTIST)) {
+            return mMusicStore.getArtistAllMusic(parentId.substring(PREFIX_ARTIST.length()), offset, limit);
+        }
+
+        if (parentId.startsWith(PREFIX_ALBUM)) {
+            return mMusicStore.getAlbumAllMusic(parentId.substring(PREFIX_ALBUM.length()), offset, limit);
+        }
+
+        if (parentId.startsWith(PREFIX_SEARCH)) {
+            return mMusicStore.findMusic(parentId.substring(PREFIX_SEARCH.length()), offset, limit);
+        }
+
+        return null;
+    }
+
+    /**
+     * Queries the ids of the music of a node whose children are music, in the order of
+     * {@link #queryMusic(String, long, long)}.
+     *
+     * @return null if the node does not exist or its children are not music.
+     */
+    @Nullable
+    private long[] queryMusicIds(String parentId) {
+        if (parentId.equals(HISTORY)) {
+            HistoryStore historyStore = mMusicStore.getHistoryStore();
+            List<HistoryEntity> allHistory = historyStore.getHistory(0, historyStore.getMaxSize());
+            long[] allId = new long[allHistory.size()];
+            for (int i = 0; i < allId.length; i++) {
+                allId[i] = allHistory.get(i).getMusicId();
+            }
+            return allId;
+        }
+
+        if (parentId.startsWith(PREFIX_LIST)) {
+            return mMusicStore.getMusicListMusicIds(parentId.substring(PREFIX_LIST.length()));
+        }
+
+        if (parentId.startsWith(PREFIX_ARTIST)) {
+            return mMusicStore.getArtistAllMusicIds(parentId.substring(PREFIX_ARTIST.length()));
+        }
+
+        if (parentId.startsWith(PREFIX_ALBUM)) {
+            return mMusicStore.getAlbumAllMusicIds(parentId.substring(PREFIX_ALBUM.length()));
+        }
+
+        if (parentId.startsWith(PREFIX_SEARCH)) {
+            return mMusicStore.findMusicIds(parentId.substring(PREFIX_SEARCH.length()));
+        }
+
+        return null;
+    }
+
+    private List<String> loadNames(String parentId) {
+        int cacheVersion;
+        synchronized (mPageCache) {
+            List<String> allName = mNameCache.get(parentId);
+            if (allName != null) {
+                return allName;
+            }
+            cacheVersion = mCacheVersion;
+        }
+
+        List<String> allName = parentId.equals(ARTISTS) ? mMusicStore.getAllArtist() : mMusicStore.getAllAlbum();
+        synchronized (mPageCache) {
+            if (cacheVersion == mCacheVersion) {
+                mNameCache.put(parentId, allName);
+            }
+        }
+        return allName;
+    }
+
+    private List<MediaItem> getRootChildren() {
+        List<MediaItem> children = new ArrayList<>();
+        children.add(createBrowsableItem(PREFIX_LIST + MusicStore.MUSIC_LIST_LOCAL_MUSIC, mContext.getString(R.string.item_local_music)));
+        children.add(createBrowsableItem(PREFIX_LIST + MusicStore.MUSIC_LIST_FAVORITE, mContext.getString(R.string.item_favorite)));
+        children.add(createBrowsableItem(LISTS, mContext.getString(R.string.item_music_list)));
+        children.add(createBrowsableItem(ARTISTS, mContext.getString(R.string.item_artist)));
+        children.add(createBrowsableItem(ALBUMS, mContext.getString(R.string.item_album)));
+        children.add(createBrowsableItem(HISTORY, mContext.getString(R.string.item_history)));
+        return children;
+    }
+
+    private List<MediaItem> getListNodes(long offset, int limit) {
+        List<String> allName = new ArrayList<>(mMusicStore.getAllCustomMusicListName());
+        Collections.sort(allName);
+        return getNodes(PREFIX_LIST, allName, offset, limit);
+    }
+
+    private List<MediaItem> getNodes(String prefix, List<String> allName, long offset, int limit) {
+        List<MediaItem> children = new ArrayList<>();
+
+        int index = 0;
+        for (String name : allName) {
+            if (name == null || name.isEmpty()) {
+                continue;
+            }
+
+            if (index++ < offset) {
+                continue;
+            }
+
+            children.add(createBrowsableItem(prefix + name, name));
+            if (children.size() >= limit) {
+                break;
+            }
+        }
+
+        return children;
+    }
+
+    private static MediaItem createBrowsableItem(String mediaId, String title) {
+        MediaDescriptionCompat description = new MediaDescriptionCompat.Builder()
+                .setMediaId(mediaId)
+                .setTitle(title)
+                .build();
+
+        return new MediaItem(description, MediaItem.FLAG_BROWSABLE);
+    }
+
+    private static MediaItem createPlayableItem(Music music, String parentId) {
+        MediaDescriptionCompat.Builder builder = new MediaDescriptionCompat.Builder()
+                .setMediaId(PREFIX_MUSIC + music.getId() + "/" + parentId)
+                .setTitle(music.getTitle())
+                .setSubtitle(music.getArtist())
+                .setDescription(music.getAlbum());
+
+        String iconUri = music.getIconUri();
+        if (iconUri != null && !iconUri.isEmpty()) {
+            builder.setIconUri(Uri.parse(iconUri));
+        }
+
+        return new MediaItem(builder.build(), MediaItem.FLAG_PLAYABLE);
+    }
+
+    /**
+     * Creates the playlist that plays the music of a playable item with the music of its parent.
+     *
+     * @return null if the media id is not the id of a playable item or the music is not found.
+     */
+    @Nullable
+    public PlaylistRequest loadPlaylist(@NonNull String mediaId) {
+        Preconditions.checkNotNull(mediaId);
+
+        if (!mediaId.startsWith(PREFIX_MUSIC)) {
+            return null;
+        }
+
+        int separator = mediaId.indexOf('/', PREFIX_MUSIC.length());
+        if (separator < 0) {
+            return null;
+        }
+
+        long musicId;
+        try {
+            musicId = Long.parseLong(mediaId.substring(PREFIX_MUSIC.length(), separator));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        String parentId = mediaId.substring(separator + 1);
+        long[] allId = queryMusicIds(parentId);
+        if (allId == null) {
+            return null;
+        }
+
+        int index = Longs.indexOf(allId, musicId);
+        if (index < 0) {
+            return null;
+        }
+
+        // only the Playlist.MAX_SIZE music the playlist keeps around the position are loaded
+        int start = Playlist.getTrimStart(allId.length, index);
+        List<Music> allMusic = queryMusic(parentId, start, Playlist.MAX_SIZE);
+        if (allMusic == null) {
+            return null;
+        }
+
+        // the removed music are skipped, so the position is looked up again
+        for (int i = 0; i < allMusic.size(); i++) {
+            if (allMusic.get(i).getId() == musicId) {
+                return new PlaylistRequest(MusicListUtil.asPlaylist(parentId, allMusic, i), i);
+            }
+        }
+
+        return null;
+    }
+
+    public static final class PlaylistRequest {
+        public final Playlist playlist;
+        public final int position;
+
+        PlaylistRequest(@NonNull Playlist playlist, int position) {
+            this.playlist = playlist;
+            this.position = position;
+        }
+    }
+
+    public interface OnChildrenChangedListener {
+        /**
+         * Called on the main thread.
+         */
+        void onChildrenChanged(@NonNull String parentId);
+    }
+}
@@ -0,0 +1,34 @@
+package accepted.music.store;
+
+import io.objectbox.annotation.Entity;
+import io.objectbox.annotation.Id;
+import io.objectbox.annotation.Unique;
+
+@Entity
+public class HistoryDailyEntity {
+    @Id
+    long id;
+    @Unique
+    long day;
+    int playCount;
+
+    public HistoryDailyEntity() {
+    }
+
+    public HistoryDailyEntity(long id, long day, int playCount) {
+        this.id = id;
+        this.day = day;
+        this.playCount = playCount;
+    }
+
+    /**
+     * Days since epoch, in the default time zone.
+     */
+    public long getDay() {
+        return day;
+    }
+
+    public int getPlayCount() {
+        return playCount;
+    }
+}
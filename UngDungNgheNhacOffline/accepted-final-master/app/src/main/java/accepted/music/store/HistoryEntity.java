@@ -25,4 +25,8 @@ public class HistoryEntity {
     public Music getMusic() {
         return music.getTarget();
     }
+
+    public long getMusicId() {
+        return music.getTargetId();
+    }
 }
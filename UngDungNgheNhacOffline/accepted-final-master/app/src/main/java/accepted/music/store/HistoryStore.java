@@ -0,0 +1,236 @@
+package accepted.music.store;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import io.objectbox.Box;
+import io.objectbox.BoxStore;
+
+public class HistoryStore {
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final int EVICT_BATCH_SIZE = 100;
+
+    private final BoxStore mBoxStore;
+    private final Box<Music> mMusicBox;
+    private final Box<HistoryEntity> mHistoryEntityBox;
+    private final Box<HistoryDailyEntity> mHistoryDailyEntityBox;
+
+    private int mMaxSize;
+
+    HistoryStore(@NonNull BoxStore boxStore) {
+        Preconditions.checkNotNull(boxStore);
+
+        mBoxStore = boxStore;
+        mMusicBox = boxStore.boxFor(Music.class);
+        mHistoryEntityBox = boxStore.boxFor(HistoryEntity.class);
+        mHistoryDailyEntityBox = boxStore.boxFor(HistoryDailyEntity.class);
+        mMaxSize = DEFAULT_MAX_SIZE;
+    }
+
+    public synchronized int getMaxSize() {
+        return mMaxSize;
+    }
+
+    // the max size is not a user setting, it is only changed by the tests
+    synchronized void setMaxSize(int maxSize) {
+        Preconditions.checkArgument(maxSize > 0, "maxSize must > 0");
+        mMaxSize = maxSize;
+    }
+
+    public static long toDay(long timestamp) {
+        return TimeUnit.MILLISECONDS.toDays(timestamp + TimeZone.getDefault().getOffset(timestamp));
+    }
+
+    public synchronized void putAll(@NonNull List<PlayEvent> allPlayEvent) {
+        Preconditions.checkNotNull(allPlayEvent);
+
+        if (allPlayEvent.isEmpty()) {
+            return;
+        }
+
+        // collapse the buffered events: latest timestamp per music, play count per day
+        Map<Long, Long> allLatestTimestamp = new LinkedHashMap<>();
+        Map<Long, Integer> allDailyPlayCount = new HashMap<>();
+        for (PlayEvent event : allPlayEvent) {
+            Long timestamp = allLatestTimestamp.get(event.musicId);
+            if (timestamp == null || timestamp < event.timestamp) {
+                allLatestTimestamp.put(event.musicId, event.timestamp);
+            }
+
+            long day = toDay(event.timestamp);
+            Integer count = allDailyPlayCount.get(day);
+            allDailyPlayCount.put(day, count == null ? 1 : count + 1);
+        }
+
+        mBoxStore.runInTx(() -> {
+            putHistory(allLatestTimestamp);
+            putDailyPlayCount(allDailyPlayCount);
+            evict();
+        });
+    }
+
+    private void putHistory(Map<Long, Long> allLatestTimestamp) {
+        long[] allMusicId = new long[allLatestTimestamp.size()];
+        int i = 0;
+        for (long musicId : allLatestTimestamp.keySet()) {
+            allMusicId[i++] = musicId;
+        }
+
+        Map<Long, HistoryEntity> allExistsEntity = new HashMap<>();
+        List<HistoryEntity> found = mHistoryEntityBox.query()
+                .in(HistoryEntity_.musicId, allMusicId)
+                .build()
+                .find();
+        for (HistoryEntity entity : found) {
+            allExistsEntity.put(entity.music.getTargetId(), entity);
+        }
+
+        List<HistoryEntity> allEntity = new ArrayList<>(allLatestTimestamp.size());
+        for (Map.Entry<Long, Long> entry : allLatestTimestamp.entrySet()) {
+            long musicId = entry.getKey();
+            HistoryEntity entity = allExistsEntity.get(musicId);
+
+            if (entity == null) {
+                if (!mMusicBox.contains(musicId)) {
+                    continue;
+                }
+                entity = new HistoryEntity(0, musicId, entry.getValue());
+            } else {
+                entity.timestamp = Math.max(entity.timestamp, entry.getValue());
+            }
+
+            allEntity.add(entity);
+        }
+
+        mHistoryEntityBox.put(allEntity);
+    }
+
+    private void putDailyPlayCount(Map<Long, Integer> allDailyPlayCount) {
+        List<HistoryDailyEntity> allEntity = new ArrayList<>(allDailyPlayCount.size());
+        for (Map.Entry<Long, Integer> entry : allDailyPlayCount.entrySet()) {
+            HistoryDailyEntity entity = mHistoryDailyEntityBox.query()
+                    .equal(HistoryDailyEntity_.day, entry.getKey())
+                    .build()
+                    .findUnique();
+
+            if (entity == null) {
+                entity = new HistoryDailyEntity(0, entry.getKey(), 0);
+            }
+
+            entity.playCount += entry.getValue();
+            allEntity.add(entity);
+        }
+
+        mHistoryDailyEntityBox.put(allEntity);
+    }
+
+    // Eviction is deferred until the table overflows by a whole batch, so that a single
+    // delete shrinks it back to max size instead of deleting one row per play.
+    private void evict() {
+        long count = mHistoryEntityBox.count();
+        if (count < mMaxSize + EVICT_BATCH_SIZE) {
+            return;
+        }
+
+        List<HistoryEntity> oldest = mHistoryEntityBox.query()
+                .order(HistoryEntity_.timestamp)
+                .build()
+                .find(0, count - mMaxSize);
+
+        mHistoryEntityBox.remove(oldest);
+    }
+
+    public synchronized void remove(@NonNull HistoryEntity historyEntity) {
+        Preconditions.checkNotNull(historyEntity);
+
+        mHistoryEntityBox.remove(historyEntity.id);
+    }
+
+    public synchronized void clear() {
+        mHistoryEntityBox.removeAll();
+    }
+
+    public synchronized long getCount() {
+        return mHistoryEntityBox.count();
+    }
+
+    @NonNull
+    public synchronized List<HistoryEntity> getAll() {
+        return mHistoryEntityBox.query()
+                .orderDesc(HistoryEntity_.timestamp)
+                .build()
+                .find();
+    }
+
+    @NonNull
+    public synchronized List<HistoryEntity> getHistory(long offset, long limit) {
+        return mHistoryEntityBox.query()
+                .orderDesc(HistoryEntity_.timestamp)
+                .orderDesc(HistoryEntity_.id)
+                .build()
+                .find(offset, limit);
+    }
+
+    /**
+     * Returns the history that comes after {@code last} in the order of
+     * {@link #getHistory(long, long)}, at most {@code limit} of them. Unlike an offset, the
+     * position of {@code last} does not shift when the history changes meanwhile.
+     */
+    @NonNull
+    public synchronized List<HistoryEntity> getHistoryAfter(@NonNull HistoryEntity last, long limit) {
+        Preconditions.checkNotNull(last);
+
+        // the history played at the same time as last but ordered before it
+        long skip = mHistoryEntityBox.query()
+                .equal(HistoryEntity_.timestamp, last.timestamp)
+                .greater(HistoryEntity_.id, last.id - 1)
+                .build()
+                .count();
+
+        return mHistoryEntityBox.query()
+                .less(HistoryEntity_.timestamp, last.timestamp + 1)
+                .orderDesc(HistoryEntity_.timestamp)
+                .orderDesc(HistoryEntity_.id)
+                .build()
+                .find(skip, limit);
+    }
+
+    /**
+     * Returns the daily play count between {@code fromDay} and {@code toDay} (both inclusive),
+     * ordered by day. Days without any play are not included.
+     *
+     * @see #toDay(long)
+     */
+    @NonNull
+    public synchronized List<HistoryDailyEntity> getDailyPlayCount(long fromDay, long toDay) {
+        if (fromDay > toDay) {
+            return Collections.emptyList();
+        }
+
+        return mHistoryDailyEntityBox.query()
+                .between(HistoryDailyEntity_.day, fromDay, toDay)
+                .order(HistoryDailyEntity_.day)
+                .build()
+                .find();
+    }
+
+    public static final class PlayEvent {
+        public final long musicId;
+        public final long timestamp;
+
+        public PlayEvent(long musicId, long timestamp) {
+            this.musicId = musicId;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,951 @@
+package accepted.music.store;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import accepted.music.backup.BackupFormatException;
+import accepted.music.backup.BackupReader;
+import accepted.music.backup.BackupWriter;
+import io.objectbox.Box;
+import io.objectbox.BoxStore;
+import io.objectbox.Property;
+import io.objectbox.query.Query;
+
+/**
+ * Exports the music, the music lists, the smart music lists, the history and the play statistics
+ * to a backup stream, and restores them from it. The files of a directory, e.g. the MMKV
+ * directory that holds the player state, can be added to the same stream.
+ * <p>
+ * The entities are exported page by page and restored chunk by chunk, so neither side holds the
+ * whole library in memory. Only the ids of the restored music are kept, 16 bytes per music, to
+ * resolve the references of the lists and the history. The restore runs in one transaction that
+ * is only committed after the end of the stream is verified, so a truncated or corrupted backup
+ * changes nothing.
+ * <p>
+ * A restored music is resolved by its uri, unless the stored music at the uri has a different
+ * content hash, and then by its content hash, so the lists of a reinstalled app point at the
+ * music that is already scanned again. The music that is not resolved is added. The restored
+ * data is merged into the store: the lists keep their music and get the missing music appended,
+ * and the counters keep the greater value.
+ */
+public final class LibraryBackup {
+    static final int TYPE_MUSIC = 1;
+    static final int TYPE_MUSIC_LIST = 2;
+    static final int TYPE_MUSIC_LIST_ELEMENTS = 3;
+    static final int TYPE_SMART_MUSIC_LIST = 4;
+    static final int TYPE_HISTORY = 5;
+    static final int TYPE_HISTORY_DAILY = 6;
+    static final int TYPE_PLAY_STATISTICS = 7;
+    static final int TYPE_FILE = 8;
+    static final int TYPE_FILE_DATA = 9;
+
+    static final int PAGE_SIZE = 500;
+    static final int ELEMENTS_PER_RECORD = 1000;
+    static final int FILE_SLICE_SIZE = 32 * 1024;
+
+    private static final String TEMP_FILE_SUFFIX = ".restore";
+
+    private final BoxStore mBoxStore;
+    private final Box<Music> mMusicBox;
+    private final Box<MusicListEntity> mMusicListEntityBox;
+    private final Box<SmartMusicListEntity> mSmartMusicListEntityBox;
+    private final Box<HistoryEntity> mHistoryEntityBox;
+    private final Box<HistoryDailyEntity> mHistoryDailyEntityBox;
+    private final Box<PlayStatisticsEntity> mPlayStatisticsEntityBox;
+    private final SmartMusicListStore mSmartMusicListStore;
+
+    LibraryBackup(@NonNull BoxStore boxStore, @NonNull SmartMusicListStore smartMusicListStore) {
+        Preconditions.checkNotNull(boxStore);
+        Preconditions.checkNotNull(smartMusicListStore);
+
+        mBoxStore = boxStore;
+        mMusicBox = boxStore.boxFor(Music.class);
+        mMusicListEntityBox = boxStore.boxFor(MusicListEntity.class);
+        mSmartMusicListEntityBox = boxStore.boxFor(SmartMusicListEntity.class);
+        mHistoryEntityBox = boxStore.boxFor(HistoryEntity.class);
+        mHistoryDailyEntityBox = boxStore.boxFor(HistoryDailyEntity.class);
+        mPlayStatisticsEntityBox = boxStore.boxFor(PlayStatisticsEntity.class);
+        mSmartMusicListStore = smartMusicListStore;
+    }
+
+    /**
+     * Writes the backup to the output, the output is flushed but not closed.
+     *
+     * @param fileDir the files of the directory are added to the backup, may be null.
+     */
+    public void export(@NonNull OutputStream output, @Nullable File fileDir) throws IOException {
+        Preconditions.checkNotNull(output);
+
+        BackupWriter writer = new BackupWriter(output);
+
+        exportAll(mMusicBox, Music_.id, music -> writeMusic(writer.beginRecord(TYPE_MUSIC), music));
+        exportAll(mMusicListEntityBox, MusicListEntity_.id, entity -> writeMusicList(writer, entity));
+        exportAll(mSmartMusicListEntityBox, SmartMusicListEntity_.id, entity ->
+                writeSmartMusicList(writer.beginRecord(TYPE_SMART_MUSIC_LIST), entity));
+        exportAll(mHistoryEntityBox, HistoryEntity_.id, entity -> {
+            DataOutput out = writer.beginRecord(TYPE_HISTORY);
+            out.writeLong(entity.music.getTargetId());
+            out.writeLong(entity.timestamp);
+        });
+        exportAll(mHistoryDailyEntityBox, HistoryDailyEntity_.id, entity -> {
+            DataOutput out = writer.beginRecord(TYPE_HISTORY_DAILY);
+            out.writeLong(entity.day);
+            out.writeInt(entity.playCount);
+        });
+        exportAll(mPlayStatisticsEntityBox, PlayStatisticsEntity_.id, entity -> {
+            DataOutput out = writer.beginRecord(TYPE_PLAY_STATISTICS);
+            out.writeLong(entity.musicId);
+            out.writeInt(entity.playCount);
+            out.writeInt(entity.completeCount);
+            out.writeInt(entity.skipCount);
+            out.writeLong(entity.lastPlayedTime);
+        });
+
+        if (fileDir != null && fileDir.isDirectory()) {
+            writeAllFile(writer, fileDir, "");
+        }
+
+        writer.finish();
+    }
+
+    /**
+     * Reads the backup from the input and merges it into the store, the input is not closed.
+     * <p>
+     * Nothing is restored if the backup is truncated or corrupted. The files are written to temp
+     * files that replace the files of the directory once the store is committed, so the directory
+     * must not be in use, e.g. a staging directory.
+     *
+     * @param fileDir the directory where the files of the backup are restored, or null to
+     *                skip the files.
+     * @throws BackupFormatException if the input is not a backup or is corrupted.
+     */
+    @NonNull
+    public Result restore(@NonNull InputStream input, @Nullable File fileDir) throws IOException {
+        Preconditions.checkNotNull(input);
+
+        BackupReader reader = new BackupReader(input);
+        Restore restore = new Restore(fileDir);
+
+        try {
+            mBoxStore.callInTx(() -> {
+                while (reader.nextChunk()) {
+                    restore.apply(reader.getChunkType(), reader.getRecordCount(), reader.getChunkInput());
+                }
+                restore.finish();
+                return null;
+            });
+            restore.commitFiles();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            restore.abort();
+        }
+
+        return restore.mResult;
+    }
+
+    // pages by id, so that every page is an index lookup whatever its offset
+    private <T> void exportAll(Box<T> box, Property<T> idProperty, EntityWriter<T> entityWriter)
+            throws IOException {
+        Query<T> query = box.query()
+                .greater(idProperty, 0)
+                .order(idProperty)
+                .build();
+
+        long lastId = 0;
+        while (true) {
+            List<T> page = query.setParameter(idProperty, lastId)
+                    .find(0, PAGE_SIZE);
+
+            for (T entity : page) {
+                entityWriter.write(entity);
+            }
+
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            lastId = box.getId(page.get(page.size() - 1));
+        }
+    }
+
+    private static void writeMusic(DataOutput out, Music music) throws IOException {
+        out.writeLong(music.id);
+        BackupWriter.writeString(out, music.getUri());
+        BackupWriter.writeString(out, music.getContentHash());
+        BackupWriter.writeString(out, music.getTitle());
+        BackupWriter.writeString(out, music.getArtist());
+        BackupWriter.writeString(out, music.getAlbum());
+        BackupWriter.writeString(out, music.getIconUri());
+        out.writeInt(music.getDuration());
+        out.writeLong(music.getAddTime());
+        out.writeBoolean(music.isLoudnessAnalyzed());
+        out.writeFloat(music.getLoudness());
+        out.writeFloat(music.getPeak());
+        BackupWriter.writeString(out, music.getAlbumArtist());
+        BackupWriter.writeString(out, music.getGenre());
+        out.writeInt(music.getYear());
+        out.writeInt(music.getTrackNumber());
+        out.writeInt(music.getDiscNumber());
+        out.writeLong(music.getPictureOffset());
+        out.writeInt(music.getPictureLength());
+        out.writeLong(music.getFingerprint());
+        out.writeBoolean(music.isFingerprinted());
+    }
+
+    private static Music readMusic(DataInput in) throws IOException {
+        long id = in.readLong();
+        String uri = BackupReader.readString(in);
+        String contentHash = BackupReader.readString(in);
+        String title = BackupReader.readString(in);
+        String artist = BackupReader.readString(in);
+        String album = BackupReader.readString(in);
+        String iconUri = BackupReader.readString(in);
+        int duration = in.readInt();
+        long addTime = in.readLong();
+        boolean loudnessAnalyzed = in.readBoolean();
+        float loudness = in.readFloat();
+        float peak = in.readFloat();
+        String albumArtist = BackupReader.readString(in);
+        String genre = BackupReader.readString(in);
+        int year = in.readInt();
+        int trackNumber = in.readInt();
+        int discNumber = in.readInt();
+        long pictureOffset = in.readLong();
+        int pictureLength = in.readInt();
+        long fingerprint = in.readLong();
+        boolean fingerprinted = in.readBoolean();
+
+        return new Music(id, title, artist, album, uri, iconUri, duration, addTime,
+                loudnessAnalyzed, loudness, peak,
+                albumArtist, genre, year, trackNumber, discNumber,
+                pictureOffset, pictureLength,
+                contentHash, fingerprint, fingerprinted);
+    }
+
+    private static void writeMusicList(BackupWriter writer, MusicListEntity entity) throws IOException {
+        // the stored order is read without loading the relation, unless it is out of date
+        long[] order = MusicList.readOrderBytes(entity.orderBytes);
+        if (order.length != entity.size) {
+            order = MusicStore.readOrder(entity);
+        }
+
+        DataOutput out = writer.beginRecord(TYPE_MUSIC_LIST);
+        out.writeUTF(entity.name);
+        out.writeInt(sortOrderId(entity.sortOrder));
+        out.writeInt(order.length);
+
+        for (int start = 0; start < order.length; start += ELEMENTS_PER_RECORD) {
+            int count = Math.min(ELEMENTS_PER_RECORD, order.length - start);
+
+            out = writer.beginRecord(TYPE_MUSIC_LIST_ELEMENTS);
+            out.writeInt(count);
+            for (int i = start; i < start + count; i++) {
+                out.writeLong(order[i]);
+            }
+        }
+    }
+
+    private static void writeSmartMusicList(DataOutput out, SmartMusicListEntity entity) throws IOException {
+        out.writeUTF(entity.name);
+        BackupWriter.writeString(out, entity.artist);
+        BackupWriter.writeString(out, entity.album);
+        BackupWriter.writeString(out, entity.titleKeyword);
+        out.writeInt(entity.minDuration);
+        out.writeInt(entity.maxDuration);
+        out.writeInt(entity.addedWithinDays);
+        out.writeInt(sortOrderId(entity.sortOrder));
+    }
+
+    private static int sortOrderId(@Nullable MusicList.SortOrder sortOrder) {
+        return sortOrder == null ? MusicList.SortOrder.BY_ADD_TIME.id : sortOrder.id;
+    }
+
+    private static void writeAllFile(BackupWriter writer, File dir, String path) throws IOException {
+        File[] allFile = dir.listFiles();
+        if (allFile == null) {
+            return;
+        }
+
+        Arrays.sort(allFile);
+        byte[] buffer = new byte[FILE_SLICE_SIZE];
+        for (File file : allFile) {
+            String filePath = path + file.getName();
+            if (file.isDirectory()) {
+                writeAllFile(writer, file, filePath + "/");
+            } else if (!file.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                writeFile(writer, file, filePath, buffer);
+            }
+        }
+    }
+
+    private static void writeFile(BackupWriter writer, File file, String path, byte[] buffer) throws IOException {
+        long length = file.length();
+
+        DataOutput out = writer.beginRecord(TYPE_FILE);
+        out.writeUTF(path);
+        out.writeLong(length);
+
+        FileInputStream input = new FileInputStream(file);
+        try {
+            long remaining = length;
+            while (remaining > 0) {
+                int count = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) {
+                    // the file got shorter, it is not restored
+                    break;
+                }
+
+                out = writer.beginRecord(TYPE_FILE_DATA);
+                out.writeInt(count);
+                out.write(buffer, 0, count);
+                remaining -= count;
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private interface EntityWriter<T> {
+        void write(T entity) throws IOException;
+    }
+
+    /**
+     * The state of a restore, the lists and the files span several chunks.
+     */
+    private final class Restore {
+        private final Result mResult;
+        private final IdMap mIdMap;
+        private final Query<Music> mUriQuery;
+        private final Query<Music> mContentHashQuery;
+
+        @Nullable
+        private final File mFileDir;
+
+        private String mListName;
+        private MusicList.SortOrder mListSortOrder;
+        private long[] mListIds;
+        private int mListSize;
+
+        private File mTempFile;
+        private OutputStream mFileOutput;
+        private long mFileLength;
+        private long mFileWritten;
+        private byte[] mFileBuffer;
+        // the temp files that replace the files once the store is committed
+        private final List<File> mAllTempFile;
+
+        Restore(@Nullable File fileDir) {
+            mFileDir = fileDir;
+            mResult = new Result();
+            mIdMap = new IdMap();
+            mAllTempFile = new ArrayList<>();
+
+            mUriQuery = mMusicBox.query()
+                    .equal(Music_.uri, "")
+                    .build();
+            mContentHashQuery = mMusicBox.query()
+                    .equal(Music_.contentHash, "")
+                    .build();
+        }
+
+        void apply(int type, int recordCount, DataInput in) throws IOException {
+            if (type != TYPE_MUSIC_LIST_ELEMENTS) {
+                finishMusicList();
+            }
+            if (type != TYPE_FILE_DATA) {
+                finishFile();
+            }
+
+            switch (type) {
+                case TYPE_MUSIC:
+                    restoreMusic(recordCount, in);
+                    break;
+                case TYPE_MUSIC_LIST:
+                    for (int i = 0; i < recordCount; i++) {
+                        finishMusicList();
+                        startMusicList(in);
+                    }
+                    break;
+                case TYPE_MUSIC_LIST_ELEMENTS:
+                    for (int i = 0; i < recordCount; i++) {
+                        readMusicListElements(in);
+                    }
+                    break;
+                case TYPE_SMART_MUSIC_LIST:
+                    for (int i = 0; i < recordCount; i++) {
+                        restoreSmartMusicList(in);
+                    }
+                    break;
+                case TYPE_HISTORY:
+                    restoreHistory(recordCount, in);
+                    break;
+                case TYPE_HISTORY_DAILY:
+                    restoreHistoryDaily(recordCount, in);
+                    break;
+                case TYPE_PLAY_STATISTICS:
+                    restorePlayStatistics(recordCount, in);
+                    break;
+                case TYPE_FILE:
+                    for (int i = 0; i < recordCount; i++) {
+                        finishFile();
+                        startFile(in);
+                    }
+                    break;
+                case TYPE_FILE_DATA:
+                    for (int i = 0; i < recordCount; i++) {
+                        writeFileData(in);
+                    }
+                    break;
+                default:
+                    // added by a later version of the same format, skipped
+                    break;
+            }
+        }
+
+        void finish() throws IOException {
+            finishMusicList();
+            finishFile();
+        }
+
+        // the temp file replaces the file at once, a reader never sees a half written file
+        void commitFiles() {
+            for (File tempFile : mAllTempFile) {
+                String path = tempFile.getPath();
+                File file = new File(path.substring(0, path.length() - TEMP_FILE_SUFFIX.length()));
+                if (tempFile.renameTo(file)) {
+                    mResult.mFileCount += 1;
+                }
+            }
+            mAllTempFile.clear();
+        }
+
+        void abort() {
+            if (mFileOutput != null) {
+                closeQuietly(mFileOutput);
+                mFileOutput = null;
+                mTempFile.delete();
+            }
+
+            for (File tempFile : mAllTempFile) {
+                tempFile.delete();
+            }
+            mAllTempFile.clear();
+        }
+
+        private void restoreMusic(int recordCount, DataInput in) throws IOException {
+            List<Music> allMusic = new ArrayList<>(recordCount);
+            long[] oldIds = new long[recordCount];
+            long lastId = mIdMap.getLastOldId();
+
+            for (int i = 0; i < recordCount; i++) {
+                Music music = readMusic(in);
+                if (music.id <= lastId) {
+                    throw new BackupFormatException("music out of order");
+                }
+
+                oldIds[i] = music.id;
+                lastId = music.id;
+                music.id = 0;
+                allMusic.add(music);
+            }
+
+            mBoxStore.runInTx(() -> {
+                List<Music> allPut = new ArrayList<>();
+                Music[] allResolved = new Music[recordCount];
+
+                for (int i = 0; i < recordCount; i++) {
+                    Music music = allMusic.get(i);
+                    Music stored = findStored(music);
+
+                    if (stored != null) {
+                        mResult.mMatchedMusicCount += 1;
+                        allResolved[i] = stored;
+                        if (mergeInto(stored, music)) {
+                            allPut.add(stored);
+                        }
+                    } else if (music.getUri() != null && mUriQuery.setParameter(Music_.uri, music.getUri()).count() > 0) {
+                        // the uri is taken by another file
+                        mResult.mSkippedMusicCount += 1;
+                    } else {
+                        mResult.mAddedMusicCount += 1;
+                        allResolved[i] = music;
+                        allPut.add(music);
+                    }
+                }
+
+                mMusicBox.put(allPut);
+                mSmartMusicListStore.onMusicPut(allPut);
+
+                for (int i = 0; i < recordCount; i++) {
+                    mIdMap.put(oldIds[i], allResolved[i] == null ? 0 : allResolved[i].id);
+                }
+            });
+        }
+
+        @Nullable
+        private Music findStored(Music music) {
+            String contentHash = music.getContentHash();
+
+            if (music.getUri() != null) {
+                Music stored = mUriQuery.setParameter(Music_.uri, music.getUri()).findFirst();
+                if (stored != null && (contentHash == null
+                        || stored.getContentHash() == null
+                        || contentHash.equals(stored.getContentHash()))) {
+                    return stored;
+                }
+            }
+
+            if (contentHash != null) {
+                return mContentHashQuery.setParameter(Music_.contentHash, contentHash).findFirst();
+            }
+
+            return null;
+        }
+
+        // keeps the stored music, but restores what is not known about it yet
+        private boolean mergeInto(Music stored, Music music) {
+            boolean changed = false;
+
+            if (!stored.isLoudnessAnalyzed() && music.isLoudnessAnalyzed()) {
+                stored.setLoudnessAnalyzed(true);
+                stored.setLoudness(music.getLoudness());
+                stored.setPeak(music.getPeak());
+                changed = true;
+            }
+
+            if (!stored.isFingerprinted() && music.isFingerprinted()) {
+                stored.setFingerprinted(true);
+                stored.setFingerprint(music.getFingerprint());
+                changed = true;
+            }
+
+            if (stored.getContentHash() == null && music.getContentHash() != null) {
+                stored.setContentHash(music.getContentHash());
+                changed = true;
+            }
+
+            if (music.getAddTime() > 0 && music.getAddTime() < stored.getAddTime()) {
+                stored.setAddTime(music.getAddTime());
+                changed = true;
+            }
+
+            return changed;
+        }
+
+        private void startMusicList(DataInput in) throws IOException {
+            mListName = in.readUTF();
+            mListSortOrder = MusicList.SortOrder.getValueById(in.readInt());
+            // the size is only a hint, a corrupted size must not allocate too much
+            mListIds = new long[Math.max(16, Math.min(in.readInt(), ELEMENTS_PER_RECORD))];
+            mListSize = 0;
+        }
+
+        private void readMusicListElements(DataInput in) throws IOException {
+            if (mListName == null) {
+                throw new BackupFormatException("music list elements without music list");
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long musicId = mIdMap.get(in.readLong());
+                if (musicId <= 0) {
+                    continue;
+                }
+
+                if (mListSize == mListIds.length) {
+                    mListIds = Arrays.copyOf(mListIds, mListIds.length * 2);
+                }
+                mListIds[mListSize++] = musicId;
+            }
+        }
+
+        private void finishMusicList() {
+            if (mListName == null) {
+                return;
+            }
+
+            String name = mListName;
+            MusicList.SortOrder sortOrder = mListSortOrder;
+            long[] ids = mListIds;
+            int size = mListSize;
+
+            mListName = null;
+            mListIds = null;
+
+            if (name.isEmpty()) {
+                return;
+            }
+
+            mBoxStore.runInTx(() -> {
+                MusicListEntity entity = mMusicListEntityBox.query()
+                        .equal(MusicListEntity_.name, name)
+                        .build()
+                        .findUnique();
+
+                if (entity == null) {
+                    entity = new MusicListEntity(0, name, 0, sortOrder, new byte[0]);
+                    mMusicListEntityBox.put(entity);
+                }
+
+                Set<Long> allId = new LinkedHashSet<>();
+                for (long id : MusicStore.readOrder(entity)) {
+                    allId.add(id);
+                }
+
+                List<Long> allAddedId = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    if (allId.add(ids[i])) {
+                        allAddedId.add(ids[i]);
+                    }
+                }
+
+                if (!allAddedId.isEmpty()) {
+                    long[] addedIds = new long[allAddedId.size()];
+                    for (int i = 0; i < addedIds.length; i++) {
+                        addedIds[i] = allAddedId.get(i);
+                    }
+
+                    Set<Long> allFoundId = new HashSet<>();
+                    for (Music music : mMusicBox.get(addedIds)) {
+                        if (music != null) {
+                            entity.musicElements.add(music);
+                            allFoundId.add(music.id);
+                        }
+                    }
+
+                    // removed from the store while restoring
+                    for (long id : addedIds) {
+                        if (!allFoundId.contains(id)) {
+                            allId.remove(id);
+                        }
+                    }
+                }
+
+                long[] order = new long[allId.size()];
+                int index = 0;
+                for (long id : allId) {
+                    order[index++] = id;
+                }
+
+                entity.orderBytes = MusicList.writeOrderBytes(order, order.length);
+                entity.size = order.length;
+                mMusicListEntityBox.put(entity);
+            });
+
+            mResult.mMusicListCount += 1;
+        }
+
+        private void restoreSmartMusicList(DataInput in) throws IOException {
+            String name = in.readUTF();
+            SmartMusicListRule rule = new SmartMusicListRule.Builder()
+                    .setArtist(BackupReader.readString(in))
+                    .setAlbum(BackupReader.readString(in))
+                    .setTitleKeyword(BackupReader.readString(in))
+                    .setMinDuration(in.readInt())
+                    .setMaxDuration(in.readInt())
+                    .setAddedWithinDays(in.readInt())
+                    .setSortOrder(MusicList.SortOrder.getValueById(in.readInt()))
+                    .build();
+
+            if (name.isEmpty() || mSmartMusicListStore.isNameExists(name)) {
+                return;
+            }
+
+            mSmartMusicListStore.create(name, rule);
+            mResult.mMusicListCount += 1;
+        }
+
+        private void restoreHistory(int recordCount, DataInput in) throws IOException {
+            Map<Long, Long> allTimestamp = new HashMap<>();
+            for (int i = 0; i < recordCount; i++) {
+                long musicId = mIdMap.get(in.readLong());
+                long timestamp = in.readLong();
+
+                Long exists = allTimestamp.get(musicId);
+                if (musicId > 0 && (exists == null || exists < timestamp)) {
+                    allTimestamp.put(musicId, timestamp);
+                }
+            }
+
+            if (allTimestamp.isEmpty()) {
+                return;
+            }
+
+            long[] allMusicId = new long[allTimestamp.size()];
+            int index = 0;
+            for (long musicId : allTimestamp.keySet()) {
+                allMusicId[index++] = musicId;
+            }
+
+            mBoxStore.runInTx(() -> {
+                List<HistoryEntity> allEntity = mHistoryEntityBox.query()
+                        .in(HistoryEntity_.musicId, allMusicId)
+                        .build()
+                        .find();
+
+                for (HistoryEntity entity : allEntity) {
+                    Long timestamp = allTimestamp.remove(entity.music.getTargetId());
+                    if (timestamp != null) {
+                        entity.timestamp = Math.max(entity.timestamp, timestamp);
+                    }
+                }
+
+                for (Map.Entry<Long, Long> entry : allTimestamp.entrySet()) {
+                    allEntity.add(new HistoryEntity(0, entry.getKey(), entry.getValue()));
+                }
+
+                mHistoryEntityBox.put(allEntity);
+            });
+
+            mResult.mHistoryCount += allMusicId.length;
+        }
+
+        private void restoreHistoryDaily(int recordCount, DataInput in) throws IOException {
+            long[] days = new long[recordCount];
+            int[] playCounts = new int[recordCount];
+            for (int i = 0; i < recordCount; i++) {
+                days[i] = in.readLong();
+                playCounts[i] = in.readInt();
+            }
+
+            mBoxStore.runInTx(() -> {
+                Query<HistoryDailyEntity> query = mHistoryDailyEntityBox.query()
+                        .equal(HistoryDailyEntity_.day, 0)
+                        .build();
+
+                List<HistoryDailyEntity> allEntity = new ArrayList<>(recordCount);
+                for (int i = 0; i < recordCount; i++) {
+                    HistoryDailyEntity entity = query.setParameter(HistoryDailyEntity_.day, days[i])
+                            .findUnique();
+
+                    if (entity == null) {
+                        entity = new HistoryDailyEntity(0, days[i], 0);
+                    }
+
+                    // restoring twice must not count the plays twice
+                    entity.playCount = Math.max(entity.playCount, playCounts[i]);
+                    allEntity.add(entity);
+                }
+
+                mHistoryDailyEntityBox.put(allEntity);
+            });
+        }
+
+        private void restorePlayStatistics(int recordCount, DataInput in) throws IOException {
+            List<PlayStatisticsEntity> allRestored = new ArrayList<>(recordCount);
+            for (int i = 0; i < recordCount; i++) {
+                PlayStatisticsEntity entity = new PlayStatisticsEntity(0, mIdMap.get(in.readLong()));
+                entity.playCount = in.readInt();
+                entity.completeCount = in.readInt();
+                entity.skipCount = in.readInt();
+                entity.lastPlayedTime = in.readLong();
+
+                if (entity.musicId > 0) {
+                    allRestored.add(entity);
+                }
+            }
+
+            mBoxStore.runInTx(() -> {
+                Query<PlayStatisticsEntity> query = mPlayStatisticsEntityBox.query()
+                        .equal(PlayStatisticsEntity_.musicId, 0)
+                        .build();
+
+                List<PlayStatisticsEntity> allEntity = new ArrayList<>(allRestored.size());
+                for (PlayStatisticsEntity restored : allRestored) {
+                    PlayStatisticsEntity entity = query.setParameter(PlayStatisticsEntity_.musicId, restored.musicId)
+                            .findUnique();
+
+                    if (entity == null) {
+                        allEntity.add(restored);
+                        continue;
+                    }
+
+                    entity.playCount = Math.max(entity.playCount, restored.playCount);
+                    entity.completeCount = Math.max(entity.completeCount, restored.completeCount);
+                    entity.skipCount = Math.max(entity.skipCount, restored.skipCount);
+                    entity.lastPlayedTime = Math.max(entity.lastPlayedTime, restored.lastPlayedTime);
+                    allEntity.add(entity);
+                }
+
+                mPlayStatisticsEntityBox.put(allEntity);
+            });
+        }
+
+        private void startFile(DataInput in) throws IOException {
+            String path = in.readUTF();
+            mFileLength = in.readLong();
+            mFileWritten = 0;
+
+            if (path.isEmpty() || path.startsWith("/") || path.contains("..")) {
+                throw new BackupFormatException("illegal file path: " + path);
+            }
+
+            if (mFileDir == null) {
+                return;
+            }
+
+            mTempFile = new File(new File(mFileDir, path).getPath() + TEMP_FILE_SUFFIX);
+
+            File parent = mTempFile.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("can't create directory: " + parent);
+            }
+
+            mFileOutput = new FileOutputStream(mTempFile);
+        }
+
+        private void writeFileData(DataInput in) throws IOException {
+            int count = in.readInt();
+            if (count < 0 || count > FILE_SLICE_SIZE) {
+                throw new BackupFormatException("corrupted file data");
+            }
+
+            if (mFileBuffer == null) {
+                mFileBuffer = new byte[FILE_SLICE_SIZE];
+            }
+
+            in.readFully(mFileBuffer, 0, count);
+            mFileWritten += count;
+
+            if (mFileOutput != null) {
+                mFileOutput.write(mFileBuffer, 0, count);
+            }
+        }
+
+        private void finishFile() throws IOException {
+            if (mFileOutput == null) {
+                return;
+            }
+
+            OutputStream output = mFileOutput;
+            mFileOutput = null;
+            output.close();
+
+            if (mFileWritten == mFileLength) {
+                mAllTempFile.add(mTempFile);
+            } else {
+                mTempFile.delete();
+            }
+        }
+    }
+
+    private static void closeQuietly(OutputStream output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Maps the ids of the backup to the ids of the store. The music is exported by id, so the
+     * ids of the backup are added in ascending order and looked up with a binary search.
+     */
+    private static final class IdMap {
+        private long[] mOldIds = new long[1024];
+        private long[] mNewIds = new long[1024];
+        private int mSize;
+
+        void put(long oldId, long newId) {
+            if (mSize == mOldIds.length) {
+                mOldIds = Arrays.copyOf(mOldIds, mSize * 2);
+                mNewIds = Arrays.copyOf(mNewIds, mSize * 2);
+            }
+
+            mOldIds[mSize] = oldId;
+            mNewIds[mSize] = newId;
+            mSize += 1;
+        }
+
+        /**
+         * Returns the id in the store, or 0 if the music is not restored.
+         */
+        long get(long oldId) {
+            int index = Arrays.binarySearch(mOldIds, 0, mSize, oldId);
+            return index < 0 ? 0 : mNewIds[index];
+        }
+
+        long getLastOldId() {
+            return mSize == 0 ? 0 : mOldIds[mSize - 1];
+        }
+    }
+
+    /**
+     * The counts of a restore.
+     */
+    public static final class Result {
+        private int mAddedMusicCount;
+        private int mMatchedMusicCount;
+        private int mSkippedMusicCount;
+        private int mMusicListCount;
+        private int mHistoryCount;
+        private int mFileCount;
+
+        /**
+         * The music that is not in the store and is added.
+         */
+        public int getAddedMusicCount() {
+            return mAddedMusicCount;
+        }
+
+        /**
+         * The music that is resolved to a stored music by its uri or content hash.
+         */
+        public int getMatchedMusicCount() {
+            return mMatchedMusicCount;
+        }
+
+        /**
+         * The music whose uri is now taken by another file.
+         */
+        public int getSkippedMusicCount() {
+            return mSkippedMusicCount;
+        }
+
+        public int getMusicListCount() {
+            return mMusicListCount;
+        }
+
+        public int getHistoryCount() {
+            return mHistoryCount;
+        }
+
+        public int getFileCount() {
+            return mFileCount;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "added=" + mAddedMusicCount +
+                    ", matched=" + mMatchedMusicCount +
+                    ", skipped=" + mSkippedMusicCount +
+                    ", musicList=" + mMusicListCount +
+                    ", history=" + mHistoryCount +
+                    ", file=" + mFileCount +
+                    '}';
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.google.common.base.Objects;
 
 import io.objectbox.annotation.Entity;
 import io.objectbox.annotation.Id;
+import io.objectbox.annotation.Index;
 import io.objectbox.annotation.Unique;
 
 @Entity
@@ -14,15 +15,47 @@ public class Music {
     public long id;
 
     private String title;
+    @Index
     private String artist;
+    @Index
     private String album;
     @Unique
     private String uri;
     private String iconUri;
     private int duration;
+    @Index
     private long addTime;
+    private boolean loudnessAnalyzed;
+    private float loudness;
+    private float peak;
+    private String albumArtist;
+    private String genre;
+    private int year;
+    private int trackNumber;
+    private int discNumber;
+    private long pictureOffset;
+    private int pictureLength;
+    @Index
+    private String contentHash;
+    @Index
+    private long fingerprint;
+    private boolean fingerprinted;
 
     public Music(long id, String title, String artist, String album, String uri, String iconUri, int duration, long addTime) {
+        this(id, title, artist, album, uri, iconUri, duration, addTime, false, 0, 0);
+    }
+
+    public Music(long id, String title, String artist, String album, String uri, String iconUri, int duration, long addTime,
+                 boolean loudnessAnalyzed, float loudness, float peak) {
+        this(id, title, artist, album, uri, iconUri, duration, addTime, loudnessAnalyzed, loudness, peak,
+                null, null, 0, 0, 0, 0, 0, null, 0, false);
+    }
+
+    public Music(long id, String title, String artist, String album, String uri, String iconUri, int duration, long addTime,
+                 boolean loudnessAnalyzed, float loudness, float peak,
+                 String albumArtist, String genre, int year, int trackNumber, int discNumber,
+                 long pictureOffset, int pictureLength,
+                 String contentHash, long fingerprint, boolean fingerprinted) {
         this.id = id;
         this.title = title;
         this.artist = artist;
@@ -31,6 +64,19 @@ public class Music {
         this.iconUri = iconUri;
         this.duration = duration;
         this.addTime = addTime;
+        this.loudnessAnalyzed = loudnessAnalyzed;
+        this.loudness = loudness;
+        this.peak = peak;
+        this.albumArtist = albumArtist;
+        this.genre = genre;
+        this.year = year;
+        this.trackNumber = trackNumber;
+        this.discNumber = discNumber;
+        this.pictureOffset = pictureOffset;
+        this.pictureLength = pictureLength;
+        this.contentHash = contentHash;
+        this.fingerprint = fingerprint;
+        this.fingerprinted = fingerprinted;
     }
 
     public long getId() {
@@ -93,24 +139,153 @@ public class Music {
         this.addTime = addTime;
     }
 
+    public boolean isLoudnessAnalyzed() {
+        return loudnessAnalyzed;
+    }
+
+    public void setLoudnessAnalyzed(boolean loudnessAnalyzed) {
+        this.loudnessAnalyzed = loudnessAnalyzed;
+    }
+
+    /**
+     * The integrated loudness in LUFS, NaN if the analysis failed.
+     */
+    public float getLoudness() {
+        return loudness;
+    }
+
+    public void setLoudness(float loudness) {
+        this.loudness = loudness;
+    }
+
+    public float getPeak() {
+        return peak;
+    }
+
+    public void setPeak(float peak) {
+        this.peak = peak;
+    }
+
+    public String getAlbumArtist() {
+        return albumArtist;
+    }
+
+    public void setAlbumArtist(String albumArtist) {
+        this.albumArtist = albumArtist;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public void setGenre(String genre) {
+        this.genre = genre;
+    }
+
+    /**
+     * The year of the tags, 0 if unknown.
+     */
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    /**
+     * The track number of the tags, 0 if unknown.
+     */
+    public int getTrackNumber() {
+        return trackNumber;
+    }
+
+    public void setTrackNumber(int trackNumber) {
+        this.trackNumber = trackNumber;
+    }
+
+    /**
+     * The disc number of the tags, 0 if unknown.
+     */
+    public int getDiscNumber() {
+        return discNumber;
+    }
+
+    public void setDiscNumber(int discNumber) {
+        this.discNumber = discNumber;
+    }
+
+    /**
+     * The byte offset of the embedded picture in the music file, see {@link #getPictureLength()}.
+     */
+    public long getPictureOffset() {
+        return pictureOffset;
+    }
+
+    public void setPictureOffset(long pictureOffset) {
+        this.pictureOffset = pictureOffset;
+    }
+
+    /**
+     * The byte length of the embedded picture, 0 if the music has no embedded picture or it
+     * cannot be read at {@link #getPictureOffset()} as is.
+     */
+    public int getPictureLength() {
+        return pictureLength;
+    }
+
+    public void setPictureLength(int pictureLength) {
+        this.pictureLength = pictureLength;
+    }
+
+    /**
+     * The hash of the size and a few sampled blocks of the music file, null if unknown. Equal
+     * hashes mean copies of the same file.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * The fingerprint of the decoded audio, only valid if {@link #isFingerprinted()} is true and
+     * it is not 0. Similar fingerprints mean the same recording, even if it is encoded differently.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public boolean isFingerprinted() {
+        return fingerprinted;
+    }
+
+    public void setFingerprinted(boolean fingerprinted) {
+        this.fingerprinted = fingerprinted;
+    }
+
+    /**
+     * Two music are equal if they have the same id, so that a music rebuilt from a
+     * {@link accepted.player.audio.MusicItem} with fewer fields is still found in a music list.
+     * A music that is not stored yet (id is 0) is only equal to itself.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Music music = (Music) o;
-        return id == music.id &&
-                duration == music.duration &&
-                addTime == music.addTime &&
-                Objects.equal(title, music.title) &&
-                Objects.equal(artist, music.artist) &&
-                Objects.equal(album, music.album) &&
-                Objects.equal(uri, music.uri) &&
-                Objects.equal(iconUri, music.iconUri);
+        return id != 0 && id == music.id;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(id, title, artist, album, uri, iconUri, duration, addTime);
+        return id == 0 ? System.identityHashCode(this) : Objects.hashCode(id);
     }
 
     @NonNull
@@ -125,6 +300,19 @@ public class Music {
                 ", iconUri='" + iconUri + '\'' +
                 ", duration=" + duration +
                 ", addTime=" + addTime +
+                ", loudnessAnalyzed=" + loudnessAnalyzed +
+                ", loudness=" + loudness +
+                ", peak=" + peak +
+                ", albumArtist='" + albumArtist + '\'' +
+                ", genre='" + genre + '\'' +
+                ", year=" + year +
+                ", trackNumber=" + trackNumber +
+                ", discNumber=" + discNumber +
+                ", pictureOffset=" + pictureOffset +
+                ", pictureLength=" + pictureLength +
+                ", contentHash='" + contentHash + '\'' +
+                ", fingerprint=" + fingerprint +
+                ", fingerprinted=" + fingerprinted +
                 '}';
     }
 }
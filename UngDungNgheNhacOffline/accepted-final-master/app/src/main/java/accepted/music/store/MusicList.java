@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -43,6 +44,44 @@ public class MusicList {
         return musicListEntity.id;
     }
 
+    @NonNull
+    static long[] readOrderBytes(@Nullable byte[] orderBytes) throws IOException {
+        if (orderBytes == null || orderBytes.length <= 0) {
+            return new long[0];
+        }
+
+        ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(orderBytes));
+
+        long[] ids = new long[Math.max(0, (orderBytes.length - 4) / 8)];
+        int size = 0;
+        while (input.available() > 0 && size < ids.length) {
+            ids[size++] = input.readLong();
+        }
+
+        input.close();
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    @NonNull
+    static byte[] writeOrderBytes(@NonNull long[] ids, int size) {
+        try {
+            ByteArrayOutputStream byteOutput = new ByteArrayOutputStream(size * 8 + 16);
+            ObjectOutputStream output = new ObjectOutputStream(byteOutput);
+
+            for (int i = 0; i < size; i++) {
+                output.writeLong(ids[i]);
+            }
+
+            output.flush();
+            output.close();
+            return byteOutput.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return new byte[0];
+    }
+
     @NonNull
     public String getName() {
         return musicListEntity.name;
@@ -126,22 +165,12 @@ public class MusicList {
 
         @NonNull
         private byte[] getOrderBytes() {
-            try {
-                ByteArrayOutputStream byteOutput = new ByteArrayOutputStream(mOrderedList.size() * 4);
-                ObjectOutputStream output = new ObjectOutputStream(byteOutput);
-
-                for (Music music : mOrderedList) {
-                    output.writeLong(music.id);
-                }
-
-                output.flush();
-                output.close();
-                return byteOutput.toByteArray();
-            } catch (IOException e) {
-                e.printStackTrace();
+            long[] ids = new long[mOrderedList.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = mOrderedList.get(i).id;
             }
 
-            return new byte[0];
+            return writeOrderBytes(ids, ids.length);
         }
 
         @Override
@@ -9,12 +9,18 @@ import androidx.annotation.Nullable;
 import com.google.common.base.Preconditions;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -39,7 +45,10 @@ public class MusicStore {
     private final BoxStore mBoxStore;
     private final Box<Music> mMusicBox;
     private final Box<MusicListEntity> mMusicListEntityBox;
-    private final Box<HistoryEntity> mHistoryEntityBox;
+    private final HistoryStore mHistoryStore;
+    private final PlayStatisticsStore mPlayStatisticsStore;
+    private final SmartMusicListStore mSmartMusicListStore;
+    private final SortJobScheduler mSortJobScheduler;
 
     private final Handler mMainHandler;
 
@@ -49,11 +58,17 @@ public class MusicStore {
 
     private final Set<String> mAllCustomMusicListName;
 
+    // incremented by the writes that add, remove or edit music, but not by the analysis updates
+    private volatile int mMusicModCount;
+
     private MusicStore(BoxStore boxStore) {
         mBoxStore = boxStore;
         mMusicBox = boxStore.boxFor(Music.class);
         mMusicListEntityBox = boxStore.boxFor(MusicListEntity.class);
-        mHistoryEntityBox = boxStore.boxFor(HistoryEntity.class);
+        mHistoryStore = new HistoryStore(boxStore);
+        mPlayStatisticsStore = new PlayStatisticsStore(boxStore);
+        mSmartMusicListStore = new SmartMusicListStore(boxStore);
+        mSortJobScheduler = new SortJobScheduler(this);
         mMainHandler = new Handler(Looper.getMainLooper());
         mAllFavoriteChangeListener = new ArrayList<>();
         mAllCustomMusicListUpdateListener = new ArrayList<>();
@@ -109,24 +124,16 @@ public class MusicStore {
         return mInstance;
     }
 
-    public synchronized void sort(@NonNull MusicList musicList, @NonNull MusicList.SortOrder sortOrder, @Nullable SortCallback callback) {
+    /**
+     * Sort the music list in the background, must be called on the main thread. Sorting a music
+     * list again cancels the previous sort of it.
+     */
+    @NonNull
+    public SortJob sort(@NonNull MusicList musicList, @NonNull MusicList.SortOrder sortOrder, @Nullable SortCallback callback) {
         Preconditions.checkNotNull(musicList);
         Preconditions.checkNotNull(sortOrder);
 
-        BoxStore boxStore = getInstance().getBoxStore();
-        boxStore.runInTxAsync(() -> {
-            ArrayList<Music> items = new ArrayList<>(musicList.getMusicElements());
-            Collections.sort(items, sortOrder.comparator());
-
-            musicList.musicListEntity.sortOrder = sortOrder;
-            musicList.getMusicElements().clear();
-            musicList.getMusicElements().addAll(items);
-            updateMusicList(musicList);
-        }, (result, error) -> mMainHandler.post(() -> {
-            if (callback != null) {
-                callback.onSortFinished();
-            }
-        }));
+        return mSortJobScheduler.submit(musicList, sortOrder, callback);
     }
 
     public synchronized BoxStore getBoxStore() throws IllegalStateException {
@@ -339,36 +346,145 @@ public class MusicStore {
         Preconditions.checkNotNull(music);
         Preconditions.checkNotNull(allMusicListName);
 
-        List<MusicListEntity> entityList = new ArrayList<>();
-        for (String name : allMusicListName) {
-            MusicList musicList = getCustomMusicList(name);
-            if (musicList == null) {
-                continue;
-            }
-            musicList.getMusicElements().add(music);
-            musicList.applyChanges();
-            entityList.add(musicList.musicListEntity);
-        }
-
-        mMusicListEntityBox.put(entityList);
+        addToAllMusicList(Collections.singletonList(music), allMusicListName);
     }
 
     public synchronized void addToAllMusicList(@NonNull List<Music> allMusic, @NonNull List<String> allMusicListName) {
         Preconditions.checkNotNull(allMusic);
         Preconditions.checkNotNull(allMusicListName);
 
-        List<MusicListEntity> entityList = new ArrayList<>();
+        List<String> allCustomMusicListName = new ArrayList<>(allMusicListName.size());
         for (String name : allMusicListName) {
-            MusicList musicList = getCustomMusicList(name);
-            if (musicList == null) {
-                continue;
+            if (!isBuiltInName(name)) {
+                allCustomMusicListName.add(name);
+            }
+        }
+
+        addAllMusicById(getAllMusicId(allMusic), getAllMusicListId(allCustomMusicListName));
+    }
+
+    @NonNull
+    public synchronized Map<Long, Integer> addAllMusicById(@NonNull Set<Long> allMusicId, @NonNull Set<Long> allMusicListId) {
+        Preconditions.checkNotNull(allMusicId);
+        Preconditions.checkNotNull(allMusicListId);
+        checkThread();
+
+        Map<Long, Integer> result = new HashMap<>();
+        if (allMusicId.isEmpty() || allMusicListId.isEmpty()) {
+            return result;
+        }
+
+        List<String> allUpdatedName = new ArrayList<>();
+        mBoxStore.runInTx(() -> {
+            List<Music> allMusic = getAllExistsMusic(allMusicId);
+            List<MusicListEntity> allUpdatedEntity = new ArrayList<>();
+
+            for (long musicListId : allMusicListId) {
+                MusicListEntity entity = mMusicListEntityBox.get(musicListId);
+                if (entity == null) {
+                    continue;
+                }
+
+                long[] order = readOrder(entity);
+                Set<Long> allExistsId = new HashSet<>(order.length * 2);
+                for (long id : order) {
+                    allExistsId.add(id);
+                }
+
+                long[] newOrder = Arrays.copyOf(order, order.length + allMusic.size());
+                int size = order.length;
+                List<Music> allAdded = new ArrayList<>();
+                for (Music music : allMusic) {
+                    if (allExistsId.add(music.id)) {
+                        newOrder[size++] = music.id;
+                        allAdded.add(music);
+                    }
+                }
+
+                result.put(musicListId, allAdded.size());
+                if (allAdded.isEmpty()) {
+                    continue;
+                }
+
+                entity.musicElements.addAll(allAdded);
+                entity.orderBytes = MusicList.writeOrderBytes(newOrder, size);
+                entity.size = size;
+                allUpdatedEntity.add(entity);
+                allUpdatedName.add(entity.name);
             }
-            musicList.getMusicElements().addAll(allMusic);
-            musicList.applyChanges();
-            entityList.add(musicList.musicListEntity);
+
+            mMusicListEntityBox.put(allUpdatedEntity);
+        });
+
+        for (String name : allUpdatedName) {
+            if (MUSIC_LIST_FAVORITE.equals(name)) {
+                notifyFavoriteChanged();
+            } else if (!isBuiltInName(name)) {
+                notifyCustomMusicListUpdated(name);
+            }
+        }
+
+        return result;
+    }
+
+    private List<Music> getAllExistsMusic(Set<Long> allMusicId) {
+        long[] ids = new long[allMusicId.size()];
+        int size = 0;
+        for (Long id : allMusicId) {
+            if (id != null && id > 0) {
+                ids[size++] = id;
+            }
+        }
+
+        List<Music> allMusic = new ArrayList<>(size);
+        for (Music music : mMusicBox.get(Arrays.copyOf(ids, size))) {
+            if (music != null) {
+                allMusic.add(music);
+            }
+        }
+
+        return allMusic;
+    }
+
+    static long[] readOrder(MusicListEntity entity) {
+        try {
+            long[] order = MusicList.readOrderBytes(entity.orderBytes);
+            if (order.length == entity.musicElements.size()) {
+                return order;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // orderBytes is missing or out of date, fallback to the relation order.
+        long[] order = new long[entity.musicElements.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = entity.musicElements.get(i).id;
         }
+        return order;
+    }
+
+    private Set<Long> getAllMusicId(Collection<Music> allMusic) {
+        Set<Long> allMusicId = new LinkedHashSet<>(allMusic.size() * 2);
+        for (Music music : allMusic) {
+            allMusicId.add(music.id);
+        }
+        return allMusicId;
+    }
 
-        mMusicListEntityBox.put(entityList);
+    private Set<Long> getAllMusicListId(Collection<String> allMusicListName) {
+        Set<Long> allMusicListId = new LinkedHashSet<>();
+        for (String name : allMusicListName) {
+            long[] ids = mMusicListEntityBox.query()
+                    .equal(MusicListEntity_.name, name)
+                    .build()
+                    .findIds();
+
+            for (long id : ids) {
+                allMusicListId.add(id);
+            }
+        }
+        return allMusicListId;
     }
 
     public synchronized boolean isFavorite(@NonNull Music music) {
@@ -507,56 +623,75 @@ public class MusicStore {
                 name.equalsIgnoreCase(MUSIC_LIST_FAVORITE);
     }
 
+    @NonNull
+    public HistoryStore getHistoryStore() {
+        return mHistoryStore;
+    }
+
+    @NonNull
+    public PlayStatisticsStore getPlayStatisticsStore() {
+        return mPlayStatisticsStore;
+    }
+
+    @NonNull
+    public SmartMusicListStore getSmartMusicListStore() {
+        return mSmartMusicListStore;
+    }
+
     public synchronized void addHistory(@NonNull Music music) {
         Preconditions.checkNotNull(music);
         checkThread();
 
-        HistoryEntity historyEntity = mHistoryEntityBox.query()
-                .equal(HistoryEntity_.musicId, music.id)
-                .build()
-                .findFirst();
-
-        if (historyEntity == null) {
-            historyEntity = new HistoryEntity();
-            historyEntity.music.setTarget(music);
-        }
-        historyEntity.timestamp = System.currentTimeMillis();
-
-        mHistoryEntityBox.put(historyEntity);
+        mHistoryStore.putAll(Collections.singletonList(
+                new HistoryStore.PlayEvent(music.getId(), System.currentTimeMillis())));
     }
 
     public synchronized void removeHistory(@NonNull HistoryEntity historyEntity) {
         Preconditions.checkNotNull(historyEntity);
         checkThread();
 
-        mHistoryEntityBox.query()
-                .equal(HistoryEntity_.id, historyEntity.id)
-                .build()
-                .remove();
+        mHistoryStore.remove(historyEntity);
     }
 
     public synchronized void clearHistory() {
         checkThread();
 
-        mHistoryEntityBox.query()
-                .build()
-                .remove();
+        mHistoryStore.clear();
     }
 
     @NonNull
     public synchronized List<HistoryEntity> getAllHistory() {
         checkThread();
 
-        return mHistoryEntityBox.query()
-                .orderDesc(HistoryEntity_.timestamp)
-                .build()
-                .find();
+        return mHistoryStore.getAll();
+    }
+
+    @NonNull
+    public synchronized List<HistoryEntity> getHistory(long offset, long limit) {
+        checkThread();
+
+        return mHistoryStore.getHistory(offset, limit);
+    }
+
+    /**
+     * @see HistoryStore#getHistoryAfter(HistoryEntity, long)
+     */
+    @NonNull
+    public synchronized List<HistoryEntity> getHistoryAfter(@NonNull HistoryEntity last, long limit) {
+        checkThread();
+
+        return mHistoryStore.getHistoryAfter(last, limit);
     }
 
     public synchronized void putMusic(@NonNull Music music) {
         checkThread();
         Preconditions.checkNotNull(music);
-        mMusicBox.put(music);
+        mBoxStore.runInTx(() -> {
+            mMusicBox.put(music);
+            mSmartMusicListStore.onMusicPut(Collections.singletonList(music));
+        });
+        mMusicModCount += 1;
+        mSortJobScheduler.invalidate();
     }
 
     @Nullable
@@ -565,6 +700,17 @@ public class MusicStore {
         return mMusicBox.get(id);
     }
 
+    @Nullable
+    public synchronized Music getMusic(@NonNull String uri) {
+        checkThread();
+        Preconditions.checkNotNull(uri);
+
+        return mMusicBox.query()
+                .equal(Music_.uri, uri)
+                .build()
+                .findUnique();
+    }
+
     @NonNull
     public synchronized List<Music> getAllMusic() {
         checkThread();
@@ -579,6 +725,252 @@ public class MusicStore {
                 .find(offset, limit);
     }
 
+    /**
+     * The music whose loudness has not been analyzed yet, at most {@code limit} of them.
+     */
+    @NonNull
+    public synchronized List<Music> getLoudnessPendingMusic(long limit) {
+        checkThread();
+        return mMusicBox.query()
+                .equal(Music_.loudnessAnalyzed, false)
+                .build()
+                .find(0, limit);
+    }
+
+    /**
+     * @param loudness the integrated loudness in LUFS, NaN if the analysis failed.
+     */
+    public synchronized void updateLoudness(long musicId, float loudness, float peak) {
+        checkThread();
+        Music music = mMusicBox.get(musicId);
+        if (music == null) {
+            return;
+        }
+
+        music.setLoudnessAnalyzed(true);
+        music.setLoudness(loudness);
+        music.setPeak(peak);
+        // the loudness is not part of any sort order or smart music list rule
+        mMusicBox.put(music);
+    }
+
+    /**
+     * The music of the local music list that has not been fingerprinted yet, at most
+     * {@code limit} of them. Only the local music is searched for duplicates.
+     */
+    @NonNull
+    public synchronized List<Music> getFingerprintPendingMusic(long limit) {
+        checkThread();
+
+        QueryBuilder<Music> builder = mMusicBox.query()
+                .equal(Music_.fingerprinted, false);
+
+        builder.backlink(MusicListEntity_.musicElements)
+                .equal(MusicListEntity_.name, MUSIC_LIST_LOCAL_MUSIC);
+
+        return builder.build().find(0, limit);
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the decoded audio, 0 if it cannot be fingerprinted.
+     */
+    public synchronized void updateFingerprint(long musicId, long fingerprint) {
+        checkThread();
+        Music music = mMusicBox.get(musicId);
+        if (music == null) {
+            return;
+        }
+
+        music.setFingerprinted(true);
+        music.setFingerprint(fingerprint);
+        // the fingerprint is not part of any sort order or smart music list rule
+        mMusicBox.put(music);
+    }
+
+    /**
+     * Stores the content hashes of the music that is already in the store, if they are not
+     * known yet or have changed. The other properties of the stored music are kept.
+     */
+    public synchronized void updateAllContentHash(@NonNull Collection<Music> musics) {
+        Preconditions.checkNotNull(musics);
+        checkThread();
+
+        mBoxStore.runInTx(() -> {
+            List<Music> allUpdated = new ArrayList<>();
+            for (Music music : musics) {
+                if (music.id <= 0 || music.getContentHash() == null) {
+                    continue;
+                }
+
+                Music stored = mMusicBox.get(music.id);
+                if (stored != null && !music.getContentHash().equals(stored.getContentHash())) {
+                    stored.setContentHash(music.getContentHash());
+                    allUpdated.add(stored);
+                }
+            }
+            mMusicBox.put(allUpdated);
+        });
+    }
+
+    /**
+     * Returns whether a music of the local music list has the content hash, i.e. whether a file
+     * with the hash is a copy of a local music. It is a lookup of the indexed hash.
+     */
+    public synchronized boolean isLocalMusicContent(@NonNull String contentHash) {
+        Preconditions.checkNotNull(contentHash);
+        checkThread();
+
+        QueryBuilder<Music> builder = mMusicBox.query()
+                .equal(Music_.contentHash, contentHash);
+
+        builder.backlink(MusicListEntity_.musicElements)
+                .equal(MusicListEntity_.name, MUSIC_LIST_LOCAL_MUSIC);
+
+        return builder.build().count() > 0;
+    }
+
+    /**
+     * Replaces the duplicates with the music in every music list in one transaction. A music
+     * list that already contains the music just loses the duplicates, otherwise the music takes
+     * the place of the first duplicate. The duplicates stay in the store.
+     */
+    public synchronized void mergeDuplicates(@NonNull Music music, @NonNull Collection<Music> duplicates) {
+        Preconditions.checkNotNull(music);
+        Preconditions.checkNotNull(duplicates);
+        checkThread();
+
+        Set<Long> allDuplicateId = getAllMusicId(duplicates);
+        allDuplicateId.remove(music.id);
+        if (allDuplicateId.isEmpty()) {
+            return;
+        }
+
+        long[] duplicateIds = new long[allDuplicateId.size()];
+        int index = 0;
+        for (long id : allDuplicateId) {
+            duplicateIds[index++] = id;
+        }
+
+        List<String> allUpdatedName = new ArrayList<>();
+        mBoxStore.runInTx(() -> {
+            Music keep = mMusicBox.get(music.id);
+            if (keep == null) {
+                return;
+            }
+
+            QueryBuilder<MusicListEntity> builder = mMusicListEntityBox.query();
+            builder.link(MusicListEntity_.musicElements)
+                    .in(Music_.id, duplicateIds);
+            List<MusicListEntity> allEntity = builder.build().find();
+
+            for (MusicListEntity entity : allEntity) {
+                mergeDuplicates(entity, keep, allDuplicateId);
+                allUpdatedName.add(entity.name);
+            }
+
+            mMusicListEntityBox.put(allEntity);
+        });
+
+        for (String name : allUpdatedName) {
+            if (MUSIC_LIST_FAVORITE.equals(name)) {
+                notifyFavoriteChanged();
+            } else if (!isBuiltInName(name)) {
+                notifyCustomMusicListUpdated(name);
+            }
+        }
+    }
+
+    private void mergeDuplicates(MusicListEntity entity, Music keep, Set<Long> allDuplicateId) {
+        long[] order = readOrder(entity);
+        boolean containsKeep = false;
+        for (long id : order) {
+            if (id == keep.id) {
+                containsKeep = true;
+                break;
+            }
+        }
+
+        long[] newOrder = new long[order.length];
+        int size = 0;
+        for (long id : order) {
+            if (!allDuplicateId.contains(id)) {
+                newOrder[size++] = id;
+            } else if (!containsKeep) {
+                newOrder[size++] = keep.id;
+                containsKeep = true;
+            }
+        }
+
+        List<Music> allRemoved = new ArrayList<>();
+        boolean keepInElements = false;
+        for (Music element : entity.musicElements) {
+            if (allDuplicateId.contains(element.id)) {
+                allRemoved.add(element);
+            } else if (element.id == keep.id) {
+                keepInElements = true;
+            }
+        }
+
+        entity.musicElements.removeAll(allRemoved);
+        if (!keepInElements) {
+            entity.musicElements.add(keep);
+        }
+        entity.orderBytes = MusicList.writeOrderBytes(newOrder, size);
+        entity.size = size;
+    }
+
+    /**
+     * Writes a backup of the store to the output, see {@link LibraryBackup}.
+     *
+     * @param fileDir the files of the directory are added to the backup, may be null.
+     */
+    public void exportBackup(@NonNull OutputStream output, @Nullable File fileDir) throws IOException {
+        Preconditions.checkNotNull(output);
+        checkThread();
+
+        new LibraryBackup(mBoxStore, mSmartMusicListStore).export(output, fileDir);
+    }
+
+    /**
+     * Merges a backup into the store, see {@link LibraryBackup}. A truncated or corrupted backup
+     * changes nothing.
+     *
+     * @param fileDir the directory where the files of the backup are restored, or null to
+     *                skip the files.
+     */
+    @NonNull
+    public synchronized LibraryBackup.Result restoreBackup(@NonNull InputStream input, @Nullable File fileDir)
+            throws IOException {
+        Preconditions.checkNotNull(input);
+        checkThread();
+
+        LibraryBackup.Result result = new LibraryBackup(mBoxStore, mSmartMusicListStore).restore(input, fileDir);
+        onBackupRestored();
+        return result;
+    }
+
+    private void onBackupRestored() {
+        String[] allName = mMusicListEntityBox.query()
+                .notEqual(MusicListEntity_.name, MUSIC_LIST_LOCAL_MUSIC)
+                .notEqual(MusicListEntity_.name, MUSIC_LIST_FAVORITE)
+                .build()
+                .property(MusicListEntity_.name)
+                .findStrings();
+
+        if (allName != null) {
+            mAllCustomMusicListName.addAll(Arrays.asList(allName));
+        }
+
+        mMusicModCount += 1;
+        mSortJobScheduler.invalidate();
+
+        notifyFavoriteChanged();
+        for (String name : new ArrayList<>(mAllCustomMusicListName)) {
+            notifyCustomMusicListUpdated(name);
+        }
+        mMainHandler.post(this::notifyScanComplete);
+    }
+
     public synchronized long getMusicCount() {
         checkThread();
         return mMusicBox.count();
@@ -586,37 +978,57 @@ public class MusicStore {
 
     public synchronized boolean removeMusic(@NonNull Music music) {
         checkThread();
-        return mMusicBox.remove(music.getId());
+        mMusicModCount += 1;
+        try {
+            return mBoxStore.callInTx(() -> {
+                mSmartMusicListStore.onMusicRemoved(Collections.singletonList(music.getId()));
+                return mMusicBox.remove(music.getId());
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "removeMusic failed", e);
+            return false;
+        }
     }
 
     public synchronized void removeMusic(Collection<Music> musics) {
         checkThread();
-        mMusicBox.remove(musics);
+        mBoxStore.runInTx(() -> {
+            mSmartMusicListStore.onMusicRemoved(getAllMusicId(musics));
+            mMusicBox.remove(musics);
+        });
+        mMusicModCount += 1;
+    }
+
+    /**
+     * Returns a count that changes whenever music is added, removed or edited. The loudness,
+     * fingerprint and content hash updates do not change it, so an observer of the music box
+     * can skip them.
+     */
+    public int getMusicModCount() {
+        return mMusicModCount;
     }
 
     public synchronized void putAllMusic(@NonNull Collection<Music> musics) {
         Preconditions.checkNotNull(musics);
         checkThread();
-        mMusicBox.put(musics);
+        mBoxStore.runInTx(() -> {
+            mMusicBox.put(musics);
+            mSmartMusicListStore.onMusicPut(musics);
+        });
+        mMusicModCount += 1;
+        mSortJobScheduler.invalidate();
     }
 
     public synchronized void addAllMusic(@NonNull String musicListName, @NonNull List<Music> allMusic) {
         Preconditions.checkNotNull(musicListName);
         Preconditions.checkNotNull(allMusic);
 
-        MusicList musicList;
         if (isBuiltInName(musicListName)) {
-            musicList = getBuiltInMusicList(musicListName);
-        } else {
-            musicList = getCustomMusicList(musicListName);
+            // make sure the built-in music list exists
+            getBuiltInMusicList(musicListName);
         }
 
-        if (musicList == null) {
-            return;
-        }
-
-        musicList.getMusicElements().addAll(allMusic);
-        updateMusicList(musicList);
+        addAllMusicById(getAllMusicId(allMusic), getAllMusicListId(Collections.singletonList(musicListName)));
     }
 
     public synchronized void removeAllMusic(@NonNull String musicListName, @NonNull List<Music> allMusic) {
@@ -666,6 +1078,92 @@ public class MusicStore {
         return builder.build().count() > 0;
     }
 
+    /**
+     * Returns the music of the music list in the order of the list, from {@code offset} and at
+     * most {@code limit} of them. Unlike {@link MusicList#getMusicElements()}, only the returned
+     * music are loaded.
+     */
+    @NonNull
+    public synchronized List<Music> getMusicListMusic(@NonNull String name, long offset, long limit) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkArgument(offset >= 0, "offset must >= 0");
+        Preconditions.checkArgument(limit >= 0, "limit must >= 0");
+        checkThread();
+
+        MusicListEntity entity = mMusicListEntityBox.query()
+                .equal(MusicListEntity_.name, name)
+                .build()
+                .findUnique();
+
+        if (entity == null) {
+            return Collections.emptyList();
+        }
+
+        long[] allId;
+        try {
+            allId = MusicList.readOrderBytes(entity.orderBytes);
+        } catch (IOException e) {
+            Log.e(TAG, "read order bytes failed", e);
+            allId = new long[0];
+        }
+
+        if (allId.length == 0) {
+            // the order of the music list is the order of its relation
+            QueryBuilder<Music> builder = mMusicBox.query();
+            builder.backlink(MusicListEntity_.musicElements)
+                    .equal(MusicListEntity_.name, name);
+            return builder.build().find(offset, limit);
+        }
+
+        if (offset >= allId.length) {
+            return Collections.emptyList();
+        }
+
+        int end = (int) Math.min(allId.length, offset + Math.min(limit, allId.length));
+        List<Music> allMusic = new ArrayList<>(end - (int) offset);
+        for (Music music : mMusicBox.get(Arrays.copyOfRange(allId, (int) offset, end))) {
+            // the removed music
+            if (music != null) {
+                allMusic.add(music);
+            }
+        }
+
+        return allMusic;
+    }
+
+    /**
+     * Returns the ids of the music of the music list in the order of the list, without loading
+     * the music.
+     */
+    @NonNull
+    public synchronized long[] getMusicListMusicIds(@NonNull String name) {
+        Preconditions.checkNotNull(name);
+        checkThread();
+
+        MusicListEntity entity = mMusicListEntityBox.query()
+                .equal(MusicListEntity_.name, name)
+                .build()
+                .findUnique();
+
+        if (entity == null) {
+            return new long[0];
+        }
+
+        try {
+            long[] allId = MusicList.readOrderBytes(entity.orderBytes);
+            if (allId.length > 0) {
+                return allId;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "read order bytes failed", e);
+        }
+
+        QueryBuilder<Music> builder = mMusicBox.query();
+        builder.backlink(MusicListEntity_.musicElements)
+                .equal(MusicListEntity_.name, name);
+        return builder.build().findIds();
+    }
+
     @NonNull
     public synchronized List<String> getAllArtist() {
         checkThread();
@@ -707,6 +1205,21 @@ public class MusicStore {
                 .find(offset, limit);
     }
 
+    /**
+     * Returns the ids of the music of the artist, in the order of
+     * {@link #getArtistAllMusic(String, long, long)}.
+     */
+    @NonNull
+    public synchronized long[] getArtistAllMusicIds(@NonNull String artist) {
+        Preconditions.checkNotNull(artist);
+        checkThread();
+
+        return mMusicBox.query()
+                .equal(Music_.artist, artist)
+                .build()
+                .findIds();
+    }
+
     @NonNull
     public synchronized List<Music> getAlbumAllMusic(@NonNull String album) {
         Preconditions.checkNotNull(album);
@@ -728,6 +1241,21 @@ public class MusicStore {
                 .find(offset, limit);
     }
 
+    /**
+     * Returns the ids of the music of the album, in the order of
+     * {@link #getAlbumAllMusic(String, long, long)}.
+     */
+    @NonNull
+    public synchronized long[] getAlbumAllMusicIds(@NonNull String album) {
+        Preconditions.checkNotNull(album);
+        checkThread();
+
+        return mMusicBox.query()
+                .equal(Music_.album, album)
+                .build()
+                .findIds();
+    }
+
     @NonNull
     private synchronized MusicList getBuiltInMusicList(String name) {
         if (!isBuiltInName(name)) {
@@ -817,6 +1345,52 @@ public class MusicStore {
                 .find();
     }
 
+    /**
+     * Finds the music whose title, artist or album contains the key, from {@code offset} and at
+     * most {@code limit} of them.
+     */
+    @NonNull
+    public synchronized List<Music> findMusic(@NonNull String key, long offset, long limit) {
+        Preconditions.checkNotNull(key);
+        checkThread();
+
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return mMusicBox.query()
+                .contains(Music_.title, key)
+                .or()
+                .contains(Music_.artist, key)
+                .or()
+                .contains(Music_.album, key)
+                .build()
+                .find(offset, limit);
+    }
+
+    /**
+     * Returns the ids of the music whose title, artist or album contains the key, in the order of
+     * {@link #findMusic(String, long, long)}.
+     */
+    @NonNull
+    public synchronized long[] findMusicIds(@NonNull String key) {
+        Preconditions.checkNotNull(key);
+        checkThread();
+
+        if (key.isEmpty()) {
+            return new long[0];
+        }
+
+        return mMusicBox.query()
+                .contains(Music_.title, key)
+                .or()
+                .contains(Music_.artist, key)
+                .or()
+                .contains(Music_.album, key)
+                .build()
+                .findIds();
+    }
+
     public interface OnFavoriteChangeListener {
         void onFavoriteChanged();
     }
@@ -827,6 +1401,9 @@ public class MusicStore {
 
     public interface SortCallback {
         void onSortFinished();
+
+        default void onSortProgress(int progress) {
+        }
     }
 
     public interface OnCustomMusicListUpdateListener {
@@ -0,0 +1,56 @@
+package accepted.music.store;
+
+import io.objectbox.annotation.Entity;
+import io.objectbox.annotation.Id;
+import io.objectbox.annotation.Index;
+import io.objectbox.annotation.Unique;
+
+@Entity
+public class PlayStatisticsEntity {
+    @Id
+    long id;
+    @Unique
+    long musicId;
+    @Index
+    int playCount;
+    int completeCount;
+    int skipCount;
+    @Index
+    long lastPlayedTime;
+
+    public PlayStatisticsEntity() {
+    }
+
+    public PlayStatisticsEntity(long id, long musicId) {
+        this.id = id;
+        this.musicId = musicId;
+    }
+
+    public long getMusicId() {
+        return musicId;
+    }
+
+    public int getPlayCount() {
+        return playCount;
+    }
+
+    public int getCompleteCount() {
+        return completeCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    public long getLastPlayedTime() {
+        return lastPlayedTime;
+    }
+
+    public float getCompletionRatio() {
+        if (playCount <= 0) {
+            return 0F;
+        }
+
+        return Math.min(1F, completeCount / (float) playCount);
+    }
+}
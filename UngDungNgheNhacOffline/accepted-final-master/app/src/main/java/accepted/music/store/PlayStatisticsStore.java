@@ -0,0 +1,270 @@
+package accepted.music.store;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.objectbox.Box;
+import io.objectbox.BoxStore;
+import io.objectbox.query.Query;
+
+public class PlayStatisticsStore {
+    // the music scanned at a time for the never played music
+    private static final int BATCH_SIZE = 500;
+
+    private final BoxStore mBoxStore;
+    private final Box<Music> mMusicBox;
+    private final Box<PlayStatisticsEntity> mPlayStatisticsEntityBox;
+
+    // Counters are never removed from the map, flush() drains them with getAndSet(0),
+    // so a concurrent record is either flushed now or kept for the next flush.
+    private final ConcurrentHashMap<Long, Counter> mAllCounter;
+
+    PlayStatisticsStore(@NonNull BoxStore boxStore) {
+        Preconditions.checkNotNull(boxStore);
+
+        mBoxStore = boxStore;
+        mMusicBox = boxStore.boxFor(Music.class);
+        mPlayStatisticsEntityBox = boxStore.boxFor(PlayStatisticsEntity.class);
+        mAllCounter = new ConcurrentHashMap<>();
+    }
+
+    private Counter getCounter(long musicId) {
+        Counter counter = mAllCounter.get(musicId);
+        if (counter != null) {
+            return counter;
+        }
+
+        counter = new Counter();
+        Counter exists = mAllCounter.putIfAbsent(musicId, counter);
+        return exists == null ? counter : exists;
+    }
+
+    public void recordStarted(long musicId) {
+        Counter counter = getCounter(musicId);
+        counter.playCount.incrementAndGet();
+        counter.lastPlayedTime.set(System.currentTimeMillis());
+    }
+
+    public void recordCompleted(long musicId) {
+        getCounter(musicId).completeCount.incrementAndGet();
+    }
+
+    public void recordSkipped(long musicId) {
+        getCounter(musicId).skipCount.incrementAndGet();
+    }
+
+    public synchronized void flush() {
+        final Map<Long, Delta> allDelta = new HashMap<>();
+        for (Map.Entry<Long, Counter> entry : mAllCounter.entrySet()) {
+            Delta delta = entry.getValue().drain();
+            if (delta != null) {
+                allDelta.put(entry.getKey(), delta);
+            }
+        }
+
+        if (allDelta.isEmpty()) {
+            return;
+        }
+
+        mBoxStore.runInTx(() -> {
+            long[] allMusicId = new long[allDelta.size()];
+            int i = 0;
+            for (long musicId : allDelta.keySet()) {
+                allMusicId[i++] = musicId;
+            }
+
+            Map<Long, PlayStatisticsEntity> allExistsEntity = new HashMap<>();
+            List<PlayStatisticsEntity> found = mPlayStatisticsEntityBox.query()
+                    .in(PlayStatisticsEntity_.musicId, allMusicId)
+                    .build()
+                    .find();
+            for (PlayStatisticsEntity entity : found) {
+                allExistsEntity.put(entity.musicId, entity);
+            }
+
+            List<PlayStatisticsEntity> allEntity = new ArrayList<>(allDelta.size());
+            for (Map.Entry<Long, Delta> entry : allDelta.entrySet()) {
+                long musicId = entry.getKey();
+                PlayStatisticsEntity entity = allExistsEntity.get(musicId);
+
+                if (entity == null) {
+                    if (!mMusicBox.contains(musicId)) {
+                        continue;
+                    }
+                    entity = new PlayStatisticsEntity(0, musicId);
+                }
+
+                Delta delta = entry.getValue();
+                entity.playCount += delta.playCount;
+                entity.completeCount += delta.completeCount;
+                entity.skipCount += delta.skipCount;
+                entity.lastPlayedTime = Math.max(entity.lastPlayedTime, delta.lastPlayedTime);
+                allEntity.add(entity);
+            }
+
+            mPlayStatisticsEntityBox.put(allEntity);
+        });
+    }
+
+    @Nullable
+    public synchronized PlayStatisticsEntity getPlayStatistics(long musicId) {
+        return mPlayStatisticsEntityBox.query()
+                .equal(PlayStatisticsEntity_.musicId, musicId)
+                .build()
+                .findUnique();
+    }
+
+    @NonNull
+    public synchronized List<Music> getMostPlayed(long limit) {
+        List<PlayStatisticsEntity> allEntity = mPlayStatisticsEntityBox.query()
+                .greater(PlayStatisticsEntity_.playCount, 0)
+                .orderDesc(PlayStatisticsEntity_.playCount)
+                .build()
+                .find(0, limit);
+
+        return getAllMusic(allEntity);
+    }
+
+    @NonNull
+    public synchronized List<Music> getRecentlyPlayed(long limit) {
+        List<PlayStatisticsEntity> allEntity = mPlayStatisticsEntityBox.query()
+                .greater(PlayStatisticsEntity_.lastPlayedTime, 0)
+                .orderDesc(PlayStatisticsEntity_.lastPlayedTime)
+                .build()
+                .find(0, limit);
+
+        return getAllMusic(allEntity);
+    }
+
+    @NonNull
+    public synchronized List<Music> getRecentlyAdded(long limit) {
+        return mMusicBox.query()
+                .orderDesc(Music_.addTime)
+                .build()
+                .find(0, limit);
+    }
+
+    /**
+     * Returns the music that has never been played, the latest added first. The music is scanned
+     * in batches and only the played ids of a batch are queried, so the memory stays bounded
+     * however many music have been played.
+     */
+    @NonNull
+    public synchronized List<Music> getNeverPlayed(long offset, long limit) {
+        Query<Music> query = mMusicBox.query()
+                .orderDesc(Music_.addTime)
+                .build();
+
+        List<Music> allMusic = new ArrayList<>();
+        long skipped = 0;
+        for (long batchOffset = 0; allMusic.size() < limit; batchOffset += BATCH_SIZE) {
+            List<Music> batch = query.find(batchOffset, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Set<Long> allPlayedId = getAllPlayedId(batch);
+            for (Music music : batch) {
+                if (allPlayedId.contains(music.id)) {
+                    continue;
+                }
+
+                if (skipped < offset) {
+                    skipped += 1;
+                    continue;
+                }
+
+                allMusic.add(music);
+                if (allMusic.size() >= limit) {
+                    break;
+                }
+            }
+        }
+
+        return allMusic;
+    }
+
+    private Set<Long> getAllPlayedId(List<Music> allMusic) {
+        long[] allMusicId = new long[allMusic.size()];
+        for (int i = 0; i < allMusicId.length; i++) {
+            allMusicId[i] = allMusic.get(i).id;
+        }
+
+        long[] allPlayedId = mPlayStatisticsEntityBox.query()
+                .in(PlayStatisticsEntity_.musicId, allMusicId)
+                .greater(PlayStatisticsEntity_.playCount, 0)
+                .build()
+                .property(PlayStatisticsEntity_.musicId)
+                .findLongs();
+
+        Set<Long> result = new HashSet<>(allPlayedId.length);
+        for (long musicId : allPlayedId) {
+            result.add(musicId);
+        }
+        return result;
+    }
+
+    private List<Music> getAllMusic(List<PlayStatisticsEntity> allEntity) {
+        long[] allMusicId = new long[allEntity.size()];
+        for (int i = 0; i < allMusicId.length; i++) {
+            allMusicId[i] = allEntity.get(i).musicId;
+        }
+
+        List<Music> allMusic = new ArrayList<>(allMusicId.length);
+        for (Music music : mMusicBox.get(allMusicId)) {
+            if (music != null) {
+                allMusic.add(music);
+            }
+        }
+
+        return allMusic;
+    }
+
+    private static class Counter {
+        final AtomicInteger playCount = new AtomicInteger();
+        final AtomicInteger completeCount = new AtomicInteger();
+        final AtomicInteger skipCount = new AtomicInteger();
+        final AtomicLong lastPlayedTime = new AtomicLong();
+
+        @Nullable
+        Delta drain() {
+            Delta delta = new Delta(
+                    playCount.getAndSet(0),
+                    completeCount.getAndSet(0),
+                    skipCount.getAndSet(0),
+                    lastPlayedTime.getAndSet(0));
+
+            return delta.isEmpty() ? null : delta;
+        }
+    }
+
+    private static class Delta {
+        final int playCount;
+        final int completeCount;
+        final int skipCount;
+        final long lastPlayedTime;
+
+        Delta(int playCount, int completeCount, int skipCount, long lastPlayedTime) {
+            this.playCount = playCount;
+            this.completeCount = completeCount;
+            this.skipCount = skipCount;
+            this.lastPlayedTime = lastPlayedTime;
+        }
+
+        boolean isEmpty() {
+            return playCount == 0 && completeCount == 0 && skipCount == 0 && lastPlayedTime == 0;
+        }
+    }
+}
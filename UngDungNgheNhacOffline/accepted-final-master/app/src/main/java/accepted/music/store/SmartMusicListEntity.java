@@ -0,0 +1,39 @@
+package accepted.music.store;
+
+import io.objectbox.annotation.Convert;
+import io.objectbox.annotation.Entity;
+import io.objectbox.annotation.Id;
+import io.objectbox.annotation.Unique;
+import io.objectbox.relation.ToMany;
+import accepted.music.store.converter.SortOrderConverter;
+
+@Entity
+public class SmartMusicListEntity {
+    @Id
+    long id;
+    @Unique
+    String name;
+
+    // rule, null or 0 means "no constraint"
+    String artist;
+    String album;
+    String titleKeyword;
+    int minDuration;
+    int maxDuration;
+    int addedWithinDays;
+    @Convert(converter = SortOrderConverter.class, dbType = Integer.class)
+    MusicList.SortOrder sortOrder;
+
+    // materialized result of the rule, maintained incrementally
+    int size;
+    ToMany<Music> musicElements;
+
+    public SmartMusicListEntity() {
+        this.name = "";
+    }
+
+    public SmartMusicListEntity(long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+}
@@ -0,0 +1,231 @@
+package accepted.music.store;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import io.objectbox.query.QueryBuilder;
+
+public final class SmartMusicListRule {
+    @Nullable
+    private final String mArtist;
+    @Nullable
+    private final String mAlbum;
+    @Nullable
+    private final String mTitleKeyword;
+    private final int mMinDuration;
+    private final int mMaxDuration;
+    private final int mAddedWithinDays;
+    private final MusicList.SortOrder mSortOrder;
+
+    private SmartMusicListRule(Builder builder) {
+        mArtist = builder.artist;
+        mAlbum = builder.album;
+        mTitleKeyword = builder.titleKeyword;
+        mMinDuration = builder.minDuration;
+        mMaxDuration = builder.maxDuration;
+        mAddedWithinDays = builder.addedWithinDays;
+        mSortOrder = builder.sortOrder;
+    }
+
+    static SmartMusicListRule from(SmartMusicListEntity entity) {
+        return new Builder()
+                .setArtist(entity.artist)
+                .setAlbum(entity.album)
+                .setTitleKeyword(entity.titleKeyword)
+                .setMinDuration(entity.minDuration)
+                .setMaxDuration(entity.maxDuration)
+                .setAddedWithinDays(entity.addedWithinDays)
+                .setSortOrder(entity.sortOrder == null ? MusicList.SortOrder.BY_ADD_TIME : entity.sortOrder)
+                .build();
+    }
+
+    void applyTo(SmartMusicListEntity entity) {
+        entity.artist = mArtist;
+        entity.album = mAlbum;
+        entity.titleKeyword = mTitleKeyword;
+        entity.minDuration = mMinDuration;
+        entity.maxDuration = mMaxDuration;
+        entity.addedWithinDays = mAddedWithinDays;
+        entity.sortOrder = mSortOrder;
+    }
+
+    @Nullable
+    public String getArtist() {
+        return mArtist;
+    }
+
+    @Nullable
+    public String getAlbum() {
+        return mAlbum;
+    }
+
+    @Nullable
+    public String getTitleKeyword() {
+        return mTitleKeyword;
+    }
+
+    public int getMinDuration() {
+        return mMinDuration;
+    }
+
+    public int getMaxDuration() {
+        return mMaxDuration;
+    }
+
+    public int getAddedWithinDays() {
+        return mAddedWithinDays;
+    }
+
+    @NonNull
+    public MusicList.SortOrder getSortOrder() {
+        return mSortOrder;
+    }
+
+    long getMinAddTime(long now) {
+        if (mAddedWithinDays <= 0) {
+            return 0;
+        }
+
+        return now - TimeUnit.DAYS.toMillis(mAddedWithinDays);
+    }
+
+    // The added-within window moves with time, so it is not part of the materialized
+    // membership and is applied when the music list is read.
+    boolean isInWindow(@NonNull Music music, long now) {
+        return music.getAddTime() >= getMinAddTime(now);
+    }
+
+    boolean matches(@NonNull Music music) {
+        if (mArtist != null && !mArtist.equals(music.getArtist())) {
+            return false;
+        }
+
+        if (mAlbum != null && !mAlbum.equals(music.getAlbum())) {
+            return false;
+        }
+
+        if (mTitleKeyword != null &&
+                (music.getTitle() == null || !music.getTitle().toLowerCase(Locale.ROOT).contains(mTitleKeyword.toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+
+        if (mMinDuration > 0 && music.getDuration() < mMinDuration) {
+            return false;
+        }
+
+        return mMaxDuration <= 0 || music.getDuration() <= mMaxDuration;
+    }
+
+    // Compiles the rule to an ObjectBox query, must stay consistent with matches().
+    QueryBuilder<Music> compile(QueryBuilder<Music> builder) {
+        if (mArtist != null) {
+            builder.equal(Music_.artist, mArtist, QueryBuilder.StringOrder.CASE_SENSITIVE);
+        }
+
+        if (mAlbum != null) {
+            builder.equal(Music_.album, mAlbum, QueryBuilder.StringOrder.CASE_SENSITIVE);
+        }
+
+        if (mTitleKeyword != null) {
+            builder.contains(Music_.title, mTitleKeyword, QueryBuilder.StringOrder.CASE_INSENSITIVE);
+        }
+
+        if (mMinDuration > 0) {
+            builder.greater(Music_.duration, mMinDuration - 1);
+        }
+
+        if (mMaxDuration > 0) {
+            builder.less(Music_.duration, mMaxDuration + 1);
+        }
+
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SmartMusicListRule that = (SmartMusicListRule) o;
+        return mMinDuration == that.mMinDuration &&
+                mMaxDuration == that.mMaxDuration &&
+                mAddedWithinDays == that.mAddedWithinDays &&
+                Objects.equal(mArtist, that.mArtist) &&
+                Objects.equal(mAlbum, that.mAlbum) &&
+                Objects.equal(mTitleKeyword, that.mTitleKeyword) &&
+                mSortOrder == that.mSortOrder;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(mArtist, mAlbum, mTitleKeyword, mMinDuration, mMaxDuration, mAddedWithinDays, mSortOrder);
+    }
+
+    public static class Builder {
+        private String artist;
+        private String album;
+        private String titleKeyword;
+        private int minDuration;
+        private int maxDuration;
+        private int addedWithinDays;
+        private MusicList.SortOrder sortOrder = MusicList.SortOrder.BY_ADD_TIME;
+
+        public Builder setArtist(@Nullable String artist) {
+            this.artist = emptyToNull(artist);
+            return this;
+        }
+
+        public Builder setAlbum(@Nullable String album) {
+            this.album = emptyToNull(album);
+            return this;
+        }
+
+        public Builder setTitleKeyword(@Nullable String titleKeyword) {
+            this.titleKeyword = emptyToNull(titleKeyword);
+            return this;
+        }
+
+        /**
+         * @param minDuration milliseconds, 0 means no limit.
+         */
+        public Builder setMinDuration(int minDuration) {
+            this.minDuration = Math.max(0, minDuration);
+            return this;
+        }
+
+        /**
+         * @param maxDuration milliseconds, 0 means no limit.
+         */
+        public Builder setMaxDuration(int maxDuration) {
+            this.maxDuration = Math.max(0, maxDuration);
+            return this;
+        }
+
+        /**
+         * @param days 0 means no limit.
+         */
+        public Builder setAddedWithinDays(int days) {
+            this.addedWithinDays = Math.max(0, days);
+            return this;
+        }
+
+        public Builder setSortOrder(@NonNull MusicList.SortOrder sortOrder) {
+            Preconditions.checkNotNull(sortOrder);
+            this.sortOrder = sortOrder;
+            return this;
+        }
+
+        public SmartMusicListRule build() {
+            return new SmartMusicListRule(this);
+        }
+
+        private static String emptyToNull(String value) {
+            return (value == null || value.isEmpty()) ? null : value;
+        }
+    }
+}
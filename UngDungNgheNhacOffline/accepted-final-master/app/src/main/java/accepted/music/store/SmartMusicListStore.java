@@ -0,0 +1,226 @@
+package accepted.music.store;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import io.objectbox.Box;
+import io.objectbox.BoxStore;
+
+/**
+ * Rule based music lists. The members of each list are materialized when the list is created and
+ * then maintained incrementally as music is put or removed, so reading a smart music list never
+ * has to evaluate the rule against the whole library.
+ */
+public class SmartMusicListStore {
+    private final BoxStore mBoxStore;
+    private final Box<Music> mMusicBox;
+    private final Box<SmartMusicListEntity> mSmartMusicListEntityBox;
+
+    SmartMusicListStore(@NonNull BoxStore boxStore) {
+        Preconditions.checkNotNull(boxStore);
+
+        mBoxStore = boxStore;
+        mMusicBox = boxStore.boxFor(Music.class);
+        mSmartMusicListEntityBox = boxStore.boxFor(SmartMusicListEntity.class);
+    }
+
+    public synchronized boolean isNameExists(@NonNull String name) {
+        Preconditions.checkNotNull(name);
+
+        return mSmartMusicListEntityBox.query()
+                .equal(SmartMusicListEntity_.name, name)
+                .build()
+                .count() > 0;
+    }
+
+    public synchronized void create(@NonNull String name, @NonNull SmartMusicListRule rule) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(rule);
+        Preconditions.checkArgument(!name.isEmpty(), "name must not be empty");
+        Preconditions.checkArgument(!isNameExists(name), "smart music list already exists: " + name);
+
+        mBoxStore.runInTx(() -> {
+            SmartMusicListEntity entity = new SmartMusicListEntity(0, name);
+            mSmartMusicListEntityBox.attach(entity);
+            evaluate(entity, rule);
+            mSmartMusicListEntityBox.put(entity);
+        });
+    }
+
+    public synchronized void updateRule(@NonNull String name, @NonNull SmartMusicListRule rule) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(rule);
+
+        mBoxStore.runInTx(() -> {
+            SmartMusicListEntity entity = getEntity(name);
+            if (entity == null) {
+                return;
+            }
+
+            evaluate(entity, rule);
+            mSmartMusicListEntityBox.put(entity);
+        });
+    }
+
+    public synchronized void delete(@NonNull String name) {
+        Preconditions.checkNotNull(name);
+
+        mSmartMusicListEntityBox.query()
+                .equal(SmartMusicListEntity_.name, name)
+                .build()
+                .remove();
+    }
+
+    @NonNull
+    public synchronized List<String> getAllSmartMusicListName() {
+        String[] allName = mSmartMusicListEntityBox.query()
+                .order(SmartMusicListEntity_.name)
+                .build()
+                .property(SmartMusicListEntity_.name)
+                .findStrings();
+
+        if (allName == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>(allName.length);
+        Collections.addAll(result, allName);
+        return result;
+    }
+
+    @Nullable
+    public synchronized SmartMusicListRule getRule(@NonNull String name) {
+        Preconditions.checkNotNull(name);
+
+        SmartMusicListEntity entity = getEntity(name);
+        if (entity == null) {
+            return null;
+        }
+
+        return SmartMusicListRule.from(entity);
+    }
+
+    @NonNull
+    public synchronized List<Music> getMusic(@NonNull String name) {
+        Preconditions.checkNotNull(name);
+
+        SmartMusicListEntity entity = getEntity(name);
+        if (entity == null) {
+            return Collections.emptyList();
+        }
+
+        SmartMusicListRule rule = SmartMusicListRule.from(entity);
+        long now = System.currentTimeMillis();
+
+        List<Music> result = new ArrayList<>(entity.size);
+        for (Music music : entity.musicElements) {
+            if (rule.isInWindow(music, now)) {
+                result.add(music);
+            }
+        }
+
+        Collections.sort(result, rule.getSortOrder().comparator());
+        return result;
+    }
+
+    private void evaluate(SmartMusicListEntity entity, SmartMusicListRule rule) {
+        rule.applyTo(entity);
+
+        List<Music> allMusic = rule.compile(mMusicBox.query())
+                .build()
+                .find();
+
+        entity.musicElements.clear();
+        entity.musicElements.addAll(allMusic);
+        entity.size = allMusic.size();
+    }
+
+    @Nullable
+    private SmartMusicListEntity getEntity(String name) {
+        return mSmartMusicListEntityBox.query()
+                .equal(SmartMusicListEntity_.name, name)
+                .build()
+                .findUnique();
+    }
+
+    // called by MusicStore inside the transaction that puts the music
+    void onMusicPut(@NonNull Collection<Music> allMusic) {
+        if (allMusic.isEmpty()) {
+            return;
+        }
+
+        List<SmartMusicListEntity> allEntity = mSmartMusicListEntityBox.getAll();
+        List<SmartMusicListEntity> allChanged = new ArrayList<>();
+
+        for (SmartMusicListEntity entity : allEntity) {
+            SmartMusicListRule rule = SmartMusicListRule.from(entity);
+
+            Set<Long> allMemberId = new HashSet<>(entity.musicElements.size());
+            for (Music music : entity.musicElements) {
+                allMemberId.add(music.getId());
+            }
+
+            boolean changed = false;
+            for (Music music : allMusic) {
+                boolean member = allMemberId.contains(music.getId());
+                boolean matches = rule.matches(music);
+
+                if (matches && !member) {
+                    entity.musicElements.add(music);
+                    allMemberId.add(music.getId());
+                    changed = true;
+                } else if (!matches && member) {
+                    entity.musicElements.removeById(music.getId());
+                    allMemberId.remove(music.getId());
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                entity.size = allMemberId.size();
+                allChanged.add(entity);
+            }
+        }
+
+        if (!allChanged.isEmpty()) {
+            mSmartMusicListEntityBox.put(allChanged);
+        }
+    }
+
+    // called by MusicStore inside the transaction that removes the music
+    void onMusicRemoved(@NonNull Collection<Long> allMusicId) {
+        if (allMusicId.isEmpty()) {
+            return;
+        }
+
+        List<SmartMusicListEntity> allEntity = mSmartMusicListEntityBox.getAll();
+        List<SmartMusicListEntity> allChanged = new ArrayList<>();
+
+        for (SmartMusicListEntity entity : allEntity) {
+            boolean changed = false;
+            for (long musicId : allMusicId) {
+                if (entity.musicElements.removeById(musicId) != null) {
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                entity.size = entity.musicElements.size();
+                allChanged.add(entity);
+            }
+        }
+
+        if (!allChanged.isEmpty()) {
+            mSmartMusicListEntityBox.put(allChanged);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package accepted.music.store;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A running sort of a music list. A job is superseded (cancelled) when another sort of the same
+ * music list is submitted, a cancelled job never writes the music list and never calls back.
+ */
+public final class SortJob {
+    private final long mMusicListId;
+    private final MusicList.SortOrder mSortOrder;
+    private volatile boolean mCancelled;
+
+    SortJob(long musicListId, @NonNull MusicList.SortOrder sortOrder) {
+        Preconditions.checkNotNull(sortOrder);
+
+        mMusicListId = musicListId;
+        mSortOrder = sortOrder;
+    }
+
+    public long getMusicListId() {
+        return mMusicListId;
+    }
+
+    @NonNull
+    public MusicList.SortOrder getSortOrder() {
+        return mSortOrder;
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    void throwIfCancelled() throws CancellationException {
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+    }
+}
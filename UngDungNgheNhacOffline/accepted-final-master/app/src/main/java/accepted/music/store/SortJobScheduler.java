@@ -0,0 +1,209 @@
+package accepted.music.store;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Runs music list sorts in the background. Each music list has at most one live job, submitting a
+ * new one cancels the previous. Sorted orders are cached per {@link MusicList.SortOrder}, so
+ * switching back to an order the list was already sorted by does not sort again.
+ */
+class SortJobScheduler {
+    private final MusicStore mMusicStore;
+    private final Handler mMainHandler;
+
+    // guarded by this
+    private final Map<Long, SortJob> mAllRunningJob;
+    private final Map<Long, EnumMap<MusicList.SortOrder, long[]>> mAllCachedOrder;
+
+    SortJobScheduler(@NonNull MusicStore musicStore) {
+        Preconditions.checkNotNull(musicStore);
+
+        mMusicStore = musicStore;
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mAllRunningJob = new HashMap<>();
+        mAllCachedOrder = new HashMap<>();
+    }
+
+    /**
+     * Must be called on the main thread, the music list is snapshot before the job starts.
+     */
+    @NonNull
+    SortJob submit(@NonNull MusicList musicList,
+                   @NonNull MusicList.SortOrder sortOrder,
+                   @Nullable MusicStore.SortCallback callback) {
+        Preconditions.checkNotNull(musicList);
+        Preconditions.checkNotNull(sortOrder);
+
+        SortJob job = new SortJob(musicList.getId(), sortOrder);
+        synchronized (this) {
+            SortJob last = mAllRunningJob.put(musicList.getId(), job);
+            if (last != null) {
+                last.cancel();
+            }
+        }
+
+        List<Music> snapshot = new ArrayList<>(musicList.getMusicElements());
+        Schedulers.io().scheduleDirect(() -> run(job, musicList, snapshot, callback));
+        return job;
+    }
+
+    synchronized void invalidate() {
+        mAllCachedOrder.clear();
+    }
+
+    private void run(SortJob job, MusicList musicList, List<Music> snapshot, @Nullable MusicStore.SortCallback callback) {
+        try {
+            List<Music> sorted = getCachedOrder(job, snapshot);
+            if (sorted == null) {
+                sorted = new ArrayList<>(snapshot);
+                Collections.sort(sorted, new ProgressComparator(job, sorted.size(), callback));
+                putCachedOrder(job, sorted);
+            }
+
+            apply(job, musicList, sorted);
+        } catch (CancellationException e) {
+            return;
+        } finally {
+            synchronized (this) {
+                if (mAllRunningJob.get(job.getMusicListId()) == job) {
+                    mAllRunningJob.remove(job.getMusicListId());
+                }
+            }
+        }
+
+        mMainHandler.post(() -> {
+            if (callback != null && !job.isCancelled()) {
+                callback.onSortProgress(100);
+                callback.onSortFinished();
+            }
+        });
+    }
+
+    private void apply(SortJob job, MusicList musicList, List<Music> sorted) {
+        synchronized (mMusicStore) {
+            job.throwIfCancelled();
+
+            musicList.musicListEntity.sortOrder = job.getSortOrder();
+            List<Music> musicElements = musicList.getMusicElements();
+            musicElements.clear();
+            musicElements.addAll(sorted);
+            mMusicStore.updateMusicList(musicList);
+        }
+    }
+
+    @Nullable
+    private List<Music> getCachedOrder(SortJob job, List<Music> snapshot) {
+        long[] order;
+        synchronized (this) {
+            EnumMap<MusicList.SortOrder, long[]> allOrder = mAllCachedOrder.get(job.getMusicListId());
+            order = allOrder == null ? null : allOrder.get(job.getSortOrder());
+        }
+
+        if (order == null || order.length != snapshot.size()) {
+            return null;
+        }
+
+        Map<Long, Music> allMusic = new HashMap<>(snapshot.size());
+        for (Music music : snapshot) {
+            allMusic.put(music.getId(), music);
+        }
+
+        List<Music> result = new ArrayList<>(order.length);
+        for (long id : order) {
+            Music music = allMusic.get(id);
+            if (music == null) {
+                // the music list was modified since the order was cached
+                return null;
+            }
+            result.add(music);
+        }
+
+        return result;
+    }
+
+    private synchronized void putCachedOrder(SortJob job, List<Music> sorted) {
+        long[] order = new long[sorted.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = sorted.get(i).getId();
+        }
+
+        EnumMap<MusicList.SortOrder, long[]> allOrder = mAllCachedOrder.get(job.getMusicListId());
+        if (allOrder == null) {
+            allOrder = new EnumMap<>(MusicList.SortOrder.class);
+            mAllCachedOrder.put(job.getMusicListId(), allOrder);
+        }
+
+        allOrder.put(job.getSortOrder(), order);
+    }
+
+    /**
+     * Counts comparisons against the n*log2(n) expected by the merge sort to estimate progress,
+     * and aborts the sort once the job is cancelled.
+     */
+    private class ProgressComparator implements Comparator<Music> {
+        private static final int CHECK_INTERVAL = 256;
+
+        private final SortJob mJob;
+        private final Comparator<Music> mComparator;
+        private final double mExpectedCount;
+        @Nullable
+        private final MusicStore.SortCallback mCallback;
+
+        private long mCount;
+        private int mLastProgress;
+
+        ProgressComparator(SortJob job, int size, @Nullable MusicStore.SortCallback callback) {
+            mJob = job;
+            mComparator = job.getSortOrder().comparator();
+            mExpectedCount = Math.max(1, size * (Math.log(size) / Math.log(2)));
+            mCallback = callback;
+        }
+
+        @Override
+        public int compare(Music o1, Music o2) {
+            mCount++;
+            if (mCount % CHECK_INTERVAL == 0) {
+                mJob.throwIfCancelled();
+                publishProgress();
+            }
+
+            return mComparator.compare(o1, o2);
+        }
+
+        private void publishProgress() {
+            if (mCallback == null) {
+                return;
+            }
+
+            // keep 100 for the finish callback
+            int progress = (int) Math.min(99, mCount * 100 / mExpectedCount);
+            if (progress <= mLastProgress) {
+                return;
+            }
+
+            mLastProgress = progress;
+            mMainHandler.post(() -> {
+                if (!mJob.isCancelled()) {
+                    mCallback.onSortProgress(progress);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package accepted.music.tag;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The tags of an audio file read by {@link TagReader}.
+ * <p>
+ * A value is null (or 0 for numbers) if the file does not have it. The embedded picture is not
+ * read, only where it is, see {@link TagReader#readPicture(java.nio.channels.FileChannel, long, int)}.
+ */
+public final class AudioTag {
+    /**
+     * The picture type of the front cover, both in ID3v2 and FLAC.
+     */
+    public static final int PICTURE_TYPE_FRONT_COVER = 3;
+
+    private String mTitle;
+    private String mArtist;
+    private String mAlbum;
+    private String mAlbumArtist;
+    private String mGenre;
+    private int mYear;
+    private int mTrackNumber;
+    private int mDiscNumber;
+    private String mLyrics;
+
+    private long mPictureOffset = -1;
+    private int mPictureLength;
+    private String mPictureMimeType;
+    private int mPictureType = -1;
+
+    AudioTag() {
+    }
+
+    @Nullable
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @Nullable
+    public String getArtist() {
+        return mArtist;
+    }
+
+    @Nullable
+    public String getAlbum() {
+        return mAlbum;
+    }
+
+    @Nullable
+    public String getAlbumArtist() {
+        return mAlbumArtist;
+    }
+
+    @Nullable
+    public String getGenre() {
+        return mGenre;
+    }
+
+    public int getYear() {
+        return mYear;
+    }
+
+    public int getTrackNumber() {
+        return mTrackNumber;
+    }
+
+    public int getDiscNumber() {
+        return mDiscNumber;
+    }
+
+    /**
+     * The embedded lyrics as is, either plain text or LRC, see
+     * {@link accepted.music.lyrics.LrcParser}.
+     */
+    @Nullable
+    public String getLyrics() {
+        return mLyrics;
+    }
+
+    public boolean hasPicture() {
+        return mPictureLength > 0;
+    }
+
+    /**
+     * The byte offset of the embedded picture in the file, or -1 if there is no picture or it
+     * is not stored as is (e.g. an unsynchronised ID3v2 tag).
+     */
+    public long getPictureOffset() {
+        return mPictureOffset;
+    }
+
+    public int getPictureLength() {
+        return mPictureLength;
+    }
+
+    @Nullable
+    public String getPictureMimeType() {
+        return mPictureMimeType;
+    }
+
+    // the setters keep the value read first, e.g. an ID3v2 tag wins over the ID3v1 tag
+
+    void setTitle(@Nullable String title) {
+        if (mTitle == null) {
+            mTitle = emptyToNull(title);
+        }
+    }
+
+    void setArtist(@Nullable String artist) {
+        if (mArtist == null) {
+            mArtist = emptyToNull(artist);
+        }
+    }
+
+    void setAlbum(@Nullable String album) {
+        if (mAlbum == null) {
+            mAlbum = emptyToNull(album);
+        }
+    }
+
+    void setAlbumArtist(@Nullable String albumArtist) {
+        if (mAlbumArtist == null) {
+            mAlbumArtist = emptyToNull(albumArtist);
+        }
+    }
+
+    void setGenre(@Nullable String genre) {
+        if (mGenre == null) {
+            mGenre = emptyToNull(genre);
+        }
+    }
+
+    void setYear(int year) {
+        if (mYear <= 0) {
+            mYear = year;
+        }
+    }
+
+    void setTrackNumber(int trackNumber) {
+        if (mTrackNumber <= 0) {
+            mTrackNumber = trackNumber;
+        }
+    }
+
+    void setDiscNumber(int discNumber) {
+        if (mDiscNumber <= 0) {
+            mDiscNumber = discNumber;
+        }
+    }
+
+    void setLyrics(@Nullable String lyrics) {
+        if (mLyrics == null) {
+            mLyrics = emptyToNull(lyrics);
+        }
+    }
+
+    /**
+     * Keeps the first picture, or the first front cover if there is one.
+     *
+     * @param offset the offset of the picture data in the file, -1 if it is not stored as is.
+     */
+    void offerPicture(@Nullable String mimeType, int pictureType, long offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+
+        if (hasPicture() && (mPictureType == PICTURE_TYPE_FRONT_COVER || pictureType != PICTURE_TYPE_FRONT_COVER)) {
+            return;
+        }
+
+        mPictureMimeType = mimeType;
+        mPictureType = pictureType;
+        mPictureOffset = offset;
+        mPictureLength = length;
+    }
+
+    boolean isEmpty() {
+        return mTitle == null
+                && mArtist == null
+                && mAlbum == null
+                && mAlbumArtist == null
+                && mGenre == null
+                && mYear <= 0
+                && mTrackNumber <= 0
+                && mDiscNumber <= 0
+                && mLyrics == null
+                && !hasPicture();
+    }
+
+    @Nullable
+    private static String emptyToNull(@Nullable String text) {
+        if (text == null) {
+            return null;
+        }
+
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "AudioTag{" +
+                "title='" + mTitle + '\'' +
+                ", artist='" + mArtist + '\'' +
+                ", album='" + mAlbum + '\'' +
+                ", albumArtist='" + mAlbumArtist + '\'' +
+                ", genre='" + mGenre + '\'' +
+                ", year=" + mYear +
+                ", trackNumber=" + mTrackNumber +
+                ", discNumber=" + mDiscNumber +
+                ", lyrics=" + (mLyrics == null ? 0 : mLyrics.length()) + " chars" +
+                ", pictureOffset=" + mPictureOffset +
+                ", pictureLength=" + mPictureLength +
+                ", pictureMimeType='" + mPictureMimeType + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,130 @@
+package accepted.music.tag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Reads the Vorbis comment and picture metadata blocks of a FLAC file.
+ */
+final class FlacParser {
+    private static final int BLOCK_HEADER_LENGTH = 4;
+    private static final int TYPE_VORBIS_COMMENT = 4;
+    private static final int TYPE_PICTURE = 6;
+    private static final int TYPE_INVALID = 127;
+
+    private FlacParser() {
+        throw new AssertionError();
+    }
+
+    /**
+     * @param position the position of the first metadata block, i.e. after the "fLaC" marker.
+     */
+    static void parse(FileChannel channel, long position, AudioTag tag) throws IOException {
+        long size = channel.size();
+        long offset = position;
+
+        while (offset + BLOCK_HEADER_LENGTH <= size) {
+            ByteBuffer header = TagReader.readFully(channel, offset, BLOCK_HEADER_LENGTH);
+            boolean last = (header.get(0) & 0x80) != 0;
+            int type = header.get(0) & 0x7F;
+            int length = TagReader.uint24(header, 1);
+            long dataOffset = offset + BLOCK_HEADER_LENGTH;
+
+            if (type == TYPE_VORBIS_COMMENT) {
+                readVorbisComment(TagReader.map(channel, dataOffset, length), tag);
+            } else if (type == TYPE_PICTURE) {
+                readPicture(TagReader.map(channel, dataOffset, length), dataOffset, tag);
+            } else if (type == TYPE_INVALID) {
+                return;
+            }
+
+            if (last) {
+                return;
+            }
+            offset = dataOffset + length;
+        }
+    }
+
+    static void readVorbisComment(ByteBuffer block, AudioTag tag) {
+        ByteBuffer buffer = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        int vendorLength = buffer.getInt();
+        buffer.position(buffer.position() + vendorLength);
+
+        int count = buffer.getInt();
+        for (int i = 0; i < count && buffer.remaining() >= 4; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return;
+            }
+
+            String comment = TagReader.decode(buffer, buffer.position(), length, TagReader.UTF_8);
+            buffer.position(buffer.position() + length);
+
+            int separator = comment.indexOf('=');
+            if (separator > 0) {
+                readComment(comment.substring(0, separator).toUpperCase(Locale.ENGLISH),
+                        comment.substring(separator + 1),
+                        tag);
+            }
+        }
+    }
+
+    private static void readComment(String key, String value, AudioTag tag) {
+        switch (key) {
+            case "TITLE":
+                tag.setTitle(value);
+                break;
+            case "ARTIST":
+                tag.setArtist(value);
+                break;
+            case "ALBUM":
+                tag.setAlbum(value);
+                break;
+            case "ALBUMARTIST":
+            case "ALBUM ARTIST":
+                tag.setAlbumArtist(value);
+                break;
+            case "DATE":
+            case "YEAR":
+                tag.setYear(TagReader.parseYear(value));
+                break;
+            case "GENRE":
+                tag.setGenre(value);
+                break;
+            case "TRACKNUMBER":
+                tag.setTrackNumber(TagReader.parseNumber(value));
+                break;
+            case "DISCNUMBER":
+                tag.setDiscNumber(TagReader.parseNumber(value));
+                break;
+            case "LYRICS":
+            case "UNSYNCEDLYRICS":
+                tag.setLyrics(value);
+                break;
+        }
+    }
+
+    private static void readPicture(ByteBuffer block, long blockOffset, AudioTag tag) {
+        ByteBuffer buffer = block.duplicate();
+
+        int pictureType = buffer.getInt();
+        int mimeLength = buffer.getInt();
+        String mimeType = TagReader.decode(buffer, buffer.position(), mimeLength, TagReader.ISO_8859_1);
+        buffer.position(buffer.position() + mimeLength);
+
+        int descriptionLength = buffer.getInt();
+        // the description, then the width, height, color depth and number of colors
+        buffer.position(buffer.position() + descriptionLength + 16);
+
+        int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return;
+        }
+
+        tag.offerPicture(mimeType, pictureType, blockOffset + buffer.position(), length);
+    }
+}
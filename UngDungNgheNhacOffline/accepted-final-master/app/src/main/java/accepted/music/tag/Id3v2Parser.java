@@ -0,0 +1,503 @@
+package accepted.music.tag;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the text and picture frames of an ID3v2.2, v2.3 or v2.4 tag.
+ */
+final class Id3v2Parser {
+    private static final int HEADER_LENGTH = 10;
+    // the mime type, picture type and description of an unsynchronised picture frame
+    private static final int MAX_PICTURE_HEADER_LENGTH = 1024;
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+    private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+    // e.g. "(17)" or "(17)Rock"
+    private static final Pattern GENRE_REFERENCE = Pattern.compile("^\\((\\d+)\\)(.*)$");
+
+    private Id3v2Parser() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Reads the tag at the position of the file.
+     *
+     * @return the length of the tag including its header and footer, or 0 if it is not a valid
+     * ID3v2 tag.
+     */
+    static long parse(FileChannel channel, long position, AudioTag tag) throws IOException {
+        ByteBuffer header = TagReader.readFully(channel, position, HEADER_LENGTH);
+        if (header.remaining() < HEADER_LENGTH || !TagReader.startsWith(header, 0, "ID3")) {
+            return 0;
+        }
+
+        int major = header.get(3);
+        int flags = header.get(5) & 0xFF;
+        int size = syncsafe(header, 6);
+        if (size < 0) {
+            return 0;
+        }
+
+        boolean footer = major == 4 && (flags & 0x10) != 0;
+        long length = HEADER_LENGTH + size + (footer ? HEADER_LENGTH : 0);
+
+        // v2.2 compression is not defined, so the tag cannot be read
+        if (major < 2 || major > 4 || (major == 2 && (flags & 0x40) != 0)) {
+            return length;
+        }
+
+        ByteBuffer body = TagReader.map(channel, position + HEADER_LENGTH, size);
+
+        if (major < 4 && (flags & 0x80) != 0) {
+            readUnsynchronisedFrames(new UnsynchronisedReader(body), major, (flags & 0x40) != 0, tag);
+            return length;
+        }
+
+        if (major > 2 && (flags & 0x40) != 0) {
+            skipExtendedHeader(body, major);
+        }
+
+        readFrames(body, position + HEADER_LENGTH, major, tag);
+        return length;
+    }
+
+    private static void skipExtendedHeader(ByteBuffer body, int major) {
+        if (major == 3) {
+            // the size does not include itself
+            body.position(body.getInt(0) + 4);
+        } else {
+            body.position(syncsafe(body, 0));
+        }
+    }
+
+    private static void readFrames(ByteBuffer body, long bodyOffset, int major, AudioTag tag) {
+        int idLength = major == 2 ? 3 : 4;
+        int frameHeaderLength = major == 2 ? 6 : 10;
+
+        while (body.limit() - body.position() >= frameHeaderLength) {
+            int start = body.position();
+            if (body.get(start) == 0) {
+                // padding
+                return;
+            }
+
+            String id = TagReader.decode(body, start, idLength, TagReader.ISO_8859_1);
+            int frameSize;
+            int formatFlags = 0;
+            if (major == 2) {
+                frameSize = TagReader.uint24(body, start + 3);
+            } else if (major == 3) {
+                frameSize = body.getInt(start + 4);
+                formatFlags = body.get(start + 9) & 0xFF;
+            } else {
+                frameSize = syncsafe(body, start + 4);
+                formatFlags = body.get(start + 9) & 0xFF;
+            }
+
+            int dataStart = start + frameHeaderLength;
+            if (frameSize <= 0 || frameSize > body.limit() - dataStart) {
+                return;
+            }
+            body.position(dataStart + frameSize);
+
+            int headerLength = getFrameDataHeaderLength(major, formatFlags);
+            int dataLength = frameSize - headerLength;
+            if (headerLength < 0 || dataLength <= 0) {
+                continue;
+            }
+            dataStart += headerLength;
+
+            ByteBuffer data = slice(body, dataStart, dataLength);
+            long dataOffset = bodyOffset + dataStart;
+            if (major == 4 && (formatFlags & 0x02) != 0) {
+                data = removeUnsynchronisation(data);
+                dataOffset = -1;
+            }
+
+            readFrame(normalizeId(id), data, dataOffset, data.limit(), major, tag);
+        }
+    }
+
+    /**
+     * Reads the frames of a v2.2 or v2.3 tag that is unsynchronised as a whole. The frames are
+     * de-unsynchronised one at a time, and only the header of the picture frame is, the picture
+     * is skipped without being copied. The offsets in the tag are not the offsets in the file, so
+     * the picture has no offset.
+     */
+    private static void readUnsynchronisedFrames(UnsynchronisedReader reader, int major,
+                                                 boolean extendedHeader, AudioTag tag) {
+        if (major == 3 && extendedHeader) {
+            ByteBuffer size = reader.read(4);
+            if (size.limit() < 4 || !reader.skip(size.getInt(0))) {
+                return;
+            }
+        }
+
+        int idLength = major == 2 ? 3 : 4;
+        int frameHeaderLength = major == 2 ? 6 : 10;
+
+        while (true) {
+            ByteBuffer header = reader.read(frameHeaderLength);
+            if (header.limit() < frameHeaderLength || header.get(0) == 0) {
+                // the end of the tag, or padding
+                return;
+            }
+
+            String id = normalizeId(TagReader.decode(header, 0, idLength, TagReader.ISO_8859_1));
+            int frameSize = major == 2 ? TagReader.uint24(header, 3) : header.getInt(4);
+            int formatFlags = major == 2 ? 0 : header.get(9) & 0xFF;
+            if (frameSize <= 0) {
+                return;
+            }
+
+            int headerLength = getFrameDataHeaderLength(major, formatFlags);
+            int dataLength = frameSize - headerLength;
+            if (headerLength < 0 || dataLength <= 0) {
+                if (!reader.skip(frameSize)) {
+                    return;
+                }
+                continue;
+            }
+
+            if (!reader.skip(headerLength)) {
+                return;
+            }
+
+            int readLength = "APIC".equals(id) ? Math.min(dataLength, MAX_PICTURE_HEADER_LENGTH) : dataLength;
+            ByteBuffer data = reader.read(readLength);
+            if (data.limit() < readLength || !reader.skip(dataLength - readLength)) {
+                return;
+            }
+
+            readFrame(id, data, -1, dataLength, major, tag);
+        }
+    }
+
+    /**
+     * Returns the length of the data that the format flags of a frame add before its content, or
+     * -1 if the frame is compressed or encrypted.
+     */
+    private static int getFrameDataHeaderLength(int major, int formatFlags) {
+        if (major == 3) {
+            if ((formatFlags & 0xC0) != 0) {
+                return -1;
+            }
+            // the group identifier
+            return (formatFlags & 0x20) != 0 ? 1 : 0;
+        }
+
+        if (major == 4) {
+            if ((formatFlags & 0x0C) != 0) {
+                return -1;
+            }
+            int length = 0;
+            if ((formatFlags & 0x40) != 0) {
+                length += 1;
+            }
+            if ((formatFlags & 0x01) != 0) {
+                // the data length indicator
+                length += 4;
+            }
+            return length;
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param dataLength the length of the data of the frame, the data may hold only its start.
+     */
+    private static void readFrame(String id, ByteBuffer data, long dataOffset, int dataLength, int major, AudioTag tag) {
+        switch (id) {
+            case "TIT2":
+                tag.setTitle(text(data));
+                break;
+            case "TPE1":
+                tag.setArtist(text(data));
+                break;
+            case "TALB":
+                tag.setAlbum(text(data));
+                break;
+            case "TPE2":
+                tag.setAlbumArtist(text(data));
+                break;
+            case "TYER":
+            case "TDRC":
+                tag.setYear(TagReader.parseYear(text(data)));
+                break;
+            case "TCON":
+                tag.setGenre(parseGenre(text(data)));
+                break;
+            case "TRCK":
+                tag.setTrackNumber(TagReader.parseNumber(text(data)));
+                break;
+            case "TPOS":
+                tag.setDiscNumber(TagReader.parseNumber(text(data)));
+                break;
+            case "APIC":
+                readPicture(data, dataOffset, dataLength, major, tag);
+                break;
+            case "USLT":
+                tag.setLyrics(lyrics(data));
+                break;
+        }
+    }
+
+    // the frame ids of v2.2 as the ones of v2.3
+    private static String normalizeId(String id) {
+        switch (id) {
+            case "TT2":
+                return "TIT2";
+            case "TP1":
+                return "TPE1";
+            case "TAL":
+                return "TALB";
+            case "TP2":
+                return "TPE2";
+            case "TYE":
+                return "TYER";
+            case "TCO":
+                return "TCON";
+            case "TRK":
+                return "TRCK";
+            case "TPA":
+                return "TPOS";
+            case "PIC":
+                return "APIC";
+            case "ULT":
+                return "USLT";
+            default:
+                return id;
+        }
+    }
+
+    private static void readPicture(ByteBuffer data, long dataOffset, int dataLength, int major, AudioTag tag) {
+        int encoding = data.get(0);
+        int index = 1;
+
+        String mimeType;
+        if (major == 2) {
+            // the image format, e.g. "JPG" or "PNG"
+            String format = TagReader.decode(data, index, 3, TagReader.ISO_8859_1).toLowerCase(Locale.ENGLISH);
+            mimeType = "image/" + ("jpg".equals(format) ? "jpeg" : format);
+            index += 3;
+        } else {
+            int end = indexOfTerminator(data, index, 0);
+            mimeType = TagReader.decode(data, index, end - index, TagReader.ISO_8859_1);
+            index = end + 1;
+        }
+
+        int pictureType = data.get(index) & 0xFF;
+        index += 1;
+
+        // skips the description
+        int end = indexOfTerminator(data, index, encoding);
+        index = end + terminatorLength(encoding);
+
+        int length = dataLength - index;
+        if (length <= 0 || index > data.limit()) {
+            return;
+        }
+
+        tag.offerPicture(mimeType, pictureType, dataOffset < 0 ? -1 : dataOffset + index, length);
+    }
+
+    // the encoding, the language in 3 bytes, the description, then the lyrics
+    @Nullable
+    private static String lyrics(ByteBuffer data) {
+        if (data.limit() < 4) {
+            return null;
+        }
+
+        int encoding = data.get(0);
+        int index = indexOfTerminator(data, 4, encoding) + terminatorLength(encoding);
+        if (index >= data.limit()) {
+            return null;
+        }
+
+        int end = indexOfTerminator(data, index, encoding);
+        return TagReader.decode(data, index, end - index, charset(encoding));
+    }
+
+    @Nullable
+    static String text(ByteBuffer data) {
+        if (data.limit() < 1) {
+            return null;
+        }
+
+        int encoding = data.get(0);
+        // only the first of the values that v2.4 separates with the terminator
+        int end = indexOfTerminator(data, 1, encoding);
+        return TagReader.decode(data, 1, end - 1, charset(encoding));
+    }
+
+    @Nullable
+    static String parseGenre(@Nullable String text) {
+        if (text == null) {
+            return null;
+        }
+
+        String genre = text.trim();
+        Matcher matcher = GENRE_REFERENCE.matcher(genre);
+        if (matcher.matches()) {
+            String refinement = matcher.group(2).trim();
+            if (!refinement.isEmpty()) {
+                return refinement;
+            }
+            return TagReader.genreName(Integer.parseInt(matcher.group(1)));
+        }
+
+        if (!genre.isEmpty() && genre.length() <= 3 && isDigits(genre)) {
+            return TagReader.genreName(Integer.parseInt(genre));
+        }
+
+        return genre;
+    }
+
+    private static boolean isDigits(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset charset(int encoding) {
+        switch (encoding) {
+            case 1:
+                return UTF_16;
+            case 2:
+                return UTF_16BE;
+            case 3:
+                return TagReader.UTF_8;
+            default:
+                return TagReader.ISO_8859_1;
+        }
+    }
+
+    private static int terminatorLength(int encoding) {
+        return encoding == 1 || encoding == 2 ? 2 : 1;
+    }
+
+    /**
+     * Returns the index of the terminator of the string that starts at the index, or the limit
+     * of the data if the string is not terminated.
+     */
+    private static int indexOfTerminator(ByteBuffer data, int index, int encoding) {
+        int limit = data.limit();
+
+        if (terminatorLength(encoding) == 1) {
+            for (int i = index; i < limit; i++) {
+                if (data.get(i) == 0) {
+                    return i;
+                }
+            }
+            return limit;
+        }
+
+        for (int i = index; i + 1 < limit; i += 2) {
+            if (data.get(i) == 0 && data.get(i + 1) == 0) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int index, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(index);
+        duplicate.limit(index + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * Removes the 0x00 that follows every 0xFF.
+     */
+    static ByteBuffer removeUnsynchronisation(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        byte[] bytes = new byte[limit];
+        int length = 0;
+
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            bytes[length++] = b;
+            if (b == (byte) 0xFF && i + 1 < limit && buffer.get(i + 1) == 0) {
+                i++;
+            }
+        }
+
+        return ByteBuffer.wrap(bytes, 0, length).slice();
+    }
+
+    /**
+     * Reads an unsynchronised buffer as if the 0x00 that follows every 0xFF was removed.
+     */
+    private static final class UnsynchronisedReader {
+        private final ByteBuffer mBuffer;
+        private int mPosition;
+
+        UnsynchronisedReader(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        /**
+         * @return the bytes read, fewer than the length if the buffer ends first.
+         */
+        ByteBuffer read(int length) {
+            byte[] bytes = new byte[length];
+            int count = 0;
+            while (count < length && mPosition < mBuffer.limit()) {
+                bytes[count++] = next();
+            }
+            return ByteBuffer.wrap(bytes, 0, count).slice();
+        }
+
+        /**
+         * @return false if the buffer ends first.
+         */
+        boolean skip(int length) {
+            if (length < 0) {
+                return false;
+            }
+
+            // the bytes are counted but not copied
+            int count = 0;
+            while (count < length && mPosition < mBuffer.limit()) {
+                next();
+                count++;
+            }
+            return count == length;
+        }
+
+        private byte next() {
+            byte b = mBuffer.get(mPosition++);
+            if (b == (byte) 0xFF && mPosition < mBuffer.limit() && mBuffer.get(mPosition) == 0) {
+                mPosition++;
+            }
+            return b;
+        }
+    }
+
+    /**
+     * Returns the 28 bits integer of 4 bytes whose highest bits are 0, or -1 if it is not.
+     */
+    static int syncsafe(ByteBuffer buffer, int index) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = buffer.get(index + i) & 0xFF;
+            if ((b & 0x80) != 0) {
+                return -1;
+            }
+            value = (value << 7) | b;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,211 @@
+package accepted.music.tag;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the iTunes metadata items of an MP4 file, i.e. the atoms in moov/udta/meta/ilst.
+ */
+final class Mp4Parser {
+    private static final int ATOM_HEADER_LENGTH = 8;
+    // the type and locale of a data atom
+    private static final int DATA_HEADER_LENGTH = 8;
+
+    private static final int DATA_TYPE_JPEG = 13;
+    private static final int DATA_TYPE_PNG = 14;
+    private static final int DATA_TYPE_BMP = 27;
+
+    private Mp4Parser() {
+        throw new AssertionError();
+    }
+
+    static void parse(FileChannel channel, AudioTag tag) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+
+        // only the headers of the top level atoms are read until the moov atom
+        while (offset + ATOM_HEADER_LENGTH <= size) {
+            ByteBuffer header = TagReader.readFully(channel, offset, 16);
+            long atomSize = header.getInt(0) & 0xFFFFFFFFL;
+            int headerLength = ATOM_HEADER_LENGTH;
+
+            if (atomSize == 1 && header.limit() >= 16) {
+                atomSize = header.getLong(8);
+                headerLength = 16;
+            } else if (atomSize == 0) {
+                // to the end of the file
+                atomSize = size - offset;
+            }
+
+            if (atomSize < headerLength) {
+                return;
+            }
+
+            if (TagReader.startsWith(header, 4, "moov")) {
+                ByteBuffer moov = TagReader.map(channel, offset, atomSize);
+                readMoov(moov, headerLength, offset, tag);
+                return;
+            }
+
+            offset += atomSize;
+        }
+    }
+
+    private static void readMoov(ByteBuffer moov, int headerLength, long moovOffset, AudioTag tag) {
+        int[] meta = null;
+
+        int[] udta = findChild(moov, headerLength, moov.limit(), "udta");
+        if (udta != null) {
+            meta = findChild(moov, udta[0] + ATOM_HEADER_LENGTH, udta[1], "meta");
+        }
+
+        if (meta == null) {
+            meta = findChild(moov, headerLength, moov.limit(), "meta");
+        }
+
+        if (meta == null) {
+            return;
+        }
+
+        // meta is a full box with 4 bytes of version and flags, but not in QuickTime files
+        int childrenStart = meta[0] + ATOM_HEADER_LENGTH;
+        if (!TagReader.startsWith(moov, childrenStart + 4, "hdlr")) {
+            childrenStart += 4;
+        }
+
+        int[] ilst = findChild(moov, childrenStart, meta[1], "ilst");
+        if (ilst == null) {
+            return;
+        }
+
+        readItems(moov, ilst[0] + ATOM_HEADER_LENGTH, ilst[1], moovOffset, tag);
+    }
+
+    private static void readItems(ByteBuffer moov, int start, int end, long moovOffset, AudioTag tag) {
+        int offset = start;
+
+        while (offset + ATOM_HEADER_LENGTH <= end) {
+            int itemSize = moov.getInt(offset);
+            if (itemSize < ATOM_HEADER_LENGTH || itemSize > end - offset) {
+                return;
+            }
+
+            int itemEnd = offset + itemSize;
+            int[] data = findChild(moov, offset + ATOM_HEADER_LENGTH, itemEnd, "data");
+            if (data != null) {
+                String type = TagReader.decode(moov, offset + 4, 4, TagReader.ISO_8859_1);
+                readItem(type, moov, data, moovOffset, tag);
+            }
+
+            offset = itemEnd;
+        }
+    }
+
+    private static void readItem(String type, ByteBuffer moov, int[] data, long moovOffset, AudioTag tag) {
+        int dataType = moov.getInt(data[0] + ATOM_HEADER_LENGTH) & 0xFFFFFF;
+        int payloadStart = data[0] + ATOM_HEADER_LENGTH + DATA_HEADER_LENGTH;
+        int payloadLength = data[1] - payloadStart;
+        if (payloadLength <= 0) {
+            return;
+        }
+
+        switch (type) {
+            case "\u00A9nam":
+                tag.setTitle(utf8(moov, payloadStart, payloadLength));
+                break;
+            case "\u00A9ART":
+                tag.setArtist(utf8(moov, payloadStart, payloadLength));
+                break;
+            case "aART":
+                tag.setAlbumArtist(utf8(moov, payloadStart, payloadLength));
+                break;
+            case "\u00A9alb":
+                tag.setAlbum(utf8(moov, payloadStart, payloadLength));
+                break;
+            case "\u00A9day":
+                tag.setYear(TagReader.parseYear(utf8(moov, payloadStart, payloadLength)));
+                break;
+            case "\u00A9gen":
+                tag.setGenre(utf8(moov, payloadStart, payloadLength));
+                break;
+            case "\u00A9lyr":
+                tag.setLyrics(utf8(moov, payloadStart, payloadLength));
+                break;
+            case "gnre":
+                // the ID3v1 genre plus 1
+                if (payloadLength >= 2) {
+                    tag.setGenre(TagReader.genreName((moov.getShort(payloadStart) & 0xFFFF) - 1));
+                }
+                break;
+            case "trkn":
+                // 2 bytes reserved, the number, then the total
+                if (payloadLength >= 4) {
+                    tag.setTrackNumber(moov.getShort(payloadStart + 2) & 0xFFFF);
+                }
+                break;
+            case "disk":
+                if (payloadLength >= 4) {
+                    tag.setDiscNumber(moov.getShort(payloadStart + 2) & 0xFFFF);
+                }
+                break;
+            case "covr":
+                tag.offerPicture(pictureMimeType(dataType),
+                        AudioTag.PICTURE_TYPE_FRONT_COVER,
+                        moovOffset + payloadStart,
+                        payloadLength);
+                break;
+        }
+    }
+
+    @Nullable
+    private static String pictureMimeType(int dataType) {
+        switch (dataType) {
+            case DATA_TYPE_JPEG:
+                return "image/jpeg";
+            case DATA_TYPE_PNG:
+                return "image/png";
+            case DATA_TYPE_BMP:
+                return "image/bmp";
+            default:
+                return null;
+        }
+    }
+
+    private static String utf8(ByteBuffer buffer, int index, int length) {
+        return TagReader.decode(buffer, index, length, TagReader.UTF_8);
+    }
+
+    /**
+     * Finds the first child atom of the type between the start and the end.
+     *
+     * @return the start and the end of the child atom, or null if it is not found.
+     */
+    @Nullable
+    private static int[] findChild(ByteBuffer buffer, int start, int end, String type) {
+        int offset = start;
+
+        while (offset + ATOM_HEADER_LENGTH <= end) {
+            long size = buffer.getInt(offset) & 0xFFFFFFFFL;
+            if (size == 1 && offset + 16 <= end) {
+                size = buffer.getLong(offset + 8);
+            } else if (size == 0) {
+                size = end - offset;
+            }
+
+            if (size < ATOM_HEADER_LENGTH || size > end - offset) {
+                return null;
+            }
+
+            if (TagReader.startsWith(buffer, offset + 4, type)) {
+                return new int[]{offset, (int) (offset + size)};
+            }
+
+            offset += (int) size;
+        }
+
+        return null;
+    }
+}
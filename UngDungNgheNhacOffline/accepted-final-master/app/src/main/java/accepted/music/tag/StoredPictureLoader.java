@@ -0,0 +1,38 @@
+package accepted.music.tag;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+import accepted.player.artwork.ArtworkService;
+
+/**
+ * Reads the embedded picture of scanned music with a single positioned read at the offset
+ * recorded by the scanner.
+ */
+public final class StoredPictureLoader implements ArtworkService.EmbeddedPictureLoader {
+    private final Context mContext;
+
+    public StoredPictureLoader(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+        mContext = context.getApplicationContext();
+    }
+
+    @Nullable
+    @Override
+    public byte[] loadEmbeddedPicture(@NonNull String uri) {
+        Music music = MusicStore.getInstance().getMusic(uri);
+        if (music == null || music.getPictureLength() <= 0) {
+            return null;
+        }
+
+        // if the file has changed since it was scanned, the bytes fail to decode and the picture is looked up again
+        return TagReader.readPicture(mContext, Uri.parse(uri), music.getPictureOffset(), music.getPictureLength());
+    }
+}
@@ -0,0 +1,328 @@
+package accepted.music.tag;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads the ID3v2, ID3v1, FLAC Vorbis comment and MP4 tags of an audio file in pure Java.
+ * <p>
+ * Only the tag regions of the file are memory mapped and only the pages that hold the tag
+ * headers and text are touched, the audio and the embedded picture are not read. The offset of
+ * the picture is recorded instead, so that it can be read later with a single positioned read,
+ * see {@link #readPicture(FileChannel, long, int)}.
+ */
+public final class TagReader {
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int ID3V1_LENGTH = 128;
+    // a region that cannot be mapped is read into memory, up to this length
+    private static final int MAX_READ_LENGTH = 4 * 1024 * 1024;
+
+    private static final String[] GENRES = {
+            "Blues", "Classic Rock", "Country", "Dance", "Disco", "Funk", "Grunge", "Hip-Hop",
+            "Jazz", "Metal", "New Age", "Oldies", "Other", "Pop", "R&B", "Rap", "Reggae", "Rock",
+            "Techno", "Industrial", "Alternative", "Ska", "Death Metal", "Pranks", "Soundtrack",
+            "Euro-Techno", "Ambient", "Trip-Hop", "Vocal", "Jazz+Funk", "Fusion", "Trance",
+            "Classical", "Instrumental", "Acid", "House", "Game", "Sound Clip", "Gospel", "Noise",
+            "AlternRock", "Bass", "Soul", "Punk", "Space", "Meditative", "Instrumental Pop",
+            "Instrumental Rock", "Ethnic", "Gothic", "Darkwave", "Techno-Industrial", "Electronic",
+            "Pop-Folk", "Eurodance", "Dream", "Southern Rock", "Comedy", "Cult", "Gangsta",
+            "Top 40", "Christian Rap", "Pop/Funk", "Jungle", "Native American", "Cabaret",
+            "New Wave", "Psychadelic", "Rave", "Showtunes", "Trailer", "Lo-Fi", "Tribal",
+            "Acid Punk", "Acid Jazz", "Polka", "Retro", "Musical", "Rock & Roll", "Hard Rock"
+    };
+
+    private TagReader() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Reads the tags of an audio file.
+     *
+     * @return null if the file has no tags that can be read, or it cannot be opened.
+     */
+    @WorkerThread
+    @Nullable
+    public static AudioTag read(@NonNull Context context, @NonNull Uri uri) {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(uri);
+
+        ParcelFileDescriptor descriptor = null;
+        FileInputStream inputStream = null;
+        try {
+            descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return null;
+            }
+
+            inputStream = new FileInputStream(descriptor.getFileDescriptor());
+            return read(inputStream.getChannel());
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            return null;
+        } finally {
+            closeQuietly(inputStream, descriptor);
+        }
+    }
+
+    /**
+     * Reads the tags of an audio file, the position of the channel is not changed.
+     *
+     * @return null if the file has no tags that can be read.
+     */
+    @WorkerThread
+    @Nullable
+    public static AudioTag read(@NonNull FileChannel channel) throws IOException {
+        Preconditions.checkNotNull(channel);
+
+        AudioTag tag = new AudioTag();
+        ByteBuffer head = readFully(channel, 0, 12);
+
+        try {
+            long position = 0;
+            if (startsWith(head, 0, "ID3")) {
+                position = Id3v2Parser.parse(channel, 0, tag);
+                head = readFully(channel, position, 12);
+            }
+
+            if (startsWith(head, 0, "fLaC")) {
+                FlacParser.parse(channel, position + 4, tag);
+            } else if (position == 0 && startsWith(head, 4, "ftyp")) {
+                Mp4Parser.parse(channel, tag);
+            }
+
+            readId3v1(channel, tag);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            // a malformed tag, keeps what has been read
+        }
+
+        return tag.isEmpty() ? null : tag;
+    }
+
+    /**
+     * Reads the embedded picture at the offset recorded by {@link AudioTag#getPictureOffset()}
+     * with a single positioned read.
+     *
+     * @return null if the offset is invalid or the picture cannot be read as a whole.
+     */
+    @WorkerThread
+    @Nullable
+    public static byte[] readPicture(@NonNull FileChannel channel, long offset, int length) throws IOException {
+        Preconditions.checkNotNull(channel);
+
+        if (offset < 0 || length <= 0 || offset + length > channel.size()) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                return null;
+            }
+        }
+
+        return buffer.array();
+    }
+
+    @WorkerThread
+    @Nullable
+    public static byte[] readPicture(@NonNull Context context, @NonNull Uri uri, long offset, int length) {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(uri);
+
+        ParcelFileDescriptor descriptor = null;
+        FileInputStream inputStream = null;
+        try {
+            descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return null;
+            }
+
+            inputStream = new FileInputStream(descriptor.getFileDescriptor());
+            return readPicture(inputStream.getChannel(), offset, length);
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            return null;
+        } finally {
+            closeQuietly(inputStream, descriptor);
+        }
+    }
+
+    private static void readId3v1(FileChannel channel, AudioTag tag) throws IOException {
+        long size = channel.size();
+        if (size < ID3V1_LENGTH) {
+            return;
+        }
+
+        ByteBuffer buffer = readFully(channel, size - ID3V1_LENGTH, ID3V1_LENGTH);
+        if (buffer.remaining() < ID3V1_LENGTH || !startsWith(buffer, 0, "TAG")) {
+            return;
+        }
+
+        tag.setTitle(latin1(buffer, 3, 30));
+        tag.setArtist(latin1(buffer, 33, 30));
+        tag.setAlbum(latin1(buffer, 63, 30));
+        tag.setYear(parseYear(latin1(buffer, 93, 4)));
+
+        // ID3v1.1: the last byte of the comment is the track number
+        if (buffer.get(125) == 0 && buffer.get(126) != 0) {
+            tag.setTrackNumber(buffer.get(126) & 0xFF);
+        }
+
+        tag.setGenre(genreName(buffer.get(127) & 0xFF));
+    }
+
+    /**
+     * Maps a region of the file, or reads it if the file cannot be mapped. The region is cut at
+     * the end of the file.
+     */
+    @NonNull
+    static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        long size = Math.min(length, channel.size() - position);
+        if (size <= 0) {
+            return ByteBuffer.allocate(0);
+        }
+
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size, Integer.MAX_VALUE));
+        } catch (IOException e) {
+            // e.g. a file descriptor of a pipe
+            if (size > MAX_READ_LENGTH) {
+                throw e;
+            }
+            return readFully(channel, position, (int) size);
+        }
+    }
+
+    /**
+     * Reads a small region of the file, e.g. a header. The region is cut at the end of the file.
+     */
+    @NonNull
+    static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                break;
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    static boolean startsWith(ByteBuffer buffer, int index, String ascii) {
+        if (buffer.limit() < index + ascii.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(index + i) != (byte) ascii.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static int uint24(ByteBuffer buffer, int index) {
+        return ((buffer.get(index) & 0xFF) << 16)
+                | ((buffer.get(index + 1) & 0xFF) << 8)
+                | (buffer.get(index + 2) & 0xFF);
+    }
+
+    @NonNull
+    static String latin1(ByteBuffer buffer, int index, int length) {
+        int end = index;
+        while (end < index + length && buffer.get(end) != 0) {
+            end++;
+        }
+
+        return decode(buffer, index, end - index, ISO_8859_1);
+    }
+
+    @NonNull
+    static String decode(ByteBuffer buffer, int index, int length, Charset charset) {
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(index);
+        duplicate.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Returns the year at the start of the text, e.g. "2001" or "2001-05-01", or 0.
+     */
+    static int parseYear(@Nullable String text) {
+        if (text == null) {
+            return 0;
+        }
+
+        String trimmed = text.trim();
+        if (trimmed.length() < 4) {
+            return 0;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            if (!Character.isDigit(trimmed.charAt(i))) {
+                return 0;
+            }
+        }
+
+        return Integer.parseInt(trimmed.substring(0, 4));
+    }
+
+    /**
+     * Returns the number of a text like "3" or "3/12", or 0.
+     */
+    static int parseNumber(@Nullable String text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int slash = text.indexOf('/');
+        String number = (slash < 0 ? text : text.substring(0, slash)).trim();
+        try {
+            return Math.max(0, Integer.parseInt(number));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the name of an ID3v1 genre, or null if the index is unknown.
+     */
+    @Nullable
+    static String genreName(int index) {
+        if (index < 0 || index >= GENRES.length) {
+            return null;
+        }
+
+        return GENRES[index];
+    }
+
+    private static void closeQuietly(FileInputStream inputStream, ParcelFileDescriptor descriptor) {
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+            if (descriptor != null) {
+                descriptor.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -20,14 +20,10 @@ public final class MusicListUtil {
         Preconditions.checkNotNull(name);
         Preconditions.checkNotNull(musicItems);
 
-        Playlist.Builder builder = new Playlist.Builder()
-                .setName(name)
-                .setPosition(position);
+        // the same range Playlist keeps, so only the music that is needed is copied
+        int start = Playlist.getTrimStart(musicItems.size(), position);
+        int end = Math.min(musicItems.size(), start + Playlist.MAX_SIZE);
 
-        for (Music music : musicItems) {
-            builder.append(MusicUtil.asMusicItem(music));
-        }
-
-        return builder.build();
+        return new Playlist(name, new MusicSnapshotSource(musicItems, start, end), position - start, true, null);
     }
 }
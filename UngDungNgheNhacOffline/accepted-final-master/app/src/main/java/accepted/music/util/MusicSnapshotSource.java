@@ -0,0 +1,48 @@
+package accepted.music.util;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import accepted.music.store.Music;
+import accepted.player.audio.MusicItem;
+import accepted.player.playlist.MusicItemSource;
+
+/**
+ * A {@link MusicItemSource} backed by a copy of a range of a music list.
+ * <p>
+ * Creating it only copies the references of the range, the list may change afterwards. The items
+ * are created when the playlist is resolved, which {@link accepted.player.PlayerClient} does on a
+ * worker thread before the playlist is parceled.
+ */
+public final class MusicSnapshotSource implements MusicItemSource {
+    private final Music[] mMusics;
+
+    /**
+     * @param start the first index, inclusive.
+     * @param end   the last index, exclusive.
+     */
+    public MusicSnapshotSource(@NonNull List<Music> musicList, int start, int end) {
+        Preconditions.checkNotNull(musicList);
+        Preconditions.checkPositionIndexes(start, end, musicList.size());
+
+        mMusics = musicList.subList(start, end).toArray(new Music[0]);
+    }
+
+    public int size() {
+        return mMusics.length;
+    }
+
+    @NonNull
+    @Override
+    public List<MusicItem> getMusicItems() {
+        List<MusicItem> musicItems = new ArrayList<>(mMusics.length);
+        for (Music music : mMusics) {
+            musicItems.add(MusicUtil.asMusicItem(music));
+        }
+        return musicItems;
+    }
+}
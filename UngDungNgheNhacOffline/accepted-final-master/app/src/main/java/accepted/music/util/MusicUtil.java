@@ -10,7 +10,6 @@ import androidx.fragment.app.FragmentManager;
 
 import com.google.common.base.Preconditions;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import io.reactivex.Single;
@@ -18,6 +17,7 @@ import accepted.music.fragment.ringtone.RingtoneUtilFragment;
 import accepted.music.store.Music;
 import accepted.player.audio.MusicItem;
 import accepted.player.playlist.Playlist;
+import accepted.player.util.MusicItemUtil;
 
 public final class MusicUtil {
     private static final String KEY_ADD_TIME = "add_time";
@@ -37,7 +37,10 @@ public final class MusicUtil {
                 musicItem.getUri(),
                 musicItem.getIconUri(),
                 musicItem.getDuration(),
-                getAddTime(musicItem)
+                getAddTime(musicItem),
+                MusicItemUtil.hasLoudness(musicItem),
+                MusicItemUtil.hasLoudness(musicItem) ? MusicItemUtil.getLoudness(musicItem) : 0,
+                MusicItemUtil.getPeak(musicItem)
         );
     }
 
@@ -56,6 +59,10 @@ public final class MusicUtil {
 
         putAddTime(musicItem, music);
 
+        if (music.isLoudnessAnalyzed()) {
+            MusicItemUtil.putLoudness(musicItem, music.getLoudness(), music.getPeak());
+        }
+
         return musicItem;
     }
 
@@ -115,7 +122,6 @@ public final class MusicUtil {
 
         int start = 0;
         int end = musicList.size();
-        List<MusicItem> musicItemList = new ArrayList<>(Math.min(musicList.size(), Playlist.MAX_SIZE));
 
         if (end > Playlist.MAX_SIZE) {
             int value = end - position;
@@ -127,14 +133,7 @@ public final class MusicUtil {
             }
         }
 
-        for (int i = start; i < end; i++) {
-            musicItemList.add(MusicUtil.asMusicItem(musicList.get(i)));
-        }
-
-        return new Playlist.Builder()
-                .setName(name)
-                .appendAll(musicItemList)
-                .build();
+        return new Playlist(name, new MusicSnapshotSource(musicList, start, end), 0, true, null);
     }
 
     public static void setAsRingtone(@NonNull FragmentManager fm, @NonNull Music music) {
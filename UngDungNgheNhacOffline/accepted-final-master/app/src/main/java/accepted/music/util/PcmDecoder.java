@@ -0,0 +1,192 @@
+package accepted.music.util;
+
+import android.content.Context;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decodes the first audio track of a file to interleaved 16 bit PCM with {@link MediaCodec}.
+ * A decoder that outputs 8 bit or float PCM is converted to 16 bit, any other encoding is
+ * reported as an {@link IOException}.
+ */
+public final class PcmDecoder {
+    private static final long TIMEOUT_US = 10_000;
+
+    private PcmDecoder() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Decodes the audio and passes it to the callback as it is decoded, until the end of the
+     * audio or the callback asks to stop.
+     */
+    @WorkerThread
+    @SuppressWarnings("deprecation")
+    public static void decode(@NonNull Context context, @NonNull Uri uri, @NonNull Callback callback) throws IOException {
+        Preconditions.checkNotNull(context);
+        Preconditions.checkNotNull(uri);
+        Preconditions.checkNotNull(callback);
+
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(context, uri, null);
+            int track = selectAudioTrack(extractor);
+            if (track < 0) {
+                throw new IOException("No audio track: " + uri);
+            }
+
+            extractor.selectTrack(track);
+            MediaFormat format = extractor.getTrackFormat(track);
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            int encoding = getPcmEncoding(format);
+            callback.onFormatChanged(format.getInteger(MediaFormat.KEY_SAMPLE_RATE), channelCount);
+
+            ByteBuffer[] inputBuffers = codec.getInputBuffers();
+            ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            short[] pcm = new short[0];
+
+            boolean inputDone = false;
+            boolean outputDone = false;
+            while (!outputDone) {
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        int size = extractor.readSampleData(inputBuffers[inputIndex], 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputBuffers = codec.getOutputBuffers();
+                } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    // reported before the first output buffer
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    encoding = getPcmEncoding(outputFormat);
+                    callback.onFormatChanged(outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE), channelCount);
+                } else if (outputIndex >= 0) {
+                    boolean more = true;
+                    if (info.size > 0) {
+                        ByteBuffer buffer = outputBuffers[outputIndex];
+                        buffer.position(info.offset);
+                        buffer.limit(info.offset + info.size);
+
+                        int sampleCount = info.size / getBytesPerSample(encoding);
+                        if (pcm.length < sampleCount) {
+                            pcm = new short[sampleCount];
+                        }
+                        toPcm16(buffer.order(ByteOrder.nativeOrder()), encoding, pcm, sampleCount);
+                        more = callback.onPcm(pcm, sampleCount / channelCount);
+                    }
+
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    outputDone = !more || (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                }
+            }
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            throw new IOException("Decode failed: " + uri, e);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static int getPcmEncoding(MediaFormat format) throws IOException {
+        int encoding = AudioFormat.ENCODING_PCM_16BIT;
+        if (format.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+            encoding = format.getInteger(MediaFormat.KEY_PCM_ENCODING);
+        }
+
+        if (getBytesPerSample(encoding) <= 0) {
+            throw new IOException("Unsupported PCM encoding: " + encoding);
+        }
+        return encoding;
+    }
+
+    static int getBytesPerSample(int encoding) {
+        switch (encoding) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                return 1;
+            case AudioFormat.ENCODING_PCM_16BIT:
+                return 2;
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Reads the samples of the buffer, from its position, as 16 bit PCM.
+     */
+    static void toPcm16(ByteBuffer buffer, int encoding, short[] pcm, int sampleCount) {
+        switch (encoding) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                // unsigned, 128 is silence
+                for (int i = 0; i < sampleCount; i++) {
+                    pcm[i] = (short) (((buffer.get() & 0xFF) - 128) << 8);
+                }
+                break;
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                for (int i = 0; i < sampleCount; i++) {
+                    float sample = Math.max(-1F, Math.min(1F, buffer.getFloat()));
+                    pcm[i] = (short) (sample * Short.MAX_VALUE);
+                }
+                break;
+            default:
+                buffer.asShortBuffer().get(pcm, 0, sampleCount);
+                break;
+        }
+    }
+
+    private static int selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public interface Callback {
+        /**
+         * Called before the first PCM, and again if the output format changes.
+         */
+        void onFormatChanged(int sampleRate, int channelCount);
+
+        /**
+         * @param pcm        the interleaved samples, starts at index 0.
+         * @param frameCount the number of the audio frames, i.e. the samples of every channel.
+         * @return false to stop decoding.
+         */
+        boolean onPcm(@NonNull short[] pcm, int frameCount);
+    }
+}
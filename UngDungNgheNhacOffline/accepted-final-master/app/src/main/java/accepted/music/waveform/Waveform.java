@@ -0,0 +1,113 @@
+package accepted.music.waveform;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The min/max peak summary of a whole track: the audio is cut into {@link #BUCKET_COUNT} buckets
+ * of the same duration, and each bucket keeps its lowest and highest sample, 8 bits each.
+ * <p>
+ * A summary is 2 KB whatever the length of the track, see {@link WaveformBuilder}.
+ */
+public final class Waveform {
+    public static final int BUCKET_COUNT = 1024;
+
+    public static final Waveform EMPTY = new Waveform(new byte[0], new byte[0]);
+
+    private final byte[] mMin;
+    private final byte[] mMax;
+
+    Waveform(@NonNull byte[] min, @NonNull byte[] max) {
+        Preconditions.checkNotNull(min);
+        Preconditions.checkNotNull(max);
+        Preconditions.checkArgument(min.length == max.length);
+
+        mMin = min;
+        mMax = max;
+    }
+
+    public boolean isEmpty() {
+        return mMin.length == 0;
+    }
+
+    public int getBucketCount() {
+        return mMin.length;
+    }
+
+    /**
+     * The lowest sample of the bucket, from -1 to 1.
+     */
+    public float getMin(int bucket) {
+        return mMin[bucket] / 128F;
+    }
+
+    /**
+     * The highest sample of the bucket, from -1 to 1.
+     */
+    public float getMax(int bucket) {
+        return mMax[bucket] / 128F;
+    }
+
+    byte[] getMinArray() {
+        return mMin;
+    }
+
+    byte[] getMaxArray() {
+        return mMax;
+    }
+
+    /**
+     * Resamples the summary to the columns of a view and writes one vertical line per column,
+     * as the x0, y0, x1, y1 expected by {@link android.graphics.Canvas#drawLines(float[], int, int, android.graphics.Paint)}.
+     * <p>
+     * The points are written into the array, so a view computes them once per size and draws
+     * them every frame without allocating.
+     *
+     * @param points      at least {@code 4 * columnCount} floats.
+     * @param columnCount the number of the lines.
+     * @param width       the width the columns are spread on.
+     * @param height      the height of the view, the waveform is centered on the middle.
+     * @param minHeight   the height of a silent column, so that it is still visible.
+     * @return the number of the floats written.
+     */
+    public int toLines(@NonNull float[] points, int columnCount, float width, float height, float minHeight) {
+        Preconditions.checkNotNull(points);
+        Preconditions.checkArgument(points.length >= columnCount * 4, "points is too small");
+
+        if (isEmpty() || columnCount <= 0) {
+            return 0;
+        }
+
+        int bucketCount = mMin.length;
+        float middle = height / 2;
+        float step = width / columnCount;
+        for (int column = 0; column < columnCount; column++) {
+            int start = (int) ((long) column * bucketCount / columnCount);
+            int end = Math.max(start + 1, (int) ((long) (column + 1) * bucketCount / columnCount));
+
+            int min = 0;
+            int max = 0;
+            for (int bucket = start; bucket < end; bucket++) {
+                min = Math.min(min, mMin[bucket]);
+                max = Math.max(max, mMax[bucket]);
+            }
+
+            float top = middle - max / 128F * middle;
+            float bottom = middle - min / 128F * middle;
+            if (bottom - top < minHeight) {
+                top = middle - minHeight / 2;
+                bottom = middle + minHeight / 2;
+            }
+
+            float x = step * column + step / 2;
+            int index = column * 4;
+            points[index] = x;
+            points[index + 1] = top;
+            points[index + 2] = x;
+            points[index + 3] = bottom;
+        }
+
+        return columnCount * 4;
+    }
+}
@@ -0,0 +1,88 @@
+package accepted.music.waveform;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Builds the {@link Waveform} of interleaved 16 bit PCM audio as it is decoded, in a single pass.
+ * <p>
+ * The buckets are laid out on the duration of the track known beforehand, so the audio does not
+ * need to be kept: the audio past the duration goes to the last bucket, and the buckets after the
+ * end of shorter audio stay silent.
+ */
+public final class WaveformBuilder {
+    private final int mChannelCount;
+    private final long mTotalFrameCount;
+    private final byte[] mMin;
+    private final byte[] mMax;
+
+    private long mFrame;
+    private int mBucket;
+    private long mBucketEnd;
+    private int mBucketMin;
+    private int mBucketMax;
+
+    /**
+     * @param duration the duration of the track in milliseconds.
+     */
+    public WaveformBuilder(int sampleRate, int channelCount, long duration) {
+        Preconditions.checkArgument(sampleRate > 0, "sampleRate must > 0");
+        Preconditions.checkArgument(channelCount > 0, "channelCount must > 0");
+        Preconditions.checkArgument(duration > 0, "duration must > 0");
+
+        mChannelCount = channelCount;
+        mTotalFrameCount = Math.max(1, duration * sampleRate / 1000);
+        mMin = new byte[Waveform.BUCKET_COUNT];
+        mMax = new byte[Waveform.BUCKET_COUNT];
+        mBucketEnd = bucketEnd(0);
+    }
+
+    /**
+     * @param offset     the index of the first sample in the array.
+     * @param frameCount the number of the audio frames, i.e. the samples of every channel.
+     */
+    public void process(@NonNull short[] pcm, int offset, int frameCount) {
+        int lastBucket = Waveform.BUCKET_COUNT - 1;
+
+        int index = offset;
+        for (int frame = 0; frame < frameCount; frame++) {
+            if (mFrame >= mBucketEnd && mBucket < lastBucket) {
+                endBucket();
+            }
+
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                int sample = pcm[index++];
+                if (sample < mBucketMin) {
+                    mBucketMin = sample;
+                } else if (sample > mBucketMax) {
+                    mBucketMax = sample;
+                }
+            }
+            mFrame += 1;
+        }
+    }
+
+    @NonNull
+    public Waveform build() {
+        store();
+        return new Waveform(mMin.clone(), mMax.clone());
+    }
+
+    private void endBucket() {
+        store();
+        mBucket += 1;
+        mBucketEnd = bucketEnd(mBucket);
+        mBucketMin = 0;
+        mBucketMax = 0;
+    }
+
+    private void store() {
+        mMin[mBucket] = (byte) (mBucketMin >> 8);
+        mMax[mBucket] = (byte) (mBucketMax >> 8);
+    }
+
+    private long bucketEnd(int bucket) {
+        return (bucket + 1) * mTotalFrameCount / Waveform.BUCKET_COUNT;
+    }
+}
@@ -0,0 +1,143 @@
+package accepted.music.waveform;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Keeps the {@link Waveform} of every track on disk, one file of about 2 KB per track.
+ * <p>
+ * The key is the uri of the track plus the time the file was last modified, so an edited file
+ * gets a new summary and the stale one is never read again.
+ */
+public final class WaveformCache {
+    private static final int MAGIC = 0x57415646;    // "WAVF"
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDir;
+
+    public WaveformCache(@NonNull File dir) {
+        Preconditions.checkNotNull(dir);
+        mDir = dir;
+    }
+
+    @NonNull
+    public static String key(@NonNull String uri, long lastModified) {
+        Preconditions.checkNotNull(uri);
+        return uri + "#" + lastModified;
+    }
+
+    public boolean contains(@NonNull String key) {
+        Preconditions.checkNotNull(key);
+        return getFile(key).isFile();
+    }
+
+    /**
+     * @return null if the waveform of the key is not cached, or the entry cannot be read.
+     */
+    @WorkerThread
+    @Nullable
+    public Waveform get(@NonNull String key) {
+        Preconditions.checkNotNull(key);
+
+        File file = getFile(key);
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return read(input);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            // a corrupted entry is computed again
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    @WorkerThread
+    public void put(@NonNull String key, @NonNull Waveform waveform) throws IOException {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(waveform);
+
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            throw new IOException("can not create the directory: " + mDir);
+        }
+
+        File file = getFile(key);
+        File temp = new File(mDir, file.getName() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(waveform.getBucketCount());
+            output.write(waveform.getMinArray());
+            output.write(waveform.getMaxArray());
+        } finally {
+            output.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("can not rename: " + temp);
+        }
+    }
+
+    private static Waveform read(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+            throw new IOException("not a waveform cache entry");
+        }
+
+        int bucketCount = input.readInt();
+        if (bucketCount < 0 || bucketCount > Waveform.BUCKET_COUNT) {
+            throw new IOException("corrupted waveform cache entry");
+        }
+        if (bucketCount == 0) {
+            return Waveform.EMPTY;
+        }
+
+        byte[] min = new byte[bucketCount];
+        byte[] max = new byte[bucketCount];
+        input.readFully(min);
+        input.readFully(max);
+
+        if (input.read() != -1) {
+            throw new IOException("corrupted waveform cache entry");
+        }
+
+        return new Waveform(min, max);
+    }
+
+    // a uri is too long and has characters that a file name can not have
+    private File getFile(String key) {
+        return new File(mDir, Hashing.murmur3_128().hashString(key, UTF_8).toString());
+    }
+
+    private static void closeQuietly(DataInputStream input) {
+        if (input == null) {
+            return;
+        }
+
+        try {
+            input.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package accepted.music.waveform;
+
+import android.content.Context;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import accepted.music.store.Music;
+import accepted.music.store.MusicStore;
+
+/**
+ * Computes the {@link Waveform} of every music that has none cached yet, one at a time on a
+ * lowest-priority thread. It is started when a scan finishes, and cancelled when a scan starts so
+ * that the two do not compete for the disk.
+ * <p>
+ * Each summary is cached as soon as it is computed, so the job resumes where it stopped the next
+ * time it is started.
+ */
+public final class WaveformJob {
+    private static final String TAG = "WaveformJob";
+    private static final int BATCH_SIZE = 20;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                runnable.run();
+            }, TAG));
+    private static final AtomicBoolean PENDING = new AtomicBoolean(false);
+    private static final AtomicBoolean CANCELLED = new AtomicBoolean(false);
+
+    private WaveformJob() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Starts the job unless one is already waiting to run.
+     */
+    public static void start(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        Context applicationContext = context.getApplicationContext();
+        // reset here rather than when the job runs, so that a later cancel() is not undone
+        CANCELLED.set(false);
+        if (PENDING.compareAndSet(false, true)) {
+            EXECUTOR.execute(() -> {
+                PENDING.set(false);
+                run(applicationContext);
+            });
+        }
+    }
+
+    /**
+     * Stops the running job as soon as the decoding of the current music stops, and the job
+     * that is waiting to run, the music is computed again the next time.
+     */
+    public static void cancel() {
+        CANCELLED.set(true);
+    }
+
+    private static void run(Context context) {
+        MusicStore musicStore = MusicStore.getInstance();
+        WaveformLoader loader = new WaveformLoader(context);
+
+        long offset = 0;
+        List<Music> batch = musicStore.getAllMusic(offset, BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            for (Music music : batch) {
+                if (CANCELLED.get()) {
+                    return;
+                }
+
+                if (!loader.isCached(music.getUri())) {
+                    loader.loadSync(music.getUri(), music.getDuration(), CANCELLED);
+                }
+            }
+
+            offset += batch.size();
+            batch = musicStore.getAllMusic(offset, BATCH_SIZE);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package accepted.music.waveform;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Process;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import accepted.music.util.PcmDecoder;
+import accepted.player.audio.MusicItem;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Loads the {@link Waveform} of a track from the {@link WaveformCache}, or decodes the track with
+ * {@link PcmDecoder} and caches the summary. A track that can not be decoded is cached as
+ * {@link Waveform#EMPTY} and not retried.
+ */
+public final class WaveformLoader {
+    private static final String TAG = "WaveformLoader";
+
+    private final Context mContext;
+    private final WaveformCache mCache;
+
+    public WaveformLoader(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        mContext = context.getApplicationContext();
+        mCache = new WaveformCache(new File(mContext.getCacheDir(), "waveform"));
+    }
+
+    /**
+     * Loads the waveform on the io scheduler, at a background priority so that the playback is not
+     * disturbed. Disposing the single stops the decoding.
+     */
+    @NonNull
+    public Single<Waveform> load(@NonNull MusicItem musicItem) {
+        Preconditions.checkNotNull(musicItem);
+
+        return Single.<Waveform>create(emitter -> {
+            AtomicBoolean cancelled = new AtomicBoolean(false);
+            emitter.setCancellable(() -> cancelled.set(true));
+
+            int tid = Process.myTid();
+            int priority = Process.getThreadPriority(tid);
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                Waveform waveform = loadSync(musicItem.getUri(), musicItem.getDuration(), cancelled);
+                if (waveform != null) {
+                    emitter.onSuccess(waveform);
+                }
+            } finally {
+                // the thread goes back to the io pool
+                Process.setThreadPriority(tid, priority);
+            }
+        }).subscribeOn(Schedulers.io());
+    }
+
+    /**
+     * @return whether the waveform of the track is cached, or the track has been tried.
+     */
+    @WorkerThread
+    public boolean isCached(@NonNull String uri) {
+        Preconditions.checkNotNull(uri);
+        return mCache.contains(WaveformCache.key(uri, lastModified(Uri.parse(uri))));
+    }
+
+    /**
+     * @param duration  the duration of the track in milliseconds.
+     * @param cancelled stops the decoding when it is set.
+     * @return null if cancelled.
+     */
+    @WorkerThread
+    @Nullable
+    public Waveform loadSync(@NonNull String uri, int duration, @NonNull AtomicBoolean cancelled) {
+        Preconditions.checkNotNull(uri);
+        Preconditions.checkNotNull(cancelled);
+
+        String key = WaveformCache.key(uri, lastModified(Uri.parse(uri)));
+        Waveform waveform = mCache.get(key);
+        if (waveform != null) {
+            return waveform;
+        }
+
+        waveform = decode(uri, duration, cancelled);
+        if (cancelled.get()) {
+            return null;
+        }
+
+        try {
+            mCache.put(key, waveform);
+        } catch (IOException e) {
+            Log.w(TAG, "can not cache the waveform", e);
+        }
+        return waveform;
+    }
+
+    private Waveform decode(String uri, int duration, AtomicBoolean cancelled) {
+        if (duration <= 0) {
+            return Waveform.EMPTY;
+        }
+
+        final WaveformBuilder[] builder = new WaveformBuilder[1];
+        try {
+            PcmDecoder.decode(mContext, Uri.parse(uri), new PcmDecoder.Callback() {
+                @Override
+                public void onFormatChanged(int sampleRate, int channelCount) {
+                    builder[0] = new WaveformBuilder(sampleRate, channelCount, duration);
+                }
+
+                @Override
+                public boolean onPcm(@NonNull short[] pcm, int frameCount) {
+                    builder[0].process(pcm, 0, frameCount);
+                    return !cancelled.get();
+                }
+            });
+            return builder[0].build();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "decode failed: " + uri, e);
+            return Waveform.EMPTY;
+        }
+    }
+
+    // the time in seconds that MediaStore updates when the file changes, or the one of a file
+    private long lastModified(Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+            return new File(uri.getPath()).lastModified();
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = mContext.getContentResolver().query(uri,
+                    new String[]{MediaStore.MediaColumns.DATE_MODIFIED}, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getLong(0);
+            }
+        } catch (RuntimeException e) {
+            // keyed by the uri only
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return 0;
+    }
+}
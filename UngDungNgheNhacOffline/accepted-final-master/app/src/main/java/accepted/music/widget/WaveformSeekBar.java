@@ -0,0 +1,146 @@
+package accepted.music.widget;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.AppCompatSeekBar;
+import androidx.core.content.ContextCompat;
+
+import accepted.music.R;
+import accepted.music.waveform.Waveform;
+
+/**
+ * A {@link android.widget.SeekBar} that draws the {@link Waveform} of the track instead of the
+ * progress bar, the played part in the accent color, under the thumb. Until the waveform is set,
+ * or if the track has none, it is drawn as a plain seek bar.
+ * <p>
+ * The lines of the waveform are computed into a float array when the size or the waveform
+ * changes, a frame only clips and draws them, so drawing does not allocate.
+ */
+public class WaveformSeekBar extends AppCompatSeekBar {
+    private Paint mPaint;
+    private Paint mPlayedPaint;
+    private float mBarWidth;
+    private float mMinBarHeight;
+
+    private Waveform mWaveform;
+    private float[] mPoints;
+    private int mPointCount;
+
+    public WaveformSeekBar(@NonNull Context context) {
+        super(context);
+        init(context);
+    }
+
+    public WaveformSeekBar(@NonNull Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public WaveformSeekBar(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    private void init(Context context) {
+        float density = context.getResources().getDisplayMetrics().density;
+        mBarWidth = 2 * density;
+        mMinBarHeight = density;
+
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setColor(ContextCompat.getColor(context, R.color.deep_purple_100));
+        mPaint.setStrokeWidth(mBarWidth);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+
+        mPlayedPaint = new Paint(mPaint);
+        mPlayedPaint.setColor(ContextCompat.getColor(context, R.color.deep_purple_400));
+
+        mPoints = new float[0];
+    }
+
+    /**
+     * @param waveform null or {@link Waveform#EMPTY} to draw a plain seek bar.
+     */
+    public void setWaveform(@Nullable Waveform waveform) {
+        if (mWaveform == waveform) {
+            return;
+        }
+
+        mWaveform = waveform;
+        updatePoints();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updatePoints();
+    }
+
+    private void updatePoints() {
+        mPointCount = 0;
+        if (mWaveform == null || mWaveform.isEmpty()) {
+            return;
+        }
+
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        // a bar and a gap of the same width
+        int columnCount = Math.max(1, (int) (width / (mBarWidth * 2)));
+        if (mPoints.length < columnCount * 4) {
+            mPoints = new float[columnCount * 4];
+        }
+        mPointCount = mWaveform.toLines(mPoints, columnCount, width, height, mMinBarHeight);
+    }
+
+    @Override
+    protected synchronized void onDraw(Canvas canvas) {
+        if (mPointCount == 0) {
+            super.onDraw(canvas);
+            return;
+        }
+
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        int width = getWidth() - left - getPaddingRight();
+        int height = getHeight() - top - getPaddingBottom();
+        int max = getMax();
+        float playedWidth = max <= 0 ? 0 : width * Math.min(1F, (float) getProgress() / max);
+
+        canvas.save();
+        canvas.translate(left, top);
+
+        canvas.save();
+        canvas.clipRect(0, 0, playedWidth, height);
+        canvas.drawLines(mPoints, 0, mPointCount, mPlayedPaint);
+        canvas.restore();
+
+        canvas.clipRect(playedWidth, 0, width, height);
+        canvas.drawLines(mPoints, 0, mPointCount, mPaint);
+        canvas.restore();
+
+        drawThumb(canvas);
+    }
+
+    // the bounds of the thumb are kept up to date by AbsSeekBar, only drawing it is skipped
+    private void drawThumb(Canvas canvas) {
+        Drawable thumb = getThumb();
+        if (thumb == null) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft() - getThumbOffset(), getPaddingTop());
+        thumb.draw(canvas);
+        canvas.restore();
+    }
+}
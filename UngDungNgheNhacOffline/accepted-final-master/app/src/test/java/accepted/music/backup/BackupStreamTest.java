@@ -0,0 +1,124 @@
+package accepted.music.backup;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BackupStreamTest {
+    private static final int TYPE_A = 1;
+    private static final int TYPE_B = 2;
+
+    @Test
+    public void recordsAreReadInOrder() throws IOException {
+        int count = 20_000;
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BackupWriter writer = new BackupWriter(output);
+        for (int i = 0; i < count; i++) {
+            DataOutput out = writer.beginRecord(i < count / 2 ? TYPE_A : TYPE_B);
+            out.writeInt(i);
+            BackupWriter.writeString(out, i % 3 == 0 ? null : "record " + i);
+        }
+        writer.finish();
+        writer.close();
+
+        BackupReader reader = new BackupReader(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(BackupWriter.VERSION, reader.getVersion());
+
+        int index = 0;
+        int chunkCount = 0;
+        while (reader.nextChunk()) {
+            chunkCount += 1;
+            assertEquals(index < count / 2 ? TYPE_A : TYPE_B, reader.getChunkType());
+
+            DataInput in = reader.getChunkInput();
+            for (int i = 0; i < reader.getRecordCount(); i++) {
+                assertEquals(index, in.readInt());
+                assertEquals(index % 3 == 0 ? null : "record " + index, BackupReader.readString(in));
+                index += 1;
+            }
+        }
+
+        assertEquals(count, index);
+        // the records are split into chunks of bounded size
+        assertTrue(chunkCount > 2);
+        assertFalse(reader.nextChunk());
+    }
+
+    @Test
+    public void emptyBackup() throws IOException {
+        BackupReader reader = new BackupReader(new ByteArrayInputStream(write(0)));
+
+        assertFalse(reader.nextChunk());
+    }
+
+    @Test
+    public void notABackup() throws IOException {
+        assertRejected("not a backup".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void newerVersionIsRejected() throws IOException {
+        byte[] backup = write(1);
+        backup[7] = (byte) (BackupWriter.VERSION + 1);
+
+        assertRejected(backup);
+    }
+
+    @Test
+    public void corruptedChunkIsRejected() throws IOException {
+        byte[] backup = write(100);
+        // a byte of the payload of the first chunk
+        backup[8 + BackupWriter.HEADER_SIZE + 10] ^= 1;
+
+        assertRejected(backup);
+    }
+
+    @Test
+    public void truncatedBackupIsRejected() throws IOException {
+        byte[] backup = write(10_000);
+
+        assertRejected(Arrays.copyOf(backup, backup.length / 2));
+        // only the end chunk is missing
+        assertRejected(Arrays.copyOf(backup, backup.length - 1));
+    }
+
+    @Test
+    public void unfinishedBackupIsRejected() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BackupWriter writer = new BackupWriter(output);
+        writer.beginRecord(TYPE_A).writeInt(1);
+        writer.close();
+
+        assertRejected(output.toByteArray());
+    }
+
+    private static byte[] write(int count) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BackupWriter writer = new BackupWriter(output);
+        for (int i = 0; i < count; i++) {
+            writer.beginRecord(TYPE_A).writeLong(i);
+        }
+        writer.finish();
+        return output.toByteArray();
+    }
+
+    private static void assertRejected(byte[] backup) throws IOException {
+        try {
+            BackupReader reader = new BackupReader(new ByteArrayInputStream(backup));
+            while (reader.nextChunk()) {
+                // reads every chunk
+            }
+            fail();
+        } catch (BackupFormatException e) {
+            // expected
+        }
+    }
+}
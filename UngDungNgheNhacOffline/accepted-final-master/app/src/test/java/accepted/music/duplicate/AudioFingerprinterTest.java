@@ -0,0 +1,131 @@
+package accepted.music.duplicate;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AudioFingerprinterTest {
+    private static final int SAMPLE_RATE = 8000;
+    private static final int SECONDS = 20;
+
+    @Test
+    public void sameAudioHasSameFingerprint() {
+        short[] audio = music(SAMPLE_RATE, 1, 1.0);
+
+        long a = fingerprint(audio, SAMPLE_RATE, 1, 4096);
+        long b = fingerprint(audio, SAMPLE_RATE, 1, 333);
+
+        assertNotEquals(0, a);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void volumeAndChannelsDoNotMatter() {
+        long mono = fingerprint(music(SAMPLE_RATE, 1, 1.0), SAMPLE_RATE, 1, 1024);
+        long stereoQuiet = fingerprint(music(SAMPLE_RATE, 2, 0.5), SAMPLE_RATE, 2, 1024);
+
+        assertTrue(AudioFingerprinter.isSimilar(mono, stereoQuiet));
+    }
+
+    @Test
+    public void sampleRateDoesNotMatter() {
+        long low = fingerprint(music(SAMPLE_RATE, 1, 1.0), SAMPLE_RATE, 1, 1024);
+        long high = fingerprint(music(SAMPLE_RATE * 2, 1, 1.0), SAMPLE_RATE * 2, 1, 1024);
+
+        assertTrue(AudioFingerprinter.isSimilar(low, high));
+    }
+
+    @Test
+    public void leadingSilenceIsSkipped() {
+        short[] audio = music(SAMPLE_RATE, 1, 1.0);
+        short[] delayed = new short[audio.length + SAMPLE_RATE * 3];
+        System.arraycopy(audio, 0, delayed, SAMPLE_RATE * 3, audio.length);
+
+        long a = fingerprint(audio, SAMPLE_RATE, 1, 1024);
+        long b = fingerprint(delayed, SAMPLE_RATE, 1, 1024);
+
+        assertTrue(AudioFingerprinter.isSimilar(a, b));
+    }
+
+    @Test
+    public void differentAudioIsNotSimilar() {
+        long a = fingerprint(music(SAMPLE_RATE, 1, 1.0), SAMPLE_RATE, 1, 1024);
+        long b = fingerprint(noise(SAMPLE_RATE, 42), SAMPLE_RATE, 1, 1024);
+
+        assertFalse(AudioFingerprinter.isSimilar(a, b));
+    }
+
+    @Test
+    public void stopsWhenComplete() {
+        short[] audio = music(SAMPLE_RATE, 1, 1.0);
+        AudioFingerprinter fingerprinter = new AudioFingerprinter(SAMPLE_RATE, 1);
+
+        assertFalse(fingerprinter.process(audio, 0, audio.length));
+        assertTrue(fingerprinter.isComplete());
+    }
+
+    @Test
+    public void shortAudioHasNoFingerprint() {
+        AudioFingerprinter fingerprinter = new AudioFingerprinter(SAMPLE_RATE, 1);
+        short[] audio = music(SAMPLE_RATE, 1, 1.0);
+
+        assertTrue(fingerprinter.process(audio, 0, SAMPLE_RATE * 5));
+        assertEquals(0, fingerprinter.getFingerprint());
+    }
+
+    @Test
+    public void zeroIsNotSimilar() {
+        assertFalse(AudioFingerprinter.isSimilar(0, 0));
+        assertTrue(AudioFingerprinter.isSimilar(0xFFL, 0xFEL));
+        assertEquals(64, AudioFingerprinter.distance(0, -1));
+    }
+
+    private static long fingerprint(short[] audio, int sampleRate, int channelCount, int chunkFrames) {
+        AudioFingerprinter fingerprinter = new AudioFingerprinter(sampleRate, channelCount);
+        short[] chunk = new short[chunkFrames * channelCount];
+
+        int frameCount = audio.length / channelCount;
+        for (int frame = 0; frame < frameCount; frame += chunkFrames) {
+            int count = Math.min(chunkFrames, frameCount - frame);
+            System.arraycopy(audio, frame * channelCount, chunk, 0, count * channelCount);
+            if (!fingerprinter.process(chunk, 0, count)) {
+                break;
+            }
+        }
+
+        return fingerprinter.getFingerprint();
+    }
+
+    // a tone whose loudness follows a pseudo-random envelope, the same for every sample rate
+    private static short[] music(int sampleRate, int channelCount, double volume) {
+        Random random = new Random(7);
+        double[] envelope = new double[SECONDS * 4 + 1];
+        for (int i = 0; i < envelope.length; i++) {
+            envelope[i] = 0.1 + 0.8 * random.nextDouble();
+        }
+
+        int frameCount = sampleRate * SECONDS;
+        short[] audio = new short[frameCount * channelCount];
+        for (int frame = 0; frame < frameCount; frame++) {
+            double time = (double) frame / sampleRate;
+            double amplitude = envelope[(int) (time * 4)] * volume;
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * time) * amplitude * Short.MAX_VALUE);
+            for (int channel = 0; channel < channelCount; channel++) {
+                audio[frame * channelCount + channel] = sample;
+            }
+        }
+        return audio;
+    }
+
+    private static short[] noise(int sampleRate, long seed) {
+        Random random = new Random(seed);
+        short[] audio = new short[sampleRate * SECONDS];
+        for (int i = 0; i < audio.length; i++) {
+            double amplitude = 0.1 + 0.8 * Math.abs(Math.sin(i / (double) sampleRate * 3.1));
+            audio[i] = (short) ((random.nextDouble() * 2 - 1) * amplitude * Short.MAX_VALUE);
+        }
+        return audio;
+    }
+}
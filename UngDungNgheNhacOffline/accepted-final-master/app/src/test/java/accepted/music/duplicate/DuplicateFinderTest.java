@@ -0,0 +1,75 @@
+package accepted.music.duplicate;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import accepted.music.store.Music;
+
+import static org.junit.Assert.*;
+
+public class DuplicateFinderTest {
+    @Test
+    public void copiesAreGroupedByContentHash() {
+        Music a = music(1, "hash-a", 200_000, 0, 30);
+        Music b = music(2, "hash-b", 200_000, 0, 10);
+        Music copyOfA = music(3, "hash-a", 200_000, 0, 20);
+
+        List<List<Music>> duplicates = DuplicateFinder.find(Arrays.asList(a, b, copyOfA));
+
+        assertEquals(1, duplicates.size());
+        // ordered by the add time
+        assertEquals(Arrays.asList(copyOfA, a), duplicates.get(0));
+    }
+
+    @Test
+    public void encodingsAreGroupedBySimilarFingerprint() {
+        Music mp3 = music(1, "hash-a", 200_000, 0x0F0F0F0F0F0F0F0FL, 10);
+        Music flac = music(2, "hash-b", 201_000, 0x0F0F0F0F0F0F0F0EL, 20);
+        Music other = music(3, "hash-c", 200_500, 0xF0F0F0F0F0F0F0F0L, 30);
+
+        List<List<Music>> duplicates = DuplicateFinder.find(Arrays.asList(mp3, flac, other));
+
+        assertEquals(1, duplicates.size());
+        assertEquals(Arrays.asList(mp3, flac), duplicates.get(0));
+    }
+
+    @Test
+    public void differentDurationsAreNotGrouped() {
+        Music a = music(1, "hash-a", 200_000, 0x0F0F0F0F0F0F0F0FL, 10);
+        Music b = music(2, "hash-b", 200_000 + DuplicateFinder.MAX_DURATION_DIFFERENCE + 1, 0x0F0F0F0F0F0F0F0FL, 20);
+
+        assertTrue(DuplicateFinder.find(Arrays.asList(a, b)).isEmpty());
+    }
+
+    @Test
+    public void hashAndFingerprintMatchesAreJoined() {
+        Music a = music(1, "hash-a", 200_000, 0, 10);
+        Music copyOfA = music(2, "hash-a", 200_000, 0x1234L, 20);
+        Music encodingOfA = music(3, "hash-b", 199_000, 0x1235L, 30);
+
+        List<List<Music>> duplicates = DuplicateFinder.find(Arrays.asList(encodingOfA, copyOfA, a));
+
+        assertEquals(1, duplicates.size());
+        assertEquals(Arrays.asList(a, copyOfA, encodingOfA), duplicates.get(0));
+    }
+
+    @Test
+    public void musicWithoutHashIsNotGrouped() {
+        Music a = music(1, null, 200_000, 0, 10);
+        Music b = music(2, null, 200_000, 0, 20);
+
+        assertTrue(DuplicateFinder.find(Arrays.asList(a, b)).isEmpty());
+    }
+
+    private static Music music(long id, String hash, int duration, long fingerprint, long addTime) {
+        Music music = new Music(id, "title" + id, "artist", "album", "uri" + id, "", duration, addTime);
+        music.setContentHash(hash);
+        if (fingerprint != 0) {
+            music.setFingerprint(fingerprint);
+            music.setFingerprinted(true);
+        }
+        return music;
+    }
+}
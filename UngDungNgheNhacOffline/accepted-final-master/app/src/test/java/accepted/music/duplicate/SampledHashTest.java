@@ -0,0 +1,106 @@
+package accepted.music.duplicate;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampledHashTest {
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void copiesHaveTheSameHash() throws IOException {
+        byte[] content = randomBytes(1024 * 1024, 1);
+
+        assertEquals(hash(write(content)), hash(write(content)));
+    }
+
+    @Test
+    public void hashIsHex() throws IOException {
+        String hash = hash(write(randomBytes(100, 2)));
+
+        assertEquals(40, hash.length());
+        assertTrue(hash.matches("[0-9a-f]+"));
+    }
+
+    @Test
+    public void sampledBlocksChangeTheHash() throws IOException {
+        byte[] content = randomBytes(1024 * 1024, 3);
+        String hash = hash(write(content));
+
+        int[] sampled = {0, (content.length - SampledHash.BLOCK_SIZE) / 2, content.length - 1};
+        for (int index : sampled) {
+            byte[] changed = content.clone();
+            changed[index] ^= 1;
+            assertNotEquals(hash, hash(write(changed)));
+        }
+    }
+
+    @Test
+    public void sizeChangesTheHash() throws IOException {
+        byte[] content = new byte[SampledHash.BLOCK_SIZE * 4];
+        byte[] longer = new byte[content.length + 1];
+
+        assertNotEquals(hash(write(content)), hash(write(longer)));
+    }
+
+    @Test
+    public void smallFileIsHashedAsAWhole() throws IOException {
+        byte[] content = randomBytes(SampledHash.BLOCK_SIZE * 2 + 10, 4);
+        String hash = hash(write(content));
+
+        byte[] changed = content.clone();
+        changed[SampledHash.BLOCK_SIZE + 5] ^= 1;
+        assertNotEquals(hash, hash(write(changed)));
+    }
+
+    @Test
+    public void positionIsNotChanged() throws IOException {
+        File file = write(randomBytes(1024 * 1024, 5));
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.position(10);
+            SampledHash.compute(channel);
+            assertEquals(10, channel.position());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private String hash(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return SampledHash.compute(randomAccessFile.getChannel());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = mTemporaryFolder.newFile();
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
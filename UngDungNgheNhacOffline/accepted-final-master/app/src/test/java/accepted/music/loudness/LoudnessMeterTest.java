@@ -0,0 +1,80 @@
+package accepted.music.loudness;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoudnessMeterTest {
+    private static final int SAMPLE_RATE = 48_000;
+    private static final double DELTA = 0.1;
+
+    @Test
+    public void sineStereo() {
+        // a 1 kHz stereo sine has a loudness of 20 * log10(amplitude) LUFS
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        float[] pcm = sine(1000, 0.1F, 2, 5);
+        meter.process(pcm, 0, pcm.length / 2);
+
+        assertEquals(-20.0, meter.getIntegratedLoudness(), DELTA);
+        assertEquals(0.1F, meter.getPeak(), 0.001F);
+    }
+
+    @Test
+    public void sineMono16Bit() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 1);
+        float[] sine = sine(1000, 0.5F, 1, 5);
+        short[] pcm = new short[sine.length];
+        for (int i = 0; i < sine.length; i++) {
+            pcm[i] = (short) (sine[i] * 32767);
+        }
+        meter.process(pcm, 0, pcm.length);
+
+        assertEquals(20 * Math.log10(0.5) - 3.01, meter.getIntegratedLoudness(), DELTA);
+    }
+
+    @Test
+    public void silence() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        float[] pcm = new float[SAMPLE_RATE * 2];
+        meter.process(pcm, 0, SAMPLE_RATE);
+
+        assertEquals(Double.NEGATIVE_INFINITY, meter.getIntegratedLoudness(), 0);
+        assertEquals(0F, meter.getPeak(), 0F);
+    }
+
+    @Test
+    public void gatingIgnoresQuietPassages() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        float[] loud = sine(1000, 0.1F, 2, 5);
+        float[] quiet = sine(1000, 0.001F, 2, 20);
+
+        meter.process(loud, 0, loud.length / 2);
+        meter.process(quiet, 0, quiet.length / 2);
+
+        assertEquals(-20.0, meter.getIntegratedLoudness(), 0.5);
+    }
+
+    @Test
+    public void bufferOffset() {
+        LoudnessMeter meter = new LoudnessMeter(SAMPLE_RATE, 2);
+        float[] pcm = sine(1000, 0.1F, 2, 5);
+        int half = pcm.length / 2;
+
+        meter.process(pcm, 0, half / 2);
+        meter.process(pcm, half, (pcm.length - half) / 2);
+
+        assertEquals(-20.0, meter.getIntegratedLoudness(), DELTA);
+    }
+
+    private static float[] sine(double frequency, float amplitude, int channelCount, int seconds) {
+        int frameCount = SAMPLE_RATE * seconds;
+        float[] pcm = new float[frameCount * channelCount];
+        for (int frame = 0; frame < frameCount; frame++) {
+            float sample = (float) (amplitude * Math.sin(2 * Math.PI * frequency * frame / SAMPLE_RATE));
+            for (int channel = 0; channel < channelCount; channel++) {
+                pcm[frame * channelCount + channel] = sample;
+            }
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,148 @@
+package accepted.music.lyrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LrcParserTest {
+
+    @Test
+    public void parseLrc() {
+        Lyrics lyrics = LrcParser.parse("[ti:Title]\n" +
+                "[ar:Artist]\n" +
+                "[00:01.00]First\n" +
+                "[00:02.50] Second \r\n" +
+                "[01:03.123]Third\r" +
+                "[01:04]\n" +
+                "[1:05.5]Fifth");
+
+        assertTrue(lyrics.isSynced());
+        assertEquals(5, lyrics.size());
+        assertLine(lyrics, 0, 1000, "First");
+        assertLine(lyrics, 1, 2500, "Second");
+        assertLine(lyrics, 2, 63_123, "Third");
+        // an empty line clears the previous one
+        assertLine(lyrics, 3, 64_000, "");
+        assertLine(lyrics, 4, 65_500, "Fifth");
+    }
+
+    @Test
+    public void linesAreSortedByTime() {
+        Lyrics lyrics = LrcParser.parse("[00:30.00][00:10.00]Chorus\n" +
+                "[00:20.00]Verse\n" +
+                "[00:10.00]Same time, later in the file");
+
+        assertEquals(4, lyrics.size());
+        assertLine(lyrics, 0, 10_000, "Chorus");
+        assertLine(lyrics, 1, 10_000, "Same time, later in the file");
+        assertLine(lyrics, 2, 20_000, "Verse");
+        assertLine(lyrics, 3, 30_000, "Chorus");
+    }
+
+    @Test
+    public void offsetShiftsEveryLine() {
+        Lyrics sooner = LrcParser.parse("[00:01.00]First\n[offset:+500]\n[00:02.00]Second");
+        assertLine(sooner, 0, 500, "First");
+        assertLine(sooner, 1, 1500, "Second");
+
+        Lyrics later = LrcParser.parse("[offset:-250]\n[00:00.00]First");
+        assertLine(later, 0, 250, "First");
+
+        // a line is never before the start
+        Lyrics clamped = LrcParser.parse("[offset:2000]\n[00:01.00]First");
+        assertLine(clamped, 0, 0, "First");
+    }
+
+    @Test
+    public void wordTimesAreRemoved() {
+        Lyrics lyrics = LrcParser.parse("[00:01.00]<00:01.00>Hello <00:01.50>world <not a time>");
+
+        assertLine(lyrics, 0, 1000, "Hello world <not a time>");
+    }
+
+    @Test
+    public void plainTextIsNotSynced() {
+        Lyrics lyrics = LrcParser.parse("\uFEFFFirst line\n\n[Chorus]\nSecond line\n");
+
+        assertFalse(lyrics.isSynced());
+        assertEquals(3, lyrics.size());
+        assertEquals("First line", lyrics.getLine(0));
+        assertEquals("[Chorus]", lyrics.getLine(1));
+        assertEquals("Second line", lyrics.getLine(2));
+        assertEquals(-1, lyrics.indexAt(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void emptyLyrics() {
+        assertTrue(LrcParser.parse("").isEmpty());
+        assertTrue(LrcParser.parse("[ti:Title]\n[ar:Artist]\n\n").isEmpty());
+    }
+
+    @Test
+    public void parseTime() {
+        assertEquals(0, parseTime("00:00"));
+        assertEquals(12_340, parseTime("00:12.34"));
+        assertEquals(12_300, parseTime("00:12.3"));
+        assertEquals(12_345, parseTime("00:12.3456"));
+        assertEquals(12_340, parseTime("00:12:34"));
+        assertEquals(6_000_000, parseTime("100:00.00"));
+
+        assertEquals(-1, parseTime(""));
+        assertEquals(-1, parseTime("ar:Artist"));
+        assertEquals(-1, parseTime("00:60.00"));
+        assertEquals(-1, parseTime("00:1a"));
+        assertEquals(-1, parseTime("00:12."));
+        assertEquals(-1, parseTime(":12.00"));
+        assertEquals(-1, parseTime("99999999:00.00"));
+    }
+
+    @Test
+    public void indexAt() {
+        Lyrics lyrics = LrcParser.parse("[00:01.00]a\n[00:02.00]b\n[00:02.00]c\n[00:03.00]d");
+
+        assertEquals(-1, lyrics.indexAt(0));
+        assertEquals(-1, lyrics.indexAt(999));
+        assertEquals(0, lyrics.indexAt(1000));
+        assertEquals(0, lyrics.indexAt(1999));
+        // the last of the lines that start at the same time
+        assertEquals(2, lyrics.indexAt(2000));
+        assertEquals(3, lyrics.indexAt(3000));
+        assertEquals(3, lyrics.indexAt(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void parseLargeFile() {
+        final int count = 100_000;
+
+        StringBuilder builder = new StringBuilder(count * 40);
+        builder.append("[ti:Title]\n[ar:Artist]\n[offset:100]\n");
+        for (int i = 0; i < count; i++) {
+            int time = i * 1000 + i % 100;
+            builder.append('[')
+                    .append(pad(time / 60_000)).append(':')
+                    .append(pad(time / 1000 % 60)).append('.')
+                    .append(pad(time % 1000 / 10)).append(']')
+                    .append("Line number ").append(i).append('\n');
+        }
+        Lyrics lyrics = LrcParser.parse(builder.toString());
+
+        assertEquals(count, lyrics.size());
+        for (int i = 1; i < count; i++) {
+            assertTrue(lyrics.getTime(i - 1) <= lyrics.getTime(i));
+        }
+        assertEquals("Line number " + (count - 1), lyrics.getLine(count - 1));
+    }
+
+    private static int parseTime(String time) {
+        return LrcParser.parseTime(time, 0, time.length());
+    }
+
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+
+    private static void assertLine(Lyrics lyrics, int index, int time, String line) {
+        assertEquals(time, lyrics.getTime(index));
+        assertEquals(line, lyrics.getLine(index));
+    }
+}
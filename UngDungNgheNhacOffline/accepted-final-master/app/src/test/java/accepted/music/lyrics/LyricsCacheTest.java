@@ -0,0 +1,69 @@
+package accepted.music.lyrics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class LyricsCacheTest {
+    private static final String KEY = "0123456789abcdef0123456789abcdef01234567";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        LyricsCache cache = new LyricsCache(new File(mTemporaryFolder.getRoot(), "lyrics"));
+        Lyrics lyrics = LrcParser.parse("[00:01.00]First\n[00:02.00]\u6b4c\u8bcd\n[00:03.00]");
+
+        assertNull(cache.get(KEY));
+        cache.put(KEY, lyrics);
+
+        Lyrics cached = cache.get(KEY);
+        assertNotNull(cached);
+        assertTrue(cached.isSynced());
+        assertEquals(lyrics.size(), cached.size());
+        for (int i = 0; i < lyrics.size(); i++) {
+            assertEquals(lyrics.getTime(i), cached.getTime(i));
+            assertEquals(lyrics.getLine(i), cached.getLine(i));
+        }
+    }
+
+    @Test
+    public void plainAndEmptyLyrics() throws IOException {
+        LyricsCache cache = new LyricsCache(mTemporaryFolder.getRoot());
+
+        cache.put("plain", LrcParser.parse("plain\ntext"));
+        cache.put("empty", Lyrics.EMPTY);
+        cache.put("not/a hash", Lyrics.EMPTY);
+
+        Lyrics plain = cache.get("plain");
+        assertNotNull(plain);
+        assertFalse(plain.isSynced());
+        assertEquals("text", plain.getLine(1));
+        assertSame(Lyrics.EMPTY, cache.get("empty"));
+        assertSame(Lyrics.EMPTY, cache.get("not/a hash"));
+    }
+
+    @Test
+    public void corruptedEntryIsIgnored() throws IOException {
+        LyricsCache cache = new LyricsCache(mTemporaryFolder.getRoot());
+        cache.put(KEY, LrcParser.parse("[00:01.00]First"));
+
+        File file = new File(mTemporaryFolder.getRoot(), KEY);
+        FileOutputStream output = new FileOutputStream(file, true);
+        try {
+            output.write(1);
+        } finally {
+            output.close();
+        }
+
+        assertNull(cache.get(KEY));
+        assertFalse(file.exists());
+    }
+}
@@ -0,0 +1,134 @@
+package accepted.music.lyrics;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class LyricsCursorTest {
+    private static final Lyrics LYRICS = LrcParser.parse("[00:01.00]a\n[00:02.00]b\n[00:04.00]c\n[00:10.00]d");
+
+    @Test
+    public void followsTheProgress() {
+        LyricsCursor cursor = newCursor();
+        cursor.sync(0, 100, 1.0F, true);
+
+        assertEquals(-1, cursor.update(100));
+        assertEquals(1100, cursor.getNextChangeTime(100));
+        assertEquals(0, cursor.update(1100));
+        assertEquals(1, cursor.update(2500));
+        // skips the lines it missed
+        assertEquals(3, cursor.update(10_100));
+        assertEquals(LyricsCursor.NO_CHANGE, cursor.getNextChangeTime(10_100));
+    }
+
+    @Test
+    public void seekResyncs() {
+        LyricsCursor cursor = newCursor();
+        cursor.sync(0, 0, 1.0F, true);
+        assertEquals(1, cursor.update(3000));
+
+        cursor.sync(500, 3000, 1.0F, true);
+        assertEquals(-1, cursor.update(3000));
+
+        cursor.sync(9000, 3000, 1.0F, true);
+        assertEquals(2, cursor.update(3000));
+        assertEquals(4000, cursor.getNextChangeTime(3000));
+    }
+
+    @Test
+    public void speedChangeResyncs() {
+        LyricsCursor cursor = newCursor();
+        cursor.sync(0, 0, 1.0F, true);
+        assertEquals(1, cursor.update(3000));
+
+        cursor.setSpeed(2.0F, 3000);
+        assertEquals(3000, cursor.getProgress(3000));
+        // the line at 4 s is reached after 500 ms
+        assertEquals(3500, cursor.getNextChangeTime(3000));
+        assertEquals(2, cursor.update(3500));
+
+        cursor.setSpeed(0.5F, 3500);
+        assertEquals(4000, cursor.getProgress(3500));
+        assertEquals(3500 + 12_000, cursor.getNextChangeTime(3500));
+    }
+
+    @Test
+    public void pausedProgressDoesNotAdvance() {
+        LyricsCursor cursor = newCursor();
+        cursor.sync(2000, 0, 1.0F, false);
+
+        assertEquals(1, cursor.update(60_000));
+        assertEquals(LyricsCursor.NO_CHANGE, cursor.getNextChangeTime(60_000));
+
+        cursor.setSpeed(2.0F, 60_000);
+        assertFalse(cursor.isRunning());
+        assertEquals(2000, cursor.getProgress(120_000));
+    }
+
+    @Test
+    public void unsyncedLyricsHaveNoCurrentLine() {
+        LyricsCursor cursor = new LyricsCursor();
+        cursor.setLyrics(LrcParser.parse("plain\ntext"));
+        cursor.sync(0, 0, 1.0F, true);
+
+        assertEquals(-1, cursor.update(5000));
+        assertEquals(LyricsCursor.NO_CHANGE, cursor.getNextChangeTime(5000));
+    }
+
+    @Test
+    public void updateDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append('[').append(i / 60).append(':').append(i % 60 < 10 ? "0" : "")
+                    .append(i % 60).append(".00]line ").append(i).append('\n');
+        }
+        LyricsCursor cursor = new LyricsCursor();
+        cursor.setLyrics(LrcParser.parse(builder.toString()));
+
+        // warms up the JIT, then measures the same work
+        long sum = tick(cursor);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        sum += tick(cursor);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // the bytes the measure itself may allocate, the sum keeps the updates from being optimized out
+        assertTrue("allocated " + allocated + " bytes in 1000000 updates (" + sum + ")", allocated < 1024);
+    }
+
+    // plays with 60 ticks per second, a seek every 10000 ticks and a speed change every 3000
+    private static long tick(LyricsCursor cursor) {
+        long sum = 0;
+        long now = 0;
+        cursor.sync(0, now, 1.0F, true);
+        for (int i = 0; i < 1_000_000; i++) {
+            now += 16;
+            if (i % 10_000 == 0) {
+                cursor.sync((i * 37L) % 5_000_000, now, 1.0F, true);
+            }
+            if (i % 3000 == 0) {
+                cursor.setSpeed(i % 2 == 0 ? 1.5F : 0.75F, now);
+            }
+            sum += cursor.update(now);
+            sum += cursor.getNextChangeTime(now);
+        }
+        return sum;
+    }
+
+    private static LyricsCursor newCursor() {
+        LyricsCursor cursor = new LyricsCursor();
+        cursor.setLyrics(LYRICS);
+        return cursor;
+    }
+}
@@ -0,0 +1,257 @@
+package accepted.music.scanner;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScanPipelineTest {
+    private static final int TIMEOUT_SECONDS = 10;
+
+    @Test
+    public void commitsEveryDecodedItem() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        ScanPipeline<Integer, Integer> pipeline = new ScanPipeline<>(new CountingSource(1000),
+                item -> item * 2,
+                sink,
+                4,
+                50,
+                200);
+
+        RecordingListener listener = new RecordingListener();
+        pipeline.start(listener);
+        assertTrue(listener.mFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        List<Integer> committed = sink.getCommitted();
+        Collections.sort(committed);
+        assertEquals(1000, committed.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i * 2, (int) committed.get(i));
+        }
+
+        ScanPipeline.Progress progress = listener.mLastProgress;
+        assertEquals(1000, progress.getTotalCount());
+        assertEquals(1000, progress.getProcessedCount());
+        assertEquals(1000, progress.getCommittedCount());
+        assertEquals(0, progress.getDecodeQueueDepth());
+        assertEquals(0, progress.getCommitQueueDepth());
+        assertEquals(100, progress.getPercent());
+    }
+
+    @Test
+    public void commitsInBatches() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        ScanPipeline<Integer, Integer> pipeline = new ScanPipeline<>(new CountingSource(120),
+                item -> item,
+                sink,
+                2,
+                50,
+                100);
+
+        RecordingListener listener = new RecordingListener();
+        pipeline.start(listener);
+        assertTrue(listener.mFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        for (int size : sink.getBatchSizes()) {
+            assertTrue(size <= 50);
+        }
+        assertEquals(120, sink.getCommitted().size());
+    }
+
+    @Test
+    public void skippedItemsAreNotCommitted() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        ScanPipeline<Integer, Integer> pipeline = new ScanPipeline<>(new CountingSource(100),
+                item -> {
+                    if (item % 2 == 0) {
+                        return null;
+                    }
+                    if (item % 5 == 0) {
+                        throw new IllegalStateException("broken file");
+                    }
+                    return item;
+                },
+                sink,
+                3,
+                10,
+                10);
+
+        RecordingListener listener = new RecordingListener();
+        pipeline.start(listener);
+        assertTrue(listener.mFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // the odd numbers that are not multiples of 5
+        assertEquals(40, sink.getCommitted().size());
+        assertEquals(100, listener.mLastProgress.getProcessedCount());
+        assertEquals(40, listener.mLastProgress.getCommittedCount());
+    }
+
+    @Test
+    public void readerWaitsForCommits() throws InterruptedException {
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final CountingSource source = new CountingSource(500);
+        final RecordingSink sink = new RecordingSink() {
+            @Override
+            public void commit(@NonNull List<Integer> batch) {
+                int inFlight = source.getReadCount() - getCommitted().size();
+                maxInFlight.set(Math.max(maxInFlight.get(), inFlight));
+                super.commit(batch);
+            }
+        };
+
+        ScanPipeline<Integer, Integer> pipeline = new ScanPipeline<>(source, item -> item, sink, 4, 20, 40);
+
+        RecordingListener listener = new RecordingListener();
+        pipeline.start(listener);
+        assertTrue(listener.mFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(500, sink.getCommitted().size());
+        // the reader may have read one more item that waits for a permit
+        assertTrue("in flight: " + maxInFlight.get(), maxInFlight.get() <= 41);
+    }
+
+    @Test
+    public void partialBatchIsCommittedWhenIdle() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink();
+
+        ScanPipeline<Integer, Integer> pipeline = new ScanPipeline<>(new CountingSource(10),
+                item -> {
+                    if (item == 9) {
+                        awaitQuietly(release);
+                    }
+                    return item;
+                },
+                sink,
+                2,
+                50,
+                50);
+
+        RecordingListener listener = new RecordingListener();
+        pipeline.start(listener);
+
+        // the last item is still decoding, the others are committed without it
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (sink.getCommitted().size() < 9 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(9, sink.getCommitted().size());
+        assertFalse(sink.getCommitted().contains(9));
+
+        release.countDown();
+        assertTrue(listener.mFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(10, sink.getCommitted().size());
+    }
+
+    @Test
+    public void cancelStopsTheScan() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink();
+        final ScanPipeline<Integer, Integer> pipeline = new ScanPipeline<>(new CountingSource(100_000),
+                item -> {
+                    started.countDown();
+                    return item;
+                },
+                sink,
+                2,
+                10,
+                20);
+
+        RecordingListener listener = new RecordingListener();
+        pipeline.start(listener);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        pipeline.cancel();
+
+        assertFalse(listener.mFinished.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(pipeline.isCancelled());
+        assertTrue(sink.getCommitted().size() < 100_000);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CountingSource implements ScanPipeline.Source<Integer> {
+        private final int mCount;
+        private final AtomicInteger mNext = new AtomicInteger();
+
+        CountingSource(int count) {
+            mCount = count;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public int getCount() {
+            return mCount;
+        }
+
+        @Nullable
+        @Override
+        public Integer next() {
+            int next = mNext.get();
+            if (next >= mCount) {
+                return null;
+            }
+            return mNext.getAndIncrement();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        int getReadCount() {
+            return mNext.get();
+        }
+    }
+
+    private static class RecordingSink implements ScanPipeline.Sink<Integer> {
+        private final List<Integer> mCommitted = Collections.synchronizedList(new ArrayList<Integer>());
+        private final List<Integer> mBatchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void commit(@NonNull List<Integer> batch) {
+            mBatchSizes.add(batch.size());
+            mCommitted.addAll(batch);
+        }
+
+        List<Integer> getCommitted() {
+            return new ArrayList<>(mCommitted);
+        }
+
+        List<Integer> getBatchSizes() {
+            return new ArrayList<>(mBatchSizes);
+        }
+    }
+
+    private static class RecordingListener implements ScanPipeline.Listener {
+        final CountDownLatch mFinished = new CountDownLatch(1);
+        volatile ScanPipeline.Progress mLastProgress;
+
+        @Override
+        public void onProgress(@NonNull ScanPipeline.Progress progress) {
+            mLastProgress = progress;
+        }
+
+        @Override
+        public void onFinished(@NonNull ScanPipeline.Progress progress) {
+            mLastProgress = progress;
+            mFinished.countDown();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package accepted.music.store;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.objectbox.Box;
+import io.objectbox.BoxStore;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs on the JVM with the native ObjectBox library of the host.
+ */
+public class LibraryBackupTest {
+    private static final String FAVORITE = MusicStore.MUSIC_LIST_FAVORITE;
+    private static final String CUSTOM = "Road trip";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private BoxStore mSource;
+    private BoxStore mTarget;
+
+    @Before
+    public void setUp() throws IOException {
+        mSource = newBoxStore();
+        mTarget = newBoxStore();
+    }
+
+    @After
+    public void tearDown() {
+        mSource.close();
+        mTarget.close();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        List<Music> allMusic = putMusic(mSource, 1200);
+        // crosses the pages and the element records
+        putMusicList(mSource, CUSTOM, MusicList.SortOrder.BY_TITLE, reversed(allMusic));
+        putMusicList(mSource, FAVORITE, MusicList.SortOrder.BY_ADD_TIME, allMusic.subList(10, 20));
+
+        mSource.boxFor(HistoryEntity.class).put(
+                new HistoryEntity(0, allMusic.get(3).id, 3_000),
+                new HistoryEntity(0, allMusic.get(4).id, 4_000));
+        mSource.boxFor(HistoryDailyEntity.class).put(new HistoryDailyEntity(0, 18_000, 7));
+
+        PlayStatisticsEntity statistics = new PlayStatisticsEntity(0, allMusic.get(5).id);
+        statistics.playCount = 9;
+        statistics.completeCount = 8;
+        statistics.skipCount = 1;
+        statistics.lastPlayedTime = 5_000;
+        mSource.boxFor(PlayStatisticsEntity.class).put(statistics);
+
+        SmartMusicListRule rule = new SmartMusicListRule.Builder()
+                .setArtist("Artist 1")
+                .setMinDuration(60_000)
+                .setSortOrder(MusicList.SortOrder.BY_TITLE)
+                .build();
+        new SmartMusicListStore(mSource).create("Artist 1", rule);
+
+        LibraryBackup.Result result = restore(mTarget, export(mSource, null), null);
+
+        assertEquals(1200, result.getAddedMusicCount());
+        assertEquals(0, result.getMatchedMusicCount());
+        assertEquals(1200, mTarget.boxFor(Music.class).count());
+
+        for (Music music : allMusic) {
+            Music restored = findByUri(mTarget, music.getUri());
+            assertNotNull(restored);
+
+            Music expected = copy(music);
+            expected.id = restored.id;
+            assertEquals(expected, restored);
+        }
+
+        assertMusicListEquals(CUSTOM, reversed(allMusic));
+        assertMusicListEquals(FAVORITE, allMusic.subList(10, 20));
+        assertEquals(MusicList.SortOrder.BY_TITLE, getMusicListEntity(mTarget, CUSTOM).sortOrder);
+
+        List<HistoryEntity> allHistory = mTarget.boxFor(HistoryEntity.class).getAll();
+        assertEquals(2, allHistory.size());
+        for (HistoryEntity history : allHistory) {
+            long expected = history.getMusic().getUri().equals(allMusic.get(3).getUri()) ? 3_000 : 4_000;
+            assertEquals(expected, history.timestamp);
+        }
+
+        HistoryDailyEntity daily = mTarget.boxFor(HistoryDailyEntity.class).getAll().get(0);
+        assertEquals(18_000, daily.getDay());
+        assertEquals(7, daily.getPlayCount());
+
+        PlayStatisticsEntity restoredStatistics = mTarget.boxFor(PlayStatisticsEntity.class).getAll().get(0);
+        assertEquals(findByUri(mTarget, allMusic.get(5).getUri()).id, restoredStatistics.getMusicId());
+        assertEquals(9, restoredStatistics.getPlayCount());
+        assertEquals(8, restoredStatistics.getCompleteCount());
+        assertEquals(1, restoredStatistics.getSkipCount());
+        assertEquals(5_000, restoredStatistics.getLastPlayedTime());
+
+        SmartMusicListStore smartMusicListStore = new SmartMusicListStore(mTarget);
+        assertEquals(rule, smartMusicListStore.getRule("Artist 1"));
+        assertFalse(smartMusicListStore.getMusic("Artist 1").isEmpty());
+    }
+
+    @Test
+    public void musicIsResolvedByContentHash() throws IOException {
+        List<Music> allMusic = putMusic(mSource, 3);
+        putMusicList(mSource, FAVORITE, MusicList.SortOrder.BY_ADD_TIME, allMusic);
+
+        // the same file, scanned again at another uri
+        Music rescanned = copy(allMusic.get(2));
+        rescanned.id = 0;
+        rescanned.setUri("content://media/external/audio/media/999");
+        rescanned.setLoudnessAnalyzed(false);
+        mTarget.boxFor(Music.class).put(rescanned);
+
+        LibraryBackup.Result result = restore(mTarget, export(mSource, null), null);
+
+        assertEquals(1, result.getMatchedMusicCount());
+        assertEquals(2, result.getAddedMusicCount());
+        assertEquals(3, mTarget.boxFor(Music.class).count());
+
+        long[] order = MusicStore.readOrder(getMusicListEntity(mTarget, FAVORITE));
+        assertEquals(3, order.length);
+        assertEquals(rescanned.id, order[2]);
+        // the analysis of the backup is kept
+        assertTrue(mTarget.boxFor(Music.class).get(rescanned.id).isLoudnessAnalyzed());
+    }
+
+    @Test
+    public void uriOfAnotherFileIsSkipped() throws IOException {
+        List<Music> allMusic = putMusic(mSource, 2);
+        putMusicList(mSource, FAVORITE, MusicList.SortOrder.BY_ADD_TIME, allMusic);
+
+        // another file now has the uri
+        Music other = copy(allMusic.get(0));
+        other.id = 0;
+        other.setContentHash(hash(1000));
+        mTarget.boxFor(Music.class).put(other);
+
+        LibraryBackup.Result result = restore(mTarget, export(mSource, null), null);
+
+        assertEquals(1, result.getSkippedMusicCount());
+        assertEquals(1, result.getAddedMusicCount());
+        assertEquals(2, mTarget.boxFor(Music.class).count());
+        assertEquals(1, getMusicListEntity(mTarget, FAVORITE).size);
+    }
+
+    @Test
+    public void restoringTwiceChangesNothing() throws IOException {
+        List<Music> allMusic = putMusic(mSource, 100);
+        putMusicList(mSource, CUSTOM, MusicList.SortOrder.BY_ADD_TIME, allMusic);
+        mSource.boxFor(HistoryEntity.class).put(new HistoryEntity(0, allMusic.get(0).id, 1_000));
+        mSource.boxFor(HistoryDailyEntity.class).put(new HistoryDailyEntity(0, 18_000, 7));
+
+        byte[] backup = export(mSource, null);
+        restore(mTarget, backup, null);
+        LibraryBackup.Result result = restore(mTarget, backup, null);
+
+        assertEquals(100, result.getMatchedMusicCount());
+        assertEquals(0, result.getAddedMusicCount());
+        assertEquals(100, mTarget.boxFor(Music.class).count());
+        assertMusicListEquals(CUSTOM, allMusic);
+        assertEquals(1, mTarget.boxFor(HistoryEntity.class).count());
+        assertEquals(7, mTarget.boxFor(HistoryDailyEntity.class).getAll().get(0).getPlayCount());
+    }
+
+    @Test
+    public void filesRoundTrip() throws IOException {
+        File sourceDir = mTemporaryFolder.newFolder();
+        File targetDir = mTemporaryFolder.newFolder();
+
+        byte[] content = new byte[100_000];
+        new Random(1).nextBytes(content);
+        write(new File(sourceDir, "PlayerState"), content);
+        write(new File(sourceDir, "specialCharacter/0123abcd"), new byte[0]);
+        write(new File(targetDir, "PlayerState"), new byte[10]);
+
+        LibraryBackup.Result result = restore(mTarget, export(mSource, sourceDir), targetDir);
+
+        assertEquals(2, result.getFileCount());
+        assertArrayEquals(content, read(new File(targetDir, "PlayerState")));
+        assertEquals(0, new File(targetDir, "specialCharacter/0123abcd").length());
+        assertFalse(new File(targetDir, "PlayerState.restore").exists());
+    }
+
+    @Test
+    public void corruptedBackupIsRejected() throws IOException {
+        putMusic(mSource, 10);
+        byte[] backup = export(mSource, null);
+        backup[backup.length / 2] ^= 1;
+
+        try {
+            restore(mTarget, backup, null);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(0, mTarget.boxFor(Music.class).count());
+    }
+
+    @Test
+    public void truncatedBackupChangesNothing() throws IOException {
+        File sourceDir = mTemporaryFolder.newFolder();
+        File targetDir = mTemporaryFolder.newFolder();
+        write(new File(sourceDir, "PlayerState"), new byte[100]);
+
+        // the music and the files are complete, only the end chunk is missing
+        putMusic(mSource, 1200);
+        byte[] backup = export(mSource, sourceDir);
+        byte[] truncated = new byte[backup.length - 1];
+        System.arraycopy(backup, 0, truncated, 0, truncated.length);
+
+        try {
+            restore(mTarget, truncated, targetDir);
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertEquals(0, mTarget.boxFor(Music.class).count());
+        String[] allFileName = targetDir.list();
+        assertNotNull(allFileName);
+        assertEquals(0, allFileName.length);
+    }
+
+    @Test
+    public void largeLibrary() throws IOException {
+        final int count = 50_000;
+        putMusic(mSource, count);
+
+        byte[] backup = export(mSource, null);
+        restore(mTarget, backup, null);
+
+        assertEquals(count, mTarget.boxFor(Music.class).count());
+        assertTrue(backup.length / count < 512);
+    }
+
+    private BoxStore newBoxStore() throws IOException {
+        return MyObjectBox.builder()
+                .directory(mTemporaryFolder.newFolder())
+                .build();
+    }
+
+    private static byte[] export(BoxStore boxStore, File fileDir) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new LibraryBackup(boxStore, new SmartMusicListStore(boxStore)).export(output, fileDir);
+        return output.toByteArray();
+    }
+
+    private static LibraryBackup.Result restore(BoxStore boxStore, byte[] backup, File fileDir) throws IOException {
+        return new LibraryBackup(boxStore, new SmartMusicListStore(boxStore))
+                .restore(new ByteArrayInputStream(backup), fileDir);
+    }
+
+    private static List<Music> putMusic(BoxStore boxStore, int count) {
+        List<Music> allMusic = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            allMusic.add(new Music(0,
+                    "Title " + i,
+                    "Artist " + (i % 50),
+                    "Album " + (i % 200),
+                    "content://media/external/audio/media/" + i,
+                    null,
+                    180_000 + i,
+                    1_600_000_000_000L + i,
+                    i % 2 == 0, -14F, 0.9F,
+                    "Album Artist", "Rock", 2000 + i % 20, i % 12 + 1, 1,
+                    -1, 0,
+                    hash(i), i % 3 == 0 ? 0x1234_5678_9ABC_DEF0L ^ i : 0, i % 3 == 0));
+        }
+
+        boxStore.boxFor(Music.class).put(allMusic);
+        return allMusic;
+    }
+
+    private static void putMusicList(BoxStore boxStore, String name, MusicList.SortOrder sortOrder, List<Music> allMusic) {
+        Box<MusicListEntity> box = boxStore.boxFor(MusicListEntity.class);
+        MusicListEntity entity = new MusicListEntity(0, name, 0, sortOrder, new byte[0]);
+        box.put(entity);
+
+        long[] order = new long[allMusic.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = allMusic.get(i).id;
+        }
+
+        entity.musicElements.addAll(allMusic);
+        entity.orderBytes = MusicList.writeOrderBytes(order, order.length);
+        entity.size = order.length;
+        box.put(entity);
+    }
+
+    private void assertMusicListEquals(String name, List<Music> expected) {
+        MusicListEntity entity = getMusicListEntity(mTarget, name);
+        long[] order = MusicStore.readOrder(entity);
+
+        assertEquals(expected.size(), entity.size);
+        assertEquals(expected.size(), order.length);
+        for (int i = 0; i < order.length; i++) {
+            assertEquals(expected.get(i).getUri(), mTarget.boxFor(Music.class).get(order[i]).getUri());
+        }
+    }
+
+    private static MusicListEntity getMusicListEntity(BoxStore boxStore, String name) {
+        return boxStore.boxFor(MusicListEntity.class)
+                .query()
+                .equal(MusicListEntity_.name, name)
+                .build()
+                .findUnique();
+    }
+
+    private static Music findByUri(BoxStore boxStore, String uri) {
+        return boxStore.boxFor(Music.class)
+                .query()
+                .equal(Music_.uri, uri)
+                .build()
+                .findUnique();
+    }
+
+    private static List<Music> reversed(List<Music> allMusic) {
+        List<Music> result = new ArrayList<>(allMusic.size());
+        for (int i = allMusic.size() - 1; i >= 0; i--) {
+            result.add(allMusic.get(i));
+        }
+        return result;
+    }
+
+    private static Music copy(Music music) {
+        return new Music(music.id, music.getTitle(), music.getArtist(), music.getAlbum(), music.getUri(),
+                music.getIconUri(), music.getDuration(), music.getAddTime(),
+                music.isLoudnessAnalyzed(), music.getLoudness(), music.getPeak(),
+                music.getAlbumArtist(), music.getGenre(), music.getYear(), music.getTrackNumber(),
+                music.getDiscNumber(), music.getPictureOffset(), music.getPictureLength(),
+                music.getContentHash(), music.getFingerprint(), music.isFingerprinted());
+    }
+
+    private static String hash(int i) {
+        return String.format("%040x", i);
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            byte[] content = new byte[(int) input.length()];
+            input.readFully(content);
+            return content;
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -31,4 +31,13 @@ public class MusicTest {
         assertEquals(duration, musicA.getDuration());
         assertEquals(addTime, musicA.getAddTime());
     }
+
+    @Test
+    public void unsavedMusicIsOnlyEqualToItself() {
+        Music musicA = new Music(0, "title", "artist", "album", "https://www.test.com/a.mp3", "", 60_000, 0);
+        Music musicB = new Music(0, "title", "artist", "album", "https://www.test.com/b.mp3", "", 60_000, 0);
+
+        assertEquals(musicA, musicA);
+        assertNotEquals(musicA, musicB);
+    }
 }
@@ -0,0 +1,436 @@
+package accepted.music.tag;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+public class TagReaderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final byte[] PICTURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00, 1, 2, 3, 4, (byte) 0xFF, (byte) 0xD9};
+    private static final byte[] AUDIO = new byte[4096];
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readId3v23() throws IOException {
+        byte[] frames = concat(
+                id3v23Frame("TIT2", latin1Text("Title")),
+                id3v23Frame("TPE1", utf16Text("Artist")),
+                id3v23Frame("TALB", latin1Text("Album")),
+                id3v23Frame("TPE2", latin1Text("Album Artist")),
+                id3v23Frame("TYER", latin1Text("2001")),
+                id3v23Frame("TCON", latin1Text("(17)")),
+                id3v23Frame("TRCK", latin1Text("3/12")),
+                id3v23Frame("TPOS", latin1Text("1/2")),
+                id3v23Frame("APIC", apic(4, "image/png")),
+                id3v23Frame("APIC", apic(3, "image/jpeg")));
+        File file = write(concat(id3v2Header(3, 0, frames.length + 64), frames, new byte[64], AUDIO));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("Title", tag.getTitle());
+        assertEquals("Artist", tag.getArtist());
+        assertEquals("Album", tag.getAlbum());
+        assertEquals("Album Artist", tag.getAlbumArtist());
+        assertEquals(2001, tag.getYear());
+        assertEquals("Rock", tag.getGenre());
+        assertEquals(3, tag.getTrackNumber());
+        assertEquals(1, tag.getDiscNumber());
+
+        // the front cover wins over the picture before it
+        assertEquals("image/jpeg", tag.getPictureMimeType());
+        assertArrayEquals(PICTURE, readPicture(file, tag));
+    }
+
+    @Test
+    public void readId3v24() throws IOException {
+        byte[] frames = concat(
+                id3v24Frame("TIT2", utf8Text("\u6807\u9898")),
+                id3v24Frame("TDRC", utf8Text("1999-12-31")),
+                id3v24Frame("TCON", utf8Text("Jazz")),
+                id3v24Frame("APIC", apic(3, "image/jpeg")));
+        File file = write(concat(id3v2Header(4, 0, frames.length), frames, AUDIO));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("\u6807\u9898", tag.getTitle());
+        assertEquals(1999, tag.getYear());
+        assertEquals("Jazz", tag.getGenre());
+        assertArrayEquals(PICTURE, readPicture(file, tag));
+    }
+
+    @Test
+    public void readId3v22() throws IOException {
+        byte[] pic = concat(new byte[]{0}, "JPG".getBytes(ISO_8859_1), new byte[]{3, 0}, PICTURE);
+        byte[] frames = concat(
+                id3v22Frame("TT2", latin1Text("Title")),
+                id3v22Frame("TP1", latin1Text("Artist")),
+                id3v22Frame("PIC", pic));
+        File file = write(concat(id3v2Header(2, 0, frames.length), frames, AUDIO));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("Title", tag.getTitle());
+        assertEquals("Artist", tag.getArtist());
+        assertEquals("image/jpeg", tag.getPictureMimeType());
+        assertArrayEquals(PICTURE, readPicture(file, tag));
+    }
+
+    @Test
+    public void unsynchronisedPictureHasNoOffset() throws IOException {
+        byte[] frames = concat(
+                id3v23Frame("TIT2", latin1Text("Title")),
+                id3v23Frame("APIC", apic(3, "image/jpeg")),
+                id3v23Frame("TPE1", latin1Text("Artist")));
+        byte[] unsynchronised = unsynchronise(frames);
+        File file = write(concat(id3v2Header(3, 0x80, unsynchronised.length), unsynchronised, AUDIO));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("Title", tag.getTitle());
+        // the frame after the skipped picture
+        assertEquals("Artist", tag.getArtist());
+        assertTrue(tag.hasPicture());
+        assertEquals(PICTURE.length, tag.getPictureLength());
+        assertEquals(-1, tag.getPictureOffset());
+    }
+
+    @Test
+    public void id3v1FillsMissingValues() throws IOException {
+        byte[] frames = id3v23Frame("TIT2", latin1Text("Title v2"));
+        File file = write(concat(id3v2Header(3, 0, frames.length), frames, AUDIO,
+                id3v1("Title v1", "Artist v1", "Album v1", "1984", 7, 17)));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("Title v2", tag.getTitle());
+        assertEquals("Artist v1", tag.getArtist());
+        assertEquals("Album v1", tag.getAlbum());
+        assertEquals(1984, tag.getYear());
+        assertEquals(7, tag.getTrackNumber());
+        assertEquals("Rock", tag.getGenre());
+        assertFalse(tag.hasPicture());
+    }
+
+    @Test
+    public void readEmbeddedLyrics() throws IOException {
+        String lyrics = "[00:01.00]First\n[00:02.00]\u7b2c\u4e8c";
+
+        byte[] frames = concat(
+                id3v23Frame("TIT2", latin1Text("Title")),
+                id3v23Frame("USLT", concat(new byte[]{1}, "eng".getBytes(ISO_8859_1),
+                        "description".getBytes(UTF_16), new byte[2],
+                        lyrics.getBytes(UTF_16))));
+        AudioTag id3Tag = read(write(concat(id3v2Header(3, 0, frames.length), frames, AUDIO)));
+        assertNotNull(id3Tag);
+        assertEquals(lyrics, id3Tag.getLyrics());
+
+        byte[] comment = vorbisComment("TITLE=Title", "LYRICS=" + lyrics);
+        AudioTag flacTag = read(write(concat("fLaC".getBytes(ISO_8859_1),
+                flacBlock(0, false, new byte[34]),
+                flacBlock(4, true, comment),
+                AUDIO)));
+        assertNotNull(flacTag);
+        assertEquals(lyrics, flacTag.getLyrics());
+
+        // only the lyrics, the tag is not empty
+        byte[] ilst = atom("ilst", item("\u00A9lyr", 1, lyrics.getBytes(UTF_8)));
+        byte[] meta = atom("meta", concat(new byte[4], atom("hdlr", new byte[25]), ilst));
+        byte[] moov = atom("moov", concat(atom("mvhd", new byte[100]), atom("udta", meta)));
+        AudioTag mp4Tag = read(write(concat(atom("ftyp", "M4A mp42isom".getBytes(ISO_8859_1)),
+                atom("mdat", AUDIO),
+                moov)));
+        assertNotNull(mp4Tag);
+        assertEquals(lyrics, mp4Tag.getLyrics());
+    }
+
+    @Test
+    public void readFlac() throws IOException {
+        byte[] streamInfo = new byte[34];
+        byte[] comment = vorbisComment("TITLE=Title", "artist=Artist", "ALBUM=Album",
+                "ALBUMARTIST=Album Artist", "DATE=2010-01-01", "GENRE=Ambient",
+                "TRACKNUMBER=5", "DISCNUMBER=2/2");
+        byte[] picture = flacPicture(3, "image/png");
+
+        File file = write(concat("fLaC".getBytes(ISO_8859_1),
+                flacBlock(0, false, streamInfo),
+                flacBlock(4, false, comment),
+                flacBlock(6, true, picture),
+                AUDIO));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("Title", tag.getTitle());
+        assertEquals("Artist", tag.getArtist());
+        assertEquals("Album", tag.getAlbum());
+        assertEquals("Album Artist", tag.getAlbumArtist());
+        assertEquals(2010, tag.getYear());
+        assertEquals("Ambient", tag.getGenre());
+        assertEquals(5, tag.getTrackNumber());
+        assertEquals(2, tag.getDiscNumber());
+        assertEquals("image/png", tag.getPictureMimeType());
+        assertArrayEquals(PICTURE, readPicture(file, tag));
+    }
+
+    @Test
+    public void readMp4() throws IOException {
+        byte[] ilst = atom("ilst", concat(
+                item("\u00A9nam", 1, "Title".getBytes(UTF_8)),
+                item("\u00A9ART", 1, "Artist".getBytes(UTF_8)),
+                item("\u00A9alb", 1, "Album".getBytes(UTF_8)),
+                item("aART", 1, "Album Artist".getBytes(UTF_8)),
+                item("\u00A9day", 1, "2015-06-01T00:00:00Z".getBytes(UTF_8)),
+                item("gnre", 0, new byte[]{0, 10}),
+                item("trkn", 0, new byte[]{0, 0, 0, 4, 0, 10, 0, 0}),
+                item("disk", 0, new byte[]{0, 0, 0, 1, 0, 1}),
+                item("covr", 13, PICTURE)));
+        byte[] hdlr = atom("hdlr", new byte[25]);
+        byte[] meta = atom("meta", concat(new byte[4], hdlr, ilst));
+        byte[] moov = atom("moov", concat(atom("mvhd", new byte[100]), atom("udta", meta)));
+
+        File file = write(concat(atom("ftyp", "M4A mp42isom".getBytes(ISO_8859_1)),
+                atom("mdat", AUDIO),
+                moov));
+
+        AudioTag tag = read(file);
+
+        assertNotNull(tag);
+        assertEquals("Title", tag.getTitle());
+        assertEquals("Artist", tag.getArtist());
+        assertEquals("Album", tag.getAlbum());
+        assertEquals("Album Artist", tag.getAlbumArtist());
+        assertEquals(2015, tag.getYear());
+        assertEquals("Metal", tag.getGenre());
+        assertEquals(4, tag.getTrackNumber());
+        assertEquals(1, tag.getDiscNumber());
+        assertEquals("image/jpeg", tag.getPictureMimeType());
+        assertArrayEquals(PICTURE, readPicture(file, tag));
+    }
+
+    @Test
+    public void untaggedFileIsNull() throws IOException {
+        assertNull(read(write(AUDIO)));
+        assertNull(read(write(new byte[0])));
+    }
+
+    @Test
+    public void truncatedTagKeepsWhatHasBeenRead() throws IOException {
+        byte[] frames = concat(
+                id3v23Frame("TIT2", latin1Text("Title")),
+                id3v23Frame("APIC", apic(3, "image/jpeg")));
+        byte[] whole = concat(id3v2Header(3, 0, frames.length), frames);
+        byte[] truncated = new byte[whole.length - PICTURE.length];
+        System.arraycopy(whole, 0, truncated, 0, truncated.length);
+
+        AudioTag tag = read(write(truncated));
+
+        assertNotNull(tag);
+        assertEquals("Title", tag.getTitle());
+        assertFalse(tag.hasPicture());
+    }
+
+    @Test
+    public void parseGenre() {
+        assertEquals("Rock", Id3v2Parser.parseGenre("(17)"));
+        assertEquals("Hard Rock", Id3v2Parser.parseGenre("79"));
+        assertEquals("Rock & Roll", Id3v2Parser.parseGenre("(78)Rock & Roll"));
+        assertEquals("Synthwave", Id3v2Parser.parseGenre("Synthwave"));
+        assertNull(Id3v2Parser.parseGenre("(255)"));
+    }
+
+    @Test
+    public void parseNumberAndYear() {
+        assertEquals(3, TagReader.parseNumber("3/12"));
+        assertEquals(0, TagReader.parseNumber("a/12"));
+        assertEquals(2001, TagReader.parseYear("2001-05-01"));
+        assertEquals(0, TagReader.parseYear("05/01"));
+    }
+
+    private AudioTag read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return TagReader.read(randomAccessFile.getChannel());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private byte[] readPicture(File file, AudioTag tag) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return TagReader.readPicture(channel, tag.getPictureOffset(), tag.getPictureLength());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private File write(byte[] content) throws IOException {
+        File file = mTemporaryFolder.newFile();
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+        return file;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            outputStream.write(array, 0, array.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] id3v2Header(int major, int flags, int size) {
+        return concat("ID3".getBytes(ISO_8859_1), new byte[]{(byte) major, 0, (byte) flags}, syncsafe(size));
+    }
+
+    private static byte[] syncsafe(int value) {
+        return new byte[]{
+                (byte) ((value >> 21) & 0x7F),
+                (byte) ((value >> 14) & 0x7F),
+                (byte) ((value >> 7) & 0x7F),
+                (byte) (value & 0x7F)};
+    }
+
+    private static byte[] id3v23Frame(String id, byte[] data) {
+        return concat(id.getBytes(ISO_8859_1), ByteBuffer.allocate(4).putInt(data.length).array(), new byte[2], data);
+    }
+
+    private static byte[] id3v24Frame(String id, byte[] data) {
+        return concat(id.getBytes(ISO_8859_1), syncsafe(data.length), new byte[2], data);
+    }
+
+    private static byte[] id3v22Frame(String id, byte[] data) {
+        int length = data.length;
+        return concat(id.getBytes(ISO_8859_1),
+                new byte[]{(byte) (length >> 16), (byte) (length >> 8), (byte) length},
+                data);
+    }
+
+    private static byte[] latin1Text(String text) {
+        return concat(new byte[]{0}, text.getBytes(ISO_8859_1));
+    }
+
+    private static byte[] utf16Text(String text) {
+        return concat(new byte[]{1}, text.getBytes(UTF_16), new byte[2]);
+    }
+
+    private static byte[] utf8Text(String text) {
+        return concat(new byte[]{3}, text.getBytes(UTF_8));
+    }
+
+    private static byte[] apic(int pictureType, String mimeType) {
+        return concat(new byte[]{1},
+                mimeType.getBytes(ISO_8859_1), new byte[]{0},
+                new byte[]{(byte) pictureType},
+                "cover".getBytes(UTF_16), new byte[2],
+                PICTURE);
+    }
+
+    private static byte[] unsynchronise(byte[] data) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (byte b : data) {
+            outputStream.write(b);
+            if (b == (byte) 0xFF) {
+                outputStream.write(0);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] id3v1(String title, String artist, String album, String year, int track, int genre) {
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        buffer.put("TAG".getBytes(ISO_8859_1));
+        buffer.put(fixed(title, 30));
+        buffer.put(fixed(artist, 30));
+        buffer.put(fixed(album, 30));
+        buffer.put(fixed(year, 4));
+        buffer.put(fixed("comment", 28));
+        buffer.put((byte) 0);
+        buffer.put((byte) track);
+        buffer.put((byte) genre);
+        return buffer.array();
+    }
+
+    private static byte[] fixed(String text, int length) {
+        byte[] bytes = new byte[length];
+        byte[] textBytes = text.getBytes(ISO_8859_1);
+        System.arraycopy(textBytes, 0, bytes, 0, Math.min(length, textBytes.length));
+        return bytes;
+    }
+
+    private static byte[] flacBlock(int type, boolean last, byte[] data) {
+        int length = data.length;
+        return concat(new byte[]{(byte) ((last ? 0x80 : 0) | type),
+                        (byte) (length >> 16), (byte) (length >> 8), (byte) length},
+                data);
+    }
+
+    private static byte[] vorbisComment(String... comments) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] vendor = "test".getBytes(UTF_8);
+        writeIntLE(outputStream, vendor.length);
+        outputStream.write(vendor, 0, vendor.length);
+        writeIntLE(outputStream, comments.length);
+        for (String comment : comments) {
+            byte[] bytes = comment.getBytes(UTF_8);
+            writeIntLE(outputStream, bytes.length);
+            outputStream.write(bytes, 0, bytes.length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream outputStream, int value) {
+        byte[] bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+        outputStream.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] flacPicture(int pictureType, String mimeType) {
+        byte[] mime = mimeType.getBytes(ISO_8859_1);
+        byte[] description = "cover".getBytes(UTF_8);
+        return ByteBuffer.allocate(32 + mime.length + description.length + PICTURE.length)
+                .putInt(pictureType)
+                .putInt(mime.length).put(mime)
+                .putInt(description.length).put(description)
+                .putInt(500).putInt(500).putInt(24).putInt(0)
+                .putInt(PICTURE.length).put(PICTURE)
+                .array();
+    }
+
+    private static byte[] atom(String type, byte[] content) {
+        return concat(ByteBuffer.allocate(4).putInt(8 + content.length).array(),
+                type.getBytes(ISO_8859_1),
+                content);
+    }
+
+    private static byte[] item(String type, int dataType, byte[] payload) {
+        byte[] data = atom("data", concat(ByteBuffer.allocate(4).putInt(dataType).array(), new byte[4], payload));
+        return atom(type, data);
+    }
+}
@@ -0,0 +1,55 @@
+package accepted.music.util;
+
+import android.media.AudioFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class PcmDecoderTest {
+
+    @Test
+    public void pcm16() {
+        ByteBuffer buffer = ByteBuffer.allocate(6).order(ByteOrder.nativeOrder());
+        buffer.putShort((short) 1).putShort(Short.MIN_VALUE).putShort(Short.MAX_VALUE).flip();
+
+        short[] pcm = new short[3];
+        PcmDecoder.toPcm16(buffer, AudioFormat.ENCODING_PCM_16BIT, pcm, 3);
+
+        assertArrayEquals(new short[]{1, Short.MIN_VALUE, Short.MAX_VALUE}, pcm);
+    }
+
+    @Test
+    public void pcm8() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) 128, 0, (byte) 255});
+
+        short[] pcm = new short[3];
+        PcmDecoder.toPcm16(buffer, AudioFormat.ENCODING_PCM_8BIT, pcm, 3);
+
+        assertArrayEquals(new short[]{0, Short.MIN_VALUE, 127 << 8}, pcm);
+    }
+
+    @Test
+    public void pcmFloat() {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+        buffer.putFloat(0F).putFloat(0.5F).putFloat(-1F).putFloat(2F).flip();
+
+        short[] pcm = new short[4];
+        PcmDecoder.toPcm16(buffer, AudioFormat.ENCODING_PCM_FLOAT, pcm, 4);
+
+        // out of range samples are clipped
+        assertArrayEquals(new short[]{0, Short.MAX_VALUE / 2, -Short.MAX_VALUE, Short.MAX_VALUE}, pcm);
+    }
+
+    @Test
+    public void bytesPerSample() {
+        assertEquals(1, PcmDecoder.getBytesPerSample(AudioFormat.ENCODING_PCM_8BIT));
+        assertEquals(2, PcmDecoder.getBytesPerSample(AudioFormat.ENCODING_PCM_16BIT));
+        assertEquals(4, PcmDecoder.getBytesPerSample(AudioFormat.ENCODING_PCM_FLOAT));
+        // e.g. compressed passthrough
+        assertEquals(-1, PcmDecoder.getBytesPerSample(5));
+    }
+}
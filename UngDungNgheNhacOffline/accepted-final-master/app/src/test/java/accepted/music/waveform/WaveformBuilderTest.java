@@ -0,0 +1,111 @@
+package accepted.music.waveform;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class WaveformBuilderTest {
+    private static final int SAMPLE_RATE = 8000;
+
+    @Test
+    public void bucketsFollowTheDuration() {
+        // 1024 ms, 8 frames per bucket: loud first half, silent second half
+        int frameCount = SAMPLE_RATE * Waveform.BUCKET_COUNT / 1000;
+        short[] pcm = new short[frameCount];
+        for (int i = 0; i < frameCount / 2; i++) {
+            pcm[i] = (short) (i % 2 == 0 ? 16384 : -16384);
+        }
+
+        WaveformBuilder builder = new WaveformBuilder(SAMPLE_RATE, 1, Waveform.BUCKET_COUNT);
+        builder.process(pcm, 0, frameCount);
+        Waveform waveform = builder.build();
+
+        assertEquals(Waveform.BUCKET_COUNT, waveform.getBucketCount());
+        for (int bucket = 0; bucket < Waveform.BUCKET_COUNT; bucket++) {
+            float peak = bucket < Waveform.BUCKET_COUNT / 2 ? 0.5F : 0F;
+            assertEquals(peak, waveform.getMax(bucket), 0.01F);
+            assertEquals(-peak, waveform.getMin(bucket), 0.01F);
+        }
+    }
+
+    @Test
+    public void everyChannelIsMeasured() {
+        short[] pcm = {0, 0, Short.MAX_VALUE, Short.MIN_VALUE, 0, 0};
+
+        WaveformBuilder builder = new WaveformBuilder(SAMPLE_RATE, 2, 1000);
+        builder.process(pcm, 0, 3);
+        Waveform waveform = builder.build();
+
+        assertEquals(127 / 128F, waveform.getMax(0), 0);
+        assertEquals(-1F, waveform.getMin(0), 0);
+    }
+
+    @Test
+    public void chunksDoNotChangeTheResult() {
+        int frameCount = 44100 * 3;
+        short[] pcm = new short[frameCount * 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (Math.sin(i * 0.001) * Math.sin(i * 0.37) * 30000);
+        }
+
+        WaveformBuilder whole = new WaveformBuilder(44100, 2, 3000);
+        whole.process(pcm, 0, frameCount);
+
+        WaveformBuilder chunked = new WaveformBuilder(44100, 2, 3000);
+        int chunk = 1151;
+        for (int frame = 0; frame < frameCount; frame += chunk) {
+            chunked.process(pcm, frame * 2, Math.min(chunk, frameCount - frame));
+        }
+
+        assertArrayEquals(whole.build().getMinArray(), chunked.build().getMinArray());
+        assertArrayEquals(whole.build().getMaxArray(), chunked.build().getMaxArray());
+    }
+
+    @Test
+    public void audioShorterOrLongerThanTheDuration() {
+        short[] pcm = new short[SAMPLE_RATE * 2];
+        Arrays.fill(pcm, (short) 8192);
+
+        // 1 s of audio for 2 s: the second half stays silent
+        WaveformBuilder shorter = new WaveformBuilder(SAMPLE_RATE, 1, 2000);
+        shorter.process(pcm, 0, SAMPLE_RATE);
+        Waveform shorterWaveform = shorter.build();
+        assertEquals(0.25F, shorterWaveform.getMax(0), 0.01F);
+        assertEquals(0F, shorterWaveform.getMax(Waveform.BUCKET_COUNT - 1), 0);
+
+        // 2 s of audio for 1 s: the rest goes to the last bucket
+        WaveformBuilder longer = new WaveformBuilder(SAMPLE_RATE, 1, 1000);
+        Arrays.fill(pcm, SAMPLE_RATE, pcm.length, (short) 16384);
+        longer.process(pcm, 0, SAMPLE_RATE * 2);
+        Waveform longerWaveform = longer.build();
+        assertEquals(0.25F, longerWaveform.getMax(Waveform.BUCKET_COUNT - 2), 0.01F);
+        assertEquals(0.5F, longerWaveform.getMax(Waveform.BUCKET_COUNT - 1), 0.01F);
+    }
+
+    @Test
+    public void toLines() {
+        byte[] min = new byte[Waveform.BUCKET_COUNT];
+        byte[] max = new byte[Waveform.BUCKET_COUNT];
+        // a single peak in the first half
+        min[10] = -64;
+        max[300] = 127;
+        Waveform waveform = new Waveform(min, max);
+
+        float[] points = new float[8];
+        assertEquals(8, waveform.toLines(points, 2, 100, 50, 2));
+
+        assertEquals(25F, points[0], 0);
+        assertEquals(25F - 127 / 128F * 25, points[1], 0.001F);
+        assertEquals(25F, points[2], 0);
+        assertEquals(37.5F, points[3], 0.001F);
+
+        // a silent column keeps the minimum height
+        assertEquals(75F, points[4], 0);
+        assertEquals(24F, points[5], 0.001F);
+        assertEquals(26F, points[7], 0.001F);
+
+        assertEquals(0, Waveform.EMPTY.toLines(points, 2, 100, 50, 2));
+    }
+}
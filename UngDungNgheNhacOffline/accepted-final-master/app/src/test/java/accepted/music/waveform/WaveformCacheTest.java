@@ -0,0 +1,79 @@
+package accepted.music.waveform;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class WaveformCacheTest {
+    private static final String URI = "content://media/external/audio/media/42";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws IOException {
+        WaveformCache cache = new WaveformCache(new File(mTemporaryFolder.getRoot(), "waveform"));
+        Waveform waveform = newWaveform();
+        String key = WaveformCache.key(URI, 1000);
+
+        assertFalse(cache.contains(key));
+        assertNull(cache.get(key));
+        cache.put(key, waveform);
+
+        assertTrue(cache.contains(key));
+        Waveform cached = cache.get(key);
+        assertNotNull(cached);
+        assertArrayEquals(waveform.getMinArray(), cached.getMinArray());
+        assertArrayEquals(waveform.getMaxArray(), cached.getMaxArray());
+
+        // the file has been modified since
+        assertFalse(cache.contains(WaveformCache.key(URI, 2000)));
+    }
+
+    @Test
+    public void emptyWaveform() throws IOException {
+        WaveformCache cache = new WaveformCache(mTemporaryFolder.getRoot());
+        String key = WaveformCache.key(URI, 0);
+
+        cache.put(key, Waveform.EMPTY);
+
+        assertSame(Waveform.EMPTY, cache.get(key));
+    }
+
+    @Test
+    public void corruptedEntryIsIgnored() throws IOException {
+        File dir = mTemporaryFolder.getRoot();
+        WaveformCache cache = new WaveformCache(dir);
+        String key = WaveformCache.key(URI, 1000);
+        cache.put(key, newWaveform());
+
+        File[] files = dir.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        assertNull(cache.get(key));
+        assertFalse(cache.contains(key));
+    }
+
+    private static Waveform newWaveform() {
+        byte[] min = new byte[Waveform.BUCKET_COUNT];
+        byte[] max = new byte[Waveform.BUCKET_COUNT];
+        for (int i = 0; i < Waveform.BUCKET_COUNT; i++) {
+            min[i] = (byte) -(i % 128);
+            max[i] = (byte) (i % 128);
+        }
+        return new Waveform(min, max);
+    }
+}
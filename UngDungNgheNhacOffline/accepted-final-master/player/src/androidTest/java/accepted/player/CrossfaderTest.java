@@ -0,0 +1,174 @@
+package accepted.player;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import accepted.player.audio.MusicPlayer;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class CrossfaderTest {
+    private static final int DURATION = 1_000;
+    private static final float DELTA = 0.0001F;
+
+    private ManualFrameSource mFrameSource;
+    private Crossfader mCrossfader;
+    private FakeMusicPlayer mOutgoing;
+    private FakeMusicPlayer mIncoming;
+    private int mFinishedCount;
+
+    @Before
+    public void setUp() {
+        mFrameSource = new ManualFrameSource();
+        mCrossfader = new Crossfader(mFrameSource);
+        mOutgoing = new FakeMusicPlayer(60_000, null);
+        mIncoming = new FakeMusicPlayer(60_000, null);
+        mFinishedCount = 0;
+    }
+
+    @Test
+    public void linearEnvelope() {
+        startCrossfade(CrossfadeCurve.LINEAR);
+        mFrameSource.advance(DURATION + Crossfader.FRAME_INTERVAL_MILLIS);
+
+        assertFalse(mCrossfader.isRunning());
+        assertEquals(1, mFinishedCount);
+
+        List<Float> out = mOutgoing.getVolumeEnvelope();
+        List<Float> in = mIncoming.getVolumeEnvelope();
+        assertEquals(out.size(), in.size());
+        // one volume per frame, plus the initial one
+        assertEquals((int) Math.ceil((double) DURATION / Crossfader.FRAME_INTERVAL_MILLIS) + 1, out.size());
+
+        assertEquals(1F, out.get(0), DELTA);
+        assertEquals(0F, in.get(0), DELTA);
+        assertEquals(0F, out.get(out.size() - 1), DELTA);
+        assertEquals(1F, in.get(in.size() - 1), DELTA);
+
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(1F, out.get(i) + in.get(i), DELTA);
+            if (i > 0) {
+                assertTrue(out.get(i) <= out.get(i - 1));
+                assertTrue(in.get(i) >= in.get(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void equalPowerEnvelope() {
+        startCrossfade(CrossfadeCurve.EQUAL_POWER);
+        mFrameSource.advance(DURATION + Crossfader.FRAME_INTERVAL_MILLIS);
+
+        List<Float> out = mOutgoing.getVolumeEnvelope();
+        List<Float> in = mIncoming.getVolumeEnvelope();
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(1F, out.get(i) * out.get(i) + in.get(i) * in.get(i), 0.001F);
+        }
+    }
+
+    @Test
+    public void finishJumpsToEnd() {
+        startCrossfade(CrossfadeCurve.S_CURVE);
+        mFrameSource.advance(DURATION / 4);
+        assertTrue(mCrossfader.isRunning());
+
+        mCrossfader.finish();
+
+        assertFalse(mCrossfader.isRunning());
+        assertEquals(1, mFinishedCount);
+        assertFalse(mFrameSource.hasPendingFrame());
+
+        List<Float> out = mOutgoing.getVolumeEnvelope();
+        List<Float> in = mIncoming.getVolumeEnvelope();
+        assertEquals(0F, out.get(out.size() - 1), DELTA);
+        assertEquals(1F, in.get(in.size() - 1), DELTA);
+    }
+
+    @Test
+    public void canCrossfade() {
+        PlayerState playerState = new PlayerState();
+        long now = 100_000;
+
+        assertTrue(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 2, now));
+        assertFalse(AbstractPlayer.canCrossfade(playerState, 0, 60_000, 30_000, 2, now));
+        assertFalse(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 1, now));
+        assertFalse(AbstractPlayer.canCrossfade(playerState, DURATION, DURATION, 30_000, 2, now));
+
+        playerState.setPlayMode(PlayMode.SHUFFLE);
+        assertTrue(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 2, now));
+        playerState.setPlayMode(PlayMode.LOOP);
+        assertFalse(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 2, now));
+        playerState.setPlayMode(PlayMode.SINGLE_ONCE);
+        assertFalse(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 2, now));
+
+        playerState.setPlayMode(PlayMode.PLAYLIST_LOOP);
+        playerState.setSleepTimerStarted(true);
+        playerState.setSleepTimerStartTime(now);
+        playerState.setSleepTimerTime(10_000);
+        // the sleep timer ends before the next music item is reached
+        assertFalse(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 2, now));
+
+        playerState.setSleepTimerTime(60_000);
+        assertTrue(AbstractPlayer.canCrossfade(playerState, DURATION, 60_000, 30_000, 2, now));
+    }
+
+    private void startCrossfade(CrossfadeCurve curve) {
+        mCrossfader.start(mOutgoing, mIncoming, DURATION, curve, new Crossfader.Callback() {
+            @Override
+            public void onCrossfadeFinished(@NonNull MusicPlayer outgoing, @NonNull MusicPlayer incoming) {
+                assertSame(mOutgoing, outgoing);
+                assertSame(mIncoming, incoming);
+                mFinishedCount++;
+            }
+        });
+    }
+
+    /**
+     * A frame source whose clock only moves when the test advances it.
+     */
+    private static class ManualFrameSource implements Crossfader.FrameSource {
+        private long mNow;
+        private Runnable mFrame;
+        private long mFrameTime;
+
+        @Override
+        public long now() {
+            return mNow;
+        }
+
+        @Override
+        public void postFrame(@NonNull Runnable frame, long delayMillis) {
+            mFrame = frame;
+            mFrameTime = mNow + delayMillis;
+        }
+
+        @Override
+        public void removeFrame(@NonNull Runnable frame) {
+            if (mFrame == frame) {
+                mFrame = null;
+            }
+        }
+
+        boolean hasPendingFrame() {
+            return mFrame != null;
+        }
+
+        void advance(long millis) {
+            long end = mNow + millis;
+            while (mFrame != null && mFrameTime <= end) {
+                mNow = mFrameTime;
+                Runnable frame = mFrame;
+                mFrame = null;
+                frame.run();
+            }
+            mNow = end;
+        }
+    }
+}
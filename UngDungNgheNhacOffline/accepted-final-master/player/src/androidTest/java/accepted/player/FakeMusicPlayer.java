@@ -0,0 +1,186 @@
+package accepted.player;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import accepted.player.audio.MusicPlayer;
+
+/**
+ * A MusicPlayer that plays nothing. Prepares asynchronously on the looper it was created on, like
+ * MediaPlayer does, reports when it is started and records every volume it is set to.
+ */
+class FakeMusicPlayer implements MusicPlayer {
+    private final Handler mHandler;
+    private final int mDuration;
+    @Nullable
+    private final OnStartListener mOnStartListener;
+
+    private boolean mLooping;
+    private boolean mPlaying;
+    private boolean mReleased;
+    private int mProgress;
+    private final List<Float> mVolumeEnvelope = new ArrayList<>();
+
+    private OnPreparedListener mOnPreparedListener;
+    private OnSeekCompleteListener mOnSeekCompleteListener;
+
+    FakeMusicPlayer(int duration, @Nullable OnStartListener listener) {
+        Looper looper = Looper.myLooper();
+        mHandler = new Handler(looper != null ? looper : Looper.getMainLooper());
+        mDuration = duration;
+        mOnStartListener = listener;
+    }
+
+    @Override
+    public void prepare() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mReleased && mOnPreparedListener != null) {
+                    mOnPreparedListener.onPrepared(FakeMusicPlayer.this);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        mLooping = looping;
+    }
+
+    @Override
+    public boolean isLooping() {
+        return mLooping;
+    }
+
+    @Override
+    public boolean isStalled() {
+        return false;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mPlaying;
+    }
+
+    @Override
+    public int getDuration() {
+        return mDuration;
+    }
+
+    @Override
+    public int getProgress() {
+        return mProgress;
+    }
+
+    @Override
+    public void start() {
+        mPlaying = true;
+        if (mOnStartListener != null) {
+            mOnStartListener.onStart(this, SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void pause() {
+        mPlaying = false;
+    }
+
+    @Override
+    public void stop() {
+        mPlaying = false;
+    }
+
+    @Override
+    public void seekTo(int pos) {
+        mProgress = pos;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mReleased && mOnSeekCompleteListener != null) {
+                    mOnSeekCompleteListener.onSeekComplete(FakeMusicPlayer.this);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void setVolume(float leftVolume, float rightVolume) {
+        mVolumeEnvelope.add(leftVolume);
+    }
+
+    @NonNull
+    List<Float> getVolumeEnvelope() {
+        return Collections.unmodifiableList(mVolumeEnvelope);
+    }
+
+    @Override
+    public void setSpeed(float speed) {
+    }
+
+    @Override
+    public void quiet() {
+    }
+
+    @Override
+    public void dismissQuiet() {
+    }
+
+    @Override
+    public void release() {
+        mReleased = true;
+        mPlaying = false;
+    }
+
+    @Override
+    public boolean isInvalid() {
+        return mReleased;
+    }
+
+    @Override
+    public int getAudioSessionId() {
+        return 0;
+    }
+
+    @Override
+    public void setOnPreparedListener(@Nullable OnPreparedListener listener) {
+        mOnPreparedListener = listener;
+    }
+
+    @Override
+    public void setOnCompletionListener(@Nullable OnCompletionListener listener) {
+    }
+
+    @Override
+    public void setOnRepeatListener(@Nullable OnRepeatListener listener) {
+    }
+
+    @Override
+    public void setOnSeekCompleteListener(@Nullable OnSeekCompleteListener listener) {
+        mOnSeekCompleteListener = listener;
+    }
+
+    @Override
+    public void setOnStalledListener(@Nullable OnStalledListener listener) {
+    }
+
+    @Override
+    public void setOnBufferingUpdateListener(@Nullable OnBufferingUpdateListener listener) {
+    }
+
+    @Override
+    public void setOnErrorListener(@Nullable OnErrorListener listener) {
+    }
+
+    interface OnStartListener {
+        void onStart(FakeMusicPlayer player, long startTime);
+    }
+}
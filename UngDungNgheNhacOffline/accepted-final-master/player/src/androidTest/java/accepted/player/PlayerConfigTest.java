@@ -41,6 +41,27 @@ public class PlayerConfigTest {
         assertEquals(value, mPlayerConfig.getAudioEffectConfig().getString(key, ""));
     }
 
+    @Test
+    public void audioEffectConfigChangedByOtherInstance() {
+        final String key = "test";
+        PlayerConfig other = new PlayerConfig(
+                InstrumentationRegistry.getInstrumentation().getContext(),
+                "test_id");
+
+        Bundle config = new Bundle();
+        config.putString(key, "first");
+        mPlayerConfig.setAudioEffectConfig(config);
+        assertEquals("first", other.getAudioEffectConfig().getString(key, ""));
+
+        config.putString(key, "second");
+        other.setAudioEffectConfig(config);
+        assertEquals("second", mPlayerConfig.getAudioEffectConfig().getString(key, ""));
+
+        // the returned config is a copy
+        mPlayerConfig.getAudioEffectConfig().putString(key, "changed");
+        assertEquals("second", mPlayerConfig.getAudioEffectConfig().getString(key, ""));
+    }
+
     @Test
     public void setAudioEffectEnabled() {
         final boolean enabled = true;
@@ -0,0 +1,297 @@
+package accepted.player;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaSessionCompat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import accepted.player.audio.MusicItem;
+import accepted.player.audio.MusicPlayer;
+import accepted.player.playlist.Playlist;
+import accepted.player.util.AsyncResult;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class PlayerEngineTest {
+    private static final String ID = "PlayerEngineTest";
+    private static final long STALL_MILLIS = 2_000;
+    private static final long TIMEOUT_MILLIS = 5_000;
+    private static final long LATENCY_TOLERANCE_MILLIS = 200;
+
+    private PlayerState mPlayerState;
+    private PlayerEngine mEngine;
+    private TestPlayer mPlayer;
+    private LinkedBlockingQueue<Long> mAllStartTime;
+
+    private Context getContext() {
+        return InstrumentationRegistry.getInstrumentation().getContext();
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        mAllStartTime = new LinkedBlockingQueue<>();
+        mPlayerState = new PlayerState();
+        mEngine = new PlayerEngine(mPlayerState);
+
+        final PlayerConfig playerConfig = new PlayerConfig(getContext(), ID);
+        playerConfig.setOnlyWifiNetwork(false);
+
+        runOnEngine(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer = new TestPlayer(getContext(), playerConfig, mPlayerState,
+                        new PlaylistManagerImp(getContext(), ID), mEngine);
+                mPlayer.setMediaSession(new MediaSessionCompat(getContext(), ID));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        runOnEngine(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.release();
+            }
+        });
+        mEngine.quit();
+    }
+
+    @Test
+    public void skipLatencyUnaffectedByMainThreadStall() throws InterruptedException {
+        final Playlist playlist = createPlaylist(5);
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setPlaylist(playlist, 0, true);
+            }
+        });
+        assertNotNull(mAllStartTime.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        long baseline = measureSkipLatency();
+
+        stallMainThread(STALL_MILLIS);
+        long stalled = measureSkipLatency();
+
+        assertTrue("skip latency while the main thread stalls: " + stalled + "ms",
+                stalled < STALL_MILLIS / 4);
+        assertTrue("baseline: " + baseline + "ms, stalled: " + stalled + "ms",
+                stalled <= baseline + LATENCY_TOLERANCE_MILLIS);
+    }
+
+    @Test
+    public void snapshotDoesNotWaitForEngine() throws InterruptedException {
+        final CountDownLatch engineBusy = new CountDownLatch(1);
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                engineBusy.countDown();
+                SystemClock.sleep(STALL_MILLIS);
+            }
+        });
+        assertTrue(engineBusy.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        long start = SystemClock.elapsedRealtime();
+        assertNotNull(mEngine.getSnapshot());
+        assertTrue(SystemClock.elapsedRealtime() - start < LATENCY_TOLERANCE_MILLIS);
+    }
+
+    @Test
+    public void skipBurstPreparesOnlyFinalTarget() throws InterruptedException {
+        final Playlist playlist = createPlaylist(10);
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setPlaylist(playlist, 0, true);
+            }
+        });
+        assertNotNull(mAllStartTime.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        final int burst = 5;
+        final int[] positions = new int[2];
+        runOnEngine(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < burst; i++) {
+                    mPlayer.skipToNext();
+                }
+                positions[0] = mPlayerState.getPlayPosition();
+            }
+        });
+        assertEquals(burst, positions[0]);
+
+        assertNotNull(mAllStartTime.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertNull(mAllStartTime.poll(CommandCoalescer.DEFAULT_WINDOW_MILLIS * 2, TimeUnit.MILLISECONDS));
+
+        final int[] discarded = new int[1];
+        runOnEngine(new Runnable() {
+            @Override
+            public void run() {
+                positions[1] = mPlayerState.getPlayPosition();
+                discarded[0] = mPlayer.getDiscardedPrepareCount();
+            }
+        });
+        assertEquals(burst, positions[1]);
+        assertEquals(burst - 1, discarded[0]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkThread() {
+        mEngine.checkThread();
+    }
+
+    private long measureSkipLatency() throws InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.skipToNext();
+            }
+        });
+
+        Long startTime = mAllStartTime.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull("the next music item was not started", startTime);
+        return startTime - start;
+    }
+
+    private void stallMainThread(final long millis) throws InterruptedException {
+        final CountDownLatch stalled = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                stalled.countDown();
+                SystemClock.sleep(millis);
+            }
+        });
+        assertTrue(stalled.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private void runOnEngine(final Runnable runnable) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private static Playlist createPlaylist(int size) {
+        Playlist.Builder builder = new Playlist.Builder()
+                .setName(ID);
+
+        for (int i = 0; i < size; i++) {
+            MusicItem musicItem = new MusicItem();
+            musicItem.setTitle("title" + i);
+            musicItem.setUri("https://www.test.com/test" + i + ".mp3");
+            musicItem.setDuration(60_000);
+            builder.append(musicItem);
+        }
+
+        return builder.build();
+    }
+
+    private class TestPlayer extends AbstractPlayer {
+        TestPlayer(Context context,
+                   PlayerConfig playerConfig,
+                   PlayerState playerState,
+                   PlaylistManagerImp playlistManager,
+                   PlayerEngine engine) {
+            super(context, playerConfig, playerState, playlistManager, PlayerService.class, engine,
+                    new EmptyStateChangeListener());
+        }
+
+        @Override
+        protected void isCached(@NonNull MusicItem musicItem, @NonNull SoundQuality soundQuality, @NonNull AsyncResult<Boolean> result) {
+            result.onSuccess(true);
+        }
+
+        @NonNull
+        @Override
+        protected MusicPlayer onCreateMusicPlayer(@NonNull Context context, @NonNull MusicItem musicItem, @NonNull Uri uri) {
+            return new FakeMusicPlayer(musicItem.getDuration(), new FakeMusicPlayer.OnStartListener() {
+                @Override
+                public void onStart(FakeMusicPlayer player, long startTime) {
+                    mAllStartTime.add(startTime);
+                }
+            });
+        }
+
+        @Override
+        protected void retrieveMusicItemUri(@NonNull MusicItem musicItem, @NonNull SoundQuality soundQuality, @NonNull AsyncResult<Uri> result) {
+            result.onSuccess(Uri.parse(musicItem.getUri()));
+        }
+
+        @Nullable
+        @Override
+        protected AudioManager.OnAudioFocusChangeListener onCreateAudioFocusChangeListener() {
+            return null;
+        }
+    }
+
+    private static class EmptyStateChangeListener implements AbstractPlayer.OnStateChangeListener {
+        @Override
+        public void onPreparing() {
+        }
+
+        @Override
+        public void onPrepared(int audioSessionId) {
+        }
+
+        @Override
+        public void onPlaying(int progress, long updateTime) {
+        }
+
+        @Override
+        public void onPaused() {
+        }
+
+        @Override
+        public void onStalledChanged(boolean stalled) {
+        }
+
+        @Override
+        public void onStopped() {
+        }
+
+        @Override
+        public void onError(int errorCode, String errorMessage) {
+        }
+
+        @Override
+        public void onPlayingMusicItemChanged(@Nullable MusicItem musicItem) {
+        }
+
+        @Override
+        public void onMusicItemCompleted(@NonNull MusicItem musicItem) {
+        }
+
+        @Override
+        public void onMusicItemSkipped(@NonNull MusicItem musicItem) {
+        }
+
+        @Override
+        public void onPlayModeChanged(@NonNull PlayMode playMode) {
+        }
+    }
+}
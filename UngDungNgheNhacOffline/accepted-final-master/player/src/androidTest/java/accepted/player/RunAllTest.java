@@ -3,6 +3,7 @@ package accepted.player;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import accepted.player.audio.MusicItemListCodecTest;
 import accepted.player.audio.MusicItemTest;
 import accepted.player.playlist.PlaylistTest;
 
@@ -11,8 +12,11 @@ import accepted.player.playlist.PlaylistTest;
         PlayerStateTest.class,
         PersistentPlayerStateTest.class,
         PlayerConfigTest.class,
+        PlayerEngineTest.class,
+        CrossfaderTest.class,
         // accepted.player.media
         MusicItemTest.class,
+        MusicItemListCodecTest.class,
         // accepted.player.playlist
         PlaylistTest.class
 })
@@ -0,0 +1,127 @@
+package accepted.player.audio;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the parcel size and the marshal/unmarshal time of {@link MusicItemListCodec} with
+ * {@link Parcel#writeTypedList(List)}. The results are logged with the tag of this class.
+ * <p>
+ * Not part of {@code RunAllTest}, run it on its own.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MusicItemListCodecBenchmark {
+    private static final String TAG = "MusicItemListCodecBenchmark";
+    private static final int ROUNDS = 20;
+
+    @Test
+    public void items1k() {
+        run(1_000);
+    }
+
+    @Test
+    public void items10k() {
+        run(10_000);
+    }
+
+    private static void run(int size) {
+        List<MusicItem> items = generateMusicItems(size);
+
+        // warm up
+        measureTypedList(items);
+        measureCodec(items);
+
+        long[] typedList = measureTypedList(items);
+        long[] codec = measureCodec(items);
+
+        Log.i(TAG, size + " items, typed list: " + typedList[0] + " bytes, write "
+                + typedList[1] / 1000 + " us, read " + typedList[2] / 1000 + " us");
+        Log.i(TAG, size + " items, codec: " + codec[0] + " bytes, write "
+                + codec[1] / 1000 + " us, read " + codec[2] / 1000 + " us");
+
+        assertTrue(codec[0] < typedList[0]);
+    }
+
+    /**
+     * @return size in bytes, average write time and average read time in nanoseconds.
+     */
+    private static long[] measureTypedList(List<MusicItem> items) {
+        long size = 0;
+        long writeTime = 0;
+        long readTime = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            Parcel parcel = Parcel.obtain();
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            parcel.writeTypedList(items);
+            writeTime += SystemClock.elapsedRealtimeNanos() - start;
+            size = parcel.dataSize();
+
+            parcel.setDataPosition(0);
+            start = SystemClock.elapsedRealtimeNanos();
+            List<MusicItem> result = parcel.createTypedArrayList(MusicItem.CREATOR);
+            readTime += SystemClock.elapsedRealtimeNanos() - start;
+
+            assertEquals(items.size(), result.size());
+            parcel.recycle();
+        }
+
+        return new long[]{size, writeTime / ROUNDS, readTime / ROUNDS};
+    }
+
+    private static long[] measureCodec(List<MusicItem> items) {
+        long size = 0;
+        long writeTime = 0;
+        long readTime = 0;
+
+        for (int i = 0; i < ROUNDS; i++) {
+            Parcel parcel = Parcel.obtain();
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            MusicItemListCodec.write(parcel, items);
+            writeTime += SystemClock.elapsedRealtimeNanos() - start;
+            size = parcel.dataSize();
+
+            parcel.setDataPosition(0);
+            start = SystemClock.elapsedRealtimeNanos();
+            List<MusicItem> result = MusicItemListCodec.read(parcel);
+            readTime += SystemClock.elapsedRealtimeNanos() - start;
+
+            assertEquals(items.size(), result.size());
+            parcel.recycle();
+        }
+
+        return new long[]{size, writeTime / ROUNDS, readTime / ROUNDS};
+    }
+
+    /**
+     * Items shaped like a local music library: few artists and albums, an add time in every extra.
+     */
+    private static List<MusicItem> generateMusicItems(int size) {
+        List<MusicItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MusicItem item = MusicItemListCodecTest.generateMusicItem(i);
+            item.setIconUri(item.getUri());
+
+            Bundle extra = new Bundle();
+            extra.putLong("add_time", System.currentTimeMillis() - i * 60_000L);
+            item.setExtra(extra);
+
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,144 @@
+package accepted.player.audio;
+
+import android.os.Bundle;
+import android.os.Parcel;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class MusicItemListCodecTest {
+
+    static MusicItem generateMusicItem(int id) {
+        MusicItem musicItem = new MusicItem();
+
+        musicItem.setMusicId("au" + id);
+        musicItem.setTitle("test_" + id);
+        musicItem.setArtist("artist_" + (id % 10));
+        musicItem.setAlbum("album_" + (id % 20));
+        musicItem.setUri("https://www.test.com/test_" + id + ".mp3");
+        musicItem.setIconUri("https://www.test.com/icon_test" + id + ".png");
+        musicItem.setDuration(1000 * id);
+        musicItem.setForbidSeek(id % 3 == 0);
+
+        return musicItem;
+    }
+
+    private static List<MusicItem> writeAndRead(List<MusicItem> items) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            MusicItemListCodec.write(parcel, items);
+            parcel.setDataPosition(0);
+            return MusicItemListCodec.read(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void fields() {
+        List<MusicItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(generateMusicItem(i));
+        }
+
+        List<MusicItem> other = writeAndRead(items);
+
+        assertEquals(items, other);
+        assertNull(other.get(0).getExtra());
+    }
+
+    @Test
+    public void empty() {
+        assertTrue(writeAndRead(new ArrayList<MusicItem>()).isEmpty());
+    }
+
+    @Test
+    public void extraColumns() {
+        List<MusicItem> items = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            MusicItem item = generateMusicItem(i);
+            Bundle extra = new Bundle();
+            extra.putLong("add_time", 1000L * i);
+            if (i % 2 == 0) {
+                extra.putFloat("loudness", -10F - i);
+                extra.putString("source", "local");
+            }
+            item.setExtra(extra);
+            items.add(item);
+        }
+
+        List<MusicItem> other = writeAndRead(items);
+
+        for (int i = 0; i < items.size(); i++) {
+            Bundle extra = other.get(i).getExtra();
+            assertNotNull(extra);
+            assertEquals(1000L * i, extra.getLong("add_time"));
+            assertEquals(i % 2 == 0, extra.containsKey("loudness"));
+            if (i % 2 == 0) {
+                assertEquals(-10F - i, extra.getFloat("loudness"), 0F);
+                assertEquals("local", extra.getString("source"));
+            }
+        }
+    }
+
+    @Test
+    public void extraResidual() {
+        MusicItem item0 = generateMusicItem(0);
+        Bundle extra0 = new Bundle();
+        extra0.putLong("mixed", 1L);
+        extra0.putBoolean("flag", true);
+        item0.setExtra(extra0);
+
+        MusicItem item1 = generateMusicItem(1);
+        Bundle extra1 = new Bundle();
+        extra1.putString("mixed", "text");
+        item1.setExtra(extra1);
+
+        MusicItem item2 = generateMusicItem(2);
+        item2.setExtra(new Bundle());
+
+        List<MusicItem> items = new ArrayList<>();
+        items.add(item0);
+        items.add(item1);
+        items.add(item2);
+
+        List<MusicItem> other = writeAndRead(items);
+
+        Bundle otherExtra0 = other.get(0).getExtra();
+        assertNotNull(otherExtra0);
+        assertEquals(1L, otherExtra0.getLong("mixed"));
+        assertTrue(otherExtra0.getBoolean("flag"));
+
+        Bundle otherExtra1 = other.get(1).getExtra();
+        assertNotNull(otherExtra1);
+        assertEquals("text", otherExtra1.getString("mixed"));
+
+        Bundle otherExtra2 = other.get(2).getExtra();
+        assertNotNull(otherExtra2);
+        assertTrue(otherExtra2.isEmpty());
+    }
+
+    @Test
+    public void setExtraReplacesLazyExtra() {
+        MusicItem item = generateMusicItem(0);
+        Bundle extra = new Bundle();
+        extra.putLong("add_time", 1L);
+        item.setExtra(extra);
+
+        List<MusicItem> items = new ArrayList<>();
+        items.add(item);
+
+        MusicItem other = writeAndRead(items).get(0);
+        other.setExtra(null);
+
+        assertNull(other.getExtra());
+    }
+}
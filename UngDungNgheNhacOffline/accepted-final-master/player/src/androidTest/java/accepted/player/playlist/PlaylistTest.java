@@ -3,6 +3,8 @@ package accepted.player.playlist;
 import android.os.Bundle;
 import android.os.Parcel;
 
+import androidx.annotation.NonNull;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -241,4 +243,64 @@ public class PlaylistTest {
         assertEquals(value, other.getExtra().getString(key));
         parcel.recycle();
     }
+
+    @Test
+    public void parcelableLegacyFormat() {
+        Parcel parcel = Parcel.obtain();
+
+        // the format written before the compact MusicItem list
+        parcel.writeString(mPlaylist.getName());
+        parcel.writeString(mPlaylist.getToken());
+        parcel.writeTypedList(mItems);
+        parcel.writeByte((byte) (mPlaylist.isEditable() ? 1 : 0));
+        parcel.writeBundle(null);
+
+        parcel.setDataPosition(0);
+
+        Playlist other = new Playlist(parcel);
+
+        assertEquals(mPlaylist, other);
+        parcel.recycle();
+    }
+
+    @Test
+    public void musicItemSource() {
+        final int[] calls = new int[1];
+        MusicItemSource source = new MusicItemSource() {
+            @NonNull
+            @Override
+            public List<MusicItem> getMusicItems() {
+                calls[0]++;
+                return mItems;
+            }
+        };
+
+        Playlist playlist = new Playlist("test_name", source, 0, true, null);
+
+        // assert
+        assertEquals(0, calls[0]);
+        assertEquals(mPlaylist.getToken(), playlist.getToken());
+        assertEquals(mSize, playlist.size());
+        assertEquals(mItems.get(1), playlist.get(1));
+        assertEquals(1, calls[0]);
+
+        Parcel parcel = Parcel.obtain();
+        playlist.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+
+        // assert
+        assertEquals(playlist, new Playlist(parcel));
+        parcel.recycle();
+    }
+
+    @Test
+    public void getTrimStart() {
+        int max = Playlist.MAX_SIZE;
+
+        // assert
+        assertEquals(0, Playlist.getTrimStart(max, max - 1));
+        assertEquals(10, Playlist.getTrimStart(max * 2, 10));
+        assertEquals(max, Playlist.getTrimStart(max * 2, max * 2 - 1));
+        assertEquals(max / 2, Playlist.getTrimStart(max * 2, max / 2));
+    }
 }
@@ -20,6 +20,7 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.base.Preconditions;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -28,13 +29,14 @@ import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleOnSubscribe;
-import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Cancellable;
 import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
 import media.helper.AudioFocusHelper;
 import media.helper.BecomeNoiseHelper;
+import accepted.player.audio.AbstractMusicPlayer;
 import accepted.player.audio.MusicItem;
 import accepted.player.audio.MusicPlayer;
 import accepted.player.effect.AudioEffectManager;
@@ -44,13 +46,23 @@ import accepted.player.playlist.PlaylistEditor;
 import accepted.player.playlist.PlaylistManager;
 import accepted.player.audio.ErrorCode;
 import accepted.player.helper.NetworkHelper;
+import accepted.player.metrics.PlayerMetricsRecorder;
 import accepted.player.util.AsyncResult;
+import accepted.player.util.MusicItemUtil;
 
+/**
+ * All methods must be called on the {@link PlayerEngine} thread, see {@link PlayerEngine} for the
+ * thread-confinement contract. Callbacks from the system helpers are handed over to the engine.
+ */
 abstract class AbstractPlayer implements Player, PlaylistEditor {
     private static final String TAG = "AbstractPlayer";
     private static final int FORWARD_STEP = 15_000;
+    private static final int CROSSFADE_PRELOAD_MILLIS = 10_000;
+    // lets the playing music item buffer before the next ones are read ahead
+    private static final int PREFETCH_DELAY_MILLIS = 5_000;
 
     private final Context mApplicationContext;
+    private final PlayerEngine mEngine;
     private final PlayerConfig mPlayerConfig;
     private final PlayerState mPlayerState;
     private final PlayerStateHelper mPlayerStateHelper;
@@ -82,9 +94,11 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     private Runnable mPlaylistLoadedAction;
 
     private final PlaylistManagerImp mPlaylistManager;
-    private Playlist mPlaylist;
+    // written on the engine thread, read by getPlaylistExtra() from any thread
+    private volatile Playlist mPlaylist;
 
     private Random mRandom;
+    private final ShuffleOrder mShuffleOrder;
     private Disposable mRetrieveUriDisposable;
 
     private boolean mReleased;
@@ -102,44 +116,124 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
     private boolean mConfirmNextPlay;
     private boolean mResumePlay;
+    private boolean mCompleting;
 
     private final OnStateChangeListener mOnStateChangeListener;
+    private final CommandCoalescer mCommandCoalescer;
+    private final Runnable mDeferredPlay;
+
+    private final Crossfader mCrossfader;
+    private final Crossfader.Callback mCrossfadeFinishedCallback;
+    private final Runnable mPreloadNextAction;
+    private final Runnable mCrossfadeAction;
+    @Nullable
+    private MusicItem mNextMusicItem;
+    private int mNextPosition;
+    @Nullable
+    private MusicPlayer mNextMusicPlayer;
+    private boolean mNextPrepared;
+    private Disposable mRetrieveNextUriDisposable;
 
     @Nullable
     private AudioEffectManager mAudioEffectManager;
 
+    private final PlayerMetricsRecorder mMetricsRecorder;
+    // the start times of the measured intervals, 0 while not measuring
+    private long mRetrieveUriStartTime;
+    private long mPrepareStartTime;
+    private long mPlayRequestTime;
+    private long mTrackSwitchTime;
+    private long mStallStartTime;
+
+    private final Prefetcher mPrefetcher;
+    private final Runnable mPrefetchAction;
+
     public AbstractPlayer(@NonNull Context context,
                           @NonNull PlayerConfig playerConfig,
                           @NonNull PlayerState playerState,
                           @NonNull PlaylistManagerImp playlistManager,
                           @NonNull Class<? extends PlayerService> playerService,
+                          @NonNull PlayerEngine engine,
                           @NonNull OnStateChangeListener listener) {
         Preconditions.checkNotNull(context);
         Preconditions.checkNotNull(playerConfig);
         Preconditions.checkNotNull(playerState);
         Preconditions.checkNotNull(playlistManager);
         Preconditions.checkNotNull(playerService);
+        Preconditions.checkNotNull(engine);
         Preconditions.checkNotNull(listener);
 
         mApplicationContext = context.getApplicationContext();
+        mEngine = engine;
         mPlayerConfig = playerConfig;
         mPlayerState = playerState;
         mPlayerStateHelper = new PlayerStateHelper(mPlayerState, mApplicationContext, playerService);
         mPlaylistManager = playlistManager;
         mOnStateChangeListener = listener;
+        mCommandCoalescer = new CommandCoalescer(engine, CommandCoalescer.DEFAULT_WINDOW_MILLIS);
+        mMetricsRecorder = new PlayerMetricsRecorder();
+        mShuffleOrder = new ShuffleOrder();
+        mPrefetcher = new Prefetcher(mApplicationContext);
+        mPrefetchAction = new Runnable() {
+            @Override
+            public void run() {
+                prefetch();
+            }
+        };
+        mDeferredPlay = new Runnable() {
+            @Override
+            public void run() {
+                play();
+            }
+        };
+
+        mCrossfader = new Crossfader(new Crossfader.EngineFrameSource(engine));
+        mCrossfadeFinishedCallback = new Crossfader.Callback() {
+            @Override
+            public void onCrossfadeFinished(@NonNull MusicPlayer outgoing, @NonNull MusicPlayer incoming) {
+                outgoing.release();
+            }
+        };
+        mPreloadNextAction = new Runnable() {
+            @Override
+            public void run() {
+                preloadNext();
+            }
+        };
+        mCrossfadeAction = new Runnable() {
+            @Override
+            public void run() {
+                startCrossfade();
+            }
+        };
 
         initAllListener();
         initAllHelper();
         initWakeLock();
 
         mNetworkHelper.subscribeNetworkState();
-        reloadPlaylist();
+
+        mLoadingPlaylist = true;
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                reloadPlaylist();
+            }
+        });
     }
 
     void setAudioEffectManager(@Nullable AudioEffectManager audioEffectManager) {
         mAudioEffectManager = audioEffectManager;
     }
 
+    /**
+     * The recorder is thread-safe, it can be read from any thread.
+     */
+    @NonNull
+    final PlayerMetricsRecorder getMetricsRecorder() {
+        return mMetricsRecorder;
+    }
+
     protected abstract void isCached(@NonNull MusicItem musicItem, @NonNull SoundQuality soundQuality, @NonNull AsyncResult<Boolean> result);
 
     @NonNull
@@ -150,8 +244,18 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     @Nullable
     protected abstract AudioManager.OnAudioFocusChangeListener onCreateAudioFocusChangeListener();
 
+    /**
+     * Returns the uri the head of the music item is read from ahead of its playback, e.g. the uri
+     * of a cache proxy that keeps the read bytes. Called on an io thread.
+     */
+    @NonNull
+    protected Uri getPrefetchUri(@NonNull MusicItem musicItem, @NonNull Uri uri) {
+        return uri;
+    }
+
     public void release() {
         mReleased = true;
+        cancelPrefetch();
         disposeRetrieveUri();
         releaseMusicPlayer();
         releaseWakeLock();
@@ -176,6 +280,8 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private void prepareMusicPlayer(boolean playOnPrepared, @Nullable Runnable preparedAction) {
+        mEngine.checkThread();
+
         releaseMusicPlayer();
         disposeRetrieveUri();
 
@@ -190,9 +296,10 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
 
         mPlayOnPrepared = playOnPrepared;
+        mRetrieveUriStartTime = SystemClock.elapsedRealtime();
         mRetrieveUriDisposable = getMusicItemUri(musicItem, mPlayerConfig.getSoundQuality())
                 .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
+                .observeOn(mEngine.getScheduler())
                 .subscribe(prepare(musicItem, preparedAction), notifyGetUrlFailed());
     }
 
@@ -242,7 +349,10 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         return new Consumer<Uri>() {
             @Override
             public void accept(Uri uri) {
+                mMetricsRecorder.recordUriResolveTime(SystemClock.elapsedRealtime() - mRetrieveUriStartTime);
+
                 mMusicPlayer = onCreateMusicPlayer(mApplicationContext, musicItem, uri);
+                setGain(mMusicPlayer, MusicItemUtil.getNormalizationGain(musicItem));
                 attachListeners(mMusicPlayer);
 
                 mPreparedAction = preparedAction;
@@ -319,18 +429,23 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
                     return;
                 }
 
+                notifyCompleted();
+
                 if (mPlayerState.getPlayMode() == PlayMode.SINGLE_ONCE) {
                     notifyPlayOnceComplete();
                     return;
                 }
 
+                mCompleting = true;
                 skipToNext();
+                mCompleting = false;
             }
         };
 
         mRepeatListener = new MusicPlayer.OnRepeatListener() {
             @Override
             public void onRepeat(MusicPlayer mp) {
+                notifyCompleted();
                 notifyRepeat(SystemClock.elapsedRealtime());
             }
         };
@@ -342,6 +457,13 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
                     return;
                 }
 
+                CommandCoalescer.PendingSeek pendingSeek = mCommandCoalescer.onSeekComplete();
+                if (pendingSeek != null) {
+                    mSeekCompleteAction = CommandCoalescer.chain(mSeekCompleteAction, pendingSeek.seekCompleteAction);
+                    mp.seekTo(pendingSeek.progress);
+                    return;
+                }
+
                 notifySeekComplete(mp.getProgress(), SystemClock.elapsedRealtime(), mp.isStalled());
 
                 if (mPlayOnSeekComplete) {
@@ -384,64 +506,102 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         initAudioFocusHelper();
 
         mPhoneCallStateHelper = new PhoneCallStateHelper(mApplicationContext, new PhoneCallStateHelper.OnStateChangeListener() {
+            // only accessed on the engine thread
             private boolean mResumePlay;
 
             @Override
             public void onIDLE() {
-                if (mResumePlay) {
-                    mResumePlay = false;
-                    play();
-                }
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mResumePlay) {
+                            mResumePlay = false;
+                            play();
+                        }
+                    }
+                });
             }
 
             @Override
             public void onRinging() {
-                if (mResumePlay) {
-                    return;
-                }
-
-                mResumePlay = isPlayingState();
-                pause();
+                pauseForCall();
             }
 
             @Override
             public void onOffHook() {
-                if (mResumePlay) {
-                    return;
-                }
+                pauseForCall();
+            }
 
-                mResumePlay = isPlayingState();
-                pause();
+            private void pauseForCall() {
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mResumePlay) {
+                            return;
+                        }
+
+                        mResumePlay = isPlayingState();
+                        pause();
+                    }
+                });
             }
         });
 
         mBecomeNoiseHelper = new BecomeNoiseHelper(mApplicationContext, new BecomeNoiseHelper.OnBecomeNoiseListener() {
             @Override
             public void onBecomeNoise() {
-                pause();
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        pause();
+                    }
+                });
             }
         });
 
         mNetworkHelper = NetworkHelper.newInstance(mApplicationContext, new NetworkHelper.OnNetworkStateChangeListener() {
             @Override
-            public void onNetworkStateChanged(boolean connected, boolean wifiNetwork) {
-                if (!isPrepared() || !connected) {
-                    return;
-                }
+            public void onNetworkStateChanged(final boolean connected, final boolean wifiNetwork) {
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mReleased) {
+                            return;
+                        }
 
-                checkNetworkType(mPlayerConfig.isOnlyWifiNetwork(), wifiNetwork);
+                        if (isPlaying()) {
+                            schedulePrefetch();
+                        }
+
+                        if (!isPrepared() || !connected) {
+                            return;
+                        }
+
+                        checkNetworkType(mPlayerConfig.isOnlyWifiNetwork(), wifiNetwork);
+                    }
+                });
             }
         });
     }
 
     private void initAudioFocusHelper() {
-        AudioManager.OnAudioFocusChangeListener listener = onCreateAudioFocusChangeListener();
+        final AudioManager.OnAudioFocusChangeListener listener = onCreateAudioFocusChangeListener();
         if (listener != null) {
-            mAudioFocusHelper = new AudioFocusHelper(mApplicationContext, listener);
+            mAudioFocusHelper = new AudioFocusHelper(mApplicationContext, new AudioManager.OnAudioFocusChangeListener() {
+                @Override
+                public void onAudioFocusChange(final int focusChange) {
+                    mEngine.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onAudioFocusChange(focusChange);
+                        }
+                    });
+                }
+            });
             return;
         }
 
-        mAudioFocusHelper = new AudioFocusHelper(mApplicationContext, new AudioFocusHelper.OnAudioFocusChangeListener() {
+        final AudioFocusHelper.OnAudioFocusChangeListener focusChangeListener = new AudioFocusHelper.OnAudioFocusChangeListener() {
             @Override
             public void onLoss() {
                 mResumePlay = false;
@@ -479,6 +639,48 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
                     mMusicPlayer.dismissQuiet();
                 }
             }
+        };
+
+        mAudioFocusHelper = new AudioFocusHelper(mApplicationContext, new AudioFocusHelper.OnAudioFocusChangeListener() {
+            @Override
+            public void onLoss() {
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        focusChangeListener.onLoss();
+                    }
+                });
+            }
+
+            @Override
+            public void onLossTransient() {
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        focusChangeListener.onLossTransient();
+                    }
+                });
+            }
+
+            @Override
+            public void onLossTransientCanDuck() {
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        focusChangeListener.onLossTransientCanDuck();
+                    }
+                });
+            }
+
+            @Override
+            public void onGain(final boolean lossTransient, final boolean lossTransientCanDuck) {
+                mEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        focusChangeListener.onGain(lossTransient, lossTransientCanDuck);
+                    }
+                });
+            }
         });
     }
 
@@ -656,8 +858,22 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         musicPlayer.setOnErrorListener(mErrorListener);
     }
 
+    private void detachListeners(MusicPlayer musicPlayer) {
+        musicPlayer.setOnPreparedListener(null);
+        musicPlayer.setOnCompletionListener(null);
+        musicPlayer.setOnRepeatListener(null);
+        musicPlayer.setOnSeekCompleteListener(null);
+        musicPlayer.setOnStalledListener(null);
+        musicPlayer.setOnBufferingUpdateListener(null);
+        musicPlayer.setOnErrorListener(null);
+    }
+
     private void releaseMusicPlayer() {
         cancelRecordProgress();
+        mCommandCoalescer.cancelPendingPrepare();
+        mCommandCoalescer.clearSeek();
+        cancelNextTransition();
+        mCrossfader.finish();
         if (mMusicPlayer != null) {
             mMusicPlayer.release();
             mMusicPlayer = null;
@@ -679,6 +895,17 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         return mMusicPlayer != null && mPlayerState.isPrepared();
     }
 
+    /**
+     * The number of prepares that were scheduled or started but made useless by a later skip.
+     */
+    final int getDiscardedPrepareCount() {
+        return mCommandCoalescer.getDiscardedPrepareCount();
+    }
+
+    final int getDiscardedSeekCount() {
+        return mCommandCoalescer.getDiscardedSeekCount();
+    }
+
     public final boolean isPreparing() {
         return mPlayerState.isPreparing();
     }
@@ -723,6 +950,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private void notifyPreparing() {
+        mPrepareStartTime = SystemClock.elapsedRealtime();
         requireWakeLock();
         mPlayerStateHelper.onPreparing();
 
@@ -734,6 +962,12 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private void notifyPrepared(int audioSessionId) {
+        // a crossfade hands over an already prepared MusicPlayer
+        if (mPrepareStartTime > 0) {
+            mMetricsRecorder.recordPrepareTime(SystemClock.elapsedRealtime() - mPrepareStartTime);
+            mPrepareStartTime = 0;
+        }
+
         mPlayerStateHelper.onPrepared(audioSessionId);
 
         mOnStateChangeListener.onPrepared(audioSessionId);
@@ -748,6 +982,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         if (!stalled) {
             mMediaSession.setPlaybackState(buildPlaybackState(PlaybackStateCompat.STATE_PLAYING));
+            recordFirstAudio();
         }
 
         startRecordProgress();
@@ -759,11 +994,49 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         if (mPlayerStateListener != null) {
             mPlayerStateListener.onPlay(stalled, progress, updateTime);
         }
+
+        scheduleCrossfade();
+        schedulePrefetch();
+    }
+
+    private void recordFirstAudio() {
+        long now = SystemClock.elapsedRealtime();
+
+        if (mPlayRequestTime > 0) {
+            mMetricsRecorder.recordTimeToFirstAudio(now - mPlayRequestTime);
+            mPlayRequestTime = 0;
+        }
+
+        if (mTrackSwitchTime > 0) {
+            mMetricsRecorder.recordTrackSwitchGap(now - mTrackSwitchTime);
+            mTrackSwitchTime = 0;
+        }
+    }
+
+    private void recordStallChanged(boolean stalled) {
+        if (stalled && mStallStartTime == 0) {
+            mMetricsRecorder.recordStall();
+            mStallStartTime = SystemClock.elapsedRealtime();
+        } else if (!stalled && mStallStartTime > 0) {
+            mMetricsRecorder.recordStallDuration(SystemClock.elapsedRealtime() - mStallStartTime);
+            mStallStartTime = 0;
+        }
+    }
+
+    // the intervals interrupted by a pause, stop or error are not recorded
+    private void clearPendingMetrics() {
+        mPrepareStartTime = 0;
+        mPlayRequestTime = 0;
+        mTrackSwitchTime = 0;
+        mStallStartTime = 0;
     }
 
     private void notifyPaused() {
+        clearPendingMetrics();
         cancelRecordProgress();
         releaseWakeLock();
+        cancelNextTransition();
+        mCrossfader.finish();
 
         int playProgress = mPlayerState.getPlayProgress();
         long updateTime = mPlayerState.getPlayProgressUpdateTime();
@@ -788,6 +1061,8 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private void notifyStopped() {
+        clearPendingMetrics();
+        cancelPrefetch();
         cancelRecordProgress();
         releaseWakeLock();
 
@@ -816,6 +1091,11 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
             updateTime = SystemClock.elapsedRealtime();
         }
 
+        recordStallChanged(stalled);
+        if (!stalled && isPlaying()) {
+            recordFirstAudio();
+        }
+
         mPlayerStateHelper.onStalled(stalled, playProgress, updateTime);
         updateMediaSessionPlaybackState(stalled);
         mOnStateChangeListener.onStalledChanged(stalled);
@@ -825,6 +1105,22 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
     }
 
+    private void notifyCompleted() {
+        MusicItem musicItem = getMusicItem();
+        if (musicItem != null) {
+            mOnStateChangeListener.onMusicItemCompleted(musicItem);
+        }
+    }
+
+    private void notifySkipped() {
+        MusicItem musicItem = getMusicItem();
+        if (mCompleting || musicItem == null) {
+            return;
+        }
+
+        mOnStateChangeListener.onMusicItemSkipped(musicItem);
+    }
+
     private void notifyRepeat(long repeatTime) {
         mPlayerStateHelper.onRepeat(repeatTime);
         mMediaSession.setPlaybackState(buildPlaybackState(PlaybackStateCompat.STATE_PLAYING));
@@ -858,6 +1154,8 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private void notifyError(int errorCode, String errorMessage) {
+        mMetricsRecorder.recordError(errorCode);
+        clearPendingMetrics();
         releaseMusicPlayer();
         releaseWakeLock();
 
@@ -899,6 +1197,11 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private void notifyPlayingMusicItemChanged(@Nullable MusicItem musicItem, int position, boolean play) {
+        mStallStartTime = 0;
+        mTrackSwitchTime = (isPlaying() || mCompleting) ? SystemClock.elapsedRealtime() : 0;
+
+        // the music items that play next are read ahead once this one plays
+        cancelPrefetch();
         releaseMusicPlayer();
 
         mPlayerStateHelper.onPlayingMusicItemChanged(musicItem, position, 0);
@@ -921,6 +1224,23 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
     }
 
+    private void notifySkipTo(@NonNull MusicItem musicItem, int position) {
+        boolean discardsPrepare = isPreparing()
+                || (mRetrieveUriDisposable != null && !mRetrieveUriDisposable.isDisposed())
+                || mCommandCoalescer.hasPendingPrepare();
+
+        disposeRetrieveUri();
+        // only the playing music item and the metadata are updated here
+        notifyPlayingMusicItemChanged(musicItem, position, false);
+
+        if (mCompleting) {
+            play();
+            return;
+        }
+
+        mCommandCoalescer.submitPrepare(discardsPrepare, mDeferredPlay);
+    }
+
     private void notifySeekComplete(int playProgress, long updateTime, boolean stalled) {
         mPlayerStateHelper.onSeekComplete(playProgress, updateTime, stalled);
 
@@ -934,6 +1254,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         if (isPlaying()) {
             mMediaSession.setPlaybackState(buildPlaybackState(PlaybackStateCompat.STATE_PLAYING));
+            scheduleCrossfade();
         } else {
             notifyPaused();
         }
@@ -945,6 +1266,10 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
             return;
         }
 
+        if (!isPrepared() && mPlayRequestTime == 0) {
+            mPlayRequestTime = SystemClock.elapsedRealtime();
+        }
+
         if (isPreparing()) {
             mPreparedAction = new Runnable() {
                 @Override
@@ -956,6 +1281,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
 
         if (requestAudioFocusFailed()) {
+            mPlayRequestTime = 0;
             return;
         }
 
@@ -975,6 +1301,12 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     public void pause() {
         mResumePlay = false;
 
+        if (mCommandCoalescer.hasPendingPrepare()) {
+            mCommandCoalescer.cancelPendingPrepare();
+            notifyPaused();
+            return;
+        }
+
         if (isPreparing()) {
             mPlayOnPrepared = false;
             mPlayOnSeekComplete = false;
@@ -986,6 +1318,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
 
         assert mMusicPlayer != null;
+        mCrossfader.finish();
         mMusicPlayer.pause();
 
         notifyPaused();
@@ -1039,6 +1372,11 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         if (isPrepared()) {
             assert mMusicPlayer != null;
+            if (!mCommandCoalescer.offerSeek(progress, seekCompleteAction)) {
+                // issued once the in-flight seek completes
+                return;
+            }
+
             mSeekCompleteAction = seekCompleteAction;
             mMusicPlayer.seekTo(progress);
             return;
@@ -1150,6 +1488,246 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
     }
 
+    public final void notifyCrossfadeChanged() {
+        cancelNextTransition();
+        scheduleCrossfade();
+    }
+
+    private void scheduleCrossfade() {
+        mEngine.removeCallbacks(mPreloadNextAction);
+        mEngine.removeCallbacks(mCrossfadeAction);
+
+        if (!isCrossfadeAllowed()) {
+            cancelNextTransition();
+            return;
+        }
+
+        if (isNextStillValid()) {
+            if (mNextPrepared) {
+                postCrossfade();
+            }
+            return;
+        }
+
+        cancelNextTransition();
+        long delay = getRemainingRealtime() - mPlayerConfig.getCrossfadeDuration() - CROSSFADE_PRELOAD_MILLIS;
+        mEngine.postDelayed(mPreloadNextAction, Math.max(0, delay));
+    }
+
+    private boolean isCrossfadeAllowed() {
+        if (!isPlaying()) {
+            return false;
+        }
+
+        assert mMusicPlayer != null;
+        return canCrossfade(mPlayerState,
+                mPlayerConfig.getCrossfadeDuration(),
+                mMusicPlayer.getDuration(),
+                getRemainingRealtime(),
+                getPlaylistSize(),
+                SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * @param remaining the wall-clock time until the playing music item ends.
+     */
+    static boolean canCrossfade(@NonNull PlayerState playerState,
+                                int crossfadeDuration,
+                                int musicDuration,
+                                long remaining,
+                                int playlistSize,
+                                long now) {
+        if (crossfadeDuration <= 0 || playlistSize < 2 || remaining <= 0) {
+            return false;
+        }
+
+        PlayMode playMode = playerState.getPlayMode();
+        if (playMode == PlayMode.LOOP || playMode == PlayMode.SINGLE_ONCE) {
+            return false;
+        }
+
+        if (musicDuration < crossfadeDuration * 2) {
+            return false;
+        }
+
+        // the sleep timer ends the playback before the next music item is reached
+        return !(playerState.isSleepTimerStarted() &&
+                playerState.getSleepTimerStartTime() + playerState.getSleepTimerTime() <= now + remaining);
+    }
+
+    private long getRemainingRealtime() {
+        if (!isPrepared()) {
+            return 0;
+        }
+
+        assert mMusicPlayer != null;
+        return (long) ((mMusicPlayer.getDuration() - mMusicPlayer.getProgress()) / mPlayerState.getSpeed());
+    }
+
+    private boolean isNextStillValid() {
+        return mNextMusicItem != null
+                && mPlaylist != null
+                && mNextPosition < mPlaylist.size()
+                && mNextMusicItem.equals(mPlaylist.get(mNextPosition));
+    }
+
+    private void preloadNext() {
+        if (!isCrossfadeAllowed() || mPlaylist == null) {
+            return;
+        }
+
+        if (mPlayerConfig.isOnlyWifiNetwork() && !isWiFiNetwork()) {
+            return;
+        }
+
+        mNextPosition = peekNextPosition(mPlayerState.getPlayPosition());
+        mNextMusicItem = mPlaylist.get(mNextPosition);
+
+        final MusicItem musicItem = mNextMusicItem;
+        final long retrieveStartTime = SystemClock.elapsedRealtime();
+        mRetrieveNextUriDisposable = getMusicItemUri(musicItem, mPlayerConfig.getSoundQuality())
+                .subscribeOn(Schedulers.io())
+                .observeOn(mEngine.getScheduler())
+                .subscribe(new Consumer<Uri>() {
+                    @Override
+                    public void accept(Uri uri) {
+                        mMetricsRecorder.recordUriResolveTime(SystemClock.elapsedRealtime() - retrieveStartTime);
+                        prepareNext(musicItem, uri);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) {
+                        // fall back to a hard cut when the playing music item completes
+                        throwable.printStackTrace();
+                        cancelNextTransition();
+                    }
+                });
+    }
+
+    private void prepareNext(@NonNull MusicItem musicItem, @NonNull Uri uri) {
+        final MusicPlayer musicPlayer = onCreateMusicPlayer(mApplicationContext, musicItem, uri);
+        setGain(musicPlayer, MusicItemUtil.getNormalizationGain(musicItem));
+        mNextMusicPlayer = musicPlayer;
+
+        musicPlayer.setOnPreparedListener(new MusicPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MusicPlayer mp) {
+                if (mp != mNextMusicPlayer) {
+                    return;
+                }
+
+                mNextPrepared = true;
+                postCrossfade();
+            }
+        });
+        musicPlayer.setOnErrorListener(new MusicPlayer.OnErrorListener() {
+            @Override
+            public void onError(MusicPlayer mp, int errorCode) {
+                if (mp == mNextMusicPlayer) {
+                    cancelNextTransition();
+                }
+            }
+        });
+
+        try {
+            if (musicPlayer.isInvalid()) {
+                cancelNextTransition();
+                return;
+            }
+            musicPlayer.prepare();
+        } catch (Exception e) {
+            e.printStackTrace();
+            cancelNextTransition();
+        }
+    }
+
+    private void postCrossfade() {
+        mEngine.removeCallbacks(mCrossfadeAction);
+
+        if (!isCrossfadeAllowed()) {
+            return;
+        }
+
+        long delay = getRemainingRealtime() - mPlayerConfig.getCrossfadeDuration();
+        mEngine.postDelayed(mCrossfadeAction, Math.max(0, delay));
+    }
+
+    private void startCrossfade() {
+        if (!mNextPrepared || !isNextStillValid() || !isCrossfadeAllowed()) {
+            // the playing music item will complete with a hard cut
+            cancelNextTransition();
+            return;
+        }
+
+        MusicPlayer outgoing = mMusicPlayer;
+        MusicPlayer incoming = mNextMusicPlayer;
+        MusicItem musicItem = mNextMusicItem;
+        int position = mNextPosition;
+        long duration = Math.min(mPlayerConfig.getCrossfadeDuration(), getRemainingRealtime());
+        assert outgoing != null && incoming != null && musicItem != null;
+
+        // the outgoing MusicPlayer only fades out from now on, its completion must not skip again
+        detachListeners(outgoing);
+        mNextMusicPlayer = null;
+        cancelNextTransition();
+        mMusicPlayer = null;
+
+        notifyCompleted();
+        mConfirmNextPlay = false;
+        mCompleting = true;
+        notifyPlayingMusicItemChanged(musicItem, position, false);
+        mCompleting = false;
+
+        mMusicPlayer = incoming;
+        attachListeners(incoming);
+        incoming.setLooping(isLooping());
+
+        if (mPlayerConfig.isAudioEffectEnabled() && mAudioEffectManager != null) {
+            mAudioEffectManager.attachAudioEffect(incoming.getAudioSessionId());
+        }
+        notifyPrepared(incoming.getAudioSessionId());
+
+        incoming.setSpeed(mPlayerState.getSpeed());
+        incoming.setVolume(0F, 0F);
+        startWithoutEase(incoming);
+        mCrossfader.start(outgoing, incoming, Math.max(1, duration), mPlayerConfig.getCrossfadeCurve(), mCrossfadeFinishedCallback);
+
+        notifyPlaying(incoming.isStalled(), incoming.getProgress(), SystemClock.elapsedRealtime());
+    }
+
+    // the gain and the start without fade-in are only supported by an AbstractMusicPlayer
+    private static void setGain(MusicPlayer musicPlayer, float gain) {
+        if (musicPlayer instanceof AbstractMusicPlayer) {
+            ((AbstractMusicPlayer) musicPlayer).setGain(gain);
+        }
+    }
+
+    private static void startWithoutEase(MusicPlayer musicPlayer) {
+        if (musicPlayer instanceof AbstractMusicPlayer) {
+            ((AbstractMusicPlayer) musicPlayer).startWithoutEase();
+        } else {
+            musicPlayer.start();
+        }
+    }
+
+    private void cancelNextTransition() {
+        mEngine.removeCallbacks(mPreloadNextAction);
+        mEngine.removeCallbacks(mCrossfadeAction);
+
+        if (mRetrieveNextUriDisposable != null && !mRetrieveNextUriDisposable.isDisposed()) {
+            mRetrieveNextUriDisposable.dispose();
+        }
+
+        if (mNextMusicPlayer != null) {
+            detachListeners(mNextMusicPlayer);
+            mNextMusicPlayer.release();
+            mNextMusicPlayer = null;
+        }
+
+        mNextMusicItem = null;
+        mNextPrepared = false;
+    }
+
     private boolean requestAudioFocusFailed() {
         if (mPlayerConfig.isIgnoreAudioFocus()) {
             mAudioFocusHelper.abandonAudioFocus();
@@ -1170,7 +1748,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         mCheckCachedDisposable = playingMusicIsCached()
                 .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
+                .observeOn(mEngine.getScheduler())
                 .subscribe(checkNetworkTypeConsumer(onlyWifiNetwork, isWifiNetwork));
     }
 
@@ -1240,6 +1818,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
     private void reloadPlaylist() {
         mLoadingPlaylist = true;
+        // the callback is delivered on the calling looper, i.e. the engine thread
         mPlaylistManager.getPlaylist(new PlaylistManager.Callback() {
             @Override
             public void onFinished(@NonNull final Playlist playlist) {
@@ -1337,7 +1916,8 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         int position = getNextPosition(mPlayerState.getPlayPosition());
 
-        notifyPlayingMusicItemChanged(mPlaylist.get(position), position, true);
+        notifySkipped();
+        notifySkipTo(mPlaylist.get(position), position);
         mMediaSession.setPlaybackState(buildPlaybackState(PlaybackStateCompat.STATE_SKIPPING_TO_NEXT));
     }
 
@@ -1351,12 +1931,22 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
     }
 
     private int getNextPosition(int currentPosition) {
+        int position = peekNextPosition(currentPosition);
+        if (mPlayerState.getPlayMode() == PlayMode.SHUFFLE && !mConfirmNextPlay) {
+            mShuffleOrder.removeFirst();
+        }
+        if (mPlayerState.getPlayMode() != PlayMode.LOOP) {
+            mConfirmNextPlay = false;
+        }
+        return position;
+    }
+
+    private int peekNextPosition(int currentPosition) {
         PlayMode playMode = mPlayerState.getPlayMode();
         if (playMode == PlayMode.LOOP){
             return currentPosition;
         }
         if (mConfirmNextPlay || playMode == PlayMode.PLAYLIST_LOOP || playMode == PlayMode.SINGLE_ONCE) {
-            mConfirmNextPlay = false;
             int position = currentPosition + 1;
             if (position >= getPlaylistSize()) {
                 return 0;
@@ -1364,7 +1954,65 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
             return position;
         }
 
-        return getRandomPosition(currentPosition);
+        return mShuffleOrder.peek(0, currentPosition, getPlaylistSize());
+    }
+
+    /**
+     * Returns the positions that play next in the current play mode, without the play position
+     * and without repeats. Empty in the LOOP mode.
+     */
+    private List<Integer> getUpcomingPositions(int count) {
+        if (mPlaylist == null) {
+            return new ArrayList<>();
+        }
+
+        return mShuffleOrder.getUpcomingPositions(count,
+                getPlaylistSize(),
+                mPlayerState.getPlayPosition(),
+                mPlayerState.getPlayMode(),
+                mConfirmNextPlay);
+    }
+
+    private void schedulePrefetch() {
+        cancelPrefetch();
+        mEngine.postDelayed(mPrefetchAction, PREFETCH_DELAY_MILLIS);
+    }
+
+    private void cancelPrefetch() {
+        mEngine.removeCallbacks(mPrefetchAction);
+        mPrefetcher.cancel();
+    }
+
+    /**
+     * Cancels the prefetch of the stale upcoming music items, e.g. after the playlist is edited.
+     */
+    private void reschedulePrefetch() {
+        if (isPlaying()) {
+            schedulePrefetch();
+        } else {
+            cancelPrefetch();
+        }
+    }
+
+    private void prefetch() {
+        if (mReleased || mPlaylist == null) {
+            return;
+        }
+
+        SoundQuality soundQuality = mPlayerConfig.getSoundQuality();
+        List<Single<Uri>> uris = new ArrayList<>();
+        for (int position : getUpcomingPositions(Prefetcher.ITEM_COUNT)) {
+            final MusicItem musicItem = mPlaylist.get(position);
+            uris.add(getMusicItemUri(musicItem, soundQuality)
+                    .map(new Function<Uri, Uri>() {
+                        @Override
+                        public Uri apply(Uri uri) {
+                            return getPrefetchUri(musicItem, uri);
+                        }
+                    }));
+        }
+
+        mPrefetcher.prefetch(uris, mNetworkHelper.isUnmeteredNetwork());
     }
 
     @Override
@@ -1385,7 +2033,8 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         int position = getPreviousPosition(mPlayerState.getPlayPosition());
 
-        notifyPlayingMusicItemChanged(mPlaylist.get(position), position, true);
+        notifySkipped();
+        notifySkipTo(mPlaylist.get(position), position);
         mMediaSession.setPlaybackState(buildPlaybackState(PlaybackStateCompat.STATE_SKIPPING_TO_PREVIOUS));
     }
 
@@ -1428,7 +2077,8 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
 
         mMediaSession.setPlaybackState(buildPlaybackState(PlaybackStateCompat.STATE_SKIPPING_TO_QUEUE_ITEM));
-        notifyPlayingMusicItemChanged(mPlaylist.get(position), position, true);
+        notifySkipped();
+        notifySkipTo(mPlaylist.get(position), position);
     }
 
     @Override
@@ -1444,6 +2094,12 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
 
         notifyPlayModeChanged(playMode);
+
+        // the next music item depends on the play mode
+        mShuffleOrder.clear();
+        cancelNextTransition();
+        scheduleCrossfade();
+        reschedulePrefetch();
     }
 
     @Override
@@ -1531,7 +2187,7 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
         }
 
         mRecordProgressDisposable = Observable.interval(3, 3, TimeUnit.SECONDS, Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
+                .observeOn(mEngine.getScheduler())
                 .subscribe(new Consumer<Long>() {
                     @Override
                     public void accept(Long aLong) {
@@ -1744,6 +2400,11 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
                 .setEditable(playlist.isEditable())
                 .setExtra(playlist.getExtra())
                 .build();
+
+        // the positions are stale once the playlist is edited
+        mShuffleOrder.clear();
+        reschedulePrefetch();
+
         mPlaylistManager.save(mPlaylist, doOnSaved);
     }
 
@@ -1764,6 +2425,10 @@ abstract class AbstractPlayer implements Player, PlaylistEditor {
 
         void onPlayingMusicItemChanged(@Nullable MusicItem musicItem);
 
+        void onMusicItemCompleted(@NonNull MusicItem musicItem);
+
+        void onMusicItemSkipped(@NonNull MusicItem musicItem);
+
         void onPlayModeChanged(@NonNull PlayMode playMode);
     }
 }
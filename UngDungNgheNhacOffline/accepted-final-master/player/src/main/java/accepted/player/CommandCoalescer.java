@@ -0,0 +1,171 @@
+package accepted.player;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Collapses bursts of skip and seek commands into their final target. Only used on the
+ * {@link PlayerEngine} thread.
+ * <p>
+ * Skip: the first skip prepares immediately, a skip that follows within the window only updates
+ * the playing music item and defers the prepare until the burst is over.
+ * <p>
+ * Seek: while a seek is in flight, later seeks are not sent to the MusicPlayer, only the last one
+ * is issued once the in-flight seek completes.
+ */
+class CommandCoalescer {
+    static final long DEFAULT_WINDOW_MILLIS = 300;
+
+    private final PlayerEngine mEngine;
+    private final long mWindowMillis;
+
+    private long mLastSkipTime;
+    @Nullable
+    private Runnable mPendingPrepare;
+    private int mDiscardedPrepareCount;
+
+    private boolean mSeekInFlight;
+    private boolean mHasPendingSeek;
+    private int mPendingSeekProgress;
+    @Nullable
+    private Runnable mPendingSeekAction;
+    private int mDiscardedSeekCount;
+
+    CommandCoalescer(@NonNull PlayerEngine engine, long windowMillis) {
+        Preconditions.checkNotNull(engine);
+        Preconditions.checkArgument(windowMillis >= 0);
+
+        mEngine = engine;
+        mWindowMillis = windowMillis;
+        mLastSkipTime = -windowMillis;
+    }
+
+    /**
+     * @param discardsPrepare whether this skip makes an earlier prepare useless (it was scheduled,
+     *                        resolving the uri or preparing).
+     * @param prepare         prepares the new playing music item.
+     */
+    void submitPrepare(boolean discardsPrepare, @NonNull final Runnable prepare) {
+        Preconditions.checkNotNull(prepare);
+
+        if (discardsPrepare || mPendingPrepare != null) {
+            mDiscardedPrepareCount++;
+        }
+        cancelPendingPrepare();
+
+        long now = SystemClock.elapsedRealtime();
+        boolean burst = now - mLastSkipTime < mWindowMillis;
+        mLastSkipTime = now;
+
+        if (!burst) {
+            prepare.run();
+            return;
+        }
+
+        mPendingPrepare = new Runnable() {
+            @Override
+            public void run() {
+                mPendingPrepare = null;
+                prepare.run();
+            }
+        };
+        mEngine.postDelayed(mPendingPrepare, mWindowMillis);
+    }
+
+    boolean hasPendingPrepare() {
+        return mPendingPrepare != null;
+    }
+
+    void cancelPendingPrepare() {
+        if (mPendingPrepare != null) {
+            mEngine.removeCallbacks(mPendingPrepare);
+            mPendingPrepare = null;
+        }
+    }
+
+    /**
+     * @return true if the seek should be sent to the MusicPlayer now, false if it was kept as the
+     * pending seek and will be returned by {@link #onSeekComplete()}.
+     */
+    boolean offerSeek(int progress, @Nullable Runnable seekCompleteAction) {
+        if (!mSeekInFlight) {
+            mSeekInFlight = true;
+            return true;
+        }
+
+        if (mHasPendingSeek) {
+            mDiscardedSeekCount++;
+        }
+
+        mHasPendingSeek = true;
+        mPendingSeekProgress = progress;
+        mPendingSeekAction = chain(mPendingSeekAction, seekCompleteAction);
+        return false;
+    }
+
+    /**
+     * @return the pending seek that should be issued next, or null if the seek burst is over.
+     */
+    @Nullable
+    PendingSeek onSeekComplete() {
+        if (!mHasPendingSeek) {
+            mSeekInFlight = false;
+            return null;
+        }
+
+        PendingSeek pendingSeek = new PendingSeek(mPendingSeekProgress, mPendingSeekAction);
+        mHasPendingSeek = false;
+        mPendingSeekAction = null;
+        // the intermediate seek result is dropped
+        mDiscardedSeekCount++;
+        return pendingSeek;
+    }
+
+    void clearSeek() {
+        mSeekInFlight = false;
+        mHasPendingSeek = false;
+        mPendingSeekAction = null;
+    }
+
+    int getDiscardedPrepareCount() {
+        return mDiscardedPrepareCount;
+    }
+
+    int getDiscardedSeekCount() {
+        return mDiscardedSeekCount;
+    }
+
+    @Nullable
+    static Runnable chain(@Nullable final Runnable first, @Nullable final Runnable second) {
+        if (first == null) {
+            return second;
+        }
+
+        if (second == null) {
+            return first;
+        }
+
+        return new Runnable() {
+            @Override
+            public void run() {
+                first.run();
+                second.run();
+            }
+        };
+    }
+
+    static class PendingSeek {
+        final int progress;
+        @Nullable
+        final Runnable seekCompleteAction;
+
+        PendingSeek(int progress, @Nullable Runnable seekCompleteAction) {
+            this.progress = progress;
+            this.seekCompleteAction = seekCompleteAction;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package accepted.player;
+
+/**
+ * The gain curve of a crossfade. The fraction is the elapsed part of the crossfade in [0, 1].
+ */
+public enum CrossfadeCurve {
+    LINEAR {
+        @Override
+        public float fadeIn(float fraction) {
+            return clamp(fraction);
+        }
+    },
+    /**
+     * Keeps the summed power constant, the default for unrelated tracks.
+     */
+    EQUAL_POWER {
+        @Override
+        public float fadeIn(float fraction) {
+            return (float) Math.sin(clamp(fraction) * Math.PI / 2);
+        }
+    },
+    S_CURVE {
+        @Override
+        public float fadeIn(float fraction) {
+            float t = clamp(fraction);
+            return t * t * (3 - 2 * t);
+        }
+    };
+
+    public abstract float fadeIn(float fraction);
+
+    public float fadeOut(float fraction) {
+        return fadeIn(1 - clamp(fraction));
+    }
+
+    private static float clamp(float fraction) {
+        return Math.max(0F, Math.min(1F, fraction));
+    }
+}
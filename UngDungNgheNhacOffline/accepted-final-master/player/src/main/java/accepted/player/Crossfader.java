@@ -0,0 +1,164 @@
+package accepted.player;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import accepted.player.audio.MusicPlayer;
+
+/**
+ * Drives the volumes of the outgoing and the incoming MusicPlayer from a single frame-timed
+ * scheduler. Only used on the {@link PlayerEngine} thread.
+ */
+class Crossfader {
+    static final long FRAME_INTERVAL_MILLIS = 16;
+
+    private final FrameSource mFrameSource;
+    private final Runnable mFrame;
+
+    @Nullable
+    private MusicPlayer mOutgoing;
+    @Nullable
+    private MusicPlayer mIncoming;
+    @Nullable
+    private Callback mCallback;
+    private CrossfadeCurve mCurve;
+    private long mDuration;
+    private long mStartTime;
+
+    Crossfader(@NonNull FrameSource frameSource) {
+        Preconditions.checkNotNull(frameSource);
+
+        mFrameSource = frameSource;
+        mFrame = new Runnable() {
+            @Override
+            public void run() {
+                onFrame();
+            }
+        };
+    }
+
+    /**
+     * The incoming MusicPlayer must already be started, both volumes are taken over from now on.
+     */
+    void start(@NonNull MusicPlayer outgoing,
+               @NonNull MusicPlayer incoming,
+               long duration,
+               @NonNull CrossfadeCurve curve,
+               @NonNull Callback callback) {
+        Preconditions.checkNotNull(outgoing);
+        Preconditions.checkNotNull(incoming);
+        Preconditions.checkArgument(duration > 0);
+        Preconditions.checkNotNull(curve);
+        Preconditions.checkNotNull(callback);
+
+        finish();
+
+        mOutgoing = outgoing;
+        mIncoming = incoming;
+        mDuration = duration;
+        mCurve = curve;
+        mCallback = callback;
+        mStartTime = mFrameSource.now();
+
+        applyVolume(0F);
+        mFrameSource.postFrame(mFrame, FRAME_INTERVAL_MILLIS);
+    }
+
+    boolean isRunning() {
+        return mOutgoing != null;
+    }
+
+    /**
+     * Jumps to the end of the running crossfade, if any.
+     */
+    void finish() {
+        if (!isRunning()) {
+            return;
+        }
+
+        mFrameSource.removeFrame(mFrame);
+        applyVolume(1F);
+        complete();
+    }
+
+    private void onFrame() {
+        if (!isRunning()) {
+            return;
+        }
+
+        float fraction = (float) (mFrameSource.now() - mStartTime) / mDuration;
+        if (fraction >= 1F) {
+            applyVolume(1F);
+            complete();
+            return;
+        }
+
+        applyVolume(fraction);
+        mFrameSource.postFrame(mFrame, FRAME_INTERVAL_MILLIS);
+    }
+
+    private void applyVolume(float fraction) {
+        assert mOutgoing != null && mIncoming != null;
+
+        float out = mCurve.fadeOut(fraction);
+        float in = mCurve.fadeIn(fraction);
+        mOutgoing.setVolume(out, out);
+        mIncoming.setVolume(in, in);
+    }
+
+    private void complete() {
+        MusicPlayer outgoing = mOutgoing;
+        MusicPlayer incoming = mIncoming;
+        Callback callback = mCallback;
+
+        mOutgoing = null;
+        mIncoming = null;
+        mCallback = null;
+
+        assert callback != null && outgoing != null && incoming != null;
+        callback.onCrossfadeFinished(outgoing, incoming);
+    }
+
+    interface Callback {
+        void onCrossfadeFinished(@NonNull MusicPlayer outgoing, @NonNull MusicPlayer incoming);
+    }
+
+    /**
+     * The clock and the frame timer, replaceable so that crossfades can be stepped deterministically.
+     */
+    interface FrameSource {
+        long now();
+
+        void postFrame(@NonNull Runnable frame, long delayMillis);
+
+        void removeFrame(@NonNull Runnable frame);
+    }
+
+    static class EngineFrameSource implements FrameSource {
+        private final PlayerEngine mEngine;
+
+        EngineFrameSource(@NonNull PlayerEngine engine) {
+            Preconditions.checkNotNull(engine);
+            mEngine = engine;
+        }
+
+        @Override
+        public long now() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void postFrame(@NonNull Runnable frame, long delayMillis) {
+            mEngine.postDelayed(frame, delayMillis);
+        }
+
+        @Override
+        public void removeFrame(@NonNull Runnable frame) {
+            mEngine.removeCallbacks(frame);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package accepted.player;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import accepted.player.audio.MusicItem;
+import accepted.player.playlist.Playlist;
+import accepted.player.playlist.PlaylistEditor;
+
+/**
+ * Hands every command over to the {@link PlayerEngine} thread. This is the {@link Player} other
+ * threads see, calls return immediately and never wait for the engine.
+ */
+class EnginePlayer implements Player, PlaylistEditor {
+    private final PlayerEngine mEngine;
+    private final AbstractPlayer mPlayer;
+
+    EnginePlayer(@NonNull PlayerEngine engine, @NonNull AbstractPlayer player) {
+        Preconditions.checkNotNull(engine);
+        Preconditions.checkNotNull(player);
+
+        mEngine = engine;
+        mPlayer = player;
+    }
+
+    @Override
+    public void play() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.play();
+            }
+        });
+    }
+
+    @Override
+    public void pause() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.pause();
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.stop();
+            }
+        });
+    }
+
+    @Override
+    public void playPause() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.playPause();
+            }
+        });
+    }
+
+    @Override
+    public void seekTo(final int progress) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.seekTo(progress);
+            }
+        });
+    }
+
+    @Override
+    public void fastForward() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.fastForward();
+            }
+        });
+    }
+
+    @Override
+    public void rewind() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.rewind();
+            }
+        });
+    }
+
+    @Override
+    public void skipToNext() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.skipToNext();
+            }
+        });
+    }
+
+    @Override
+    public void skipToPrevious() {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.skipToPrevious();
+            }
+        });
+    }
+
+    @Override
+    public void skipToPosition(final int position) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.skipToPosition(position);
+            }
+        });
+    }
+
+    @Override
+    public void playPause(final int position) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.playPause(position);
+            }
+        });
+    }
+
+    @Override
+    public void setPlayMode(@NonNull final PlayMode playMode) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setPlayMode(playMode);
+            }
+        });
+    }
+
+    @Override
+    public void setSpeed(final float speed) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setSpeed(speed);
+            }
+        });
+    }
+
+    @Override
+    public void insertMusicItem(final int position, @NonNull final MusicItem musicItem) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.insertMusicItem(position, musicItem);
+            }
+        });
+    }
+
+    @Override
+    public void appendMusicItem(@NonNull final MusicItem musicItem) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.appendMusicItem(musicItem);
+            }
+        });
+    }
+
+    @Override
+    public void moveMusicItem(final int fromPosition, final int toPosition) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.moveMusicItem(fromPosition, toPosition);
+            }
+        });
+    }
+
+    @Override
+    public void removeMusicItem(@NonNull final MusicItem musicItem) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.removeMusicItem(musicItem);
+            }
+        });
+    }
+
+    @Override
+    public void removeMusicItem(final int position) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.removeMusicItem(position);
+            }
+        });
+    }
+
+    @Override
+    public void setNextPlay(@NonNull final MusicItem musicItem) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setNextPlay(musicItem);
+            }
+        });
+    }
+
+    @Override
+    public void setPlaylist(final Playlist playlist, final int position, final boolean play) {
+        mEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setPlaylist(playlist, position, play);
+            }
+        });
+    }
+}
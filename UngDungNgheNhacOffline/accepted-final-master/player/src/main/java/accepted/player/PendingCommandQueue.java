@@ -0,0 +1,123 @@
+package accepted.player;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the commands a {@link PlayerClient} receives while it is connecting, or while it creates
+ * the items of a playlist; they are replayed in order once it is connected or the playlist is
+ * sent. Only used on the main thread.
+ * <p>
+ * Redundant commands are coalesced when they are queued:
+ * <ul>
+ *     <li>play and pause: the last one wins over the play or pause queued right before it;</li>
+ *     <li>playPause: two in a row cancel each other;</li>
+ *     <li>seekTo: the last one wins over the seeks queued since the last command that is not a
+ *     play, pause or seek.</li>
+ * </ul>
+ * The queue is bounded, the oldest command is dropped when it is full.
+ */
+final class PendingCommandQueue {
+    static final int MAX_SIZE = 64;
+
+    enum Kind {
+        PLAY,
+        PAUSE,
+        PLAY_PAUSE,
+        SEEK,
+        OTHER
+    }
+
+    private final List<Kind> mKinds;
+    private final List<Runnable> mCommands;
+
+    PendingCommandQueue() {
+        mKinds = new ArrayList<>();
+        mCommands = new ArrayList<>();
+    }
+
+    void add(@NonNull Kind kind, @NonNull Runnable command) {
+        Preconditions.checkNotNull(kind);
+        Preconditions.checkNotNull(command);
+
+        switch (kind) {
+            case PLAY:
+            case PAUSE:
+                if (lastKindIs(Kind.PLAY) || lastKindIs(Kind.PAUSE)) {
+                    removeLast();
+                }
+                break;
+            case PLAY_PAUSE:
+                if (lastKindIs(Kind.PLAY_PAUSE)) {
+                    removeLast();
+                    return;
+                }
+                break;
+            case SEEK:
+                removeSupersededSeeks();
+                break;
+            default:
+                break;
+        }
+
+        if (mCommands.size() >= MAX_SIZE) {
+            mKinds.remove(0);
+            mCommands.remove(0);
+        }
+
+        mKinds.add(kind);
+        mCommands.add(command);
+    }
+
+    private boolean lastKindIs(Kind kind) {
+        return !mKinds.isEmpty() && mKinds.get(mKinds.size() - 1) == kind;
+    }
+
+    private void removeLast() {
+        mKinds.remove(mKinds.size() - 1);
+        mCommands.remove(mCommands.size() - 1);
+    }
+
+    private void removeSupersededSeeks() {
+        for (int i = mKinds.size() - 1; i >= 0; i--) {
+            Kind kind = mKinds.get(i);
+            if (kind == Kind.OTHER) {
+                return;
+            }
+
+            if (kind == Kind.SEEK) {
+                mKinds.remove(i);
+                mCommands.remove(i);
+            }
+        }
+    }
+
+    int size() {
+        return mCommands.size();
+    }
+
+    boolean isEmpty() {
+        return mCommands.isEmpty();
+    }
+
+    /**
+     * Runs the queued commands in order and empties the queue.
+     */
+    void replay() {
+        List<Runnable> commands = new ArrayList<>(mCommands);
+        clear();
+
+        for (Runnable command : commands) {
+            command.run();
+        }
+    }
+
+    void clear() {
+        mKinds.clear();
+        mCommands.clear();
+    }
+}
@@ -10,6 +10,7 @@ import android.os.Looper;
 import android.os.SystemClock;
 import android.support.v4.media.MediaBrowserCompat;
 import android.support.v4.media.session.MediaControllerCompat;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -28,13 +29,23 @@ import channel.helper.ChannelHelper;
 import channel.helper.DispatcherUtil;
 import channel.helper.pipe.CustomActionPipe;
 import channel.helper.pipe.SessionEventPipe;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 import accepted.player.audio.MusicItem;
+import accepted.player.metrics.PlayerMetrics;
 import accepted.player.playlist.Playlist;
 import accepted.player.playlist.PlaylistEditor;
 import accepted.player.playlist.PlaylistManager;
 import accepted.player.audio.ErrorCode;
 
 public class PlayerClient implements Player, PlayerManager, PlaylistManager, PlaylistEditor, SleepTimer {
+    private static final String TAG = "PlayerClient";
+
     private final Context mApplicationContext;
     private final Class<? extends PlayerService> mPlayerService;
     private final String mClientToken;
@@ -49,6 +60,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     private PlayerManager mPlayerManager;
     private PlayerStateSynchronizer mPlayerStateSynchronizer;
     private PlayerStateSynchronizer.OnSyncPlayerStateListener mSyncPlayerStateListener;
+    private PlayerMetricsSynchronizer mPlayerMetricsSynchronizer;
+    private PlayerMetricsSynchronizer.OnSyncPlayerMetricsListener mSyncPlayerMetricsListener;
     private SleepTimer mSleepTimer;
 
     private OnConnectCallback mConnectCallback;
@@ -63,7 +76,10 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     private boolean mConnecting;
     private boolean mAutoConnect;
-    private Runnable mConnectedAction;
+    private final PendingCommandQueue mPendingCommandQueue;
+    // not null while the items of a playlist are created on a worker thread
+    @Nullable
+    private Disposable mResolvePlaylistDisposable;
 
     private final List<Player.OnPlaybackStateChangeListener> mAllPlaybackStateChangeListener;
     private final List<Player.OnPrepareListener> mAllPrepareListener;
@@ -81,6 +97,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     private final List<Player.OnSpeedChangeListener> mAllSpeedChangeListener;
 
     private final List<OnConnectStateChangeListener> mAllConnectStateChangeListener;
+    // answered in the order of the requests
+    private final List<OnPlayerMetricsCallback> mAllPendingPlayerMetricsCallback;
 
     private PlayerClient(Context context, Class<? extends PlayerService> playerService) {
         mApplicationContext = context.getApplicationContext();
@@ -104,6 +122,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         mAllRepeatListener = new ArrayList<>();
         mAllSpeedChangeListener = new ArrayList<>();
         mAllConnectStateChangeListener = new ArrayList<>();
+        mAllPendingPlayerMetricsCallback = new ArrayList<>();
+        mPendingCommandQueue = new PendingCommandQueue();
 
         initMediaBrowser();
         initPlaylistManager();
@@ -180,6 +200,10 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
                 initPlayerState(playerState);
 
+                // the commands issued while connecting go first
+                mConnecting = false;
+                mPendingCommandQueue.replay();
+
                 if (mConnectCallback != null) {
                     mConnectCallback.onConnected(true);
                     mConnectCallback = null;
@@ -189,6 +213,17 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
                 notifySticky();
             }
         };
+
+        mSyncPlayerMetricsListener = new PlayerMetricsSynchronizer.OnSyncPlayerMetricsListener() {
+            @Override
+            public void onSyncPlayerMetrics(@NonNull String clientToken, @NonNull PlayerMetrics playerMetrics) {
+                if (!clientToken.equals(mClientToken) || mAllPendingPlayerMetricsCallback.isEmpty()) {
+                    return;
+                }
+
+                mAllPendingPlayerMetricsCallback.remove(0).onPlayerMetrics(playerMetrics);
+            }
+        };
     }
 
     private void initCustomActionEmitter(MediaControllerCompat mediaController) {
@@ -199,6 +234,7 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
         mPlayerManager = ChannelHelper.newEmitter(PlayerManager.class, customActionEmitter);
         mPlayerStateSynchronizer = ChannelHelper.newEmitter(PlayerStateSynchronizer.class, customActionEmitter);
+        mPlayerMetricsSynchronizer = ChannelHelper.newEmitter(PlayerMetricsSynchronizer.class, customActionEmitter);
 
         mSleepTimer = ChannelHelper.newEmitter(SleepTimer.class, customActionEmitter);
     }
@@ -206,6 +242,7 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     private void initSessionEventDispatcher() {
         mSessionEventDispatcher = new SessionEventPipe(DispatcherUtil.merge(
                 ChannelHelper.newDispatcher(PlayerStateSynchronizer.OnSyncPlayerStateListener.class, mSyncPlayerStateListener),
+                ChannelHelper.newDispatcher(PlayerMetricsSynchronizer.OnSyncPlayerMetricsListener.class, mSyncPlayerMetricsListener),
                 ChannelHelper.newDispatcher(PlayerStateListener.class, mPlayerStateListener),
                 ChannelHelper.newDispatcher(SleepTimer.OnStateChangeListener.class, mPlayerStateListener)
         ));
@@ -221,6 +258,9 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     }
 
     private void onDisconnected() {
+        mAllPendingPlayerMetricsCallback.clear();
+        mPendingCommandQueue.clear();
+        cancelResolvePlaylist();
         notifyConnectStateChanged(false);
     }
 
@@ -229,10 +269,6 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         for (OnConnectStateChangeListener listener : mAllConnectStateChangeListener) {
             listener.onConnectStateChanged(connected);
         }
-
-        if (connected && mConnectedAction != null) {
-            mConnectedAction.run();
-        }
     }
 
     public void connect() {
@@ -314,6 +350,23 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         return mMediaController;
     }
 
+    /**
+     * Requests the player health metrics recorded by the {@link PlayerService}.
+     * <p>
+     * The callback is invoked on the main thread, it is dropped if the client is not connected or
+     * disconnects before the metrics arrive.
+     */
+    public void requestPlayerMetrics(@NonNull OnPlayerMetricsCallback callback) {
+        Preconditions.checkNotNull(callback);
+
+        if (notConnected()) {
+            return;
+        }
+
+        mAllPendingPlayerMetricsCallback.add(callback);
+        mPlayerMetricsSynchronizer.syncPlayerMetrics(mClientToken);
+    }
+
     public void sendCustomAction(@NonNull String action, @Nullable Bundle args) {
         Preconditions.checkNotNull(action);
 
@@ -371,6 +424,21 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         mPlayerManager.setIgnoreAudioFocus(ignoreAudioFocus);
     }
 
+    /**
+     * @param durationMillis the crossfade duration, 0 disables the crossfade.
+     */
+    @Override
+    public void setCrossfade(int durationMillis, @NonNull CrossfadeCurve curve) {
+        Preconditions.checkArgument(durationMillis >= 0);
+        Preconditions.checkNotNull(curve);
+
+        if (notConnected()) {
+            return;
+        }
+
+        mPlayerManager.setCrossfade(durationMillis, curve);
+    }
+
     public SoundQuality getSoundQuality() {
         return mPlayerConfig.getSoundQuality();
     }
@@ -392,6 +460,15 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         return mPlayerConfig.isIgnoreAudioFocus();
     }
 
+    public int getCrossfadeDuration() {
+        return mPlayerConfig.getCrossfadeDuration();
+    }
+
+    @NonNull
+    public CrossfadeCurve getCrossfadeCurve() {
+        return mPlayerConfig.getCrossfadeCurve();
+    }
+
     @Override
     public void shutdown() {
         if (isConnected()) {
@@ -422,8 +499,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
             throw new IllegalArgumentException("position must >= 0.");
         }
 
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     setPlaylist(playlist, position, play);
@@ -432,9 +509,53 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
             return;
         }
 
+        if (!playlist.isResolved()) {
+            resolvePlaylist(playlist, position, play);
+            return;
+        }
+
         mPlaylistEditor.setPlaylist(playlist, position, play);
     }
 
+    /**
+     * Creates the items of a lazy playlist on a worker thread, so that parceling it does not
+     * create them on the main thread. The commands issued meanwhile are queued, and replayed
+     * after the playlist is sent, or after it fails to resolve.
+     */
+    private void resolvePlaylist(final Playlist playlist, final int position, final boolean play) {
+        mResolvePlaylistDisposable = Single.create(new SingleOnSubscribe<Playlist>() {
+            @Override
+            public void subscribe(SingleEmitter<Playlist> emitter) {
+                playlist.resolve();
+                emitter.onSuccess(playlist);
+            }
+        }).subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(new Consumer<Playlist>() {
+                    @Override
+                    public void accept(Playlist resolvedPlaylist) {
+                        mResolvePlaylistDisposable = null;
+                        setPlaylist(resolvedPlaylist, position, play);
+                        mPendingCommandQueue.replay();
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) {
+                        Log.e(TAG, "resolve playlist failed", throwable);
+                        // the playlist is not set, the queued commands apply to the current one
+                        mResolvePlaylistDisposable = null;
+                        mPendingCommandQueue.replay();
+                    }
+                });
+    }
+
+    private void cancelResolvePlaylist() {
+        if (mResolvePlaylistDisposable != null) {
+            mResolvePlaylistDisposable.dispose();
+            mResolvePlaylistDisposable = null;
+        }
+    }
+
     @Override
     public void getPlaylist(@NonNull PlaylistManager.Callback callback) {
         Preconditions.checkNotNull(callback);
@@ -573,8 +694,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void skipToNext() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     skipToNext();
@@ -588,8 +709,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void skipToPrevious() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     skipToPrevious();
@@ -607,8 +728,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
             throw new IllegalArgumentException("position music >= 0");
         }
 
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     skipToPosition(position);
@@ -626,8 +747,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
             throw new IllegalArgumentException("position music >= 0");
         }
 
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     playPause(position);
@@ -642,8 +763,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     @Override
     public void setPlayMode(@NonNull final PlayMode playMode) {
         Preconditions.checkNotNull(playMode);
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     setPlayMode(playMode);
@@ -657,8 +778,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void setSpeed(final float speed) {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     setSpeed(speed);
@@ -670,24 +791,31 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         mPlayer.setSpeed(speed);
     }
 
-    private void tryAutoConnect(@Nullable Runnable connectedAction) {
-        if (!mAutoConnect) {
-            return;
-        }
+    /**
+     * Commands are queued until the player state is synced, and while the items of a playlist are
+     * created, so that they are replayed in order.
+     */
+    private boolean shouldQueueCommand() {
+        return notConnected() || mConnecting || mResolvePlaylistDisposable != null;
+    }
 
-        if (isConnected() && connectedAction != null) {
-            connectedAction.run();
+    /**
+     * Queues the command to be replayed on connect or once the playlist is sent, it is dropped if
+     * the client is neither connected, connecting nor auto connecting.
+     */
+    private void queueCommand(@NonNull PendingCommandQueue.Kind kind, @NonNull Runnable command) {
+        if (!mConnecting && !mAutoConnect && mResolvePlaylistDisposable == null) {
             return;
         }
 
-        mConnectedAction = connectedAction;
+        mPendingCommandQueue.add(kind, command);
         connect();
     }
 
     @Override
     public void play() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.PLAY, new Runnable() {
                 @Override
                 public void run() {
                     play();
@@ -701,8 +829,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void pause() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.PAUSE, new Runnable() {
                 @Override
                 public void run() {
                     pause();
@@ -716,8 +844,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void stop() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     stop();
@@ -731,8 +859,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void playPause() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.PLAY_PAUSE, new Runnable() {
                 @Override
                 public void run() {
                     playPause();
@@ -746,8 +874,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void seekTo(final int progress) {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.SEEK, new Runnable() {
                 @Override
                 public void run() {
                     seekTo(progress);
@@ -769,8 +897,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void fastForward() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     fastForward();
@@ -784,8 +912,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void rewind() {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     rewind();
@@ -1264,8 +1392,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         }
         Preconditions.checkNotNull(musicItem);
 
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     insertMusicItem(position, musicItem);
@@ -1280,8 +1408,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     @Override
     public void appendMusicItem(@NonNull final MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     appendMusicItem(musicItem);
@@ -1304,8 +1432,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
             throw new IndexOutOfBoundsException("toPosition: " + toPosition + ", size: " + size);
         }
 
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     moveMusicItem(fromPosition, toPosition);
@@ -1320,8 +1448,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     @Override
     public void removeMusicItem(@NonNull final MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     removeMusicItem(musicItem);
@@ -1335,8 +1463,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
 
     @Override
     public void removeMusicItem(final int position) {
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     removeMusicItem(position);
@@ -1351,8 +1479,8 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
     @Override
     public void setNextPlay(@NonNull final MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
-        if (notConnected()) {
-            tryAutoConnect(new Runnable() {
+        if (shouldQueueCommand()) {
+            queueCommand(PendingCommandQueue.Kind.OTHER, new Runnable() {
                 @Override
                 public void run() {
                     setNextPlay(musicItem);
@@ -1380,6 +1508,10 @@ public class PlayerClient implements Player, PlayerManager, PlaylistManager, Pla
         void onAudioSessionChanged(int audioSessionId);
     }
 
+    public interface OnPlayerMetricsCallback {
+        void onPlayerMetrics(@NonNull PlayerMetrics playerMetrics);
+    }
+
     private void notifySticky() {
         if (notConnected()) {
             return;
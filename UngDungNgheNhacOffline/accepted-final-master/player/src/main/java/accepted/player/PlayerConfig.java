@@ -11,12 +11,19 @@ import com.tencent.mmkv.MMKV;
 class PlayerConfig {
     private static final String KEY_SOUND_QUALITY = "sound_quality";
     private static final String KEY_AUDIO_EFFECT_CONFIG = "audio_effect_config";
+    private static final String KEY_AUDIO_EFFECT_CONFIG_VERSION = "audio_effect_config_version";
     private static final String KEY_AUDIO_EFFECT_ENABLED = "audio_effect_enabled";
     private static final String KEY_ONLY_WIFI_NETWORK = "only_wifi_network";
     private static final String KEY_IGNORE_AUDIO_FOCUS = "ignore_audio_focus";
+    private static final String KEY_CROSSFADE_DURATION = "crossfade_duration";
+    private static final String KEY_CROSSFADE_CURVE = "crossfade_curve";
 
     private final MMKV mMMKV;
 
+    // the decoded audio effect config, valid while its version matches the stored one
+    private Bundle mAudioEffectConfig;
+    private int mAudioEffectConfigVersion;
+
     public PlayerConfig(@NonNull Context context, @NonNull String id) {
         Preconditions.checkNotNull(context);
         Preconditions.checkNotNull(id);
@@ -35,14 +42,30 @@ class PlayerConfig {
         mMMKV.encode(KEY_SOUND_QUALITY, soundQuality.ordinal());
     }
 
+    /**
+     * Returns a copy of the audio effect config. The config is only decoded again after it was
+     * changed, possibly by another process.
+     */
     @NonNull
-    public Bundle getAudioEffectConfig() {
-        return mMMKV.decodeParcelable(KEY_AUDIO_EFFECT_CONFIG, Bundle.class, new Bundle());
+    public synchronized Bundle getAudioEffectConfig() {
+        int version = mMMKV.decodeInt(KEY_AUDIO_EFFECT_CONFIG_VERSION, 0);
+        if (mAudioEffectConfig == null || mAudioEffectConfigVersion != version) {
+            mAudioEffectConfig = mMMKV.decodeParcelable(KEY_AUDIO_EFFECT_CONFIG, Bundle.class, new Bundle());
+            mAudioEffectConfigVersion = version;
+        }
+
+        return new Bundle(mAudioEffectConfig);
     }
 
-    public void setAudioEffectConfig(@NonNull Bundle audioEffectConfig) {
+    public synchronized void setAudioEffectConfig(@NonNull Bundle audioEffectConfig) {
         Preconditions.checkNotNull(audioEffectConfig);
+
+        int version = mMMKV.decodeInt(KEY_AUDIO_EFFECT_CONFIG_VERSION, 0) + 1;
         mMMKV.encode(KEY_AUDIO_EFFECT_CONFIG, audioEffectConfig);
+        mMMKV.encode(KEY_AUDIO_EFFECT_CONFIG_VERSION, version);
+
+        mAudioEffectConfig = new Bundle(audioEffectConfig);
+        mAudioEffectConfigVersion = version;
     }
 
     public boolean isAudioEffectEnabled() {
@@ -68,4 +91,32 @@ class PlayerConfig {
     public void setIgnoreAudioFocus(boolean ignoreAudioFocus) {
         mMMKV.encode(KEY_IGNORE_AUDIO_FOCUS, ignoreAudioFocus);
     }
+
+    /**
+     * The crossfade duration in milliseconds, 0 means the crossfade is disabled.
+     */
+    public int getCrossfadeDuration() {
+        return mMMKV.decodeInt(KEY_CROSSFADE_DURATION, 0);
+    }
+
+    public void setCrossfadeDuration(int durationMillis) {
+        Preconditions.checkArgument(durationMillis >= 0);
+        mMMKV.encode(KEY_CROSSFADE_DURATION, durationMillis);
+    }
+
+    @NonNull
+    public CrossfadeCurve getCrossfadeCurve() {
+        CrossfadeCurve[] curves = CrossfadeCurve.values();
+        int ordinal = mMMKV.decodeInt(KEY_CROSSFADE_CURVE, CrossfadeCurve.EQUAL_POWER.ordinal());
+        if (ordinal < 0 || ordinal >= curves.length) {
+            // a stale or corrupted value
+            return CrossfadeCurve.EQUAL_POWER;
+        }
+        return curves[ordinal];
+    }
+
+    public void setCrossfadeCurve(@NonNull CrossfadeCurve curve) {
+        Preconditions.checkNotNull(curve);
+        mMMKV.encode(KEY_CROSSFADE_CURVE, curve.ordinal());
+    }
 }
@@ -0,0 +1,134 @@
+package accepted.player;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+
+/**
+ * The thread the player engine runs on.
+ * <p>
+ * Thread-confinement contract: {@link AbstractPlayer}, its {@link accepted.player.audio.MusicPlayer},
+ * the {@link PlayerState} it mutates and the {@link PlayerStateHelper} it uses are only touched on
+ * the engine thread. Other threads hand commands over with {@link #post(Runnable)} and read the
+ * player state through {@link #getSnapshot()}, they never wait for the engine and the engine never
+ * waits for them.
+ */
+class PlayerEngine {
+    private static final String THREAD_NAME = "PlayerEngine";
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final Scheduler mScheduler;
+    private final PlayerState mPlayerState;
+    private final AtomicReference<PlayerState> mSnapshot;
+
+    PlayerEngine(@NonNull PlayerState playerState) {
+        Preconditions.checkNotNull(playerState);
+
+        mPlayerState = playerState;
+        mSnapshot = new AtomicReference<>(new PlayerState(playerState));
+
+        mThread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_AUDIO);
+        mThread.start();
+
+        mHandler = new Handler(mThread.getLooper());
+        mScheduler = AndroidSchedulers.from(mThread.getLooper());
+
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // publish a new snapshot every time the engine has drained its queue, this covers
+                // commands, MusicPlayer callbacks and Rx results alike.
+                Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                    @Override
+                    public boolean queueIdle() {
+                        publishSnapshot();
+                        return true;
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    Looper getLooper() {
+        return mThread.getLooper();
+    }
+
+    @NonNull
+    Scheduler getScheduler() {
+        return mScheduler;
+    }
+
+    boolean isEngineThread() {
+        return Looper.myLooper() == mThread.getLooper();
+    }
+
+    void checkThread() {
+        if (!isEngineThread()) {
+            throw new IllegalStateException("Must be called on the player engine thread, current thread: "
+                    + Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * Runs the command on the engine thread, immediately if already there.
+     */
+    void post(@NonNull Runnable command) {
+        Preconditions.checkNotNull(command);
+
+        if (isEngineThread()) {
+            command.run();
+            return;
+        }
+
+        mHandler.post(command);
+    }
+
+    void postDelayed(@NonNull Runnable command, long delayMillis) {
+        Preconditions.checkNotNull(command);
+        mHandler.postDelayed(command, delayMillis);
+    }
+
+    void removeCallbacks(@NonNull Runnable command) {
+        mHandler.removeCallbacks(command);
+    }
+
+    /**
+     * An immutable copy of the player state as of the last time the engine was idle. Safe to call
+     * from any thread, the returned object must not be modified.
+     */
+    @NonNull
+    PlayerState getSnapshot() {
+        return mSnapshot.get();
+    }
+
+    void publishSnapshot() {
+        checkThread();
+        mSnapshot.set(new PlayerState(mPlayerState));
+    }
+
+    /**
+     * Quits the engine thread after the pending commands have run.
+     */
+    void quit() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                publishSnapshot();
+                mThread.quit();
+            }
+        });
+    }
+}
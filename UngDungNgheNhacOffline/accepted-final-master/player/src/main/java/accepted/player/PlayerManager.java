@@ -20,5 +20,7 @@ public interface PlayerManager {
 
     void setIgnoreAudioFocus(boolean ignoreAudioFocus);
 
+    void setCrossfade(int durationMillis, @UseOrdinal CrossfadeCurve curve);
+
     void shutdown();
 }
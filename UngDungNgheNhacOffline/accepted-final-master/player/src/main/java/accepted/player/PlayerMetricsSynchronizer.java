@@ -0,0 +1,16 @@
+package accepted.player;
+
+import androidx.annotation.NonNull;
+
+import channel.helper.Channel;
+import accepted.player.metrics.PlayerMetrics;
+
+@Channel
+public interface PlayerMetricsSynchronizer {
+    void syncPlayerMetrics(String clientToken);
+
+    @Channel
+    interface OnSyncPlayerMetricsListener {
+        void onSyncPlayerMetrics(@NonNull String clientToken, @NonNull PlayerMetrics playerMetrics);
+    }
+}
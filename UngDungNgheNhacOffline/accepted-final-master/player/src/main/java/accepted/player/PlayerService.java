@@ -15,11 +15,12 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.media.AudioManager;
-import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.v4.media.MediaBrowserCompat;
 import android.support.v4.media.session.MediaSessionCompat;
@@ -27,6 +28,7 @@ import android.support.v4.media.session.PlaybackStateCompat;
 import android.text.SpannableString;
 import android.text.Spanned;
 import android.text.style.ForegroundColorSpan;
+import android.util.Log;
 
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
@@ -36,15 +38,15 @@ import androidx.core.content.res.ResourcesCompat;
 import androidx.media.MediaBrowserServiceCompat;
 import androidx.media.session.MediaButtonReceiver;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.FutureTarget;
 import com.google.common.base.Preconditions;
 
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import channel.helper.ChannelHelper;
@@ -65,7 +67,11 @@ import io.reactivex.schedulers.Schedulers;
 import media.helper.HeadsetHookHelper;
 
 import accepted.player.annotation.PersistenceId;
+import accepted.player.artwork.ArtworkService;
+import accepted.player.cache.CacheProxyServer;
 import accepted.player.effect.AudioEffectManager;
+import accepted.player.metrics.PlayerMetrics;
+import accepted.player.metrics.PlayerMetricsRecorder;
 import accepted.player.audio.MediaMusicPlayer;
 import accepted.player.audio.MusicItem;
 import accepted.player.audio.MusicPlayer;
@@ -79,6 +85,7 @@ import accepted.player.util.AsyncResult;
 @SuppressWarnings("SameReturnValue")
 public class PlayerService extends MediaBrowserServiceCompat
         implements PlayerManager, PlaylistManager, PlaylistEditor, SleepTimer {
+    private static final String TAG = "PlayerService";
 
     public static final String DEFAULT_MEDIA_ROOT_ID = "root";
 
@@ -94,11 +101,17 @@ public class PlayerService extends MediaBrowserServiceCompat
     private PlayerState mPlayerState;
 
     private PlaylistManagerImp mPlaylistManager;
+    private PlayerEngine mPlayerEngine;
+    // only accessed on the engine thread, other threads go through mEnginePlayer
     private PlayerImp mPlayer;
+    private EnginePlayer mEnginePlayer;
     private CustomActionPipe mCustomActionDispatcher;
 
     private PlayerStateListener mPlayerStateListener;
     private PlayerStateSynchronizer.OnSyncPlayerStateListener mSyncPlayerStateListener;
+    private PlayerMetricsSynchronizer.OnSyncPlayerMetricsListener mSyncPlayerMetricsListener;
+    // thread-safe, read on the main thread and written on the engine thread
+    private PlayerMetricsRecorder mPlayerMetricsRecorder;
 
     private boolean mForeground;
 
@@ -119,6 +132,16 @@ public class PlayerService extends MediaBrowserServiceCompat
     @Nullable
     private HistoryRecorder mHistoryRecorder;
 
+    @Nullable
+    private StatisticsRecorder mStatisticsRecorder;
+
+    // the playing music item until it starts playing, it is counted as started only then
+    @Nullable
+    private MusicItem mStartPendingMusicItem;
+
+    @Nullable
+    private CacheProxyServer mCacheProxyServer;
+
     private OnStateChangeListener mSleepTimerStateChangedListener;
     private Disposable mSleepTimerDisposable;
     private PlayerStateHelper mPlayerStateHelper;
@@ -132,6 +155,7 @@ public class PlayerService extends MediaBrowserServiceCompat
 
     private BroadcastReceiver mCustomActionReceiver;
     private PlayerStateSynchronizer mPlayerStateSynchronizer;
+    private PlayerMetricsSynchronizer mPlayerMetricsSynchronizer;
 
     private AbstractPlayer.OnStateChangeListener mOnStateChangeListener;
 
@@ -145,8 +169,20 @@ public class PlayerService extends MediaBrowserServiceCompat
         mKeepAliveConnection = new KeepAliveConnection();
         mPlayerStateSynchronizer = new PlayerStateSynchronizer() {
             @Override
-            public void syncPlayerState(String clientToken) {
-                mSyncPlayerStateListener.onSyncPlayerState(clientToken, new PlayerState(mPlayerState));
+            public void syncPlayerState(final String clientToken) {
+                // read on the engine thread so that the commands sent before are reflected
+                mPlayerEngine.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mSyncPlayerStateListener.onSyncPlayerState(clientToken, new PlayerState(mPlayerState));
+                    }
+                });
+            }
+        };
+        mPlayerMetricsSynchronizer = new PlayerMetricsSynchronizer() {
+            @Override
+            public void syncPlayerMetrics(String clientToken) {
+                mSyncPlayerMetricsListener.onSyncPlayerMetrics(clientToken, getPlayerMetrics());
             }
         };
 
@@ -163,6 +199,8 @@ public class PlayerService extends MediaBrowserServiceCompat
         initMediaSession();
         initSessionEventEmitter();
         initHistoryRecorder();
+        initStatisticsRecorder();
+        initCacheProxyServer();
         initCustomActionReceiver();
 
         keepServiceAlive();
@@ -208,13 +246,34 @@ public class PlayerService extends MediaBrowserServiceCompat
         cancelIDLETimer();
 
         unregisterReceiver(mCustomActionReceiver);
-        mMediaSession.release();
-        mPlayer.release();
 
-        mPlayer = null;
+        if (mCacheProxyServer != null) {
+            mCacheProxyServer.shutdown();
+        }
 
-        if (mAudioEffectManager != null) {
-            mAudioEffectManager.release();
+        final PlayerImp player = mPlayer;
+        final MediaSessionCompat mediaSession = mMediaSession;
+        final AudioEffectManager audioEffectManager = mAudioEffectManager;
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                player.release();
+                mediaSession.release();
+
+                if (audioEffectManager != null) {
+                    audioEffectManager.release();
+                }
+            }
+        });
+        mPlayerEngine.quit();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            ArtworkService.getInstance(this).clearMemory();
         }
     }
 
@@ -254,6 +313,7 @@ public class PlayerService extends MediaBrowserServiceCompat
     private void initPlayerState() {
         mPlayerState = new PersistentPlayerState(this, mPersistentId);
         mPlayerStateHelper = new PlayerStateHelper(mPlayerState);
+        mPlayerEngine = new PlayerEngine(mPlayerState);
     }
 
     private void initPlaylistManager() {
@@ -261,7 +321,7 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     private void initOnStateChangeListener() {
-        mOnStateChangeListener = new AbstractPlayer.OnStateChangeListener() {
+        mOnStateChangeListener = new MainThreadStateChangeListener(new AbstractPlayer.OnStateChangeListener() {
             @Override
             public void onPreparing() {
                 PlayerService.this.updateNotificationView();
@@ -277,6 +337,7 @@ public class PlayerService extends MediaBrowserServiceCompat
             public void onPlaying(int progress, long updateTime) {
                 PlayerService.this.updateNotificationView();
                 PlayerService.this.cancelIDLETimer();
+                PlayerService.this.recordStarted();
             }
 
             @Override
@@ -306,11 +367,25 @@ public class PlayerService extends MediaBrowserServiceCompat
                 PlayerService.this.onPlayingMusicItemChanged(musicItem);
             }
 
+            @Override
+            public void onMusicItemCompleted(@NonNull MusicItem musicItem) {
+                if (mStatisticsRecorder != null) {
+                    mStatisticsRecorder.onCompleted(musicItem);
+                }
+            }
+
+            @Override
+            public void onMusicItemSkipped(@NonNull MusicItem musicItem) {
+                if (mStatisticsRecorder != null) {
+                    mStatisticsRecorder.onSkipped(musicItem);
+                }
+            }
+
             @Override
             public void onPlayModeChanged(@NonNull PlayMode playMode) {
                 PlayerService.this.notifyPlayModeChanged(playMode);
             }
-        };
+        });
     }
 
     private void initPlayer() {
@@ -319,21 +394,27 @@ public class PlayerService extends MediaBrowserServiceCompat
                 mPlayerState,
                 mPlaylistManager,
                 this.getClass(),
+                mPlayerEngine,
                 mOnStateChangeListener);
+        mEnginePlayer = new EnginePlayer(mPlayerEngine, mPlayer);
+        mPlayerMetricsRecorder = mPlayer.getMetricsRecorder();
     }
 
     private void initCustomActionDispatcher() {
         final Dispatcher playerStateSynchronizerDispatcher =
                 ChannelHelper.newDispatcher(PlayerStateSynchronizer.class, mPlayerStateSynchronizer);
 
+        final Dispatcher playerMetricsSynchronizerDispatcher =
+                ChannelHelper.newDispatcher(PlayerMetricsSynchronizer.class, mPlayerMetricsSynchronizer);
+
         final Dispatcher playerManagerDispatcher =
                 ChannelHelper.newDispatcher(PlayerManager.class, this);
 
         final Dispatcher playerDispatcher =
-                ChannelHelper.newDispatcher(Player.class, mPlayer);
+                ChannelHelper.newDispatcher(Player.class, mEnginePlayer);
 
         final Dispatcher playlistEditorDispatcher =
-                ChannelHelper.newDispatcher(PlaylistEditor.class, mPlayer);
+                ChannelHelper.newDispatcher(PlaylistEditor.class, mEnginePlayer);
 
         final Dispatcher sleepTimerDispatcher =
                 ChannelHelper.newDispatcher(SleepTimer.class, this);
@@ -341,6 +422,7 @@ public class PlayerService extends MediaBrowserServiceCompat
         mCustomActionDispatcher = new CustomActionPipe(
                 DispatcherUtil.merge(
                         playerStateSynchronizerDispatcher,
+                        playerMetricsSynchronizerDispatcher,
                         playerManagerDispatcher,
                         playerDispatcher,
                         playlistEditorDispatcher,
@@ -376,7 +458,14 @@ public class PlayerService extends MediaBrowserServiceCompat
 
     private void initMediaSession() {
         mMediaSession = new MediaSessionCompat(this, this.getClass().getName());
-        mPlayer.setMediaSession(mMediaSession);
+
+        final MediaSessionCompat mediaSession = mMediaSession;
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setMediaSession(mediaSession);
+            }
+        });
 
         mMediaSession.setCallback(onCreateMediaSessionCallback());
 
@@ -387,8 +476,15 @@ public class PlayerService extends MediaBrowserServiceCompat
         SessionEventPipe sessionEventEmitter = new SessionEventPipe(mMediaSession);
         mPlayerStateListener = ChannelHelper.newEmitter(PlayerStateListener.class, sessionEventEmitter);
         mSyncPlayerStateListener = ChannelHelper.newEmitter(PlayerStateSynchronizer.OnSyncPlayerStateListener.class, sessionEventEmitter);
+        mSyncPlayerMetricsListener = ChannelHelper.newEmitter(PlayerMetricsSynchronizer.OnSyncPlayerMetricsListener.class, sessionEventEmitter);
 
-        mPlayer.setPlayerStateListener(mPlayerStateListener);
+        final PlayerStateListener playerStateListener = mPlayerStateListener;
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setPlayerStateListener(playerStateListener);
+            }
+        });
         mSleepTimerStateChangedListener = ChannelHelper.newEmitter(OnStateChangeListener.class, sessionEventEmitter);
     }
 
@@ -401,13 +497,39 @@ public class PlayerService extends MediaBrowserServiceCompat
 
         Bundle config = mPlayerConfig.getAudioEffectConfig();
         mAudioEffectManager.init(config);
-        mPlayer.setAudioEffectManager(mAudioEffectManager);
+
+        final AudioEffectManager audioEffectManager = mAudioEffectManager;
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.setAudioEffectManager(audioEffectManager);
+            }
+        });
     }
 
     private void initHistoryRecorder() {
         mHistoryRecorder = onCreateHistoryRecorder();
     }
 
+    private void initStatisticsRecorder() {
+        mStatisticsRecorder = onCreateStatisticsRecorder();
+    }
+
+    private void initCacheProxyServer() {
+        mCacheProxyServer = onCreateCacheProxyServer();
+
+        if (mCacheProxyServer == null) {
+            return;
+        }
+
+        try {
+            mCacheProxyServer.start();
+        } catch (IOException e) {
+            Log.e(TAG, "failed to start the cache proxy server", e);
+            mCacheProxyServer = null;
+        }
+    }
+
     private void initCustomActionReceiver() {
         mCustomActionReceiver = new BroadcastReceiver() {
             @Override
@@ -446,6 +568,21 @@ public class PlayerService extends MediaBrowserServiceCompat
         return null;
     }
 
+    /**
+     * Override to play http(s) music through a local caching proxy, the default
+     * {@link #isCached(MusicItem, SoundQuality, AsyncResult)} then reports the files it cached.
+     * The server is started and shut down by the service.
+     */
+    @Nullable
+    protected CacheProxyServer onCreateCacheProxyServer() {
+        return null;
+    }
+
+    @Nullable
+    protected StatisticsRecorder onCreateStatisticsRecorder() {
+        return null;
+    }
+
     @Override
     public void setSoundQuality(SoundQuality soundQuality) {
         if (soundQuality == mPlayerConfig.getSoundQuality()) {
@@ -453,7 +590,12 @@ public class PlayerService extends MediaBrowserServiceCompat
         }
 
         mPlayerConfig.setSoundQuality(soundQuality);
-        mPlayer.notifySoundQualityChanged();
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.notifySoundQualityChanged();
+            }
+        });
     }
 
     @Override
@@ -472,7 +614,13 @@ public class PlayerService extends MediaBrowserServiceCompat
             return;
         }
 
-        mAudioEffectManager.updateConfig(config);
+        final Bundle audioEffectConfig = config;
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mAudioEffectManager.updateConfig(audioEffectConfig);
+            }
+        });
         mPlayerConfig.setAudioEffectConfig(config);
     }
 
@@ -513,7 +661,12 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     private void notifyAudioEffectEnableChanged() {
-        mPlayer.notifyAudioEffectEnableChanged();
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.notifyAudioEffectEnableChanged();
+            }
+        });
     }
 
     @Override
@@ -523,7 +676,12 @@ public class PlayerService extends MediaBrowserServiceCompat
         }
 
         mPlayerConfig.setOnlyWifiNetwork(onlyWifiNetwork);
-        mPlayer.notifyOnlyWifiNetworkChanged();
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.notifyOnlyWifiNetworkChanged();
+            }
+        });
     }
 
     @Override
@@ -533,12 +691,35 @@ public class PlayerService extends MediaBrowserServiceCompat
         }
 
         mPlayerConfig.setIgnoreAudioFocus(ignoreAudioFocus);
-        mPlayer.notifyIgnoreAudioFocusChanged();
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.notifyIgnoreAudioFocusChanged();
+            }
+        });
+    }
+
+    @Override
+    public void setCrossfade(int durationMillis, @NonNull CrossfadeCurve curve) {
+        Preconditions.checkNotNull(curve);
+
+        if (durationMillis == mPlayerConfig.getCrossfadeDuration() && curve == mPlayerConfig.getCrossfadeCurve()) {
+            return;
+        }
+
+        mPlayerConfig.setCrossfadeDuration(Math.max(0, durationMillis));
+        mPlayerConfig.setCrossfadeCurve(curve);
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayer.notifyCrossfadeChanged();
+            }
+        });
     }
 
     @Override
     public final void shutdown() {
-        if (mPlayer.getPlaybackState() == PlaybackState.PLAYING) {
+        if (getPlaybackState() == PlaybackState.PLAYING) {
             getPlayer().pause();
         }
 
@@ -635,7 +816,7 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     private void notifyOnShutdown() {
-        if (mPlayerState.isSleepTimerStarted()) {
+        if (mPlayerEngine.getSnapshot().isSleepTimerStarted()) {
             cancelSleepTimer();
         }
 
@@ -644,7 +825,7 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     public final PlayMode getPlayMode() {
-        return mPlayerState.getPlayMode();
+        return mPlayerEngine.getSnapshot().getPlayMode();
     }
 
     @Nullable
@@ -654,15 +835,15 @@ public class PlayerService extends MediaBrowserServiceCompat
 
     @NonNull
     public final PlaybackState getPlaybackState() {
-        return mPlayer.getPlaybackState();
+        return mPlayerEngine.getSnapshot().getPlaybackState();
     }
 
     public final boolean isStalled() {
-        return mPlayer.isStalled();
+        return mPlayerEngine.getSnapshot().isStalled();
     }
 
     public final MusicItem getPlayingMusicItem() {
-        return mPlayerState.getMusicItem();
+        return mPlayerEngine.getSnapshot().getMusicItem();
     }
 
     public final boolean isError() {
@@ -670,13 +851,31 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     public final int getErrorCode() {
-        return mPlayerState.getErrorCode();
+        return mPlayerEngine.getSnapshot().getErrorCode();
     }
 
     public final String getErrorMessage() {
         return ErrorCode.getErrorMessage(this, getErrorCode());
     }
 
+    /**
+     * Returns a snapshot of the player health metrics recorded since the service was created.
+     */
+    @NonNull
+    public final PlayerMetrics getPlayerMetrics() {
+        return mPlayerMetricsRecorder.snapshot();
+    }
+
+    /**
+     * Prints the player metrics, run {@code adb shell dumpsys activity service <PlayerService>}.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println(getClass().getName() + " metrics:");
+        getPlayerMetrics().dump(writer);
+        writer.flush();
+    }
+
     public final void updateNotificationView() {
         if (noNotificationView()) {
             return;
@@ -705,7 +904,7 @@ public class PlayerService extends MediaBrowserServiceCompat
             return true;
         }
 
-        return mPlayerState.getPlaybackState() == PlaybackState.STOPPED;
+        return getPlaybackState() == PlaybackState.STOPPED;
     }
 
     private boolean noNotificationView() {
@@ -713,7 +912,7 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     private boolean shouldBeForeground() {
-        return mPlayer.getPlaybackState() == PlaybackState.PLAYING;
+        return getPlaybackState() == PlaybackState.PLAYING;
     }
 
     protected final boolean isForeground() {
@@ -769,13 +968,13 @@ public class PlayerService extends MediaBrowserServiceCompat
             throw new IllegalArgumentException("position must >= 0.");
         }
         Preconditions.checkNotNull(musicItem);
-        mPlayer.insertMusicItem(position, musicItem);
+        mEnginePlayer.insertMusicItem(position, musicItem);
     }
 
     @Override
     public void appendMusicItem(@NonNull MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
-        mPlayer.appendMusicItem(musicItem);
+        mEnginePlayer.appendMusicItem(musicItem);
     }
 
     @Override
@@ -788,24 +987,24 @@ public class PlayerService extends MediaBrowserServiceCompat
             throw new IllegalArgumentException("toPosition must >= 0.");
         }
 
-        mPlayer.moveMusicItem(fromPosition, toPosition);
+        mEnginePlayer.moveMusicItem(fromPosition, toPosition);
     }
 
     @Override
     public void removeMusicItem(@NonNull MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
-        mPlayer.removeMusicItem(musicItem);
+        mEnginePlayer.removeMusicItem(musicItem);
     }
 
     @Override
     public void removeMusicItem(int position) {
-        mPlayer.removeMusicItem(position);
+        mEnginePlayer.removeMusicItem(position);
     }
 
     @Override
     public void setNextPlay(@NonNull MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
-        mPlayer.setNextPlay(musicItem);
+        mEnginePlayer.setNextPlay(musicItem);
     }
 
     @Override
@@ -816,7 +1015,7 @@ public class PlayerService extends MediaBrowserServiceCompat
             throw new IllegalArgumentException("position must >= 0.");
         }
 
-        mPlayer.setPlaylist(playlist, position, play);
+        mEnginePlayer.setPlaylist(playlist, position, play);
     }
 
     private void updateNotification() {
@@ -839,12 +1038,39 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     protected void isCached(@NonNull MusicItem musicItem, @NonNull SoundQuality soundQuality, @NonNull AsyncResult<Boolean> result) {
-        result.onSuccess(isCached(musicItem, soundQuality));
+        CacheProxyServer cacheProxyServer = mCacheProxyServer;
+        boolean cachedByProxy = cacheProxyServer != null
+                && cacheProxyServer.isCached(getCacheKey(musicItem, soundQuality));
+
+        result.onSuccess(cachedByProxy || isCached(musicItem, soundQuality));
+    }
+
+    private static String getCacheKey(MusicItem musicItem, SoundQuality soundQuality) {
+        return CacheProxyServer.cacheKey(musicItem.getUri(), soundQuality.name());
+    }
+
+    /**
+     * Returns the uri that plays the music item through the cache proxy server, or the uri itself
+     * if there is no cache proxy server or the uri is not http(s).
+     */
+    @NonNull
+    protected final Uri getCacheProxyUri(@NonNull MusicItem musicItem, @NonNull Uri uri) {
+        Preconditions.checkNotNull(musicItem);
+        Preconditions.checkNotNull(uri);
+
+        CacheProxyServer cacheProxyServer = mCacheProxyServer;
+        if (cacheProxyServer == null || !cacheProxyServer.isStarted()
+                || !CacheProxyServer.isProxyable(uri.toString())) {
+            return uri;
+        }
+
+        String key = getCacheKey(musicItem, mPlayerConfig.getSoundQuality());
+        return Uri.parse(cacheProxyServer.getProxyUrl(uri.toString(), key));
     }
 
     @NonNull
     protected MusicPlayer onCreateMusicPlayer(@NonNull Context context, @NonNull MusicItem musicItem, @NonNull Uri uri) {
-        return new MediaMusicPlayer(context, uri);
+        return new MediaMusicPlayer(context, getCacheProxyUri(musicItem, uri));
     }
 
     @Nullable
@@ -872,7 +1098,7 @@ public class PlayerService extends MediaBrowserServiceCompat
 
     @NonNull
     public final Player getPlayer() {
-        return mPlayer;
+        return mEnginePlayer;
     }
 
     private void onStopped() {
@@ -893,6 +1119,15 @@ public class PlayerService extends MediaBrowserServiceCompat
         if (mHistoryRecorder != null && musicItem != null) {
             mHistoryRecorder.recordHistory(musicItem);
         }
+
+        mStartPendingMusicItem = musicItem;
+    }
+
+    private void recordStarted() {
+        if (mStatisticsRecorder != null && mStartPendingMusicItem != null) {
+            mStatisticsRecorder.onStarted(mStartPendingMusicItem);
+        }
+        mStartPendingMusicItem = null;
     }
 
     protected boolean onMediaButtonEvent(Intent mediaButtonEvent) {
@@ -983,8 +1218,14 @@ public class PlayerService extends MediaBrowserServiceCompat
                     }
                 });
 
-        long startTime = SystemClock.elapsedRealtime();
-        mPlayerStateHelper.onSleepTimerStart(time, startTime, action);
+        final long timerTime = time;
+        final long startTime = SystemClock.elapsedRealtime();
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayerStateHelper.onSleepTimerStart(timerTime, startTime, action);
+            }
+        });
         mSleepTimerStateChangedListener.onTimerStart(time, startTime, action);
     }
 
@@ -1003,7 +1244,12 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     private void notifySleepTimerEnd() {
-        mPlayerStateHelper.onSleepTimerEnd();
+        mPlayerEngine.post(new Runnable() {
+            @Override
+            public void run() {
+                mPlayerStateHelper.onSleepTimerEnd();
+            }
+        });
         mSleepTimerStateChangedListener.onTimerEnd();
     }
 
@@ -1020,8 +1266,9 @@ public class PlayerService extends MediaBrowserServiceCompat
                          @NonNull PlayerState playlistState,
                          @NonNull PlaylistManagerImp playlistManager,
                          @NonNull Class<? extends PlayerService> playerService,
+                         @NonNull PlayerEngine engine,
                          @NonNull AbstractPlayer.OnStateChangeListener listener) {
-            super(context, playerConfig, playlistState, playlistManager, playerService, listener);
+            super(context, playerConfig, playlistState, playlistManager, playerService, engine, listener);
         }
 
         @Override
@@ -1035,6 +1282,12 @@ public class PlayerService extends MediaBrowserServiceCompat
             return PlayerService.this.onCreateMusicPlayer(context, musicItem, uri);
         }
 
+        @NonNull
+        @Override
+        protected Uri getPrefetchUri(@NonNull MusicItem musicItem, @NonNull Uri uri) {
+            return getCacheProxyUri(musicItem, uri);
+        }
+
         @Nullable
         @Override
         protected AudioManager.OnAudioFocusChangeListener onCreateAudioFocusChangeListener() {
@@ -1049,6 +1302,130 @@ public class PlayerService extends MediaBrowserServiceCompat
         }
     }
 
+    /**
+     * The engine reports state changes on its own thread, the service reacts to them (notification,
+     * recorders, timers) on the main thread.
+     */
+    private static class MainThreadStateChangeListener implements AbstractPlayer.OnStateChangeListener {
+        private final AbstractPlayer.OnStateChangeListener mListener;
+        private final Handler mMainHandler;
+
+        MainThreadStateChangeListener(AbstractPlayer.OnStateChangeListener listener) {
+            mListener = listener;
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        @Override
+        public void onPreparing() {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPreparing();
+                }
+            });
+        }
+
+        @Override
+        public void onPrepared(final int audioSessionId) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPrepared(audioSessionId);
+                }
+            });
+        }
+
+        @Override
+        public void onPlaying(final int progress, final long updateTime) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPlaying(progress, updateTime);
+                }
+            });
+        }
+
+        @Override
+        public void onPaused() {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPaused();
+                }
+            });
+        }
+
+        @Override
+        public void onStalledChanged(final boolean stalled) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onStalledChanged(stalled);
+                }
+            });
+        }
+
+        @Override
+        public void onStopped() {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onStopped();
+                }
+            });
+        }
+
+        @Override
+        public void onError(final int errorCode, final String errorMessage) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onError(errorCode, errorMessage);
+                }
+            });
+        }
+
+        @Override
+        public void onPlayingMusicItemChanged(@Nullable final MusicItem musicItem) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPlayingMusicItemChanged(musicItem);
+                }
+            });
+        }
+
+        @Override
+        public void onMusicItemCompleted(@NonNull final MusicItem musicItem) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onMusicItemCompleted(musicItem);
+                }
+            });
+        }
+
+        @Override
+        public void onMusicItemSkipped(@NonNull final MusicItem musicItem) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onMusicItemSkipped(musicItem);
+                }
+            });
+        }
+
+        @Override
+        public void onPlayModeChanged(@NonNull final PlayMode playMode) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onPlayModeChanged(playMode);
+                }
+            });
+        }
+    }
+
     public static class MediaSessionCallback extends MediaSessionCompat.Callback {
         private final PlayerService mPlayerService;
         private final Player mPlayer;
@@ -1496,7 +1873,6 @@ public class PlayerService extends MediaBrowserServiceCompat
         private static class IconLoaderImp extends IconLoader {
             private Context mContext;
             private Disposable mLoadIconDisposable;
-            private FutureTarget<Bitmap> mFutureTarget;
 
             IconLoaderImp(Context context, Bitmap defaultIcon) {
                 super(defaultIcon);
@@ -1509,34 +1885,21 @@ public class PlayerService extends MediaBrowserServiceCompat
                 mLoadIconDisposable = Single.create(new SingleOnSubscribe<Bitmap>() {
                     @Override
                     public void subscribe(@NonNull SingleEmitter<Bitmap> emitter) {
-                        // 1. load icon from internet
-                        Bitmap bitmap = loadIconFromInternet(musicItem);
+                        // the artwork is decoded once and cached, so refreshing the notification is cheap
+                        Bitmap bitmap = ArtworkService.getInstance(mContext)
+                                .loadBitmap(musicItem.getUri(),
+                                        musicItem.getIconUri(),
+                                        ArtworkService.Size.of(getWidth(), getHeight()));
 
                         // check disposed
                         if (emitter.isDisposed()) {
                             return;
                         }
 
-                        // 2. load embedded picture
-                        if (bitmap == null) {
-                            bitmap = loadEmbeddedPicture(musicItem);
-                        }
-
-                        // check disposed
-                        if (emitter.isDisposed()) {
-                            return;
-                        }
-
-                        // 3. load default icon
                         if (bitmap == null) {
                             bitmap = getDefaultIcon();
                         }
 
-                        // check disposed
-                        if (emitter.isDisposed()) {
-                            return;
-                        }
-
                         emitter.onSuccess(bitmap);
                     }
                 }).subscribeOn(Schedulers.io())
@@ -1554,56 +1917,11 @@ public class PlayerService extends MediaBrowserServiceCompat
                 cancelLastLoading();
             }
 
-            private Bitmap loadIconFromInternet(MusicItem musicItem) {
-                mFutureTarget = Glide.with(mContext)
-                        .asBitmap()
-                        .load(musicItem.getIconUri())
-                        .submit(getWidth(), getHeight());
-
-                try {
-                    return mFutureTarget.get();
-                } catch (ExecutionException | InterruptedException e) {
-                    return null;
-                }
-            }
-
-            private Bitmap loadEmbeddedPicture(MusicItem musicItem) {
-                if (notLocaleMusic(musicItem)) {
-                    return null;
-                }
-
-                MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-
-                try {
-                    retriever.setDataSource(mContext, Uri.parse(musicItem.getUri()));
-                    byte[] pictureData = retriever.getEmbeddedPicture();
-                    return Glide.with(mContext)
-                            .asBitmap()
-                            .load(pictureData)
-                            .submit(getWidth(), getHeight())
-                            .get();
-                } catch (IllegalArgumentException | ExecutionException | InterruptedException e) {
-                    return null;
-                } finally {
-                    retriever.release();
-                }
-            }
-
-            private boolean notLocaleMusic(MusicItem musicItem) {
-                String stringUri = musicItem.getUri();
-                String scheme = Uri.parse(stringUri).getScheme();
-
-                return "http".equalsIgnoreCase(scheme) | "https".equalsIgnoreCase(scheme);
-            }
-
             private void cancelLastLoading() {
+                // interrupts the io thread, so ArtworkService cancels its Glide request
                 if (mLoadIconDisposable != null && !mLoadIconDisposable.isDisposed()) {
                     mLoadIconDisposable.dispose();
                 }
-
-                if (mFutureTarget != null && !mFutureTarget.isDone()) {
-                    mFutureTarget.cancel(true);
-                }
             }
         }
 
@@ -1640,11 +1958,11 @@ public class PlayerService extends MediaBrowserServiceCompat
     }
 
     public final boolean isPreparing() {
-        return mPlayer.isPreparing();
+        return mPlayerEngine.getSnapshot().isPreparing();
     }
 
     public final boolean isPrepared() {
-        return mPlayer.isPrepared();
+        return mPlayerEngine.getSnapshot().isPrepared();
     }
 
     public static class MediaNotificationView extends NotificationView {
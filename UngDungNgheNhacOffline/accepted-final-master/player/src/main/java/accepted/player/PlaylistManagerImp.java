@@ -2,6 +2,7 @@ package accepted.player;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -11,6 +12,7 @@ import com.tencent.mmkv.MMKV;
 
 import java.util.ArrayList;
 
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleOnSubscribe;
@@ -77,7 +79,7 @@ class PlaylistManagerImp implements PlaylistManager {
                 emitter.onSuccess(playlist);
             }
         }).subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
+                .observeOn(callerScheduler())
                 .subscribe(new Consumer<Playlist>() {
                     @Override
                     public void accept(Playlist playlist) {
@@ -115,7 +117,7 @@ class PlaylistManagerImp implements PlaylistManager {
                 emitter.onSuccess(true);
             }
         }).subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
+                .observeOn(callerScheduler())
                 .subscribe(new Consumer<Boolean>() {
                     @Override
                     public void accept(Boolean aBoolean) {
@@ -126,6 +128,17 @@ class PlaylistManagerImp implements PlaylistManager {
                 });
     }
 
+    // Callbacks are delivered on the looper of the calling thread, so the player engine gets its
+    // results on the engine thread and clients on the main thread.
+    private static Scheduler callerScheduler() {
+        Looper looper = Looper.myLooper();
+        if (looper == null) {
+            return AndroidSchedulers.mainThread();
+        }
+
+        return AndroidSchedulers.from(looper);
+    }
+
     private void disposeLastSave() {
         if (mSaveDisposable != null && !mSaveDisposable.isDisposed()) {
             mSaveDisposable.dispose();
@@ -0,0 +1,59 @@
+package accepted.player;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A budget of bytes per time window, e.g. the network bytes the {@link Prefetcher} may use per
+ * hour. The window starts with the first acquire after the previous window ended. Thread-safe.
+ */
+final class PrefetchBudget {
+    private final long mMaxBytes;
+    private final long mWindowMillis;
+
+    private long mWindowStart;
+    private boolean mWindowStarted;
+    private long mUsedBytes;
+
+    PrefetchBudget(long maxBytes, long windowMillis) {
+        Preconditions.checkArgument(maxBytes > 0);
+        Preconditions.checkArgument(windowMillis > 0);
+
+        mMaxBytes = maxBytes;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * Takes the bytes from the budget of the current window.
+     *
+     * @param now the current time, e.g. {@code SystemClock.elapsedRealtime()}.
+     * @return false if the remaining budget is less than the bytes, nothing is taken then.
+     */
+    synchronized boolean tryAcquire(long bytes, long now) {
+        Preconditions.checkArgument(bytes >= 0);
+
+        if (!mWindowStarted || now - mWindowStart >= mWindowMillis) {
+            mWindowStarted = true;
+            mWindowStart = now;
+            mUsedBytes = 0;
+        }
+
+        if (mUsedBytes + bytes > mMaxBytes) {
+            return false;
+        }
+
+        mUsedBytes += bytes;
+        return true;
+    }
+
+    /**
+     * Gives back the acquired bytes that were not used, e.g. the read stopped at the end of the
+     * file or was cancelled.
+     */
+    synchronized void release(long bytes) {
+        mUsedBytes = Math.max(0, mUsedBytes - bytes);
+    }
+
+    synchronized long getUsedBytes() {
+        return mUsedBytes;
+    }
+}
@@ -0,0 +1,220 @@
+package accepted.player;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableOnSubscribe;
+import io.reactivex.CompletableSource;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Reads ahead the head of the music items that play next, so that skipping to them starts
+ * instantly. A local file is read to warm the page cache, a remote one is fetched through the
+ * cache proxy server, which keeps the bytes it fetches.
+ * <p>
+ * Remote items are only fetched on an unmetered network, while the battery is not low and within
+ * a budget of network bytes per hour. Only used on the engine thread, the reads run on the io
+ * scheduler one item after another.
+ */
+final class Prefetcher {
+    static final int ITEM_COUNT = 2;
+    static final int HEAD_SECONDS = 30;
+    // 320 kbps, the highest usual bit rate
+    private static final long MAX_BYTES_PER_SECOND = 40 * 1024;
+    static final long HEAD_BYTES = HEAD_SECONDS * MAX_BYTES_PER_SECOND;
+
+    private static final long NETWORK_BUDGET_BYTES = 32 * 1024 * 1024;
+    private static final long NETWORK_BUDGET_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int LOW_BATTERY_PERCENT = 20;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int TIMEOUT_MILLIS = 15_000;
+
+    private final Context mApplicationContext;
+    private final PrefetchBudget mNetworkBudget;
+
+    @Nullable
+    private Disposable mDisposable;
+
+    Prefetcher(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        mApplicationContext = context.getApplicationContext();
+        mNetworkBudget = new PrefetchBudget(NETWORK_BUDGET_BYTES, NETWORK_BUDGET_WINDOW_MILLIS);
+    }
+
+    /**
+     * Cancels the running prefetch and reads ahead the given uris in order.
+     *
+     * @param uris             the uris of the music items that play next, retrieved when subscribed.
+     * @param unmeteredNetwork whether remote items may be fetched.
+     */
+    void prefetch(@NonNull List<Single<Uri>> uris, boolean unmeteredNetwork) {
+        Preconditions.checkNotNull(uris);
+
+        cancel();
+        if (uris.isEmpty()) {
+            return;
+        }
+
+        final boolean networkAllowed = unmeteredNetwork && !isBatteryLow();
+        mDisposable = Observable.fromIterable(uris)
+                .concatMapCompletable(new Function<Single<Uri>, CompletableSource>() {
+                    @Override
+                    public CompletableSource apply(Single<Uri> uri) {
+                        return uri.flatMapCompletable(new Function<Uri, CompletableSource>() {
+                            @Override
+                            public CompletableSource apply(Uri uri) {
+                                return readHead(uri, networkAllowed);
+                            }
+                        }).onErrorComplete();
+                    }
+                })
+                .subscribeOn(Schedulers.io())
+                .subscribe();
+    }
+
+    /**
+     * Cancels the running prefetch, e.g. when the playlist or the play mode changed.
+     */
+    void cancel() {
+        if (mDisposable != null && !mDisposable.isDisposed()) {
+            mDisposable.dispose();
+        }
+        mDisposable = null;
+    }
+
+    private Completable readHead(final Uri uri, final boolean networkAllowed) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(@NonNull CompletableEmitter emitter) {
+                String scheme = uri.getScheme();
+                try {
+                    if ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) {
+                        fetchHead(uri, networkAllowed, emitter);
+                    } else {
+                        readLocalHead(uri, emitter);
+                    }
+                } catch (IOException | SecurityException e) {
+                    // the prefetch may be cancelled while the read blocks
+                    emitter.tryOnError(e);
+                    return;
+                }
+                emitter.onComplete();
+            }
+        });
+    }
+
+    private void readLocalHead(Uri uri, CompletableEmitter emitter) throws IOException {
+        if (!isLocal(uri)) {
+            return;
+        }
+
+        InputStream in = mApplicationContext.getContentResolver().openInputStream(uri);
+        if (in == null) {
+            return;
+        }
+
+        try {
+            drain(in, HEAD_BYTES, emitter);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean isLocal(Uri uri) {
+        String scheme = uri.getScheme();
+        return scheme == null
+                || ContentResolver.SCHEME_FILE.equals(scheme)
+                || ContentResolver.SCHEME_CONTENT.equals(scheme)
+                || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme);
+    }
+
+    private void fetchHead(Uri uri, boolean networkAllowed, CompletableEmitter emitter) throws IOException {
+        // only the cache proxy server keeps the fetched bytes, fetching the uri directly is a waste
+        if (!networkAllowed || !"127.0.0.1".equals(uri.getHost())) {
+            return;
+        }
+
+        if (!mNetworkBudget.tryAcquire(HEAD_BYTES, SystemClock.elapsedRealtime())) {
+            return;
+        }
+
+        long read = 0;
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri.toString()).openConnection();
+        try {
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestProperty("Range", "bytes=0-" + (HEAD_BYTES - 1));
+
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+                return;
+            }
+
+            InputStream in = connection.getInputStream();
+            try {
+                read = drain(in, HEAD_BYTES, emitter);
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+            mNetworkBudget.release(HEAD_BYTES - read);
+        }
+    }
+
+    private static long drain(InputStream in, long length, CompletableEmitter emitter) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long read = 0;
+
+        while (read < length && !emitter.isDisposed()) {
+            int count = in.read(buffer, 0, (int) Math.min(buffer.length, length - read));
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+
+        return read;
+    }
+
+    private boolean isBatteryLow() {
+        Intent battery = mApplicationContext.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+
+        int plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (plugged != 0 || level < 0 || scale <= 0) {
+            return false;
+        }
+
+        return level * 100 / scale < LOW_BATTERY_PERCENT;
+    }
+}
@@ -0,0 +1,114 @@
+package accepted.player;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The positions drawn ahead in the {@link PlayMode#SHUFFLE} play mode, so that the music items
+ * that are prefetched are the ones that play next. Only used on the engine thread.
+ */
+final class ShuffleOrder {
+    private final List<Integer> mPositions;
+    private final Random mRandom;
+
+    ShuffleOrder() {
+        this(new Random());
+    }
+
+    ShuffleOrder(@NonNull Random random) {
+        Preconditions.checkNotNull(random);
+
+        mPositions = new ArrayList<>();
+        mRandom = random;
+    }
+
+    /**
+     * Returns the position at the index of the shuffle order, the missing positions are drawn.
+     *
+     * @param previousPosition the position that plays before the one at the index.
+     * @param size             the size of the playlist.
+     */
+    int peek(int index, int previousPosition, int size) {
+        if (index == 0) {
+            // the play position changed outside of the shuffle order, e.g. by skipToPosition()
+            while (!mPositions.isEmpty() && mPositions.get(0) == previousPosition) {
+                mPositions.remove(0);
+            }
+        }
+
+        while (mPositions.size() <= index) {
+            int last = mPositions.isEmpty() ? previousPosition : mPositions.get(mPositions.size() - 1);
+            mPositions.add(getRandomPosition(last, size));
+        }
+
+        return mPositions.get(index);
+    }
+
+    /**
+     * Removes the first position, once it plays.
+     */
+    void removeFirst() {
+        if (!mPositions.isEmpty()) {
+            mPositions.remove(0);
+        }
+    }
+
+    /**
+     * Forgets the positions drawn ahead, e.g. when the playlist changed.
+     */
+    void clear() {
+        mPositions.clear();
+    }
+
+    /**
+     * Returns the positions that play next in the play mode, without the play position and
+     * without repeats. Empty in the LOOP mode.
+     *
+     * @param confirmNextPlay whether the next position is the one after the play position, see
+     *                        {@link accepted.player.playlist.PlaylistEditor#setNextPlay(accepted.player.audio.MusicItem)}.
+     */
+    @NonNull
+    List<Integer> getUpcomingPositions(int count, int size, int playPosition, @NonNull PlayMode playMode, boolean confirmNextPlay) {
+        List<Integer> positions = new ArrayList<>();
+        if (size < 2 || playMode == PlayMode.LOOP) {
+            return positions;
+        }
+
+        int position = playPosition;
+        int shuffleIndex = 0;
+
+        while (positions.size() < count) {
+            if (confirmNextPlay || playMode != PlayMode.SHUFFLE) {
+                position = (position + 1) % size;
+                confirmNextPlay = false;
+            } else {
+                position = peek(shuffleIndex, position, size);
+                shuffleIndex++;
+            }
+
+            if (position == playPosition || positions.contains(position)) {
+                break;
+            }
+            positions.add(position);
+        }
+
+        return positions;
+    }
+
+    private int getRandomPosition(int exclude, int size) {
+        if (size < 2) {
+            return 0;
+        }
+
+        int position = mRandom.nextInt(size);
+        while (position == exclude) {
+            position = mRandom.nextInt(size);
+        }
+        return position;
+    }
+}
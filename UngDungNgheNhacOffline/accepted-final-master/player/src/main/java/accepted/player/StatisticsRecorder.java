@@ -0,0 +1,13 @@
+package accepted.player;
+
+import androidx.annotation.NonNull;
+
+import accepted.player.audio.MusicItem;
+
+public interface StatisticsRecorder {
+    void onStarted(@NonNull MusicItem musicItem);
+
+    void onCompleted(@NonNull MusicItem musicItem);
+
+    void onSkipped(@NonNull MusicItem musicItem);
+}
@@ -0,0 +1,420 @@
+package accepted.player.artwork;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import accepted.player.cache.MusicCache;
+
+/**
+ * Serves downsampled artwork of music, shared by the notification, the app widget, the player
+ * screen and the list rows.
+ * <p>
+ * The artwork is the picture of the icon uri, or the picture embedded in a local music file. It
+ * is decoded once per {@link Size} and kept in a memory LRU and a disk LRU; concurrent loads of
+ * the same artwork are decoded once.
+ */
+public final class ArtworkService {
+    private static final String DIR_NAME = "artwork";
+    private static final long MAX_DISK_CACHE_SIZE = 32 * 1024 * 1024;     // 32 MB
+    private static final int MAX_MEMORY_CACHE_KB = 16 * 1024;             // 16 MB
+    private static final int MAX_MISSING_COUNT = 256;
+    private static final int JPEG_QUALITY = 90;
+
+    private static ArtworkService mInstance;
+
+    private final Context mContext;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    // keys of the artwork that does not exist, so that it is not looked up again
+    private final LruCache<String, Boolean> mMissing;
+    private final MusicCache mDiskCache;
+    private final InFlightLoads<String, Bitmap> mInFlightLoads;
+    private volatile EmbeddedPictureLoader mEmbeddedPictureLoader;
+
+    /**
+     * The sizes of artwork, a request is served at the smallest size that is not smaller than it.
+     */
+    public enum Size {
+        LIST_ROW(160),
+        NOTIFICATION(256),
+        WIDGET(384),
+        PLAYER(720);
+
+        private final int mPixels;
+
+        Size(int pixels) {
+            mPixels = pixels;
+        }
+
+        /**
+         * The max width and height of the artwork, in pixels.
+         */
+        public int getPixels() {
+            return mPixels;
+        }
+
+        /**
+         * Returns the smallest size that fits the given width and height, or {@link #PLAYER} if
+         * they are not positive (e.g. the original size is requested).
+         */
+        @NonNull
+        public static Size of(int width, int height) {
+            if (width <= 0 || height <= 0) {
+                return PLAYER;
+            }
+
+            int pixels = Math.max(width, height);
+            for (Size size : values()) {
+                if (size.mPixels >= pixels) {
+                    return size;
+                }
+            }
+
+            return PLAYER;
+        }
+    }
+
+    /**
+     * Loads the embedded picture of a music file without parsing the whole file, e.g. from an
+     * offset recorded when the music was scanned.
+     */
+    public interface EmbeddedPictureLoader {
+        /**
+         * @return the encoded picture, or null to look it up with {@link MediaMetadataRetriever}.
+         */
+        @WorkerThread
+        @Nullable
+        byte[] loadEmbeddedPicture(@NonNull String uri);
+    }
+
+    private ArtworkService(Context context) {
+        mContext = context;
+
+        int memoryCacheKB = (int) Math.min(Runtime.getRuntime().maxMemory() / 1024 / 16, MAX_MEMORY_CACHE_KB);
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheKB) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return Math.max(1, value.getByteCount() / 1024);
+            }
+        };
+
+        mMissing = new LruCache<>(MAX_MISSING_COUNT);
+        mDiskCache = new MusicCache(new File(context.getCacheDir(), DIR_NAME), MAX_DISK_CACHE_SIZE);
+        mInFlightLoads = new InFlightLoads<>();
+    }
+
+    public static synchronized ArtworkService getInstance(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        if (mInstance == null) {
+            mInstance = new ArtworkService(context.getApplicationContext());
+        }
+
+        return mInstance;
+    }
+
+    /**
+     * Returns the artwork if it is in the memory cache, otherwise returns null.
+     */
+    @Nullable
+    public Bitmap getCachedBitmap(@NonNull String uri, @Nullable String iconUri, @NonNull Size size) {
+        return mMemoryCache.get(cacheKey(uri, iconUri, size));
+    }
+
+    /**
+     * Loads the artwork, blocks until it is decoded.
+     *
+     * @param uri     the uri of the music, its embedded picture is used if there is no icon.
+     * @param iconUri the uri of the icon of the music, may be empty.
+     * @return null if the music has no artwork or it cannot be decoded.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap loadBitmap(@NonNull final String uri, @Nullable final String iconUri, @NonNull final Size size) {
+        Preconditions.checkNotNull(uri);
+        Preconditions.checkNotNull(size);
+
+        final String key = cacheKey(uri, iconUri, size);
+
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        if (mMissing.get(key) != null) {
+            return null;
+        }
+
+        try {
+            return mInFlightLoads.load(key, new Callable<Bitmap>() {
+                @Override
+                public Bitmap call() {
+                    return loadAndCache(key, uri, iconUri, size);
+                }
+            });
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Loads the artwork into the disk cache, blocks until it is written.
+     *
+     * @return the file of the encoded artwork, or null if the music has no artwork.
+     */
+    @WorkerThread
+    @Nullable
+    public File loadFile(@NonNull String uri, @Nullable String iconUri, @NonNull Size size) {
+        File file = mDiskCache.getCachedFile(cacheKey(uri, iconUri, size));
+        if (file != null) {
+            return file;
+        }
+
+        if (loadBitmap(uri, iconUri, size) == null) {
+            return null;
+        }
+
+        return mDiskCache.getCachedFile(cacheKey(uri, iconUri, size));
+    }
+
+    public void setEmbeddedPictureLoader(@Nullable EmbeddedPictureLoader loader) {
+        mEmbeddedPictureLoader = loader;
+    }
+
+    /**
+     * Removes all the artwork from the memory cache, e.g. when the system is low on memory.
+     */
+    public void clearMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    @NonNull
+    static String cacheKey(@NonNull String uri, @Nullable String iconUri, @NonNull Size size) {
+        return Hashing.sha256()
+                .hashString(uri + '\n' + (iconUri == null ? "" : iconUri) + '\n' + size.name(), Charsets.UTF_8)
+                .toString();
+    }
+
+    private Bitmap loadAndCache(String key, String uri, String iconUri, Size size) {
+        Bitmap bitmap = decodeFile(mDiskCache.getCachedFile(key));
+        if (bitmap != null) {
+            mMemoryCache.put(key, bitmap);
+            return bitmap;
+        }
+
+        bitmap = loadIcon(iconUri, size);
+
+        // the load is cancelled
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+
+        if (bitmap == null) {
+            bitmap = loadEmbeddedPicture(uri, size);
+        }
+
+        if (bitmap == null) {
+            // the icon may fail to load only for now, e.g. no network
+            if (iconUri == null || iconUri.isEmpty()) {
+                mMissing.put(key, Boolean.TRUE);
+            }
+            return null;
+        }
+
+        mMemoryCache.put(key, bitmap);
+        writeDiskCache(key, bitmap);
+        return bitmap;
+    }
+
+    @Nullable
+    private Bitmap decodeFile(@Nullable File file) {
+        if (file == null) {
+            return null;
+        }
+
+        return BitmapFactory.decodeFile(file.getAbsolutePath());
+    }
+
+    @Nullable
+    private Bitmap loadIcon(String iconUri, Size size) {
+        if (iconUri == null || iconUri.isEmpty()) {
+            return null;
+        }
+
+        FutureTarget<Bitmap> target = Glide.with(mContext)
+                .asBitmap()
+                .load(iconUri)
+                .submit(size.getPixels(), size.getPixels());
+
+        try {
+            // the bitmap goes back to the pool of Glide when the target is cleared, so it is copied
+            Bitmap bitmap = target.get();
+            return bitmap.copy(bitmap.getConfig() == null ? Bitmap.Config.ARGB_8888 : bitmap.getConfig(), false);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            // also cancels the request if the load is interrupted
+            Glide.with(mContext).clear(target);
+        }
+    }
+
+    @Nullable
+    private Bitmap loadEmbeddedPicture(String uri, Size size) {
+        if (uri.isEmpty() || isRemote(uri)) {
+            return null;
+        }
+
+        EmbeddedPictureLoader loader = mEmbeddedPictureLoader;
+        if (loader != null) {
+            byte[] picture = loader.loadEmbeddedPicture(uri);
+            Bitmap bitmap = picture == null ? null : decodeSampled(picture, size.getPixels());
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+
+        try {
+            retriever.setDataSource(mContext, Uri.parse(uri));
+            byte[] picture = retriever.getEmbeddedPicture();
+            if (picture == null) {
+                return null;
+            }
+
+            return decodeSampled(picture, size.getPixels());
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private static boolean isRemote(String uri) {
+        String lowerCase = uri.toLowerCase(Locale.ENGLISH);
+        return lowerCase.startsWith("http://") || lowerCase.startsWith("https://");
+    }
+
+    @Nullable
+    private static Bitmap decodeSampled(byte[] data, int pixels) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, pixels);
+
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null) {
+            return null;
+        }
+
+        return scaleDown(bitmap, pixels);
+    }
+
+    /**
+     * Returns the largest power of 2 that keeps the longer side of the image not smaller than
+     * the given pixels.
+     */
+    static int calculateInSampleSize(int width, int height, int pixels) {
+        int longer = Math.max(width, height);
+        int inSampleSize = 1;
+
+        while (longer / (inSampleSize * 2) >= pixels) {
+            inSampleSize *= 2;
+        }
+
+        return inSampleSize;
+    }
+
+    private static Bitmap scaleDown(Bitmap bitmap, int pixels) {
+        int longer = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longer <= pixels) {
+            return bitmap;
+        }
+
+        float scale = pixels / (float) longer;
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private void writeDiskCache(String key, Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean png = bitmap.hasAlpha();
+        if (!bitmap.compress(png ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+            return;
+        }
+
+        MusicCache.Writer writer = null;
+        try {
+            writer = mDiskCache.openWriter(key);
+            if (writer == null) {
+                return;
+            }
+
+            if (writer.getLength() > 0) {
+                // a partial file left behind by a killed process, written again by the next load
+                writer.close();
+                mDiskCache.remove(key);
+                return;
+            }
+
+            byte[] data = out.toByteArray();
+            writer.write(data, 0, data.length);
+            writer.commit();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private static void closeQuietly(MusicCache.Writer writer) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
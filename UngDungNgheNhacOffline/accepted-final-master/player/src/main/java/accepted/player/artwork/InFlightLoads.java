@@ -0,0 +1,54 @@
+package accepted.player.artwork;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * De-duplicates concurrent loads of the same key: the first caller runs the load on its own
+ * thread, the others wait for and share its result. Thread-safe.
+ */
+final class InFlightLoads<K, V> {
+    private final ConcurrentMap<K, FutureTask<V>> mLoads;
+
+    InFlightLoads() {
+        mLoads = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Runs the loader, or waits for the load of the same key that is already running.
+     *
+     * @throws ExecutionException   if the loader throws.
+     * @throws InterruptedException if the current thread is interrupted while waiting, the
+     *                              shared load goes on for the other callers.
+     */
+    V load(@NonNull K key, @NonNull Callable<V> loader) throws ExecutionException, InterruptedException {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(loader);
+
+        FutureTask<V> task = new FutureTask<>(loader);
+        FutureTask<V> running = mLoads.putIfAbsent(key, task);
+
+        if (running != null) {
+            return running.get();
+        }
+
+        try {
+            task.run();
+        } finally {
+            mLoads.remove(key, task);
+        }
+
+        return task.get();
+    }
+
+    int size() {
+        return mLoads.size();
+    }
+}
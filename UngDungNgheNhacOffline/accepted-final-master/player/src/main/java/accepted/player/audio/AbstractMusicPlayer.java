@@ -5,6 +5,10 @@ import accepted.player.helper.VolumeEaseHelper;
 public abstract class AbstractMusicPlayer implements MusicPlayer {
     private final VolumeEaseHelper mVolumeEaseHelper;
 
+    private float mGain = 1.0F;
+    private float mLeftVolume = 1.0F;
+    private float mRightVolume = 1.0F;
+
     public AbstractMusicPlayer() {
         mVolumeEaseHelper = new VolumeEaseHelper(this, new VolumeEaseHelper.Callback() {
             @Override
@@ -26,6 +30,14 @@ public abstract class AbstractMusicPlayer implements MusicPlayer {
 
     public abstract void startEx();
 
+    /**
+     * Starts without the volume fade-in, for callers that drive the volume themselves.
+     */
+    public void startWithoutEase() {
+        mVolumeEaseHelper.cancel();
+        startEx();
+    }
+
     @Override
     public final void pause() {
         mVolumeEaseHelper.pause();
@@ -49,6 +61,32 @@ public abstract class AbstractMusicPlayer implements MusicPlayer {
 
     public abstract void releaseEx();
 
+    /**
+     * Applies the gain and passes the volume to {@link #setVolumeEx(float, float)}. A subclass
+     * that overrides this method instead plays without the gain.
+     */
+    @Override
+    public void setVolume(float leftVolume, float rightVolume) {
+        mLeftVolume = leftVolume;
+        mRightVolume = rightVolume;
+        setVolumeEx(leftVolume * mGain, rightVolume * mGain);
+    }
+
+    /**
+     * Sets the volume of the underlying player, the gain is already applied.
+     */
+    public void setVolumeEx(float leftVolume, float rightVolume) {
+    }
+
+    /**
+     * A gain in [0, 1] that is applied on top of every {@link #setVolume(float, float)}, used for
+     * the loudness normalization.
+     */
+    public void setGain(float gain) {
+        mGain = Math.max(0F, Math.min(1F, gain));
+        setVolumeEx(mLeftVolume * mGain, mRightVolume * mGain);
+    }
+
     @Override
     public void quiet() {
         mVolumeEaseHelper.quiet();
@@ -217,7 +217,7 @@ public class MediaMusicPlayer extends AbstractMusicPlayer {
     }
 
     @Override
-    public void setVolume(float leftVolume, float rightVolume) {
+    public void setVolumeEx(float leftVolume, float rightVolume) {
         mMediaPlayer.setVolume(leftVolume, rightVolume);
     }
 
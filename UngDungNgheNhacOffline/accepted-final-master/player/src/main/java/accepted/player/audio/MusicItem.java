@@ -24,6 +24,10 @@ public final class MusicItem implements Parcelable {
     private boolean forbidSeek;
     @Nullable
     private Bundle extra;
+    // set by MusicItemListCodec, builds the extra on the first getExtra(); the item is shared by
+    // the player thread and the main thread, so the extra is guarded by the item's lock
+    @Nullable
+    private ExtraLoader extraLoader;
 
     public MusicItem() {
         this.musicId = "";
@@ -46,8 +50,9 @@ public final class MusicItem implements Parcelable {
         iconUri = source.iconUri;
         duration = source.duration;
         forbidSeek = source.forbidSeek;
-        if (source.extra != null) {
-            extra = new Bundle(source.extra);
+        Bundle sourceExtra = source.getExtra();
+        if (sourceExtra != null) {
+            extra = new Bundle(sourceExtra);
         }
     }
 
@@ -133,14 +138,25 @@ public final class MusicItem implements Parcelable {
     }
 
     @Nullable
-    public Bundle getExtra() {
+    public synchronized Bundle getExtra() {
+        if (extraLoader != null) {
+            extra = extraLoader.load();
+            extraLoader = null;
+        }
+
         return extra;
     }
 
-    public void setExtra(@Nullable Bundle extra) {
+    public synchronized void setExtra(@Nullable Bundle extra) {
+        this.extraLoader = null;
         this.extra = extra;
     }
 
+    synchronized void setExtraLoader(@NonNull ExtraLoader extraLoader) {
+        this.extraLoader = extraLoader;
+        this.extra = null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -197,7 +213,7 @@ public final class MusicItem implements Parcelable {
         dest.writeString(this.iconUri);
         dest.writeInt(this.duration);
         dest.writeByte((byte) (this.forbidSeek ? 1 : 0));
-        dest.writeParcelable(extra, 0);
+        dest.writeParcelable(getExtra(), 0);
     }
 
     protected MusicItem(Parcel in) {
@@ -224,6 +240,11 @@ public final class MusicItem implements Parcelable {
         }
     };
 
+    interface ExtraLoader {
+        @NonNull
+        Bundle load();
+    }
+
     public static class Builder {
         private String musicId = "";
         private String title = "";
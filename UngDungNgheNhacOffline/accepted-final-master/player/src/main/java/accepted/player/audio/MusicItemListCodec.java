@@ -0,0 +1,365 @@
+package accepted.player.audio;
+
+import android.os.Bundle;
+import android.os.Parcel;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact parcel format for a list of {@link MusicItem}.
+ * <p>
+ * Strings are written once to a string table and referenced by index, which pays off because
+ * artist and album repeat a lot. Duration and flags are primitive columns. Extra values that are
+ * long, int, float or String in every item are written as columns too; anything else goes to a
+ * per-item residual {@link Bundle}. The extra of a read item is only built when
+ * {@link MusicItem#getExtra()} is called.
+ */
+public final class MusicItemListCodec {
+    private static final int FIELD_COUNT = 6;       // musicId, title, artist, album, uri, iconUri
+
+    private static final int FLAG_FORBID_SEEK = 1;
+    private static final int FLAG_EXTRA = 1 << 1;
+    private static final int FLAG_RESIDUAL = 1 << 2;
+
+    private static final int TYPE_NONE = -1;
+    private static final int TYPE_LONG = 0;
+    private static final int TYPE_INT = 1;
+    private static final int TYPE_FLOAT = 2;
+    private static final int TYPE_STRING = 3;
+
+    private MusicItemListCodec() {
+        throw new AssertionError();
+    }
+
+    public static void write(@NonNull Parcel dest, @NonNull List<MusicItem> items) {
+        Preconditions.checkNotNull(dest);
+        Preconditions.checkNotNull(items);
+
+        int size = items.size();
+        StringTable strings = new StringTable();
+        int[] fields = new int[size * FIELD_COUNT];
+        int[] durations = new int[size];
+        int[] flags = new int[size];
+        Bundle[] extras = new Bundle[size];
+
+        for (int i = 0; i < size; i++) {
+            MusicItem item = items.get(i);
+            int field = i * FIELD_COUNT;
+            fields[field] = strings.indexOf(item.getMusicId());
+            fields[field + 1] = strings.indexOf(item.getTitle());
+            fields[field + 2] = strings.indexOf(item.getArtist());
+            fields[field + 3] = strings.indexOf(item.getAlbum());
+            fields[field + 4] = strings.indexOf(item.getUri());
+            fields[field + 5] = strings.indexOf(item.getIconUri());
+            durations[i] = item.getDuration();
+
+            extras[i] = item.getExtra();
+            flags[i] = (item.isForbidSeek() ? FLAG_FORBID_SEEK : 0) | (extras[i] == null ? 0 : FLAG_EXTRA);
+        }
+
+        List<Column> columns = createColumns(extras, strings);
+        Bundle[] residuals = new Bundle[size];
+        for (int i = 0; i < size; i++) {
+            residuals[i] = residualOf(extras[i], columns);
+            if (residuals[i] != null) {
+                flags[i] |= FLAG_RESIDUAL;
+            }
+        }
+
+        dest.writeInt(size);
+        strings.writeToParcel(dest);
+        dest.writeIntArray(fields);
+        dest.writeIntArray(durations);
+        dest.writeIntArray(flags);
+
+        dest.writeInt(columns.size());
+        for (Column column : columns) {
+            column.writeToParcel(dest);
+        }
+
+        for (Bundle residual : residuals) {
+            if (residual != null) {
+                dest.writeBundle(residual);
+            }
+        }
+    }
+
+    @NonNull
+    public static ArrayList<MusicItem> read(@NonNull Parcel in) {
+        Preconditions.checkNotNull(in);
+
+        int size = in.readInt();
+        String[] strings = StringTable.readFromParcel(in);
+        int[] fields = in.createIntArray();
+        int[] durations = in.createIntArray();
+        int[] flags = in.createIntArray();
+
+        Column[] columns = new Column[in.readInt()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.readFromParcel(in, size);
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ArrayList<MusicItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MusicItem item = new MusicItem();
+            int field = i * FIELD_COUNT;
+            item.setMusicId(strings[fields[field]]);
+            item.setTitle(strings[fields[field + 1]]);
+            item.setArtist(strings[fields[field + 2]]);
+            item.setAlbum(strings[fields[field + 3]]);
+            item.setUri(strings[fields[field + 4]]);
+            item.setIconUri(strings[fields[field + 5]]);
+            item.setDuration(durations[i]);
+            item.setForbidSeek((flags[i] & FLAG_FORBID_SEEK) != 0);
+
+            if ((flags[i] & FLAG_EXTRA) != 0) {
+                // a Bundle read from a parcel is only unparcelled on first access
+                Bundle residual = (flags[i] & FLAG_RESIDUAL) != 0 ? in.readBundle(classLoader) : null;
+                item.setExtraLoader(new ColumnExtraLoader(strings, columns, i, residual));
+            }
+
+            items.add(item);
+        }
+
+        return items;
+    }
+
+    private static List<Column> createColumns(Bundle[] extras, StringTable strings) {
+        Map<String, Integer> types = new LinkedHashMap<>();
+        for (Bundle extra : extras) {
+            if (extra == null || extra.isEmpty()) {
+                continue;
+            }
+
+            for (String key : extra.keySet()) {
+                int type = typeOf(extra.get(key));
+                Integer knownType = types.get(key);
+                types.put(key, knownType == null || knownType == type ? type : TYPE_NONE);
+            }
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : types.entrySet()) {
+            if (entry.getValue() != TYPE_NONE) {
+                columns.add(Column.create(entry.getKey(), entry.getValue(), extras, strings));
+            }
+        }
+
+        return columns;
+    }
+
+    private static int typeOf(Object value) {
+        if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Integer) {
+            return TYPE_INT;
+        } else if (value instanceof Float) {
+            return TYPE_FLOAT;
+        } else if (value instanceof String) {
+            return TYPE_STRING;
+        }
+        return TYPE_NONE;
+    }
+
+    private static Bundle residualOf(Bundle extra, List<Column> columns) {
+        if (extra == null || coveredByColumns(extra, columns)) {
+            return null;
+        }
+
+        Bundle residual = new Bundle(extra);
+        for (Column column : columns) {
+            residual.remove(column.mKey);
+        }
+        return residual.isEmpty() ? null : residual;
+    }
+
+    private static boolean coveredByColumns(Bundle extra, List<Column> columns) {
+        int covered = 0;
+        for (Column column : columns) {
+            if (extra.containsKey(column.mKey)) {
+                covered++;
+            }
+        }
+        return covered == extra.size();
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> mIndexes = new HashMap<>();
+        private final List<String> mStrings = new ArrayList<>();
+
+        int indexOf(String string) {
+            Integer index = mIndexes.get(string);
+            if (index == null) {
+                index = mStrings.size();
+                mIndexes.put(string, index);
+                mStrings.add(string);
+            }
+            return index;
+        }
+
+        void writeToParcel(Parcel dest) {
+            dest.writeInt(mStrings.size());
+            for (String string : mStrings) {
+                dest.writeString(string);
+            }
+        }
+
+        static String[] readFromParcel(Parcel in) {
+            String[] strings = new String[in.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readString();
+            }
+            return strings;
+        }
+    }
+
+    private static final class Column {
+        final String mKey;
+        final int mType;
+        final int[] mPresent;       // bit set
+        long[] mLongs;
+        int[] mInts;                // TYPE_INT values, or string indexes for TYPE_STRING
+        float[] mFloats;
+
+        private Column(String key, int type, int size) {
+            mKey = key;
+            mType = type;
+            mPresent = new int[(size + 31) / 32];
+        }
+
+        static Column create(String key, int type, Bundle[] extras, StringTable strings) {
+            int size = extras.length;
+            Column column = new Column(key, type, size);
+            switch (type) {
+                case TYPE_LONG:
+                    column.mLongs = new long[size];
+                    break;
+                case TYPE_FLOAT:
+                    column.mFloats = new float[size];
+                    break;
+                default:
+                    column.mInts = new int[size];
+                    break;
+            }
+
+            for (int i = 0; i < size; i++) {
+                Bundle extra = extras[i];
+                if (extra == null || !extra.containsKey(key)) {
+                    continue;
+                }
+
+                column.mPresent[i >> 5] |= 1 << (i & 31);
+                switch (type) {
+                    case TYPE_LONG:
+                        column.mLongs[i] = extra.getLong(key);
+                        break;
+                    case TYPE_INT:
+                        column.mInts[i] = extra.getInt(key);
+                        break;
+                    case TYPE_FLOAT:
+                        column.mFloats[i] = extra.getFloat(key);
+                        break;
+                    case TYPE_STRING:
+                        column.mInts[i] = strings.indexOf(extra.getString(key));
+                        break;
+                }
+            }
+
+            return column;
+        }
+
+        boolean isPresent(int index) {
+            return (mPresent[index >> 5] & (1 << (index & 31))) != 0;
+        }
+
+        void writeToParcel(Parcel dest) {
+            dest.writeString(mKey);
+            dest.writeInt(mType);
+            dest.writeIntArray(mPresent);
+            switch (mType) {
+                case TYPE_LONG:
+                    dest.writeLongArray(mLongs);
+                    break;
+                case TYPE_FLOAT:
+                    dest.writeFloatArray(mFloats);
+                    break;
+                default:
+                    dest.writeIntArray(mInts);
+                    break;
+            }
+        }
+
+        static Column readFromParcel(Parcel in, int size) {
+            String key = in.readString();
+            int type = in.readInt();
+
+            Column column = new Column(key, type, size);
+            in.readIntArray(column.mPresent);
+            switch (type) {
+                case TYPE_LONG:
+                    column.mLongs = in.createLongArray();
+                    break;
+                case TYPE_FLOAT:
+                    column.mFloats = in.createFloatArray();
+                    break;
+                default:
+                    column.mInts = in.createIntArray();
+                    break;
+            }
+
+            return column;
+        }
+
+        void putValue(Bundle extra, int index, String[] strings) {
+            switch (mType) {
+                case TYPE_LONG:
+                    extra.putLong(mKey, mLongs[index]);
+                    break;
+                case TYPE_INT:
+                    extra.putInt(mKey, mInts[index]);
+                    break;
+                case TYPE_FLOAT:
+                    extra.putFloat(mKey, mFloats[index]);
+                    break;
+                case TYPE_STRING:
+                    extra.putString(mKey, strings[mInts[index]]);
+                    break;
+            }
+        }
+    }
+
+    private static final class ColumnExtraLoader implements MusicItem.ExtraLoader {
+        private final String[] mStrings;
+        private final Column[] mColumns;
+        private final int mIndex;
+        private final Bundle mResidual;
+
+        ColumnExtraLoader(String[] strings, Column[] columns, int index, Bundle residual) {
+            mStrings = strings;
+            mColumns = columns;
+            mIndex = index;
+            mResidual = residual;
+        }
+
+        @NonNull
+        @Override
+        public Bundle load() {
+            Bundle extra = mResidual == null ? new Bundle() : mResidual;
+            for (Column column : mColumns) {
+                if (column.isPresent(mIndex)) {
+                    column.putValue(extra, mIndex, mStrings);
+                }
+            }
+            return extra;
+        }
+    }
+}
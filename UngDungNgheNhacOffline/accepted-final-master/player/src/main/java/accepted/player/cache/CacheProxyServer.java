@@ -0,0 +1,680 @@
+package accepted.player.cache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A loopback HTTP server that plays http(s) music through a {@link MusicCache}.
+ * <p>
+ * A music file is requested with {@link #getProxyUrl(String, String)}. A whole cached file is
+ * served from disk without any network access. Otherwise the cached prefix of the file is served
+ * from disk and the rest is downloaded, the downloaded bytes are written to the client and
+ * appended to the cache at the same time. Range requests are supported, a range that starts after
+ * the cached prefix is proxied without being cached.
+ * <p>
+ * Each connection serves one request on its own thread and is closed afterwards.
+ * <p>
+ * The port is reachable by any app on the device, so a proxy url is signed with an HMAC of its
+ * key and url, keyed by a secret drawn each time the server starts. A request whose signature does
+ * not match is rejected: other apps can neither use the server as a relay nor write to the cache
+ * under the key of another url.
+ */
+public final class CacheProxyServer {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final int MAX_HEADER_LINE_LENGTH = 8 * 1024;
+    private static final int SECRET_LENGTH = 32;
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{1,64}");
+    private static final Pattern SIGNATURE_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final Pattern UNSATISFIED_CONTENT_RANGE_PATTERN = Pattern.compile("bytes \\*/(\\d+)");
+
+    private final MusicCache mCache;
+
+    @Nullable
+    private ServerSocket mServerSocket;
+    @Nullable
+    private ExecutorService mExecutor;
+    @Nullable
+    private byte[] mSecret;
+
+    public CacheProxyServer(@NonNull MusicCache cache) {
+        Preconditions.checkNotNull(cache);
+        mCache = cache;
+    }
+
+    /**
+     * Returns the cache key of a music file, the variant tells apart the files of the same uri,
+     * e.g. the sound quality.
+     */
+    @NonNull
+    public static String cacheKey(@NonNull String uri, @NonNull String variant) {
+        Preconditions.checkNotNull(uri);
+        Preconditions.checkNotNull(variant);
+
+        return Hashing.sha256()
+                .hashString(uri + '\n' + variant, Charsets.UTF_8)
+                .toString();
+    }
+
+    /**
+     * Whether the uri can be played through the proxy.
+     */
+    public static boolean isProxyable(@NonNull String uri) {
+        String lowerCase = uri.toLowerCase(Locale.ENGLISH);
+        return lowerCase.startsWith("http://") || lowerCase.startsWith("https://");
+    }
+
+    @NonNull
+    public MusicCache getCache() {
+        return mCache;
+    }
+
+    public boolean isCached(@NonNull String key) {
+        return mCache.isCached(key);
+    }
+
+    /**
+     * Binds the server to a free loopback port and starts to accept connections.
+     */
+    public synchronized void start() throws IOException {
+        if (mServerSocket != null) {
+            return;
+        }
+
+        final byte[] secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+
+        final ServerSocket serverSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, "CacheProxyServer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        mServerSocket = serverSocket;
+        mExecutor = executor;
+        mSecret = secret;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections(serverSocket, executor, secret);
+            }
+        });
+    }
+
+    public synchronized void shutdown() {
+        if (mServerSocket == null || mExecutor == null) {
+            return;
+        }
+
+        closeQuietly(mServerSocket);
+        mExecutor.shutdownNow();
+        mServerSocket = null;
+        mExecutor = null;
+        mSecret = null;
+    }
+
+    public synchronized boolean isStarted() {
+        return mServerSocket != null;
+    }
+
+    /**
+     * Returns the url to play instead of the given url.
+     *
+     * @param key the cache key, see {@link #cacheKey(String, String)}.
+     * @throws IllegalStateException if the server is not started.
+     */
+    @NonNull
+    public synchronized String getProxyUrl(@NonNull String url, @NonNull String key) {
+        Preconditions.checkNotNull(url);
+        Preconditions.checkArgument(KEY_PATTERN.matcher(key).matches(), "invalid key: " + key);
+        Preconditions.checkState(mServerSocket != null && mSecret != null, "server not started");
+
+        try {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/" + key
+                    + "?sig=" + sign(mSecret, key, url)
+                    + "&url=" + URLEncoder.encode(url, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String sign(byte[] secret, String key, String url) {
+        return Hashing.hmacSha256(secret)
+                .hashString(key + '\n' + url, Charsets.UTF_8)
+                .toString();
+    }
+
+    private static boolean isSigned(byte[] secret, Request request) {
+        byte[] expected = sign(secret, request.key, request.url).getBytes(Charsets.US_ASCII);
+        // in constant time
+        return MessageDigest.isEqual(expected, request.signature.getBytes(Charsets.US_ASCII));
+    }
+
+    private void acceptConnections(ServerSocket serverSocket, ExecutorService executor, final byte[] secret) {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket, secret);
+                    }
+                });
+            } catch (IOException e) {
+                // closed by shutdown()
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket, byte[] secret) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            Request request = Request.read(in);
+            if (request == null) {
+                writeStatus(out, 400, "Bad Request");
+                writeEmptyBody(out);
+                return;
+            }
+
+            if (!isSigned(secret, request)) {
+                writeStatus(out, 403, "Forbidden");
+                writeEmptyBody(out);
+                return;
+            }
+
+            File file = mCache.getCachedFile(request.key);
+            if (file != null) {
+                serveFile(request, file, out);
+                return;
+            }
+
+            serveUpstream(request, out);
+        } catch (SocketException e) {
+            // the client closed the connection, e.g. on seek
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private void serveFile(Request request, File file, OutputStream out) throws IOException {
+        long length = file.length();
+        long start = request.start;
+        long end = request.end < 0 ? length - 1 : Math.min(request.end, length - 1);
+
+        if (start >= length) {
+            writeStatus(out, 416, "Range Not Satisfiable");
+            writeHeader(out, "Content-Range", "bytes */" + length);
+            writeEmptyBody(out);
+            return;
+        }
+
+        writeRangeHeaders(out, request, start, end, length);
+        if (request.isHead()) {
+            out.flush();
+            return;
+        }
+
+        copyFile(file, start, end - start + 1, out);
+        out.flush();
+    }
+
+    private void serveUpstream(Request request, OutputStream out) throws IOException {
+        MusicCache.Writer writer = request.isHead() ? null : mCache.openWriter(request.key);
+
+        try {
+            if (writer != null && request.start <= writer.getLength()) {
+                if (request.end >= 0 && request.end < writer.getLength()) {
+                    // the range is in the cached prefix, the total length is unknown
+                    writeStatus(out, 206, "Partial Content");
+                    writeHeader(out, "Content-Range", "bytes " + request.start + "-" + request.end + "/*");
+                    writeBodyHeaders(out, request.url, request.end - request.start + 1);
+                    copyFile(mCache.getPartialFile(request.key), request.start, request.end - request.start + 1, out);
+                    out.flush();
+                    return;
+                }
+
+                if (serveAndCache(request, writer, out)) {
+                    return;
+                }
+            }
+
+            closeQuietly(writer);
+            writer = null;
+            proxy(request, out);
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Serves the cached prefix, then downloads the rest and writes it to both the client and the
+     * cache.
+     *
+     * @return false if nothing was written because the request can't be served this way.
+     */
+    private boolean serveAndCache(Request request, MusicCache.Writer writer, OutputStream out) throws IOException {
+        long prefixLength = writer.getLength();
+        HttpURLConnection connection = openUpstream(request, prefixLength, request.end);
+
+        try {
+            int code = connection.getResponseCode();
+            long upstreamStart;
+            long totalLength;
+
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                Matcher matcher = CONTENT_RANGE_PATTERN.matcher(nullToEmpty(connection.getHeaderField("Content-Range")));
+                if (!matcher.matches()) {
+                    return false;
+                }
+                upstreamStart = Long.parseLong(matcher.group(1));
+                totalLength = "*".equals(matcher.group(3)) ? -1 : Long.parseLong(matcher.group(3));
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                upstreamStart = 0;
+                totalLength = parseLong(connection.getHeaderField("Content-Length"));
+            } else if (code == 416 && prefixLength > 0) {
+                // the whole file was downloaded but not committed
+                Matcher matcher = UNSATISFIED_CONTENT_RANGE_PATTERN.matcher(nullToEmpty(connection.getHeaderField("Content-Range")));
+                if (!matcher.matches() || Long.parseLong(matcher.group(1)) != prefixLength) {
+                    return false;
+                }
+
+                writer.commit();
+                File file = mCache.getCachedFile(request.key);
+                if (file == null) {
+                    return false;
+                }
+                serveFile(request, file, out);
+                return true;
+            } else {
+                return false;
+            }
+
+            if (totalLength < 0 || upstreamStart > prefixLength || request.start >= totalLength) {
+                return false;
+            }
+
+            long end = request.end < 0 ? totalLength - 1 : Math.min(request.end, totalLength - 1);
+            writeRangeHeaders(out, request, request.start, end, totalLength);
+
+            copyFile(mCache.getPartialFile(request.key), request.start, prefixLength - request.start, out);
+
+            InputStream body = connection.getInputStream();
+            try {
+                skipFully(body, prefixLength - upstreamStart);
+                teeBody(body, out, writer, end + 1 - prefixLength);
+            } finally {
+                closeQuietly(body);
+            }
+            out.flush();
+
+            if (writer.getLength() == totalLength) {
+                writer.commit();
+            }
+            return true;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void teeBody(InputStream body, OutputStream out, MusicCache.Writer writer, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+
+        while (remaining > 0) {
+            int count = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (count < 0) {
+                throw new EOFException();
+            }
+
+            // cached first, the downloaded bytes are kept even if the client goes away
+            writer.write(buffer, 0, count);
+            out.write(buffer, 0, count);
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Relays the request to the upstream server as is.
+     */
+    private void proxy(Request request, OutputStream out) throws IOException {
+        HttpURLConnection connection = openUpstream(request, request.start, request.end);
+
+        try {
+            int code = connection.getResponseCode();
+            writeStatus(out, code, nullToEmpty(connection.getResponseMessage()));
+            for (String name : new String[]{"Content-Type", "Content-Length", "Content-Range", "Accept-Ranges"}) {
+                String value = connection.getHeaderField(name);
+                if (value != null) {
+                    writeHeader(out, name, value);
+                }
+            }
+            writeHeader(out, "Connection", "close");
+            out.write("\r\n".getBytes(Charsets.US_ASCII));
+
+            if (request.isHead()) {
+                out.flush();
+                return;
+            }
+
+            InputStream body = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (body != null) {
+                try {
+                    copy(body, out, Long.MAX_VALUE);
+                } finally {
+                    closeQuietly(body);
+                }
+            }
+            out.flush();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openUpstream(Request request, long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(request.url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setRequestMethod(request.isHead() ? "HEAD" : "GET");
+        // the byte offsets must be those of the file
+        connection.setRequestProperty("Accept-Encoding", "identity");
+
+        for (String[] header : request.headers) {
+            connection.setRequestProperty(header[0], header[1]);
+        }
+
+        if (start > 0 || end >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? end : ""));
+        }
+
+        return connection;
+    }
+
+    private static void writeRangeHeaders(OutputStream out, Request request, long start, long end, long totalLength) throws IOException {
+        if (request.hasRange) {
+            writeStatus(out, 206, "Partial Content");
+            writeHeader(out, "Content-Range", "bytes " + start + "-" + end + "/" + totalLength);
+        } else {
+            writeStatus(out, 200, "OK");
+        }
+        writeBodyHeaders(out, request.url, end - start + 1);
+    }
+
+    private static void writeBodyHeaders(OutputStream out, String url, long contentLength) throws IOException {
+        String contentType = URLConnection.guessContentTypeFromName(new URL(url).getPath());
+        writeHeader(out, "Content-Type", contentType == null ? "application/octet-stream" : contentType);
+        writeHeader(out, "Content-Length", String.valueOf(contentLength));
+        writeHeader(out, "Accept-Ranges", "bytes");
+        writeHeader(out, "Connection", "close");
+        out.write("\r\n".getBytes(Charsets.US_ASCII));
+    }
+
+    private static void writeStatus(OutputStream out, int code, String message) throws IOException {
+        out.write(("HTTP/1.1 " + code + " " + message + "\r\n").getBytes(Charsets.US_ASCII));
+    }
+
+    private static void writeHeader(OutputStream out, String name, String value) throws IOException {
+        out.write((name + ": " + value + "\r\n").getBytes(Charsets.US_ASCII));
+    }
+
+    private static void writeEmptyBody(OutputStream out) throws IOException {
+        writeHeader(out, "Content-Length", "0");
+        writeHeader(out, "Connection", "close");
+        out.write("\r\n".getBytes(Charsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void copyFile(File file, long offset, long length, OutputStream out) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+
+        InputStream in = new FileInputStream(file);
+        try {
+            skipFully(in, offset);
+            if (copy(in, out, length) < length) {
+                throw new EOFException();
+            }
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private static long copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long copied = 0;
+
+        while (copied < length) {
+            int count = in.read(buffer, 0, (int) Math.min(buffer.length, length - copied));
+            if (count < 0) {
+                break;
+            }
+            out.write(buffer, 0, count);
+            copied += count;
+        }
+
+        return copied;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static long parseLong(@Nullable String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String nullToEmpty(@Nullable String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static final class Request {
+        final String method;
+        final String key;
+        final String url;
+        final String signature;
+        // the headers forwarded to the upstream server
+        final List<String[]> headers;
+        final boolean hasRange;
+        final long start;
+        // inclusive, -1 if open-ended
+        final long end;
+
+        private Request(String method, String key, String url, String signature, List<String[]> headers,
+                        boolean hasRange, long start, long end) {
+            this.method = method;
+            this.key = key;
+            this.url = url;
+            this.signature = signature;
+            this.headers = headers;
+            this.hasRange = hasRange;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean isHead() {
+            return "HEAD".equals(method);
+        }
+
+        /**
+         * Returns null if the request is malformed or not supported.
+         */
+        @Nullable
+        static Request read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            if (requestLine == null) {
+                return null;
+            }
+
+            String[] parts = requestLine.split(" ");
+            if (parts.length != 3 || !("GET".equals(parts[0]) || "HEAD".equals(parts[0]))) {
+                return null;
+            }
+
+            // "/<key>?sig=<signature>&url=<url>"
+            String target = parts[1];
+            int query = target.indexOf("?sig=");
+            int urlParam = target.indexOf("&url=", Math.max(query, 0));
+            if (!target.startsWith("/") || query < 0 || urlParam < 0) {
+                return null;
+            }
+
+            String key = target.substring(1, query);
+            String signature = target.substring(query + "?sig=".length(), urlParam);
+            String url;
+            try {
+                url = URLDecoder.decode(target.substring(urlParam + "&url=".length()), "UTF-8");
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            if (!KEY_PATTERN.matcher(key).matches()
+                    || !SIGNATURE_PATTERN.matcher(signature).matches()
+                    || !isProxyable(url)) {
+                return null;
+            }
+
+            List<String[]> headers = new ArrayList<>();
+            boolean hasRange = false;
+            long start = 0;
+            long end = -1;
+
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+
+                if ("Range".equalsIgnoreCase(name)) {
+                    Matcher matcher = RANGE_PATTERN.matcher(value);
+                    // suffix ranges are not used by media players
+                    if (!matcher.matches() || matcher.group(1).isEmpty()) {
+                        return null;
+                    }
+                    hasRange = true;
+                    start = Long.parseLong(matcher.group(1));
+                    end = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+                } else if (isForwarded(name)) {
+                    headers.add(new String[]{name, value});
+                }
+            }
+
+            if (end >= 0 && end < start) {
+                return null;
+            }
+
+            return new Request(parts[0], key, url, signature, headers, hasRange, start, end);
+        }
+
+        private static boolean isForwarded(String name) {
+            String lowerCase = name.toLowerCase(Locale.ENGLISH);
+            return !(lowerCase.equals("host")
+                    || lowerCase.equals("connection")
+                    || lowerCase.equals("accept-encoding")
+                    || lowerCase.equals("keep-alive")
+                    || lowerCase.equals("transfer-encoding"));
+        }
+
+        @Nullable
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder builder = new StringBuilder();
+            int c;
+            while ((c = in.read()) >= 0) {
+                if (c == '\n') {
+                    int length = builder.length();
+                    if (length > 0 && builder.charAt(length - 1) == '\r') {
+                        builder.setLength(length - 1);
+                    }
+                    return builder.toString();
+                }
+
+                if (builder.length() >= MAX_HEADER_LINE_LENGTH) {
+                    return null;
+                }
+                builder.append((char) c);
+            }
+
+            return builder.length() > 0 ? builder.toString() : null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package accepted.player.cache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A size-bounded LRU disk cache of music files. Thread-safe.
+ * <p>
+ * An entry is first written to a {@code .part} file that only grows from its start, so that a
+ * partly downloaded entry can be resumed and its cached prefix served. It is renamed once the
+ * whole file is written. The least recently used files are deleted when the cache grows over its
+ * max size, the entries being written are kept.
+ */
+public final class MusicCache {
+    private static final String SUFFIX_PARTIAL = ".part";
+
+    private final File mDir;
+    private final long mMaxSize;
+
+    // file name to file size, in access order
+    private final LinkedHashMap<String, Long> mFiles;
+    private final Set<String> mWritingKeys;
+    private long mSize;
+
+    public MusicCache(@NonNull File dir, long maxSize) {
+        Preconditions.checkNotNull(dir);
+        Preconditions.checkArgument(maxSize > 0);
+
+        mDir = dir;
+        mMaxSize = maxSize;
+        mFiles = new LinkedHashMap<>(16, 0.75F, true);
+        mWritingKeys = new HashSet<>();
+
+        loadFiles();
+    }
+
+    private void loadFiles() {
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            return;
+        }
+
+        File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                long diff = o1.lastModified() - o2.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+
+        for (File file : files) {
+            mFiles.put(file.getName(), file.length());
+            mSize += file.length();
+        }
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Whether the whole file of the key is cached.
+     */
+    public synchronized boolean isCached(@NonNull String key) {
+        return mFiles.containsKey(key) && new File(mDir, key).exists();
+    }
+
+    /**
+     * Returns the whole file of the key and marks it as recently used, or null if it is not
+     * cached.
+     */
+    @Nullable
+    public synchronized File getCachedFile(@NonNull String key) {
+        if (mFiles.get(key) == null) {
+            return null;
+        }
+
+        File file = new File(mDir, key);
+        if (!file.exists()) {
+            removeFile(key);
+            return null;
+        }
+
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Returns the partial file of the key, its length is the length of the cached prefix.
+     */
+    @NonNull
+    public File getPartialFile(@NonNull String key) {
+        return new File(mDir, key + SUFFIX_PARTIAL);
+    }
+
+    /**
+     * Opens a writer that appends to the partial file of the key.
+     *
+     * @return null if the whole file is cached or another writer is open for the key.
+     */
+    @Nullable
+    public synchronized Writer openWriter(@NonNull String key) throws IOException {
+        Preconditions.checkNotNull(key);
+
+        if (isCached(key) || mWritingKeys.contains(key)) {
+            return null;
+        }
+
+        File partial = getPartialFile(key);
+        Writer writer = new Writer(key, partial, new FileOutputStream(partial, true));
+        mWritingKeys.add(key);
+        mFiles.put(partial.getName(), partial.length());
+        return writer;
+    }
+
+    public synchronized void remove(@NonNull String key) {
+        deleteFile(key);
+        deleteFile(getPartialFile(key).getName());
+    }
+
+    private void deleteFile(String name) {
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDir, name).delete();
+        removeFile(name);
+    }
+
+    private void removeFile(String name) {
+        Long size = mFiles.remove(name);
+        if (size != null) {
+            mSize -= size;
+        }
+    }
+
+    private synchronized void onWritten(String name, long length) {
+        Long old = mFiles.put(name, length);
+        mSize += length - (old == null ? 0 : old);
+        trim();
+    }
+
+    private synchronized void onCommitted(Writer writer) {
+        String partialName = writer.mFile.getName();
+        Long size = mFiles.remove(partialName);
+        mFiles.put(writer.mKey, size == null ? writer.mFile.length() : size);
+
+        if (!writer.mFile.renameTo(new File(mDir, writer.mKey))) {
+            removeFile(writer.mKey);
+            deleteFile(partialName);
+        }
+    }
+
+    private synchronized void onClosed(Writer writer) {
+        mWritingKeys.remove(writer.mKey);
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = mFiles.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            String name = entry.getKey();
+            String key = name.endsWith(SUFFIX_PARTIAL)
+                    ? name.substring(0, name.length() - SUFFIX_PARTIAL.length())
+                    : name;
+
+            if (mWritingKeys.contains(key)) {
+                continue;
+            }
+
+            // a reader of the file keeps it open until it is done on POSIX file systems
+            //noinspection ResultOfMethodCallIgnored
+            new File(mDir, name).delete();
+            mSize -= entry.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Appends to the partial file of a key. Not thread-safe, only one writer is open per key.
+     */
+    public final class Writer implements Closeable {
+        private final String mKey;
+        private final File mFile;
+        private final FileOutputStream mOutputStream;
+        private long mLength;
+        private boolean mClosed;
+
+        Writer(String key, File file, FileOutputStream outputStream) {
+            mKey = key;
+            mFile = file;
+            mOutputStream = outputStream;
+            mLength = file.length();
+        }
+
+        /**
+         * The length of the partial file, i.e. where the next write goes.
+         */
+        public long getLength() {
+            return mLength;
+        }
+
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            mOutputStream.write(buffer, offset, length);
+            mLength += length;
+            onWritten(mFile.getName(), mLength);
+        }
+
+        /**
+         * Closes the writer and marks the entry as whole.
+         */
+        public void commit() throws IOException {
+            mOutputStream.close();
+            onCommitted(this);
+            close();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) {
+                return;
+            }
+
+            mClosed = true;
+            try {
+                mOutputStream.close();
+            } finally {
+                onClosed(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package accepted.player.effect;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A peak limiter with instant attack and exponential release. No look-ahead, so the output never
+ * exceeds the threshold.
+ */
+final class Limiter {
+    private final float mThreshold;
+    private final float mRelease;
+    private float mGain = 1.0F;
+
+    /**
+     * @param threshold     the highest output sample, 1.0 is full scale.
+     * @param releaseMillis the time the gain takes to recover by 63%.
+     */
+    Limiter(int sampleRate, float threshold, float releaseMillis) {
+        Preconditions.checkArgument(sampleRate > 0);
+        Preconditions.checkArgument(threshold > 0);
+        Preconditions.checkArgument(releaseMillis > 0);
+
+        mThreshold = threshold;
+        mRelease = (float) Math.exp(-1000.0 / (releaseMillis * sampleRate));
+    }
+
+    /**
+     * Limits one frame in place.
+     */
+    void process(float[] frame, int channelCount) {
+        float peak = 0;
+        for (int channel = 0; channel < channelCount; channel++) {
+            float abs = Math.abs(frame[channel]);
+            if (abs > peak) {
+                peak = abs;
+            }
+        }
+
+        float target = peak > mThreshold ? mThreshold / peak : 1.0F;
+        if (target < mGain) {
+            mGain = target;
+        } else {
+            mGain = target + (mGain - target) * mRelease;
+        }
+
+        if (mGain < 1.0F) {
+            for (int channel = 0; channel < channelCount; channel++) {
+                frame[channel] *= mGain;
+            }
+        }
+    }
+
+    float getGain() {
+        return mGain;
+    }
+
+    void reset() {
+        mGain = 1.0F;
+    }
+}
@@ -0,0 +1,339 @@
+package accepted.player.effect;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A pure Java parametric equalizer followed by a {@link Limiter}, for players that render PCM
+ * themselves.
+ * <p>
+ * The equalizer is a cascade of biquads: a low shelf for the bass boost and one peaking filter per
+ * band. Flat sections are skipped. All state is allocated up front, so
+ * {@link #process(float[], int, int)} and {@link #process(short[], int, int)} never allocate.
+ * <p>
+ * The setters may be called from any thread, new coefficients are picked up at the start of the
+ * next buffer.
+ */
+public final class SoftwareAudioEffect {
+    /**
+     * The band count of the platform equalizer on most devices.
+     */
+    public static final int DEFAULT_BAND_COUNT = 5;
+    /**
+     * The strength range of the platform bass boost.
+     */
+    public static final int MAX_BASS_BOOST_STRENGTH = 1000;
+
+    private static final int[] DEFAULT_CENTER_FREQUENCIES = {60, 230, 910, 3600, 14000};
+    private static final double MIN_CENTER_FREQUENCY = 60;
+    private static final double MAX_CENTER_FREQUENCY = 14000;
+    private static final double BASS_BOOST_FREQUENCY = 100;
+    private static final double MAX_BASS_BOOST_DB = 12;
+    private static final double SHELF_SLOPE = 1.0;
+    private static final float LIMITER_THRESHOLD = 0.944F;      // -0.5 dBFS
+    private static final float LIMITER_RELEASE_MILLIS = 50;
+
+    // b0, b1, b2, a1, a2 of each section, normalized by a0
+    private static final int COEFFICIENT_COUNT = 5;
+
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final int mMaxBandCount;
+    private final int mMaxSectionCount;
+
+    private final Object mLock = new Object();
+    private final double[] mPendingCoefficients;
+    private int mPendingSectionCount;
+    private volatile boolean mDirty;
+
+    private final double[] mCoefficients;
+    private int mSectionCount;
+    private final double[] mState;          // z1, z2 of each section of each channel
+    private final float[] mFrame;
+    private final Limiter mLimiter;
+
+    // millibel, like the platform equalizer
+    private final short[] mBandLevels;
+    private int mBandCount;
+    private int mBassBoostStrength;
+    private boolean mEnabled = true;
+
+    /**
+     * @param sampleRate   the sample rate in Hz.
+     * @param channelCount the number of interleaved channels.
+     * @param maxBandCount the most bands {@link #setBandLevels(short[])} will be called with.
+     */
+    public SoftwareAudioEffect(int sampleRate, int channelCount, int maxBandCount) {
+        Preconditions.checkArgument(sampleRate > 0, "sampleRate must > 0");
+        Preconditions.checkArgument(channelCount > 0, "channelCount must > 0");
+        Preconditions.checkArgument(maxBandCount > 0, "maxBandCount must > 0");
+
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mMaxBandCount = maxBandCount;
+        mMaxSectionCount = maxBandCount + 1;
+
+        mPendingCoefficients = new double[mMaxSectionCount * COEFFICIENT_COUNT];
+        mCoefficients = new double[mMaxSectionCount * COEFFICIENT_COUNT];
+        mState = new double[channelCount * mMaxSectionCount * 2];
+        mFrame = new float[channelCount];
+        mLimiter = new Limiter(sampleRate, LIMITER_THRESHOLD, LIMITER_RELEASE_MILLIS);
+
+        mBandLevels = new short[maxBandCount];
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public int getMaxBandCount() {
+        return mMaxBandCount;
+    }
+
+    /**
+     * Sets the gain of each band, in millibel. The bands are spread over 60 Hz .. 14 kHz like the
+     * platform equalizer.
+     */
+    public void setBandLevels(short[] bandLevels) {
+        Preconditions.checkNotNull(bandLevels);
+        Preconditions.checkArgument(bandLevels.length <= mMaxBandCount, "too many bands");
+
+        synchronized (mLock) {
+            System.arraycopy(bandLevels, 0, mBandLevels, 0, bandLevels.length);
+            mBandCount = bandLevels.length;
+            updateCoefficients();
+        }
+    }
+
+    /**
+     * @param strength 0 .. {@link #MAX_BASS_BOOST_STRENGTH}, like the platform bass boost.
+     */
+    public void setBassBoostStrength(int strength) {
+        Preconditions.checkArgument(strength >= 0 && strength <= MAX_BASS_BOOST_STRENGTH);
+
+        synchronized (mLock) {
+            mBassBoostStrength = strength;
+            updateCoefficients();
+        }
+    }
+
+    /**
+     * A disabled effect leaves the audio untouched, so does an enabled one with every band flat.
+     */
+    public void setEnabled(boolean enabled) {
+        synchronized (mLock) {
+            mEnabled = enabled;
+            updateCoefficients();
+        }
+    }
+
+    public boolean isEnabled() {
+        synchronized (mLock) {
+            return mEnabled;
+        }
+    }
+
+    /**
+     * Clears the filter history, call it on seek or when the next track starts.
+     */
+    public void reset() {
+        for (int i = 0; i < mState.length; i++) {
+            mState[i] = 0;
+        }
+        mLimiter.reset();
+    }
+
+    /**
+     * @param pcm        interleaved samples in [-1, 1], processed in place.
+     * @param offset     the offset of the first sample.
+     * @param frameCount the number of frames, a frame has one sample per channel.
+     */
+    public void process(float[] pcm, int offset, int frameCount) {
+        Preconditions.checkPositionIndexes(offset, offset + frameCount * mChannelCount, pcm.length);
+
+        if (!applyPendingCoefficients()) {
+            return;
+        }
+
+        int index = offset;
+        for (int frame = 0; frame < frameCount; frame++) {
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                mFrame[channel] = filter(channel, pcm[index + channel]);
+            }
+
+            mLimiter.process(mFrame, mChannelCount);
+
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                pcm[index++] = mFrame[channel];
+            }
+        }
+    }
+
+    /**
+     * @param pcm        interleaved 16 bit samples, processed in place.
+     * @param offset     the offset of the first sample.
+     * @param frameCount the number of frames, a frame has one sample per channel.
+     */
+    public void process(short[] pcm, int offset, int frameCount) {
+        Preconditions.checkPositionIndexes(offset, offset + frameCount * mChannelCount, pcm.length);
+
+        if (!applyPendingCoefficients()) {
+            return;
+        }
+
+        int index = offset;
+        for (int frame = 0; frame < frameCount; frame++) {
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                mFrame[channel] = filter(channel, pcm[index + channel] / 32768.0F);
+            }
+
+            mLimiter.process(mFrame, mChannelCount);
+
+            for (int channel = 0; channel < mChannelCount; channel++) {
+                // the limiter keeps the sample below full scale
+                pcm[index++] = (short) (mFrame[channel] * 32767);
+            }
+        }
+    }
+
+    /**
+     * @return false if there is nothing to do: the effect is disabled or every section is flat.
+     */
+    private boolean applyPendingCoefficients() {
+        if (mDirty) {
+            synchronized (mLock) {
+                if (mPendingSectionCount > 0) {
+                    System.arraycopy(mPendingCoefficients, 0, mCoefficients, 0,
+                            mPendingSectionCount * COEFFICIENT_COUNT);
+                }
+                mSectionCount = mPendingSectionCount;
+                mDirty = false;
+            }
+        }
+        return mSectionCount > 0;
+    }
+
+    private float filter(int channel, float sample) {
+        double x = sample;
+        int z = channel * mMaxSectionCount * 2;
+        int c = 0;
+        for (int section = 0; section < mSectionCount; section++) {
+            double y = mCoefficients[c] * x + mState[z];
+            mState[z] = mCoefficients[c + 1] * x - mCoefficients[c + 3] * y + mState[z + 1];
+            mState[z + 1] = mCoefficients[c + 2] * x - mCoefficients[c + 4] * y;
+            x = y;
+            z += 2;
+            c += COEFFICIENT_COUNT;
+        }
+        return (float) x;
+    }
+
+    // guarded by mLock
+    private void updateCoefficients() {
+        if (!mEnabled) {
+            mPendingSectionCount = 0;
+            mDirty = true;
+            return;
+        }
+
+        int sectionCount = 0;
+        double bassBoostDb = MAX_BASS_BOOST_DB * mBassBoostStrength / MAX_BASS_BOOST_STRENGTH;
+        if (bassBoostDb > 0) {
+            lowShelf(mPendingCoefficients, sectionCount++, BASS_BOOST_FREQUENCY, bassBoostDb);
+        }
+
+        for (int band = 0; band < mBandCount; band++) {
+            if (mBandLevels[band] == 0) {
+                continue;
+            }
+
+            peaking(mPendingCoefficients, sectionCount++,
+                    getCenterFrequency(band, mBandCount),
+                    getQ(mBandCount),
+                    mBandLevels[band] / 100.0);
+        }
+
+        mPendingSectionCount = sectionCount;
+        mDirty = true;
+    }
+
+    private double clampFrequency(double frequency) {
+        // keep the center below Nyquist for low sample rates
+        return Math.min(frequency, mSampleRate * 0.45);
+    }
+
+    private void peaking(double[] coefficients, int section, double frequency, double q, double gainDb) {
+        double a = Math.pow(10, gainDb / 40);
+        double w0 = 2 * Math.PI * clampFrequency(frequency) / mSampleRate;
+        double alpha = Math.sin(w0) / (2 * q);
+        double cos = Math.cos(w0);
+
+        double a0 = 1 + alpha / a;
+        setSection(coefficients, section,
+                (1 + alpha * a) / a0,
+                -2 * cos / a0,
+                (1 - alpha * a) / a0,
+                -2 * cos / a0,
+                (1 - alpha / a) / a0);
+    }
+
+    private void lowShelf(double[] coefficients, int section, double frequency, double gainDb) {
+        double a = Math.pow(10, gainDb / 40);
+        double w0 = 2 * Math.PI * clampFrequency(frequency) / mSampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / 2 * Math.sqrt((a + 1 / a) * (1 / SHELF_SLOPE - 1) + 2);
+        double beta = 2 * Math.sqrt(a) * alpha;
+
+        double a0 = (a + 1) + (a - 1) * cos + beta;
+        setSection(coefficients, section,
+                a * ((a + 1) - (a - 1) * cos + beta) / a0,
+                2 * a * ((a - 1) - (a + 1) * cos) / a0,
+                a * ((a + 1) - (a - 1) * cos - beta) / a0,
+                -2 * ((a - 1) + (a + 1) * cos) / a0,
+                ((a + 1) + (a - 1) * cos - beta) / a0);
+    }
+
+    private static void setSection(double[] coefficients, int section,
+                                   double b0, double b1, double b2, double a1, double a2) {
+        int c = section * COEFFICIENT_COUNT;
+        coefficients[c] = b0;
+        coefficients[c + 1] = b1;
+        coefficients[c + 2] = b2;
+        coefficients[c + 3] = a1;
+        coefficients[c + 4] = a2;
+    }
+
+    /**
+     * Returns the center frequency of a band in Hz, the platform defaults for 5 bands, otherwise
+     * spaced evenly on a log scale over 60 Hz .. 14 kHz.
+     */
+    public static double getCenterFrequency(int band, int bandCount) {
+        Preconditions.checkElementIndex(band, bandCount);
+
+        if (bandCount == DEFAULT_BAND_COUNT) {
+            return DEFAULT_CENTER_FREQUENCIES[band];
+        }
+
+        if (bandCount == 1) {
+            return Math.sqrt(MIN_CENTER_FREQUENCY * MAX_CENTER_FREQUENCY);
+        }
+
+        double ratio = MAX_CENTER_FREQUENCY / MIN_CENTER_FREQUENCY;
+        return MIN_CENTER_FREQUENCY * Math.pow(ratio, (double) band / (bandCount - 1));
+    }
+
+    /**
+     * The Q that makes neighbouring bands meet at their half gain point.
+     */
+    private static double getQ(int bandCount) {
+        if (bandCount == 1) {
+            return 0.5;
+        }
+
+        double ratio = Math.pow(MAX_CENTER_FREQUENCY / MIN_CENTER_FREQUENCY, 1.0 / (bandCount - 1));
+        return Math.sqrt(ratio) / (ratio - 1);
+    }
+}
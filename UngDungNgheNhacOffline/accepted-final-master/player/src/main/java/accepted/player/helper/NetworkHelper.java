@@ -118,6 +118,13 @@ public class NetworkHelper {
         return capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI);
     }
 
+    /**
+     * Whether the active network is a wifi network that is not metered, e.g. not a mobile hotspot.
+     */
+    public boolean isUnmeteredNetwork() {
+        return isWifiNetwork() && !mConnectivityManager.isActiveNetworkMetered();
+    }
+
     @RequiresApi(Build.VERSION_CODES.P)
     private void subscribeNetworkStateApi28() {
         mConnectivityManager.registerNetworkCallback(
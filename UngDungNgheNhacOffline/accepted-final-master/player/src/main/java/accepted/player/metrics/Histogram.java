@@ -0,0 +1,191 @@
+package accepted.player.metrics;
+
+import android.os.Parcel;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative millisecond values.
+ * <p>
+ * The buckets are laid out like an HDR histogram: values below {@code 64} have a bucket each,
+ * above that every power of two is split into {@code 32} linear sub-buckets, so a recorded value
+ * is reported with an error below {@code 1/32}. Values above {@link #MAX_VALUE} are clamped.
+ * <p>
+ * Recording is wait-free apart from the max update and may be called from any thread.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The highest value that can be recorded, about 4.6 hours.
+     */
+    public static final long MAX_VALUE = (1L << 24) - 1;
+
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mTotalCount;
+    private final AtomicLong mSum;
+    private final AtomicLong mMax;
+
+    public Histogram() {
+        mCounts = new AtomicLongArray(BUCKET_COUNT);
+        mTotalCount = new AtomicLong();
+        mSum = new AtomicLong();
+        mMax = new AtomicLong();
+    }
+
+    static int bucketIndex(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, magnitude - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value that falls into the bucket.
+     */
+    static long highestEquivalentValue(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value, negative values are recorded as {@code 0}.
+     */
+    public void recordValue(long value) {
+        value = Math.min(Math.max(0, value), MAX_VALUE);
+
+        mCounts.incrementAndGet(bucketIndex(value));
+        mTotalCount.incrementAndGet();
+        mSum.addAndGet(value);
+
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * Copies the current values. Values recorded concurrently may be partially included.
+     */
+    @NonNull
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long totalCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = mCounts.get(i);
+            totalCount += counts[i];
+        }
+
+        return new Snapshot(counts, totalCount, mSum.get(), mMax.get());
+    }
+
+    /**
+     * An immutable copy of a {@link Histogram}.
+     */
+    public static final class Snapshot {
+        private final long[] mCounts;
+        private final long mTotalCount;
+        private final long mSum;
+        private final long mMax;
+
+        Snapshot(long[] counts, long totalCount, long sum, long max) {
+            mCounts = counts;
+            mTotalCount = totalCount;
+            mSum = sum;
+            mMax = max;
+        }
+
+        public long getTotalCount() {
+            return mTotalCount;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public double getMean() {
+            if (mTotalCount == 0) {
+                return 0;
+            }
+
+            return (double) mSum / mTotalCount;
+        }
+
+        /**
+         * Returns the value below or equal to which the given percentage of the recorded values
+         * fall, or {@code 0} if nothing was recorded.
+         *
+         * @param percentile a value in {@code [0, 100]}.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (mTotalCount == 0) {
+                return 0;
+            }
+
+            percentile = Math.min(Math.max(0, percentile), 100);
+            long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100 * mTotalCount));
+
+            long count = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                count += mCounts[i];
+                if (count >= countAtPercentile) {
+                    return Math.min(highestEquivalentValue(i), mMax);
+                }
+            }
+
+            return mMax;
+        }
+
+        // only the non-empty buckets are written
+        void writeToParcel(Parcel dest) {
+            int nonEmpty = 0;
+            for (long count : mCounts) {
+                if (count > 0) {
+                    nonEmpty++;
+                }
+            }
+
+            dest.writeLong(mSum);
+            dest.writeLong(mMax);
+            dest.writeInt(nonEmpty);
+            for (int i = 0; i < mCounts.length; i++) {
+                if (mCounts[i] > 0) {
+                    dest.writeInt(i);
+                    dest.writeLong(mCounts[i]);
+                }
+            }
+        }
+
+        static Snapshot createFromParcel(Parcel in) {
+            long sum = in.readLong();
+            long max = in.readLong();
+            long[] counts = new long[BUCKET_COUNT];
+            long totalCount = 0;
+
+            int nonEmpty = in.readInt();
+            for (int i = 0; i < nonEmpty; i++) {
+                int index = in.readInt();
+                long count = in.readLong();
+                counts[index] = count;
+                totalCount += count;
+            }
+
+            return new Snapshot(counts, totalCount, sum, max);
+        }
+    }
+}
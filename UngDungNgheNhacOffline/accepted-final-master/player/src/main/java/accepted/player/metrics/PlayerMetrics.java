@@ -0,0 +1,186 @@
+package accepted.player.metrics;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import accepted.player.audio.ErrorCode;
+
+/**
+ * A snapshot of the player health metrics recorded by the {@code PlayerService}, see
+ * {@code PlayerClient#requestPlayerMetrics}. The values are in milliseconds.
+ */
+public final class PlayerMetrics implements Parcelable {
+    private final long mRecordingTime;
+    private final Histogram.Snapshot mTimeToFirstAudio;
+    private final Histogram.Snapshot mPrepareTime;
+    private final Histogram.Snapshot mUriResolveTime;
+    private final Histogram.Snapshot mStallDuration;
+    private final Histogram.Snapshot mTrackSwitchGap;
+    private final long mStallCount;
+    private final long[] mErrorCounts;
+
+    PlayerMetrics(long recordingTime,
+                  Histogram.Snapshot timeToFirstAudio,
+                  Histogram.Snapshot prepareTime,
+                  Histogram.Snapshot uriResolveTime,
+                  Histogram.Snapshot stallDuration,
+                  Histogram.Snapshot trackSwitchGap,
+                  long stallCount,
+                  long[] errorCounts) {
+        mRecordingTime = recordingTime;
+        mTimeToFirstAudio = timeToFirstAudio;
+        mPrepareTime = prepareTime;
+        mUriResolveTime = uriResolveTime;
+        mStallDuration = stallDuration;
+        mTrackSwitchGap = trackSwitchGap;
+        mStallCount = stallCount;
+        mErrorCounts = errorCounts;
+    }
+
+    /**
+     * The time since the metrics started to be recorded.
+     */
+    public long getRecordingTime() {
+        return mRecordingTime;
+    }
+
+    @NonNull
+    public Histogram.Snapshot getTimeToFirstAudio() {
+        return mTimeToFirstAudio;
+    }
+
+    @NonNull
+    public Histogram.Snapshot getPrepareTime() {
+        return mPrepareTime;
+    }
+
+    @NonNull
+    public Histogram.Snapshot getUriResolveTime() {
+        return mUriResolveTime;
+    }
+
+    @NonNull
+    public Histogram.Snapshot getStallDuration() {
+        return mStallDuration;
+    }
+
+    @NonNull
+    public Histogram.Snapshot getTrackSwitchGap() {
+        return mTrackSwitchGap;
+    }
+
+    public long getStallCount() {
+        return mStallCount;
+    }
+
+    /**
+     * @param errorCode one of the {@link ErrorCode} constants.
+     */
+    public long getErrorCount(int errorCode) {
+        if (errorCode < 0 || errorCode >= mErrorCounts.length) {
+            return 0;
+        }
+
+        return mErrorCounts[errorCode];
+    }
+
+    public void dump(@NonNull PrintWriter writer) {
+        writer.println(String.format(Locale.ENGLISH, "recording time: %d s", mRecordingTime / 1000));
+        dumpHistogram(writer, "time to first audio", mTimeToFirstAudio);
+        dumpHistogram(writer, "prepare time", mPrepareTime);
+        dumpHistogram(writer, "uri resolve time", mUriResolveTime);
+        dumpHistogram(writer, "track switch gap", mTrackSwitchGap);
+        writer.println("stall count: " + mStallCount);
+        dumpHistogram(writer, "stall duration", mStallDuration);
+
+        writer.println("errors:");
+        for (int i = ErrorCode.NO_ERROR + 1; i < mErrorCounts.length; i++) {
+            if (mErrorCounts[i] > 0) {
+                writer.println("  " + getErrorName(i) + ": " + mErrorCounts[i]);
+            }
+        }
+    }
+
+    private static String getErrorName(int errorCode) {
+        switch (errorCode) {
+            case ErrorCode.NO_ERROR:
+                return "NO_ERROR";
+            case ErrorCode.ONLY_WIFI_NETWORK:
+                return "ONLY_WIFI_NETWORK";
+            case ErrorCode.PLAYER_ERROR:
+                return "PLAYER_ERROR";
+            case ErrorCode.NETWORK_ERROR:
+                return "NETWORK_ERROR";
+            case ErrorCode.FILE_NOT_FOUND:
+                return "FILE_NOT_FOUND";
+            case ErrorCode.DATA_LOAD_FAILED:
+                return "DATA_LOAD_FAILED";
+            case ErrorCode.GET_URL_FAILED:
+                return "GET_URL_FAILED";
+            case ErrorCode.OUT_OF_MEMORY:
+                return "OUT_OF_MEMORY";
+            case ErrorCode.UNKNOWN_ERROR:
+                return "UNKNOWN_ERROR";
+            default:
+                return "error " + errorCode;
+        }
+    }
+
+    private static void dumpHistogram(PrintWriter writer, String name, Histogram.Snapshot histogram) {
+        writer.println(String.format(Locale.ENGLISH,
+                "%s: count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                name,
+                histogram.getTotalCount(),
+                histogram.getMean(),
+                histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99),
+                histogram.getMax()));
+    }
+
+    // Parcelable
+    protected PlayerMetrics(Parcel in) {
+        mRecordingTime = in.readLong();
+        mTimeToFirstAudio = Histogram.Snapshot.createFromParcel(in);
+        mPrepareTime = Histogram.Snapshot.createFromParcel(in);
+        mUriResolveTime = Histogram.Snapshot.createFromParcel(in);
+        mStallDuration = Histogram.Snapshot.createFromParcel(in);
+        mTrackSwitchGap = Histogram.Snapshot.createFromParcel(in);
+        mStallCount = in.readLong();
+        mErrorCounts = in.createLongArray();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(mRecordingTime);
+        mTimeToFirstAudio.writeToParcel(dest);
+        mPrepareTime.writeToParcel(dest);
+        mUriResolveTime.writeToParcel(dest);
+        mStallDuration.writeToParcel(dest);
+        mTrackSwitchGap.writeToParcel(dest);
+        dest.writeLong(mStallCount);
+        dest.writeLongArray(mErrorCounts);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<PlayerMetrics> CREATOR = new Creator<PlayerMetrics>() {
+        @Override
+        public PlayerMetrics createFromParcel(Parcel in) {
+            return new PlayerMetrics(in);
+        }
+
+        @Override
+        public PlayerMetrics[] newArray(int size) {
+            return new PlayerMetrics[size];
+        }
+    };
+}
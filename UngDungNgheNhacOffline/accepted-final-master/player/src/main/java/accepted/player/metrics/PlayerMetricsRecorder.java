@@ -0,0 +1,120 @@
+package accepted.player.metrics;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import accepted.player.audio.ErrorCode;
+
+/**
+ * Records the player health metrics. All methods are lock-free and may be called from any thread,
+ * the values are in milliseconds.
+ */
+public final class PlayerMetricsRecorder {
+    static final int ERROR_CODE_COUNT = ErrorCode.UNKNOWN_ERROR + 1;
+
+    private final Histogram mTimeToFirstAudio;
+    private final Histogram mPrepareTime;
+    private final Histogram mUriResolveTime;
+    private final Histogram mStallDuration;
+    private final Histogram mTrackSwitchGap;
+    private final AtomicLong mStallCount;
+    private final AtomicLongArray mErrorCounts;
+    private final AtomicLong mStartTime;
+
+    public PlayerMetricsRecorder() {
+        mTimeToFirstAudio = new Histogram();
+        mPrepareTime = new Histogram();
+        mUriResolveTime = new Histogram();
+        mStallDuration = new Histogram();
+        mTrackSwitchGap = new Histogram();
+        mStallCount = new AtomicLong();
+        mErrorCounts = new AtomicLongArray(ERROR_CODE_COUNT);
+        mStartTime = new AtomicLong(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * From the play request to the first audible frame.
+     */
+    public void recordTimeToFirstAudio(long millis) {
+        mTimeToFirstAudio.recordValue(millis);
+    }
+
+    /**
+     * From the start of {@code MusicPlayer.prepare()} to its prepared callback.
+     */
+    public void recordPrepareTime(long millis) {
+        mPrepareTime.recordValue(millis);
+    }
+
+    /**
+     * The time taken to retrieve the uri of a music item.
+     */
+    public void recordUriResolveTime(long millis) {
+        mUriResolveTime.recordValue(millis);
+    }
+
+    /**
+     * Counts a stall when it begins, its duration is recorded by {@link #recordStallDuration(long)}.
+     */
+    public void recordStall() {
+        mStallCount.incrementAndGet();
+    }
+
+    public void recordStallDuration(long millis) {
+        mStallDuration.recordValue(millis);
+    }
+
+    /**
+     * From the playing music item change to the first audible frame of the new item.
+     */
+    public void recordTrackSwitchGap(long millis) {
+        mTrackSwitchGap.recordValue(millis);
+    }
+
+    /**
+     * @param errorCode one of the {@link ErrorCode} constants, unknown codes are counted as
+     *                  {@link ErrorCode#UNKNOWN_ERROR}.
+     */
+    public void recordError(int errorCode) {
+        if (errorCode < 0 || errorCode >= ERROR_CODE_COUNT) {
+            errorCode = ErrorCode.UNKNOWN_ERROR;
+        }
+
+        mErrorCounts.incrementAndGet(errorCode);
+    }
+
+    public void reset() {
+        mTimeToFirstAudio.reset();
+        mPrepareTime.reset();
+        mUriResolveTime.reset();
+        mStallDuration.reset();
+        mTrackSwitchGap.reset();
+        mStallCount.set(0);
+        for (int i = 0; i < ERROR_CODE_COUNT; i++) {
+            mErrorCounts.set(i, 0);
+        }
+        mStartTime.set(SystemClock.elapsedRealtime());
+    }
+
+    @NonNull
+    public PlayerMetrics snapshot() {
+        long[] errorCounts = new long[ERROR_CODE_COUNT];
+        for (int i = 0; i < ERROR_CODE_COUNT; i++) {
+            errorCounts[i] = mErrorCounts.get(i);
+        }
+
+        return new PlayerMetrics(
+                SystemClock.elapsedRealtime() - mStartTime.get(),
+                mTimeToFirstAudio.snapshot(),
+                mPrepareTime.snapshot(),
+                mUriResolveTime.snapshot(),
+                mStallDuration.snapshot(),
+                mTrackSwitchGap.snapshot(),
+                mStallCount.get(),
+                errorCounts);
+    }
+}
@@ -0,0 +1,22 @@
+package accepted.player.playlist;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+import accepted.player.audio.MusicItem;
+
+/**
+ * Supplies the items of a {@link Playlist} on demand, so a playlist can be created without
+ * creating all of its {@link MusicItem} up front.
+ *
+ * @see Playlist#Playlist(String, MusicItemSource, int, boolean, android.os.Bundle)
+ */
+public interface MusicItemSource {
+    /**
+     * Creates the items. Called at most once, by {@link Playlist#resolve()} or on the thread that
+     * first reads or parcels the playlist.
+     */
+    @NonNull
+    List<MusicItem> getMusicItems();
+}
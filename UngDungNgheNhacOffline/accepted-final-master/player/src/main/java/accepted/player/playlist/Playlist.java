@@ -12,23 +12,35 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import accepted.player.audio.MusicItem;
+import accepted.player.audio.MusicItemListCodec;
 import accepted.player.util.MusicItemUtil;
 
 public final class Playlist implements Iterable<MusicItem>, Parcelable {
     private static final String TAG = "Playlist";
     public static final int MAX_SIZE = 1000;
+    // any negative value but -1, a legacy parcel starts with the length of the name
+    private static final int PARCEL_FORMAT_COMPACT = -0x504C53;
 
     private final String mName;
-    private final String mToken;
-    private final ArrayList<MusicItem> mMusicItems;
     private final boolean mEditable;
     @Nullable
     private final Bundle mExtra;
 
+    // null once the items are resolved
+    @Nullable
+    private MusicItemSource mSource;
+    private int mPosition;
+
+    // guarded by this until resolved
+    private String mToken;
+    private ArrayList<MusicItem> mMusicItems;
+
     public Playlist(@NonNull String name, @NonNull List<MusicItem> items, boolean editable, @Nullable Bundle extra) {
         this(name, items, 0, editable, extra);
     }
@@ -45,15 +57,53 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
         mToken = generateToken();
     }
 
+    /**
+     * Creates a playlist whose items are only created when it is first read or parceled.
+     *
+     * @param position the position used to trim the items to {@link #MAX_SIZE}.
+     */
+    public Playlist(@NonNull String name, @NonNull MusicItemSource source, int position, boolean editable, @Nullable Bundle extra) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(source);
+
+        mName = name;
+        mSource = source;
+        mPosition = position;
+        mEditable = editable;
+        mExtra = extra;
+    }
+
+    /**
+     * Whether the items are created, always true unless the playlist was created from a
+     * {@link MusicItemSource}.
+     */
+    public synchronized boolean isResolved() {
+        return mSource == null;
+    }
+
+    /**
+     * Creates the items of a playlist created from a {@link MusicItemSource}, if they are not yet.
+     * Can be called on a worker thread, so that the items are not created by the first read on
+     * the main thread.
+     */
+    public synchronized void resolve() {
+        if (mSource == null) {
+            return;
+        }
+
+        mMusicItems = trim(excludeRepeatItem(mSource.getMusicItems()), mPosition);
+        mToken = generateToken();
+        mSource = null;
+    }
+
     private ArrayList<MusicItem> excludeRepeatItem(List<MusicItem> items) {
-        ArrayList<MusicItem> musicItems = new ArrayList<>();
+        ArrayList<MusicItem> musicItems = new ArrayList<>(items.size());
+        Set<MusicItem> seen = new HashSet<>(items.size() * 2);
 
         for (MusicItem item : items) {
-            if (musicItems.contains(item)) {
-                continue;
+            if (seen.add(item)) {
+                musicItems.add(item);
             }
-
-            musicItems.add(item);
         }
 
         return musicItems;
@@ -62,15 +112,23 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
     private ArrayList<MusicItem> trim(ArrayList<MusicItem> musicItems, int position) {
         int size = musicItems.size();
 
-        int start = 0;
-        int end = musicItems.size();
-
-        if (size > Playlist.MAX_SIZE) {
-            start = position - Math.max(0, Playlist.MAX_SIZE - (size - position));
-            end = position + Math.min(Playlist.MAX_SIZE, size - position);
+        if (size <= Playlist.MAX_SIZE) {
+            return musicItems;
         }
 
-        return new ArrayList<>(musicItems.subList(start, end));
+        int start = getTrimStart(size, position);
+        return new ArrayList<>(musicItems.subList(start, start + MAX_SIZE));
+    }
+
+    /**
+     * The index of the first item a playlist of {@code size} items keeps when it is trimmed to
+     * {@link #MAX_SIZE} items around {@code position}.
+     */
+    public static int getTrimStart(int size, int position) {
+        if (size <= MAX_SIZE) {
+            return 0;
+        }
+        return position - Math.max(0, MAX_SIZE - (size - position));
     }
 
     private String generateToken() {
@@ -90,6 +148,7 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
 
     @NonNull
     public String getToken() {
+        resolve();
         return mToken;
     }
 
@@ -98,25 +157,30 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
     }
 
     public boolean contains(MusicItem musicItem) {
+        resolve();
         return mMusicItems.contains(musicItem);
     }
 
     public MusicItem get(int index) throws IndexOutOfBoundsException {
+        resolve();
         return mMusicItems.get(index);
     }
 
     public int indexOf(@NonNull MusicItem musicItem) {
         Preconditions.checkNotNull(musicItem);
+        resolve();
         return mMusicItems.indexOf(musicItem);
     }
 
     public boolean isEmpty() {
+        resolve();
         return mMusicItems.isEmpty();
     }
 
     @NonNull
     @Override
     public Iterator<MusicItem> iterator() {
+        resolve();
         return new Iterator<MusicItem>() {
             private final Iterator<MusicItem> iterator = mMusicItems.iterator();
 
@@ -138,10 +202,12 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
     }
 
     public int size() {
+        resolve();
         return mMusicItems.size();
     }
 
     public List<MusicItem> getAllMusicItem() {
+        resolve();
         return new ArrayList<>(mMusicItems);
     }
 
@@ -161,6 +227,8 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
         }
 
         Playlist other = (Playlist) obj;
+        resolve();
+        other.resolve();
 
         return Objects.equal(mName, other.mName) &&
                 Objects.equal(mToken, other.mToken) &&
@@ -170,6 +238,7 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
 
     @Override
     public int hashCode() {
+        resolve();
         return Objects.hashCode(mName,
                 mToken,
                 mMusicItems,
@@ -178,18 +247,27 @@ public final class Playlist implements Iterable<MusicItem>, Parcelable {
 
     // Parcelable
     protected Playlist(Parcel in) {
+        int start = in.dataPosition();
+        boolean compact = in.readInt() == PARCEL_FORMAT_COMPACT;
+        if (!compact) {
+            // written before the compact format, e.g. the copy saved in MMKV by an older version
+            in.setDataPosition(start);
+        }
+
         mName = in.readString();
         mToken = in.readString();
-        mMusicItems = in.createTypedArrayList(MusicItem.CREATOR);
+        mMusicItems = compact ? MusicItemListCodec.read(in) : in.createTypedArrayList(MusicItem.CREATOR);
         mEditable = in.readByte() != 0;
         mExtra = in.readBundle(Thread.currentThread().getContextClassLoader());
     }
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        resolve();
+        dest.writeInt(PARCEL_FORMAT_COMPACT);
         dest.writeString(mName);
         dest.writeString(mToken);
-        dest.writeTypedList(mMusicItems);
+        MusicItemListCodec.write(dest, mMusicItems);
         dest.writeByte((byte) (mEditable ? 1 : 0));
         dest.writeBundle(mExtra);
     }
@@ -1,6 +1,7 @@
 package accepted.player.util;
 
 import android.content.Context;
+import android.os.Bundle;
 
 import androidx.annotation.NonNull;
 
@@ -15,10 +16,78 @@ import accepted.player.R;
 import accepted.player.audio.MusicItem;
 
 public final class MusicItemUtil {
+    private static final String KEY_LOUDNESS = "accepted.player.loudness";
+    private static final String KEY_PEAK = "accepted.player.peak";
+
+    /**
+     * The loudness the normalization aims at, in LUFS (ReplayGain 2.0 reference level).
+     */
+    public static final float REFERENCE_LOUDNESS = -18F;
+
     private MusicItemUtil() {
         throw new AssertionError();
     }
 
+    /**
+     * Stores the loudness analysis result in the extra of the music item.
+     *
+     * @param loudness the integrated loudness in LUFS.
+     * @param peak     the sample peak, 1.0 is full scale.
+     */
+    public static void putLoudness(@NonNull MusicItem musicItem, float loudness, float peak) {
+        Preconditions.checkNotNull(musicItem);
+
+        Bundle extra = musicItem.getExtra();
+        if (extra == null) {
+            extra = new Bundle();
+            musicItem.setExtra(extra);
+        }
+
+        extra.putFloat(KEY_LOUDNESS, loudness);
+        extra.putFloat(KEY_PEAK, peak);
+    }
+
+    public static boolean hasLoudness(@NonNull MusicItem musicItem) {
+        Preconditions.checkNotNull(musicItem);
+
+        Bundle extra = musicItem.getExtra();
+        return extra != null && extra.containsKey(KEY_LOUDNESS);
+    }
+
+    public static float getLoudness(@NonNull MusicItem musicItem) {
+        Preconditions.checkNotNull(musicItem);
+
+        Bundle extra = musicItem.getExtra();
+        return extra == null ? Float.NaN : extra.getFloat(KEY_LOUDNESS, Float.NaN);
+    }
+
+    public static float getPeak(@NonNull MusicItem musicItem) {
+        Preconditions.checkNotNull(musicItem);
+
+        Bundle extra = musicItem.getExtra();
+        return extra == null ? 0F : extra.getFloat(KEY_PEAK, 0F);
+    }
+
+    /**
+     * The gain that brings the music item to {@link #REFERENCE_LOUDNESS} without clipping. Only
+     * attenuates, since MusicPlayer volumes can not exceed 1.0. Returns 1.0 if the music item was
+     * not analyzed.
+     */
+    public static float getNormalizationGain(@NonNull MusicItem musicItem) {
+        float loudness = getLoudness(musicItem);
+        if (Float.isNaN(loudness) || Float.isInfinite(loudness)) {
+            return 1F;
+        }
+
+        float gain = (float) Math.pow(10, (REFERENCE_LOUDNESS - loudness) / 20);
+        float peak = getPeak(musicItem);
+        if (peak > 0) {
+            gain = Math.min(gain, 1F / peak);
+        }
+
+        return Math.min(1F, gain);
+    }
+
     public static String getTitle(@NonNull MusicItem musicItem, @NonNull String defaultTitle) {
         Preconditions.checkNotNull(musicItem);
         Preconditions.checkNotNull(defaultTitle);
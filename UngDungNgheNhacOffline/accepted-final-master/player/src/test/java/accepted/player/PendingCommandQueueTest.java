@@ -0,0 +1,98 @@
+package accepted.player;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PendingCommandQueueTest {
+    private final List<String> mReplayed = new ArrayList<>();
+
+    private Runnable command(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mReplayed.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void replayInOrder() {
+        PendingCommandQueue queue = new PendingCommandQueue();
+        queue.add(PendingCommandQueue.Kind.OTHER, command("setPlaylist"));
+        queue.add(PendingCommandQueue.Kind.PLAY, command("play"));
+        queue.add(PendingCommandQueue.Kind.OTHER, command("skipToNext"));
+
+        queue.replay();
+
+        assertEquals(Arrays.asList("setPlaylist", "play", "skipToNext"), mReplayed);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void lastPlayOrPauseWins() {
+        PendingCommandQueue queue = new PendingCommandQueue();
+        queue.add(PendingCommandQueue.Kind.PLAY, command("play"));
+        queue.add(PendingCommandQueue.Kind.PAUSE, command("pause"));
+        queue.add(PendingCommandQueue.Kind.PLAY, command("play2"));
+
+        queue.replay();
+
+        assertEquals(Arrays.asList("play2"), mReplayed);
+    }
+
+    @Test
+    public void playPausePairsCancel() {
+        PendingCommandQueue queue = new PendingCommandQueue();
+        queue.add(PendingCommandQueue.Kind.PLAY_PAUSE, command("playPause"));
+        queue.add(PendingCommandQueue.Kind.PLAY_PAUSE, command("playPause"));
+        queue.add(PendingCommandQueue.Kind.PLAY_PAUSE, command("playPause3"));
+
+        queue.replay();
+
+        assertEquals(Arrays.asList("playPause3"), mReplayed);
+    }
+
+    @Test
+    public void lastSeekWins() {
+        PendingCommandQueue queue = new PendingCommandQueue();
+        queue.add(PendingCommandQueue.Kind.SEEK, command("seek1"));
+        queue.add(PendingCommandQueue.Kind.OTHER, command("skipToNext"));
+        queue.add(PendingCommandQueue.Kind.SEEK, command("seek2"));
+        queue.add(PendingCommandQueue.Kind.PLAY, command("play"));
+        queue.add(PendingCommandQueue.Kind.SEEK, command("seek3"));
+
+        queue.replay();
+
+        assertEquals(Arrays.asList("seek1", "skipToNext", "play", "seek3"), mReplayed);
+    }
+
+    @Test
+    public void bounded() {
+        PendingCommandQueue queue = new PendingCommandQueue();
+        for (int i = 0; i < PendingCommandQueue.MAX_SIZE + 1; i++) {
+            queue.add(PendingCommandQueue.Kind.OTHER, command("command" + i));
+        }
+
+        assertEquals(PendingCommandQueue.MAX_SIZE, queue.size());
+
+        queue.replay();
+
+        assertEquals("command1", mReplayed.get(0));
+    }
+
+    @Test
+    public void clear() {
+        PendingCommandQueue queue = new PendingCommandQueue();
+        queue.add(PendingCommandQueue.Kind.PLAY, command("play"));
+        queue.clear();
+
+        queue.replay();
+
+        assertTrue(mReplayed.isEmpty());
+    }
+}
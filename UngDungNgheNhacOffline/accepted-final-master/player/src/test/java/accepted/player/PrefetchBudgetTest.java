@@ -0,0 +1,52 @@
+package accepted.player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PrefetchBudgetTest {
+    private static final long WINDOW = 1000;
+
+    @Test
+    public void acquireWithinBudget() {
+        PrefetchBudget budget = new PrefetchBudget(100, WINDOW);
+
+        assertTrue(budget.tryAcquire(60, 0));
+        assertTrue(budget.tryAcquire(40, 10));
+        assertFalse(budget.tryAcquire(1, 20));
+        assertEquals(100, budget.getUsedBytes());
+    }
+
+    @Test
+    public void failedAcquireTakesNothing() {
+        PrefetchBudget budget = new PrefetchBudget(100, WINDOW);
+
+        assertTrue(budget.tryAcquire(60, 0));
+        assertFalse(budget.tryAcquire(60, 10));
+        assertEquals(60, budget.getUsedBytes());
+        assertTrue(budget.tryAcquire(40, 20));
+    }
+
+    @Test
+    public void releaseGivesBackUnusedBytes() {
+        PrefetchBudget budget = new PrefetchBudget(100, WINDOW);
+
+        assertTrue(budget.tryAcquire(100, 0));
+        budget.release(30);
+        assertEquals(70, budget.getUsedBytes());
+        assertTrue(budget.tryAcquire(30, 10));
+
+        budget.release(1000);
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    public void budgetIsRenewedAfterWindow() {
+        PrefetchBudget budget = new PrefetchBudget(100, WINDOW);
+
+        assertTrue(budget.tryAcquire(100, 500));
+        assertFalse(budget.tryAcquire(1, 500 + WINDOW - 1));
+        assertTrue(budget.tryAcquire(100, 500 + WINDOW));
+        assertFalse(budget.tryAcquire(1, 500 + WINDOW));
+    }
+}
@@ -0,0 +1,97 @@
+package accepted.player;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ShuffleOrderTest {
+    private static final int SIZE = 10;
+
+    @Test
+    public void nextItemsInOrder() {
+        ShuffleOrder shuffleOrder = new ShuffleOrder(new Random(1));
+
+        assertEquals(Arrays.asList(4, 5), shuffleOrder.getUpcomingPositions(2, SIZE, 3, PlayMode.PLAYLIST_LOOP, false));
+        assertEquals(Arrays.asList(5, 6), shuffleOrder.getUpcomingPositions(2, SIZE, 4, PlayMode.SINGLE_ONCE, false));
+        // wraps around, without the play position
+        assertEquals(Arrays.asList(9, 0), shuffleOrder.getUpcomingPositions(2, SIZE, 8, PlayMode.PLAYLIST_LOOP, false));
+        assertEquals(Collections.singletonList(1), shuffleOrder.getUpcomingPositions(2, 2, 0, PlayMode.PLAYLIST_LOOP, false));
+    }
+
+    @Test
+    public void nothingUpcoming() {
+        ShuffleOrder shuffleOrder = new ShuffleOrder(new Random(1));
+
+        assertTrue(shuffleOrder.getUpcomingPositions(2, SIZE, 3, PlayMode.LOOP, false).isEmpty());
+        assertTrue(shuffleOrder.getUpcomingPositions(2, 1, 0, PlayMode.SHUFFLE, false).isEmpty());
+        assertTrue(shuffleOrder.getUpcomingPositions(2, 0, 0, PlayMode.PLAYLIST_LOOP, false).isEmpty());
+    }
+
+    @Test
+    public void confirmedNextPlayGoesFirstInShuffle() {
+        ShuffleOrder shuffleOrder = new ShuffleOrder(new Random(1));
+
+        List<Integer> positions = shuffleOrder.getUpcomingPositions(2, SIZE, 3, PlayMode.SHUFFLE, true);
+
+        assertEquals(2, positions.size());
+        assertEquals(4, (int) positions.get(0));
+        // drawn after the confirmed position
+        assertEquals(shuffleOrder.peek(0, 4, SIZE), (int) positions.get(1));
+    }
+
+    @Test
+    public void prefetchedShufflePositionsAreTheOnesThatPlay() {
+        ShuffleOrder shuffleOrder = new ShuffleOrder(new Random(7));
+
+        int playPosition = 0;
+        for (int i = 0; i < 100; i++) {
+            List<Integer> upcoming = shuffleOrder.getUpcomingPositions(2, SIZE, playPosition, PlayMode.SHUFFLE, false);
+            assertFalse(upcoming.isEmpty());
+            assertFalse(upcoming.contains(playPosition));
+            assertEquals(upcoming.size(), new HashSet<>(upcoming).size());
+
+            // skip to next, like AbstractPlayer.getNextPosition()
+            int next = shuffleOrder.peek(0, playPosition, SIZE);
+            shuffleOrder.removeFirst();
+
+            assertEquals((int) upcoming.get(0), next);
+            assertNotEquals(playPosition, next);
+            playPosition = next;
+        }
+    }
+
+    @Test
+    public void playPositionChangedOutsideTheOrder() {
+        ShuffleOrder shuffleOrder = new ShuffleOrder(new Random(3));
+
+        int first = shuffleOrder.peek(0, 0, SIZE);
+        int second = shuffleOrder.peek(1, 0, SIZE);
+
+        // e.g. skipToPosition() to the first drawn position: it is not played twice
+        assertEquals(second, shuffleOrder.peek(0, first, SIZE));
+    }
+
+    @Test
+    public void clearDrawsAgain() {
+        ShuffleOrder shuffleOrder = new ShuffleOrder(new Random(5));
+
+        List<Integer> drawn = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            drawn.add(shuffleOrder.peek(i, 0, SIZE));
+        }
+        shuffleOrder.clear();
+
+        List<Integer> drawnAgain = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            drawnAgain.add(shuffleOrder.peek(i, 0, SIZE));
+        }
+        assertNotEquals(drawn, drawnAgain);
+    }
+}
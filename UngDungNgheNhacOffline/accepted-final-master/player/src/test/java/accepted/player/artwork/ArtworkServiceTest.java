@@ -0,0 +1,38 @@
+package accepted.player.artwork;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ArtworkServiceTest {
+
+    @Test
+    public void sizeOf() {
+        assertEquals(ArtworkService.Size.LIST_ROW, ArtworkService.Size.of(48, 48));
+        assertEquals(ArtworkService.Size.LIST_ROW, ArtworkService.Size.of(160, 100));
+        assertEquals(ArtworkService.Size.NOTIFICATION, ArtworkService.Size.of(161, 161));
+        assertEquals(ArtworkService.Size.WIDGET, ArtworkService.Size.of(300, 384));
+        assertEquals(ArtworkService.Size.PLAYER, ArtworkService.Size.of(600, 600));
+        assertEquals(ArtworkService.Size.PLAYER, ArtworkService.Size.of(2000, 2000));
+        assertEquals(ArtworkService.Size.PLAYER, ArtworkService.Size.of(Integer.MIN_VALUE, Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void calculateInSampleSize() {
+        assertEquals(1, ArtworkService.calculateInSampleSize(100, 100, 256));
+        assertEquals(1, ArtworkService.calculateInSampleSize(511, 300, 256));
+        assertEquals(2, ArtworkService.calculateInSampleSize(512, 300, 256));
+        assertEquals(4, ArtworkService.calculateInSampleSize(1200, 1200, 256));
+        assertEquals(8, ArtworkService.calculateInSampleSize(800, 3000, 256));
+    }
+
+    @Test
+    public void cacheKeyTellsSizesApart() {
+        String uri = "file:///sdcard/music.mp3";
+
+        assertEquals(ArtworkService.cacheKey(uri, null, ArtworkService.Size.PLAYER),
+                ArtworkService.cacheKey(uri, "", ArtworkService.Size.PLAYER));
+        assertNotEquals(ArtworkService.cacheKey(uri, null, ArtworkService.Size.PLAYER),
+                ArtworkService.cacheKey(uri, null, ArtworkService.Size.LIST_ROW));
+    }
+}
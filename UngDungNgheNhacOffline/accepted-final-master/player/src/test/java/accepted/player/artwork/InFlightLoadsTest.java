@@ -0,0 +1,118 @@
+package accepted.player.artwork;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InFlightLoadsTest {
+    private static final int THREAD_COUNT = 8;
+
+    @Test
+    public void concurrentLoadsOfSameKeyRunOnce() throws Exception {
+        final InFlightLoads<String, String> loads = new InFlightLoads<>();
+        final AtomicInteger loadCount = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final Callable<String> loader = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loadCount.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "artwork";
+            }
+        };
+
+        final List<String> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String result = loads.load("key", loader);
+                        synchronized (results) {
+                            results.add(result);
+                        }
+                    } catch (ExecutionException | InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        started.await();
+        // let the other threads join the running load
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, loadCount.get());
+        assertEquals(THREAD_COUNT, results.size());
+        for (String result : results) {
+            assertEquals("artwork", result);
+        }
+        assertEquals(0, loads.size());
+    }
+
+    @Test
+    public void differentKeysLoadSeparately() throws Exception {
+        InFlightLoads<String, Integer> loads = new InFlightLoads<>();
+
+        assertEquals(1, (int) loads.load("a", constant(1)));
+        assertEquals(2, (int) loads.load("b", constant(2)));
+    }
+
+    @Test
+    public void finishedLoadIsNotShared() throws Exception {
+        InFlightLoads<String, Integer> loads = new InFlightLoads<>();
+
+        assertEquals(1, (int) loads.load("a", constant(1)));
+        assertEquals(2, (int) loads.load("a", constant(2)));
+        assertEquals(0, loads.size());
+    }
+
+    @Test
+    public void failedLoadIsRemoved() throws Exception {
+        InFlightLoads<String, Integer> loads = new InFlightLoads<>();
+
+        try {
+            loads.load("a", new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(0, loads.size());
+        assertEquals(1, (int) loads.load("a", constant(1)));
+    }
+
+    private static Callable<Integer> constant(final int value) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return value;
+            }
+        };
+    }
+}
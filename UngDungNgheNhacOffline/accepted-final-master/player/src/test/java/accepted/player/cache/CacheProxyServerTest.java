@@ -0,0 +1,236 @@
+package accepted.player.cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays through the proxy against a stub HTTP server that supports range requests.
+ */
+public class CacheProxyServerTest {
+    private static final int FILE_SIZE = 200_000;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private byte[] mFile;
+    private HttpServer mStubServer;
+    private List<String> mUpstreamRanges;
+    private String mUrl;
+
+    private MusicCache mCache;
+    private CacheProxyServer mProxyServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new byte[FILE_SIZE];
+        new Random(1).nextBytes(mFile);
+        mUpstreamRanges = Collections.synchronizedList(new ArrayList<String>());
+
+        mStubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mStubServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serveStub(exchange);
+            }
+        });
+        mStubServer.start();
+        mUrl = "http://127.0.0.1:" + mStubServer.getAddress().getPort() + "/music/test.mp3";
+
+        mCache = new MusicCache(mTemporaryFolder.newFolder("cache"), 1024 * 1024);
+        mProxyServer = new CacheProxyServer(mCache);
+        mProxyServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mProxyServer.shutdown();
+        mStubServer.stop(0);
+    }
+
+    private void serveStub(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        mUpstreamRanges.add(String.valueOf(range));
+
+        int start = 0;
+        int end = mFile.length - 1;
+        int code = 200;
+
+        if (range != null) {
+            Matcher matcher = RANGE_PATTERN.matcher(range);
+            assertTrue(matcher.matches());
+            start = Integer.parseInt(matcher.group(1));
+            if (!matcher.group(2).isEmpty()) {
+                end = Math.min(end, Integer.parseInt(matcher.group(2)));
+            }
+
+            if (start >= mFile.length) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + mFile.length);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+
+            code = 206;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + mFile.length);
+        }
+
+        exchange.sendResponseHeaders(code, end - start + 1);
+        OutputStream body = exchange.getResponseBody();
+        body.write(mFile, start, end - start + 1);
+        body.close();
+    }
+
+    private byte[] get(String key, String range, int expectedCode) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mProxyServer.getProxyUrl(mUrl, key)).openConnection();
+        if (range != null) {
+            connection.setRequestProperty("Range", range);
+        }
+
+        assertEquals(expectedCode, connection.getResponseCode());
+
+        InputStream in = connection.getInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        connection.disconnect();
+
+        return out.toByteArray();
+    }
+
+    @Test
+    public void cachedFileIsServedWithoutNetwork() throws IOException {
+        String key = CacheProxyServer.cacheKey(mUrl, "STANDARD");
+        assertFalse(mProxyServer.isCached(key));
+
+        assertArrayEquals(mFile, get(key, null, 200));
+        assertTrue(mProxyServer.isCached(key));
+
+        mStubServer.stop(0);
+        mUpstreamRanges.clear();
+
+        assertArrayEquals(mFile, get(key, null, 200));
+        assertArrayEquals(Arrays.copyOfRange(mFile, 1000, 2000), get(key, "bytes=1000-1999", 206));
+        assertTrue(mUpstreamRanges.isEmpty());
+    }
+
+    @Test
+    public void partialDownloadIsResumed() throws IOException {
+        String key = CacheProxyServer.cacheKey(mUrl, "STANDARD");
+
+        MusicCache.Writer writer = mCache.openWriter(key);
+        assertNotNull(writer);
+        writer.write(mFile, 0, 50_000);
+        writer.close();
+
+        // the cached prefix and the downloaded rest
+        assertArrayEquals(Arrays.copyOfRange(mFile, 10_000, FILE_SIZE), get(key, "bytes=10000-", 206));
+        assertEquals(Collections.singletonList("bytes=50000-"), mUpstreamRanges);
+        assertTrue(mProxyServer.isCached(key));
+    }
+
+    @Test
+    public void rangeAfterPrefixIsProxied() throws IOException {
+        String key = CacheProxyServer.cacheKey(mUrl, "STANDARD");
+
+        assertArrayEquals(Arrays.copyOfRange(mFile, 150_000, FILE_SIZE), get(key, "bytes=150000-", 206));
+        assertEquals(Collections.singletonList("bytes=150000-"), mUpstreamRanges);
+        assertFalse(mProxyServer.isCached(key));
+        assertEquals(0, mCache.getPartialFile(key).length());
+    }
+
+    @Test
+    public void uncommittedWholeFileIsCommitted() throws IOException {
+        String key = CacheProxyServer.cacheKey(mUrl, "STANDARD");
+
+        MusicCache.Writer writer = mCache.openWriter(key);
+        assertNotNull(writer);
+        writer.write(mFile, 0, FILE_SIZE);
+        writer.close();
+
+        assertArrayEquals(mFile, get(key, null, 200));
+        assertTrue(mProxyServer.isCached(key));
+    }
+
+    @Test
+    public void requestsNotSignedByTheServerAreRejected() throws IOException {
+        String key = CacheProxyServer.cacheKey(mUrl, "STANDARD");
+        String otherKey = CacheProxyServer.cacheKey("http://127.0.0.1/other.mp3", "STANDARD");
+        String proxyUrl = mProxyServer.getProxyUrl(mUrl, key);
+
+        // the key of another url
+        assertEquals(403, getResponseCode(proxyUrl.replace(key, otherKey)));
+        // another url under the key
+        assertEquals(403, getResponseCode(proxyUrl + "%3Fx"));
+        // no signature
+        assertEquals(400, getResponseCode(proxyUrl.replaceFirst("sig=[0-9a-f]+&", "")));
+
+        // a server started again signs with another secret
+        mProxyServer.shutdown();
+        mProxyServer.start();
+        int port = new URL(mProxyServer.getProxyUrl(mUrl, key)).getPort();
+        assertEquals(403, getResponseCode(proxyUrl.replaceFirst(":\\d+/", ":" + port + "/")));
+
+        assertTrue(mUpstreamRanges.isEmpty());
+        assertFalse(mProxyServer.isCached(otherKey));
+    }
+
+    private static int getResponseCode(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() throws IOException {
+        MusicCache cache = new MusicCache(mTemporaryFolder.newFolder("lru"), 2 * FILE_SIZE + 1);
+
+        for (String key : new String[]{"a", "b", "c"}) {
+            MusicCache.Writer writer = cache.openWriter(key);
+            assertNotNull(writer);
+            writer.write(mFile, 0, FILE_SIZE);
+            writer.commit();
+
+            if (key.equals("b")) {
+                // "a" becomes more recently used than "b"
+                assertNotNull(cache.getCachedFile("a"));
+            }
+        }
+
+        assertTrue(cache.isCached("a"));
+        assertFalse(cache.isCached("b"));
+        assertTrue(cache.isCached("c"));
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+    }
+}
@@ -0,0 +1,79 @@
+package accepted.player.effect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the cost of {@link SoftwareAudioEffect} in ns per stereo frame, with every band and the
+ * bass boost active.
+ * <p>
+ * Run {@link #main(String[])} from the IDE, or the test classpath with java.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(SoftwareAudioEffectBenchmark.FRAME_COUNT)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SoftwareAudioEffectBenchmark {
+    static final int FRAME_COUNT = 4096;
+    private static final int CHANNEL_COUNT = 2;
+
+    @Param({"44100", "48000"})
+    public int sampleRate;
+
+    private SoftwareAudioEffect mEffect;
+    private float[] mFloatPcm;
+    private short[] mShortPcm;
+
+    @Setup
+    public void setup() {
+        mEffect = new SoftwareAudioEffect(sampleRate, CHANNEL_COUNT, SoftwareAudioEffect.DEFAULT_BAND_COUNT);
+        mEffect.setBandLevels(new short[]{300, -200, 100, 400, 600});
+        mEffect.setBassBoostStrength(500);
+
+        Random random = new Random(0);
+        mFloatPcm = new float[FRAME_COUNT * CHANNEL_COUNT];
+        mShortPcm = new short[FRAME_COUNT * CHANNEL_COUNT];
+        for (int i = 0; i < mFloatPcm.length; i++) {
+            mFloatPcm[i] = random.nextFloat() * 0.5F - 0.25F;
+            mShortPcm[i] = (short) (mFloatPcm[i] * 32767);
+        }
+    }
+
+    @Benchmark
+    public float[] processFloat() {
+        mEffect.process(mFloatPcm, 0, FRAME_COUNT);
+        return mFloatPcm;
+    }
+
+    @Benchmark
+    public short[] processShort() {
+        mEffect.process(mShortPcm, 0, FRAME_COUNT);
+        return mShortPcm;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SoftwareAudioEffectBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,116 @@
+package accepted.player.effect;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SoftwareAudioEffectTest {
+    private static final int SAMPLE_RATE = 48_000;
+    private static final int CHANNEL_COUNT = 2;
+
+    @Test
+    public void flatIsUntouched() {
+        SoftwareAudioEffect effect = new SoftwareAudioEffect(SAMPLE_RATE, CHANNEL_COUNT, 5);
+        effect.setBandLevels(new short[5]);
+
+        float[] pcm = sine(1000, 1.0F, 1);
+        float[] expect = pcm.clone();
+        effect.process(pcm, 0, pcm.length / CHANNEL_COUNT);
+
+        assertArrayEquals(expect, pcm, 0F);
+    }
+
+    @Test
+    public void peakingBandBoostsItsCenter() {
+        SoftwareAudioEffect effect = new SoftwareAudioEffect(SAMPLE_RATE, CHANNEL_COUNT, 5);
+        // +12 dB at 910 Hz
+        effect.setBandLevels(new short[]{0, 0, 1200, 0, 0});
+
+        float[] pcm = sine(910, 0.01F, 1);
+        effect.process(pcm, 0, pcm.length / CHANNEL_COUNT);
+
+        assertEquals(0.01F * Math.pow(10, 12 / 20.0), peak(pcm, SAMPLE_RATE / 2), 0.001F);
+    }
+
+    @Test
+    public void peakingBandLeavesFarFrequencies() {
+        SoftwareAudioEffect effect = new SoftwareAudioEffect(SAMPLE_RATE, CHANNEL_COUNT, 5);
+        effect.setBandLevels(new short[]{0, 0, 0, 0, 1200});
+
+        float[] pcm = sine(100, 0.01F, 1);
+        effect.process(pcm, 0, pcm.length / CHANNEL_COUNT);
+
+        assertEquals(0.01F, peak(pcm, SAMPLE_RATE / 2), 0.0005F);
+    }
+
+    @Test
+    public void bassBoostRaisesLowFrequencies() {
+        SoftwareAudioEffect effect = new SoftwareAudioEffect(SAMPLE_RATE, CHANNEL_COUNT, 5);
+        effect.setBassBoostStrength(SoftwareAudioEffect.MAX_BASS_BOOST_STRENGTH);
+
+        float[] pcm = sine(30, 0.01F, 1);
+        effect.process(pcm, 0, pcm.length / CHANNEL_COUNT);
+
+        assertTrue(peak(pcm, SAMPLE_RATE / 2) > 0.03F);
+    }
+
+    @Test
+    public void limiterKeepsOutputBelowFullScale() {
+        SoftwareAudioEffect effect = new SoftwareAudioEffect(SAMPLE_RATE, CHANNEL_COUNT, 5);
+        effect.setBandLevels(new short[]{1500, 1500, 1500, 1500, 1500});
+
+        float[] sine = sine(1000, 1.0F, 1);
+        short[] pcm = new short[sine.length];
+        for (int i = 0; i < sine.length; i++) {
+            pcm[i] = (short) (sine[i] * 32767);
+        }
+        effect.process(pcm, 0, pcm.length / CHANNEL_COUNT);
+
+        for (short sample : pcm) {
+            assertTrue(Math.abs(sample) <= 32767 * 0.944F + 1);
+        }
+    }
+
+    @Test
+    public void disabledIsUntouched() {
+        SoftwareAudioEffect effect = new SoftwareAudioEffect(SAMPLE_RATE, CHANNEL_COUNT, 5);
+        effect.setBandLevels(new short[]{1500, 1500, 1500, 1500, 1500});
+        effect.setEnabled(false);
+
+        float[] pcm = sine(1000, 1.0F, 1);
+        float[] expect = pcm.clone();
+        effect.process(pcm, 0, pcm.length / CHANNEL_COUNT);
+
+        assertArrayEquals(expect, pcm, 0F);
+    }
+
+    @Test
+    public void centerFrequencies() {
+        assertEquals(910, SoftwareAudioEffect.getCenterFrequency(2, 5), 0);
+        assertEquals(60, SoftwareAudioEffect.getCenterFrequency(0, 10), 0.001);
+        assertEquals(14000, SoftwareAudioEffect.getCenterFrequency(9, 10), 0.001);
+    }
+
+    private static float[] sine(double frequency, float amplitude, int seconds) {
+        int frameCount = SAMPLE_RATE * seconds;
+        float[] pcm = new float[frameCount * CHANNEL_COUNT];
+        for (int frame = 0; frame < frameCount; frame++) {
+            float sample = (float) (amplitude * Math.sin(2 * Math.PI * frequency * frame / SAMPLE_RATE));
+            for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
+                pcm[frame * CHANNEL_COUNT + channel] = sample;
+            }
+        }
+        return pcm;
+    }
+
+    /**
+     * The peak after the filters settled.
+     */
+    private static float peak(float[] pcm, int fromFrame) {
+        float peak = 0;
+        for (int i = fromFrame * CHANNEL_COUNT; i < pcm.length; i++) {
+            peak = Math.max(peak, Math.abs(pcm[i]));
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,102 @@
+package accepted.player.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverAllValues() {
+        int lastIndex = -1;
+        for (long value = 0; value <= Histogram.MAX_VALUE; value += 1 + value / 64) {
+            int index = Histogram.bucketIndex(value);
+
+            assertTrue(index >= lastIndex);
+            assertTrue(index < Histogram.BUCKET_COUNT);
+            assertTrue(Histogram.highestEquivalentValue(index) >= value);
+            lastIndex = index;
+        }
+
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Histogram.MAX_VALUE));
+        assertEquals(Histogram.MAX_VALUE, Histogram.highestEquivalentValue(Histogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int value = 0; value < 64; value++) {
+            assertEquals(value, Histogram.highestEquivalentValue(Histogram.bucketIndex(value)));
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 1000; value++) {
+            histogram.recordValue(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getTotalCount());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 0.0);
+        assertEquals(1, snapshot.getValueAtPercentile(0));
+        assertEquals(500, snapshot.getValueAtPercentile(50), 500 / 32);
+        assertEquals(990, snapshot.getValueAtPercentile(99), 990 / 32);
+        assertEquals(1000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void clampsOutOfRangeValues() {
+        Histogram histogram = new Histogram();
+        histogram.recordValue(-1);
+        histogram.recordValue(Long.MAX_VALUE);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertEquals(Histogram.MAX_VALUE, snapshot.getMax());
+    }
+
+    @Test
+    public void reset() {
+        Histogram histogram = new Histogram();
+        histogram.recordValue(100);
+        histogram.reset();
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.getTotalCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final Histogram histogram = new Histogram();
+        final int threadCount = 4;
+        final int valueCount = 10_000;
+        final CountDownLatch latch = new CountDownLatch(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int value = 0; value < valueCount; value++) {
+                        histogram.recordValue(value);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(threadCount * valueCount, snapshot.getTotalCount());
+        assertEquals(valueCount - 1, snapshot.getMax());
+    }
+}
@@ -0,0 +1,290 @@
+package accepted.player.ui.equalizer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.MediaPlayer;
+import android.media.audiofx.BassBoost;
+import android.media.audiofx.Equalizer;
+import android.media.audiofx.Virtualizer;
+import android.os.Build;
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import accepted.player.ui.util.Preconditions;
+
+/**
+ * What the platform equalizer of this device offers: presets, bands and level range, plus the
+ * default settings of a new effect.
+ * <p>
+ * Probing needs the audio HAL, so it is done once per firmware and persisted; later reads come
+ * from memory or from the preferences.
+ */
+public final class AudioEffectCapabilities {
+    private static final String PREFERENCES_NAME = "accepted_ui_audio_effect_capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_DESCRIPTOR = "descriptor";
+    private static final int FORMAT_VERSION = 1;
+
+    private static AudioEffectCapabilities sInstance;
+
+    private final String[] mPresetNames;
+    private final short[][] mPresetBandLevels;
+    private final int[] mCenterFreqs;
+    private final int[][] mBandFreqRanges;
+    private final short[] mBandLevelRange;
+    private final AudioEffectSettings mDefaultSettings;
+
+    private AudioEffectCapabilities(String[] presetNames,
+                                    short[][] presetBandLevels,
+                                    int[] centerFreqs,
+                                    int[][] bandFreqRanges,
+                                    short[] bandLevelRange,
+                                    AudioEffectSettings defaultSettings) {
+        mPresetNames = presetNames;
+        mPresetBandLevels = presetBandLevels;
+        mCenterFreqs = centerFreqs;
+        mBandFreqRanges = bandFreqRanges;
+        mBandLevelRange = bandLevelRange;
+        mDefaultSettings = defaultSettings;
+    }
+
+    /**
+     * Returns the capabilities of this device, probing the platform effects only if they are not
+     * known for the current firmware yet.
+     */
+    @NonNull
+    public static synchronized AudioEffectCapabilities get(@NonNull Context context) {
+        Preconditions.checkNotNull(context);
+
+        if (sInstance != null) {
+            return sInstance;
+        }
+
+        SharedPreferences preferences = context.getApplicationContext()
+                .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        if (Build.FINGERPRINT.equals(preferences.getString(KEY_FINGERPRINT, ""))) {
+            sInstance = decode(preferences.getString(KEY_DESCRIPTOR, ""));
+        }
+
+        if (sInstance == null) {
+            sInstance = probe();
+            preferences.edit()
+                    .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                    .putString(KEY_DESCRIPTOR, encode(sInstance))
+                    .apply();
+        }
+
+        return sInstance;
+    }
+
+    private static AudioEffectCapabilities probe() {
+        MediaPlayer mediaPlayer = new MediaPlayer();
+        Equalizer equalizer = null;
+        BassBoost bassBoost = null;
+        Virtualizer virtualizer = null;
+        try {
+            int audioSessionId = mediaPlayer.getAudioSessionId();
+            equalizer = new Equalizer(0, audioSessionId);
+            bassBoost = new BassBoost(0, audioSessionId);
+            virtualizer = new Virtualizer(0, audioSessionId);
+
+            short bandCount = equalizer.getNumberOfBands();
+            short[] defaultBandLevels = new short[bandCount];
+            int[] centerFreqs = new int[bandCount];
+            int[][] bandFreqRanges = new int[bandCount][];
+            for (short band = 0; band < bandCount; band++) {
+                defaultBandLevels[band] = equalizer.getBandLevel(band);
+                centerFreqs[band] = equalizer.getCenterFreq(band);
+                bandFreqRanges[band] = equalizer.getBandFreqRange(band);
+            }
+
+            AudioEffectSettings defaultSettings = new AudioEffectSettings(
+                    equalizer.getCurrentPreset(),
+                    defaultBandLevels,
+                    bassBoost.getRoundedStrength(),
+                    virtualizer.getRoundedStrength());
+
+            short presetCount = equalizer.getNumberOfPresets();
+            String[] presetNames = new String[presetCount];
+            short[][] presetBandLevels = new short[presetCount][bandCount];
+            for (short preset = 0; preset < presetCount; preset++) {
+                presetNames[preset] = equalizer.getPresetName(preset);
+                equalizer.usePreset(preset);
+                for (short band = 0; band < bandCount; band++) {
+                    presetBandLevels[preset][band] = equalizer.getBandLevel(band);
+                }
+            }
+
+            return new AudioEffectCapabilities(presetNames,
+                    presetBandLevels,
+                    centerFreqs,
+                    bandFreqRanges,
+                    equalizer.getBandLevelRange(),
+                    defaultSettings);
+        } finally {
+            if (equalizer != null) {
+                equalizer.release();
+            }
+            if (bassBoost != null) {
+                bassBoost.release();
+            }
+            if (virtualizer != null) {
+                virtualizer.release();
+            }
+            mediaPlayer.release();
+        }
+    }
+
+    private static String encode(AudioEffectCapabilities capabilities) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(FORMAT_VERSION);
+
+            output.writeShort(capabilities.mPresetNames.length);
+            for (int preset = 0; preset < capabilities.mPresetNames.length; preset++) {
+                output.writeUTF(capabilities.mPresetNames[preset]);
+                writeShorts(output, capabilities.mPresetBandLevels[preset]);
+            }
+
+            int bandCount = capabilities.mCenterFreqs.length;
+            output.writeShort(bandCount);
+            for (int band = 0; band < bandCount; band++) {
+                output.writeInt(capabilities.mCenterFreqs[band]);
+                output.writeInt(capabilities.mBandFreqRanges[band][0]);
+                output.writeInt(capabilities.mBandFreqRanges[band][1]);
+            }
+            writeShorts(output, capabilities.mBandLevelRange);
+
+            AudioEffectSettings defaults = capabilities.mDefaultSettings;
+            output.writeShort(defaults.getPreset());
+            for (short band = 0; band < bandCount; band++) {
+                output.writeShort(defaults.getBandLevel(band));
+            }
+            output.writeShort(defaults.getBassBoostStrength());
+            output.writeShort(defaults.getVirtualizerStrength());
+
+            output.flush();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new AssertionError(e);
+        }
+        return Base64.encodeToString(bytes.toByteArray(), Base64.NO_WRAP);
+    }
+
+    @Nullable
+    private static AudioEffectCapabilities decode(String descriptor) {
+        if (descriptor.isEmpty()) {
+            return null;
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(
+                    new ByteArrayInputStream(Base64.decode(descriptor, Base64.NO_WRAP)));
+
+            if (input.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            int presetCount = input.readShort();
+            String[] presetNames = new String[presetCount];
+            short[][] presetBandLevels = new short[presetCount][];
+            for (int preset = 0; preset < presetCount; preset++) {
+                presetNames[preset] = input.readUTF();
+                presetBandLevels[preset] = readShorts(input);
+            }
+
+            int bandCount = input.readShort();
+            int[] centerFreqs = new int[bandCount];
+            int[][] bandFreqRanges = new int[bandCount][];
+            for (int band = 0; band < bandCount; band++) {
+                centerFreqs[band] = input.readInt();
+                bandFreqRanges[band] = new int[]{input.readInt(), input.readInt()};
+            }
+            short[] bandLevelRange = readShorts(input);
+
+            short defaultPreset = input.readShort();
+            short[] defaultBandLevels = new short[bandCount];
+            for (int band = 0; band < bandCount; band++) {
+                defaultBandLevels[band] = input.readShort();
+            }
+            AudioEffectSettings defaultSettings = new AudioEffectSettings(defaultPreset,
+                    defaultBandLevels,
+                    input.readShort(),
+                    input.readShort());
+
+            return new AudioEffectCapabilities(presetNames,
+                    presetBandLevels,
+                    centerFreqs,
+                    bandFreqRanges,
+                    bandLevelRange,
+                    defaultSettings);
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static void writeShorts(DataOutputStream output, short[] values) throws IOException {
+        output.writeShort(values.length);
+        for (short value : values) {
+            output.writeShort(value);
+        }
+    }
+
+    private static short[] readShorts(DataInputStream input) throws IOException {
+        short[] values = new short[input.readShort()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = input.readShort();
+        }
+        return values;
+    }
+
+    public int getNumberOfPresets() {
+        return mPresetNames.length;
+    }
+
+    public String getPresetName(short preset) {
+        return mPresetNames[preset];
+    }
+
+    /**
+     * Returns a copy of the band levels of a preset.
+     */
+    public short[] getPresetBandLevels(short preset) {
+        return mPresetBandLevels[preset].clone();
+    }
+
+    public int getNumberOfBands() {
+        return mCenterFreqs.length;
+    }
+
+    public int getCenterFreq(short band) {
+        return mCenterFreqs[band];
+    }
+
+    public int[] getBandFreqRange(short band) {
+        return mBandFreqRanges[band].clone();
+    }
+
+    public short[] getBandLevelRange() {
+        return mBandLevelRange.clone();
+    }
+
+    /**
+     * The settings of a new effect, used when the user has not changed anything yet.
+     */
+    @NonNull
+    public AudioEffectSettings getDefaultSettings() {
+        return new AudioEffectSettings(mDefaultSettings);
+    }
+}
@@ -0,0 +1,179 @@
+package accepted.player.ui.equalizer;
+
+import android.media.audiofx.BassBoost;
+import android.media.audiofx.Equalizer;
+import android.media.audiofx.Virtualizer;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+import accepted.player.ui.util.AndroidAudioEffectConfigUtil;
+import accepted.player.ui.util.Preconditions;
+
+/**
+ * The equalizer, bass boost and virtualizer settings, read from and written to the audio effect
+ * config in the format of {@link AndroidAudioEffectConfigUtil}.
+ */
+public final class AudioEffectSettings {
+    public static final short PRESET_CUSTOM = -1;
+
+    private short mPreset;
+    private short[] mBandLevels;
+    private short mBassBoostStrength;
+    private short mVirtualizerStrength;
+
+    public AudioEffectSettings(short preset, @NonNull short[] bandLevels,
+                               short bassBoostStrength, short virtualizerStrength) {
+        Preconditions.checkNotNull(bandLevels);
+
+        mPreset = preset;
+        mBandLevels = bandLevels.clone();
+        mBassBoostStrength = bassBoostStrength;
+        mVirtualizerStrength = virtualizerStrength;
+    }
+
+    public AudioEffectSettings(@NonNull AudioEffectSettings source) {
+        this(source.mPreset, source.mBandLevels, source.mBassBoostStrength, source.mVirtualizerStrength);
+    }
+
+    /**
+     * Reads the settings from the config. Missing or unreadable settings, and equalizer settings
+     * with another band count, are taken from {@code defaults}.
+     */
+    @NonNull
+    public static AudioEffectSettings fromConfig(@NonNull Bundle config, @NonNull AudioEffectSettings defaults) {
+        Preconditions.checkNotNull(config);
+        Preconditions.checkNotNull(defaults);
+
+        AudioEffectSettings settings = new AudioEffectSettings(defaults);
+
+        String equalizer = config.getString(AndroidAudioEffectConfigUtil.KEY_SETTING_EQUALIZER);
+        if (equalizer != null && !equalizer.isEmpty()) {
+            try {
+                Equalizer.Settings equalizerSettings = new Equalizer.Settings(equalizer);
+                if (equalizerSettings.bandLevels.length == defaults.mBandLevels.length) {
+                    settings.mPreset = equalizerSettings.curPreset;
+                    settings.mBandLevels = equalizerSettings.bandLevels.clone();
+                }
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+
+        String bassBoost = config.getString(AndroidAudioEffectConfigUtil.KEY_SETTING_BASS_BOOST);
+        if (bassBoost != null && !bassBoost.isEmpty()) {
+            try {
+                settings.mBassBoostStrength = new BassBoost.Settings(bassBoost).strength;
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+
+        String virtualizer = config.getString(AndroidAudioEffectConfigUtil.KEY_SETTING_VIRTUALIZER);
+        if (virtualizer != null && !virtualizer.isEmpty()) {
+            try {
+                settings.mVirtualizerStrength = new Virtualizer.Settings(virtualizer).strength;
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return settings;
+    }
+
+    public void writeTo(@NonNull Bundle config) {
+        Preconditions.checkNotNull(config);
+
+        AndroidAudioEffectConfigUtil.updateSettings(config, getEqualizerSettings());
+        AndroidAudioEffectConfigUtil.updateSettings(config, getBassBoostSettings());
+        AndroidAudioEffectConfigUtil.updateSettings(config, getVirtualizerSettings());
+    }
+
+    @NonNull
+    public Equalizer.Settings getEqualizerSettings() {
+        Equalizer.Settings settings = new Equalizer.Settings();
+        settings.curPreset = mPreset;
+        settings.numBands = (short) mBandLevels.length;
+        settings.bandLevels = mBandLevels.clone();
+        return settings;
+    }
+
+    @NonNull
+    public BassBoost.Settings getBassBoostSettings() {
+        BassBoost.Settings settings = new BassBoost.Settings();
+        settings.strength = mBassBoostStrength;
+        return settings;
+    }
+
+    @NonNull
+    public Virtualizer.Settings getVirtualizerSettings() {
+        Virtualizer.Settings settings = new Virtualizer.Settings();
+        settings.strength = mVirtualizerStrength;
+        return settings;
+    }
+
+    /**
+     * @return the current preset, or {@link #PRESET_CUSTOM} once a band was changed by hand.
+     */
+    public short getPreset() {
+        return mPreset;
+    }
+
+    public int getNumberOfBands() {
+        return mBandLevels.length;
+    }
+
+    public short getBandLevel(short band) {
+        return mBandLevels[band];
+    }
+
+    public void setBandLevel(short band, short level) {
+        mBandLevels[band] = level;
+        mPreset = PRESET_CUSTOM;
+    }
+
+    public void usePreset(short preset, @NonNull short[] bandLevels) {
+        Preconditions.checkNotNull(bandLevels);
+
+        mPreset = preset;
+        mBandLevels = bandLevels.clone();
+    }
+
+    public short getBassBoostStrength() {
+        return mBassBoostStrength;
+    }
+
+    public void setBassBoostStrength(short strength) {
+        mBassBoostStrength = strength;
+    }
+
+    public short getVirtualizerStrength() {
+        return mVirtualizerStrength;
+    }
+
+    public void setVirtualizerStrength(short strength) {
+        mVirtualizerStrength = strength;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AudioEffectSettings other = (AudioEffectSettings) o;
+        return mPreset == other.mPreset &&
+                mBassBoostStrength == other.mBassBoostStrength &&
+                mVirtualizerStrength == other.mVirtualizerStrength &&
+                Arrays.equals(mBandLevels, other.mBandLevels);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(mBandLevels);
+        result = 31 * result + mPreset;
+        result = 31 * result + mBassBoostStrength;
+        result = 31 * result + mVirtualizerStrength;
+        return result;
+    }
+}
@@ -103,7 +103,7 @@ public class EqualizerActivity extends AppCompatActivity {
         }
 
         PlayerClient playerClient = PlayerClient.newInstance(this, getPlayerServiceClazz());
-        mEqualizerViewModel.init(playerClient);
+        mEqualizerViewModel.init(this, playerClient);
         playerClient.connect();
     }
 
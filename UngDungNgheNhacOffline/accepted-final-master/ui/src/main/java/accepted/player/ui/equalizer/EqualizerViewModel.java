@@ -1,6 +1,6 @@
 package accepted.player.ui.equalizer;
 
-import android.media.MediaPlayer;
+import android.content.Context;
 import android.media.audiofx.BassBoost;
 import android.media.audiofx.Equalizer;
 import android.media.audiofx.Virtualizer;
@@ -11,7 +11,6 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import accepted.player.PlayerClient;
-import accepted.player.ui.util.AndroidAudioEffectConfigUtil;
 import accepted.player.ui.util.Preconditions;
 
 public class EqualizerViewModel extends ViewModel {
@@ -28,9 +27,15 @@ public class EqualizerViewModel extends ViewModel {
     private boolean mInitialized;
     private Bundle mAudioEffectConfig;
 
-    private MediaPlayer mFakeMediaPlayer;
+    private AudioEffectCapabilities mCapabilities;
+    private AudioEffectSettings mSettings;
 
-    public void init(@NonNull PlayerClient playerClient) {
+    /**
+     * The effects used to preview changes are only created once the user changes something, until
+     * then everything is read from the {@link AudioEffectCapabilities} and the saved settings.
+     */
+    public void init(@NonNull Context context, @NonNull PlayerClient playerClient) {
+        Preconditions.checkNotNull(context);
         Preconditions.checkNotNull(playerClient);
 
         if (mInitialized) {
@@ -42,12 +47,19 @@ public class EqualizerViewModel extends ViewModel {
 
         mEnabled = new MutableLiveData<>(playerClient.isAudioEffectEnabled());
         mAudioEffectConfig = mPlayerClient.getAudioEffectConfig();
-        attachAudioEffect(0);
+        mCapabilities = AudioEffectCapabilities.get(context);
+        mSettings = AudioEffectSettings.fromConfig(mAudioEffectConfig, mCapabilities.getDefaultSettings());
 
         mOnAudioSessionChangeListener = new PlayerClient.OnAudioSessionChangeListener() {
             @Override
             public void onAudioSessionChanged(int audioSessionId) {
-                if (mPlayerClient.isAudioEffectEnabled()) {
+                if (mEqualizer == null) {
+                    return;
+                }
+
+                if (audioSessionId == 0) {
+                    releaseAllEffect();
+                } else {
                     attachAudioEffect(audioSessionId);
                 }
             }
@@ -66,10 +78,6 @@ public class EqualizerViewModel extends ViewModel {
             return;
         }
 
-        if (mFakeMediaPlayer != null) {
-            mFakeMediaPlayer.release();
-        }
-
         mPlayerClient.disconnect();
         mPlayerClient.removeOnAudioSessionChangeListener(mOnAudioSessionChangeListener);
 
@@ -90,10 +98,8 @@ public class EqualizerViewModel extends ViewModel {
         mEnabled.setValue(enabled);
         mPlayerClient.setAudioEffectEnabled(enabled);
 
-        if (enabled) {
-            attachAudioEffect(mPlayerClient.getAudioSessionId());
-        } else {
-            attachAudioEffect(0);
+        if (!enabled) {
+            releaseAllEffect();
         }
     }
 
@@ -106,7 +112,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getNumberOfPresets();
+        return mCapabilities.getNumberOfPresets();
     }
 
     public String getEqualizerPresetName(short preset) {
@@ -114,7 +120,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getPresetName(preset);
+        return mCapabilities.getPresetName(preset);
     }
 
     public void equalizerUsePreset(short preset) {
@@ -122,7 +128,11 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        mEqualizer.usePreset(preset);
+        mSettings.usePreset(preset, mCapabilities.getPresetBandLevels(preset));
+
+        if (prepareAudioEffect()) {
+            mEqualizer.usePreset(preset);
+        }
     }
 
     public short getEqualizerCurrentPreset() {
@@ -130,7 +140,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getCurrentPreset();
+        return mSettings.getPreset();
     }
 
     public int getEqualizerNumberOfBands() {
@@ -138,7 +148,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getNumberOfBands();
+        return mCapabilities.getNumberOfBands();
     }
 
     public int[] getEqualizerBandFreqRange(short band) {
@@ -146,7 +156,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getBandFreqRange(band);
+        return mCapabilities.getBandFreqRange(band);
     }
 
     public int getEqualizerCenterFreq(short band) {
@@ -154,7 +164,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getCenterFreq(band);
+        return mCapabilities.getCenterFreq(band);
     }
 
     public short[] getEqualizerBandLevelRange() {
@@ -162,7 +172,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getBandLevelRange();
+        return mCapabilities.getBandLevelRange();
     }
 
     public short getEqualizerBandLevel(short band) {
@@ -170,7 +180,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mEqualizer.getBandLevel(band);
+        return mSettings.getBandLevel(band);
     }
 
     public void setEqualizerBandLevel(short band, short level) {
@@ -178,7 +188,11 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        mEqualizer.setBandLevel(band, level);
+        mSettings.setBandLevel(band, level);
+
+        if (prepareAudioEffect()) {
+            mEqualizer.setBandLevel(band, level);
+        }
     }
 
     public void setBassBoostStrength(short strength) {
@@ -186,7 +200,11 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        mBassBoost.setStrength(strength);
+        mSettings.setBassBoostStrength(strength);
+
+        if (prepareAudioEffect()) {
+            mBassBoost.setStrength(strength);
+        }
     }
 
     public short getBassBoostRoundedStrength() {
@@ -194,7 +212,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mBassBoost.getRoundedStrength();
+        return mSettings.getBassBoostStrength();
     }
 
     public void setVirtualizerStrength(short strength) {
@@ -202,7 +220,11 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        mVirtualizer.setStrength(strength);
+        mSettings.setVirtualizerStrength(strength);
+
+        if (prepareAudioEffect()) {
+            mVirtualizer.setStrength(strength);
+        }
     }
 
     public short getVirtualizerStrength() {
@@ -210,31 +232,43 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        return mVirtualizer.getRoundedStrength();
+        return mSettings.getVirtualizerStrength();
     }
 
-    private int getFakeAudioSessionId() {
-        if (mFakeMediaPlayer == null) {
-            mFakeMediaPlayer = new MediaPlayer();
+    /**
+     * Creates the preview effects on the player's audio session the first time it is needed.
+     *
+     * @return true if the effects are ready, false if the audio effect is disabled or the player
+     * has no audio session yet.
+     */
+    private boolean prepareAudioEffect() {
+        if (mEqualizer != null) {
+            return true;
         }
 
-        return mFakeMediaPlayer.getAudioSessionId();
+        int audioSessionId = mPlayerClient.getAudioSessionId();
+        if (!mPlayerClient.isAudioEffectEnabled() || audioSessionId == 0) {
+            return false;
+        }
+
+        attachAudioEffect(audioSessionId);
+        return true;
     }
 
     private void attachAudioEffect(int audioSessionId) {
         releaseAllEffect();
 
-        if (audioSessionId == 0) {
-            audioSessionId = getFakeAudioSessionId();
-        }
-
         mEqualizer = new Equalizer(AUDIO_EFFECT_PRIORITY, audioSessionId);
         mBassBoost = new BassBoost(AUDIO_EFFECT_PRIORITY, audioSessionId);
         mVirtualizer = new Virtualizer(AUDIO_EFFECT_PRIORITY, audioSessionId);
 
-        AndroidAudioEffectConfigUtil.applySettings(mAudioEffectConfig, mEqualizer);
-        AndroidAudioEffectConfigUtil.applySettings(mAudioEffectConfig, mBassBoost);
-        AndroidAudioEffectConfigUtil.applySettings(mAudioEffectConfig, mVirtualizer);
+        try {
+            mEqualizer.setProperties(mSettings.getEqualizerSettings());
+            mBassBoost.setProperties(mSettings.getBassBoostSettings());
+            mVirtualizer.setProperties(mSettings.getVirtualizerSettings());
+        } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException e) {
+            e.printStackTrace();
+        }
 
         mEqualizer.setEnabled(true);
         mBassBoost.setEnabled(true);
@@ -246,9 +280,7 @@ public class EqualizerViewModel extends ViewModel {
             throw new IllegalStateException("EqualizerViewModel not init yet.");
         }
 
-        AndroidAudioEffectConfigUtil.updateSettings(mAudioEffectConfig, mEqualizer.getProperties());
-        AndroidAudioEffectConfigUtil.updateSettings(mAudioEffectConfig, mBassBoost.getProperties());
-        AndroidAudioEffectConfigUtil.updateSettings(mAudioEffectConfig, mVirtualizer.getProperties());
+        mSettings.writeTo(mAudioEffectConfig);
 
         if (mPlayerClient.isConnected()) {
             mPlayerClient.setAudioEffectConfig(mAudioEffectConfig);
@@ -266,14 +298,17 @@ public class EqualizerViewModel extends ViewModel {
     private void releaseAllEffect() {
         if (mEqualizer != null) {
             mEqualizer.release();
+            mEqualizer = null;
         }
 
         if (mBassBoost != null) {
             mBassBoost.release();
+            mBassBoost = null;
         }
 
         if (mVirtualizer != null) {
             mVirtualizer.release();
+            mVirtualizer = null;
         }
     }
 }